@@ -75,6 +75,9 @@ import net.imglib2.realtransform.RealViews;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.ui.PainterThread;
 import net.imglib2.ui.Renderer;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tmp.bdv.img.cache.VolatileCachedCellImg;
@@ -128,6 +131,12 @@ public class MultiResolutionRendererGeneric<T>
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.class);
 
+	private static final LatencyHistogram RENDER_TIME = MetricsRegistry.global().histogram("render.frame");
+
+	private static final LatencyHistogram IO_TIME = MetricsRegistry.global().histogram("render.frame.io");
+
+	private static final Counter CANCELLED_FRAMES = MetricsRegistry.global().counter("render.frame.cancelled");
+
 	public static interface ImageGenerator<T>
 	{
 
@@ -540,6 +549,14 @@ public class MultiResolutionRendererGeneric<T>
 		// try rendering
 		final boolean success    = p.map(createProjector);
 		final long    rendertime = p.getLastFrameRenderNanoTime();
+		if (success)
+		{
+			RENDER_TIME.record(rendertime);
+			if (p instanceof VolatileHierarchyProjectorPreMultiply)
+				IO_TIME.record(((VolatileHierarchyProjectorPreMultiply<?>) p).getLastFrameIoNanoTime());
+		}
+		else
+			CANCELLED_FRAMES.increment();
 
 		synchronized (this)
 		{
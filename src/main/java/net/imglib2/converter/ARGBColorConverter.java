@@ -7,6 +7,10 @@ import javafx.beans.property.SimpleObjectProperty;
 import net.imglib2.display.ColorConverter;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
 
 public abstract class ARGBColorConverter<R extends RealType<R>> implements ColorConverter, Converter<R, ARGBType>
 {
@@ -113,7 +117,34 @@ public abstract class ARGBColorConverter<R extends RealType<R>> implements Color
 		this.min.set(min);
 	}
 
-	private void update()
+	/**
+	 * Converter that behaves like {@link InvertingImp1}, specialized through a lookup table for unsigned 8-bit and
+	 * 16-bit data, if {@code type} is any of these, and {@link InvertingImp1} otherwise.
+	 *
+	 * @param type
+	 * 		type of the converted data
+	 */
+	@SuppressWarnings("unchecked")
+	public static <R extends RealType<R>> ARGBColorConverter<R> inverting(
+			final R type,
+			final double min,
+			final double max)
+	{
+		if (type instanceof UnsignedByteType)
+			return (ARGBColorConverter<R>) new InvertingUnsignedByteLookup(min, max);
+		if (type instanceof VolatileUnsignedByteType)
+			return (ARGBColorConverter<R>) new InvertingVolatileUnsignedByteLookup(min, max);
+		if (type instanceof UnsignedShortType)
+			return (ARGBColorConverter<R>) new InvertingUnsignedShortLookup(min, max);
+		if (type instanceof VolatileUnsignedShortType)
+			return (ARGBColorConverter<R>) new InvertingVolatileUnsignedShortLookup(min, max);
+		return new InvertingImp1<>(min, max);
+	}
+
+	/**
+	 * Called whenever min, max, color, or alpha change, and once on construction.
+	 */
+	protected void update()
 	{
 		final double scale = 1.0 / (max.get() - min.get());
 		final int    value = color.get().get();
@@ -247,4 +278,166 @@ public abstract class ARGBColorConverter<R extends RealType<R>> implements Color
 		}
 
 	}
+
+	/**
+	 * Same mapping as {@link InvertingImp0}, for data with integer values {@code 0, ..., numEntries() - 1}. The
+	 * mapping is pre-computed for all values whenever min, max, color, or alpha change, and converting a pixel is a
+	 * single table lookup.
+	 */
+	public static abstract class InvertingLookup<R extends RealType<R>> extends ARGBColorConverter<R>
+	{
+
+		// replaced, not modified, on update: converters may be used from multiple rendering threads
+		private volatile int[] table;
+
+		public InvertingLookup(final double min, final double max)
+		{
+			super(min, max);
+		}
+
+		/**
+		 * @return size of the lookup table, i.e. number of possible values
+		 */
+		protected abstract int numEntries();
+
+		/**
+		 * @return value of {@code input}, in {@code [0, numEntries())}
+		 */
+		protected abstract int index(final R input);
+
+		@Override
+		public void convert(final R input, final ARGBType output)
+		{
+			output.set(table[index(input)]);
+		}
+
+		@Override
+		protected void update()
+		{
+			super.update();
+			final double min   = this.min.get();
+			final int[]  table = new int[numEntries()];
+			for (int index = 0; index < table.length; ++index)
+			{
+				final double v  = index - min;
+				final int    r0 = (int) (scaleR * v + 0.5);
+				final int    g0 = (int) (scaleG * v + 0.5);
+				final int    b0 = (int) (scaleB * v + 0.5);
+				final int    r  = Math.min(255, Math.max(r0, 0));
+				final int    g  = Math.min(255, Math.max(g0, 0));
+				final int    b  = Math.min(255, Math.max(b0, 0));
+				table[index] = ARGBType.rgba(r, g, b, A);
+			}
+			this.table = table;
+		}
+
+	}
+
+	public static class InvertingUnsignedByteLookup extends InvertingLookup<UnsignedByteType>
+	{
+
+		public InvertingUnsignedByteLookup()
+		{
+			this(0, 255);
+		}
+
+		public InvertingUnsignedByteLookup(final double min, final double max)
+		{
+			super(min, max);
+		}
+
+		@Override
+		protected int numEntries()
+		{
+			return 1 << 8;
+		}
+
+		@Override
+		protected int index(final UnsignedByteType input)
+		{
+			return input.get();
+		}
+
+	}
+
+	public static class InvertingVolatileUnsignedByteLookup extends InvertingLookup<VolatileUnsignedByteType>
+	{
+
+		public InvertingVolatileUnsignedByteLookup()
+		{
+			this(0, 255);
+		}
+
+		public InvertingVolatileUnsignedByteLookup(final double min, final double max)
+		{
+			super(min, max);
+		}
+
+		@Override
+		protected int numEntries()
+		{
+			return 1 << 8;
+		}
+
+		@Override
+		protected int index(final VolatileUnsignedByteType input)
+		{
+			return input.get().get();
+		}
+
+	}
+
+	public static class InvertingUnsignedShortLookup extends InvertingLookup<UnsignedShortType>
+	{
+
+		public InvertingUnsignedShortLookup()
+		{
+			this(0, 255);
+		}
+
+		public InvertingUnsignedShortLookup(final double min, final double max)
+		{
+			super(min, max);
+		}
+
+		@Override
+		protected int numEntries()
+		{
+			return 1 << 16;
+		}
+
+		@Override
+		protected int index(final UnsignedShortType input)
+		{
+			return input.get();
+		}
+
+	}
+
+	public static class InvertingVolatileUnsignedShortLookup extends InvertingLookup<VolatileUnsignedShortType>
+	{
+
+		public InvertingVolatileUnsignedShortLookup()
+		{
+			this(0, 255);
+		}
+
+		public InvertingVolatileUnsignedShortLookup(final double min, final double max)
+		{
+			super(min, max);
+		}
+
+		@Override
+		protected int numEntries()
+		{
+			return 1 << 16;
+		}
+
+		@Override
+		protected int index(final VolatileUnsignedShortType input)
+		{
+			return input.get().get();
+		}
+
+	}
 }
@@ -0,0 +1,127 @@
+package org.janelia.saalfeldlab.fx.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.animation.AnimationTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesce updates of the JavaFX scene graph that are triggered from background threads. Each update is written into
+ * a slot (identified by an arbitrary key) and replaces any pending update in the same slot. A single {@link
+ * AnimationTimer} drains all slots once per pulse on the JavaFX application thread and stops as soon as there are no
+ * more pending updates. Use this instead of {@link InvokeOnJavaFXApplicationThread#invoke(Runnable)} for frequent
+ * updates where only the latest value matters, e.g. progress or status text.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class FXUpdateCoalescer
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final FXUpdateCoalescer INSTANCE = new FXUpdateCoalescer();
+
+	// guarded by itself
+	private final Map<Object, Runnable> slots = new LinkedHashMap<>();
+
+	// guarded by slots
+	private boolean isScheduled = false;
+
+	// only accessed on the JavaFX application thread
+	private AnimationTimer timer = null;
+
+	/**
+	 * @return instance that is shared by all UI components.
+	 */
+	public static FXUpdateCoalescer getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Run {@code update} on the JavaFX application thread with the next pulse, unless it is replaced by another update
+	 * for the same {@code slot} before that.
+	 *
+	 * @param slot
+	 * 		identifies the value that is updated, compared with {@link Object#equals(Object)}
+	 * @param update
+	 * 		applies the latest value, must not block
+	 */
+	public void submit(final Object slot, final Runnable update)
+	{
+		final boolean startTimer;
+		synchronized (slots)
+		{
+			// re-insert so that slots are drained in the order of their latest update
+			slots.remove(slot);
+			slots.put(slot, update);
+			startTimer = !isScheduled;
+			isScheduled = true;
+		}
+		if (startTimer)
+		{
+			InvokeOnJavaFXApplicationThread.invoke(this::startTimer);
+		}
+	}
+
+	/**
+	 * Drop the pending update for {@code slot}, if any.
+	 */
+	public void cancel(final Object slot)
+	{
+		synchronized (slots)
+		{
+			slots.remove(slot);
+		}
+	}
+
+	private void startTimer()
+	{
+		if (timer == null)
+		{
+			timer = new AnimationTimer()
+			{
+				@Override
+				public void handle(final long now)
+				{
+					drain();
+				}
+			};
+		}
+		timer.start();
+	}
+
+	private void drain()
+	{
+		final List<Runnable> updates;
+		synchronized (slots)
+		{
+			if (slots.isEmpty())
+			{
+				// nothing was submitted for a whole pulse: stop until the next submit
+				isScheduled = false;
+				timer.stop();
+				return;
+			}
+			updates = new ArrayList<>(slots.values());
+			slots.clear();
+		}
+		LOG.trace("Draining {} updates", updates.size());
+		for (final Runnable update : updates)
+		{
+			try
+			{
+				update.run();
+			} catch (final RuntimeException e)
+			{
+				LOG.error("Unable to apply update: {}", e.getMessage(), e);
+			}
+		}
+	}
+
+}
@@ -7,9 +7,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import bdv.fx.viewer.ViewerPanelFX;
 import bdv.viewer.Source;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
@@ -33,16 +36,24 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
+import javafx.util.Duration;
 import net.imglib2.RealPoint;
+import net.imglib2.realtransform.AffineTransform3D;
 import org.janelia.saalfeldlab.fx.ortho.OrthogonalViews;
 import org.janelia.saalfeldlab.fx.ortho.OrthogonalViews.ViewerAndTransforms;
 import org.janelia.saalfeldlab.fx.ui.ResizeOnLeftSide;
-import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
+import org.janelia.saalfeldlab.paintera.cache.BatchedSharedQueue;
 import org.janelia.saalfeldlab.paintera.config.CrosshairConfigNode;
 import org.janelia.saalfeldlab.paintera.config.NavigationConfigNode;
 import org.janelia.saalfeldlab.paintera.config.OrthoSliceConfigNode;
 import org.janelia.saalfeldlab.paintera.config.Viewer3DConfigNode;
 import org.janelia.saalfeldlab.paintera.control.navigation.CoordinateDisplayListener;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsPane;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.janelia.saalfeldlab.paintera.state.SourceInfo;
 import org.janelia.saalfeldlab.paintera.ui.Crosshair;
 import org.janelia.saalfeldlab.paintera.ui.source.SourceTabs;
@@ -101,28 +112,22 @@ public class BorderPaneWithStatusBars
 
 	public void setViewerCoordinateStatus(final RealPoint p)
 	{
-		InvokeOnJavaFXApplicationThread.invoke(() -> viewerCoordinateStatus.setText(p == null
-		                                                                            ? "N/A"
-		                                                                            : String.format("(% 4d, % 4d)",
-				                                                                            (int) p.getDoublePosition
-						                                                                            (0),
-				                                                                            (int) p
-						                                                                            .getDoublePosition(1)
-		                                                                                           )));
+		// format immediately, p may be modified before the status is updated
+		final String text = p == null
+		                    ? "N/A"
+		                    : String.format("(% 4d, % 4d)", (int) p.getDoublePosition(0), (int) p.getDoublePosition(1));
+		FXUpdateCoalescer.getInstance().submit(viewerCoordinateStatus, () -> viewerCoordinateStatus.setText(text));
 	}
 
 	public void setWorldCoorinateStatus(final RealPoint p)
 	{
-		InvokeOnJavaFXApplicationThread.invoke(() -> worldCoordinateStatus.setText(p == null
-		                                                                           ? "N/A"
-		                                                                           : CoordinateDisplayListener
-				                                                                           .worldToString(
-				                                                                           p)));
+		final String text = p == null ? "N/A" : CoordinateDisplayListener.worldToString(p);
+		FXUpdateCoalescer.getInstance().submit(worldCoordinateStatus, () -> worldCoordinateStatus.setText(text));
 	}
 
 	public void setCurrentValue(final String s)
 	{
-		InvokeOnJavaFXApplicationThread.invoke(() -> valueStatus.setText(s));
+		FXUpdateCoalescer.getInstance().submit(valueStatus, () -> valueStatus.setText(s));
 	}
 
 	public Map<ViewerAndTransforms, OrthoSliceFX> orthoSlices()
@@ -149,6 +154,16 @@ public class BorderPaneWithStatusBars
 
 		final HBox statusDisplays = new HBox(5, viewerCoordinateStatus, worldCoordinateStatus, valueStatus);
 
+		if (center.getQueue() instanceof BatchedSharedQueue)
+		{
+			final Label fetchStatus = new Label();
+			fetchStatus.setFont(Font.font("Monospaced"));
+			fetchStatus.setTooltip(new Tooltip("Cell fetching: queued requests, loaded cells per second, and mean " +
+					"time in queue over the last second"));
+			statusDisplays.getChildren().add(fetchStatus);
+			trackFetchStatus((BatchedSharedQueue) center.getQueue(), fetchStatus);
+		}
+
 		this.crossHairs = makeCrosshairs(center.orthogonalViews(), Colors.CREMI, Color.WHITE.deriveColor(0, 1, 1,
 				0.5));
 		this.orthoSlices = makeOrthoSlices(
@@ -202,7 +217,8 @@ public class BorderPaneWithStatusBars
 		final SourceTabs sourceTabs = new SourceTabs(
 				center.sourceInfo().currentSourceIndexProperty(),
 				MakeUnchecked.onException(center.sourceInfo()::removeSource, onRemoveException),
-				center.sourceInfo()
+				center.sourceInfo(),
+				statistics -> visibleStatistics(center.orthogonalViews(), statistics)
 		);
 
 		final TitledPane sourcesContents = new TitledPane("sources", sourceTabs.get());
@@ -219,7 +235,9 @@ public class BorderPaneWithStatusBars
 
 		saveProjectButton = new Button("Save");
 
-		this.sideBar = new ScrollPane(new VBox(sourcesContents, settings, saveProjectButton));
+		final MetricsPane metrics = new MetricsPane(MetricsRegistry.global());
+
+		this.sideBar = new ScrollPane(new VBox(sourcesContents, settings, metrics.getPane(), saveProjectButton));
 		this.sideBar.setHbarPolicy(ScrollBarPolicy.NEVER);
 		this.sideBar.setVbarPolicy(ScrollBarPolicy.AS_NEEDED);
 		this.sideBar.setVisible(true);
@@ -230,6 +248,26 @@ public class BorderPaneWithStatusBars
 		resizeSideBar = new ResizeOnLeftSide(sideBar, sideBar.prefWidthProperty(), dist -> Math.abs(dist) < 5);
 	}
 
+	private static void trackFetchStatus(final BatchedSharedQueue queue, final Label fetchStatus)
+	{
+		final LatencyHistogram queueLatency = BatchedSharedQueue.queueLatency();
+		final long[]           previous     = {queueLatency.count(), queueLatency.totalNanos()};
+		final Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), event -> {
+			final long completed = queueLatency.count();
+			final long latency   = queueLatency.totalNanos();
+			final long loaded    = completed - previous[0];
+			fetchStatus.setText(String.format(
+					"fetch: %d queued %d/s %.1fms",
+					queue.pendingRequests(),
+					loaded,
+					loaded == 0 ? 0.0 : (latency - previous[1]) * 1e-6 / loaded));
+			previous[0] = completed;
+			previous[1] = latency;
+		}));
+		timeline.setCycleCount(Timeline.INDEFINITE);
+		timeline.play();
+	}
+
 	public void toggleSideBar()
 	{
 		if (pane.getRight() == null)
@@ -306,6 +344,26 @@ public class BorderPaneWithStatusBars
 
 	}
 
+	/**
+	 * @return merged statistics of the data visible in any of the orthogonal views
+	 */
+	public static Optional<BlockStatistics> visibleStatistics(
+			final OrthogonalViews<?> views,
+			final StatisticsPyramid<?> statistics)
+	{
+		return Stream
+				.of(views.topLeft(), views.topRight(), views.bottomLeft())
+				.map(ViewerAndTransforms::viewer)
+				.map(viewer -> {
+					final AffineTransform3D viewerTransform = new AffineTransform3D();
+					viewer.getState().getViewerTransform(viewerTransform);
+					return statistics.statistics(viewerTransform, viewer.getWidth(), viewer.getHeight());
+				})
+				.filter(Optional::isPresent)
+				.map(Optional::get)
+				.reduce(BlockStatistics::merge);
+	}
+
 	public NavigationConfigNode navigationConfigNode()
 	{
 		return this.navigationConfigNode;
@@ -992,18 +992,42 @@ public class N5Helpers
 			}
 		};
 
-		final Supplier<TLongLongMap> initialLutSupplier = MakeUnchecked.supplier(() -> {
+		return new FragmentSegmentAssignmentOnlyLocal(assignmentsLut(writer, dataset), persister);
+	}
+
+	/**
+	 * Fragment-segment assignment of {@code group} for reading only, e.g. to map segments to fragments. Changes of the
+	 * returned assignment cannot be persisted.
+	 */
+	public static FragmentSegmentAssignmentState readOnlyAssignments(final N5Reader reader, final String group)
+	throws IOException
+	{
+		final Persister persister = (keys, values) -> {
+			throw new UnableToPersist("Persisting assignments not supported for read-only group/dataset " + group);
+		};
+		if (!isPainteraDataset(reader, group))
+		{
+			return new FragmentSegmentAssignmentOnlyLocal(TLongLongHashMap::new, persister);
+		}
+		return new FragmentSegmentAssignmentOnlyLocal(
+				assignmentsLut(reader, group + "/" + PAINTERA_FRAGMENT_SEGMENT_ASSIGNMENT_DATASTE),
+				persister);
+	}
+
+	private static Supplier<TLongLongMap> assignmentsLut(final N5Reader reader, final String dataset)
+	{
+		return MakeUnchecked.supplier(() -> {
 			final long[] keys;
 			final long[] values;
-			LOG.debug("Found fragment segment assingment dataset {}? {}", dataset, writer.datasetExists(dataset));
-			if (writer.datasetExists(dataset))
+			LOG.debug("Found fragment segment assingment dataset {}? {}", dataset, reader.datasetExists(dataset));
+			if (reader.datasetExists(dataset))
 			{
-				final DatasetAttributes attrs      = writer.getDatasetAttributes(dataset);
+				final DatasetAttributes attrs      = reader.getDatasetAttributes(dataset);
 				final int               numEntries = (int) attrs.getDimensions()[0];
 				keys = new long[numEntries];
 				values = new long[numEntries];
 				LOG.debug("Found {} assignments", numEntries);
-				final RandomAccessibleInterval<UnsignedLongType> data = N5Utils.open(writer, dataset);
+				final RandomAccessibleInterval<UnsignedLongType> data = N5Utils.open(reader, dataset);
 
 				final Cursor<UnsignedLongType> keysCursor = Views.flatIterable(Views.hyperSlice(data, 1, 0l)).cursor();
 				for (int i = 0; keysCursor.hasNext(); ++i)
@@ -1028,14 +1052,12 @@ public class N5Helpers
 			}
 			return new TLongLongHashMap(keys, values);
 		});
-
-		return new FragmentSegmentAssignmentOnlyLocal(initialLutSupplier, persister);
 	}
 
 	public static IdService idService(final N5Writer n5, final String dataset) throws IOException
 	{
 
-		final Long maxId = n5.getAttribute(dataset, "maxId", Long.class);
+		final Long maxId = n5.getAttribute(dataset, N5IdService.MAX_ID_KEY, Long.class);
 		if (maxId == null) { throw new RuntimeException("maxId not specified in attributes.json"); }
 		return new N5IdService(n5, dataset, maxId);
 
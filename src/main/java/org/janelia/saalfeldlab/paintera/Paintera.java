@@ -3,6 +3,7 @@ package org.janelia.saalfeldlab.paintera;
 import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -10,6 +11,7 @@ import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+import bdv.util.volatiles.SharedQueue;
 import bdv.viewer.ViewerOptions;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -35,6 +37,7 @@ import org.janelia.saalfeldlab.fx.ortho.OrthogonalViews;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.paintera.SaveProject.ProjectUndefined;
+import org.janelia.saalfeldlab.paintera.cache.BatchedSharedQueue;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaYCbCr;
 import org.janelia.saalfeldlab.paintera.composition.Composite;
 import org.janelia.saalfeldlab.paintera.composition.CompositeCopy;
@@ -52,6 +55,8 @@ import org.janelia.saalfeldlab.paintera.data.mask.Masks;
 import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5;
 import org.janelia.saalfeldlab.paintera.id.IdService;
 import org.janelia.saalfeldlab.paintera.meshes.cache.BlocksForLabelFromFile;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsDump;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.janelia.saalfeldlab.paintera.serialization.GsonHelpers;
 import org.janelia.saalfeldlab.paintera.serialization.Properties;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
@@ -152,12 +157,28 @@ public class Paintera extends Application
 		lockFile.lock();
 		stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> lockFile.remove());
 
+		final SharedQueue queue = painteraArgs.batchedFetching()
+		                          ? new BatchedSharedQueue(painteraArgs.numFetcherThreads(), painteraArgs
+				.fetchBatchSize())
+		                          : new SharedQueue(painteraArgs.numFetcherThreads());
+		LOG.debug("Using fetch queue {}", queue);
+
 		final PainteraBaseView baseView = new PainteraBaseView(
-				Math.min(8, Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+				queue,
 				ViewerOptions.options().screenScales(screenScales),
 				si -> s -> si.getState(s).interpolationProperty().get()
 		);
 
+		if (painteraArgs.metricsDump() != null)
+		{
+			final MetricsDump metricsDump = new MetricsDump(
+					MetricsRegistry.global(),
+					Paths.get(painteraArgs.metricsDump()),
+					(long) (painteraArgs.metricsDumpInterval() * 1000));
+			metricsDump.start();
+			stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> metricsDump.stop());
+		}
+
 		final OrthogonalViews<Viewer3DFX> orthoViews = baseView.orthogonalViews();
 
 		final KeyTracker   keyTracker   = new KeyTracker();
@@ -410,7 +431,7 @@ public class Paintera extends Application
 
 				final RawSourceState<D, T> state = new RawSourceState<>(
 						source,
-						new ARGBColorConverter.Imp1<>(),
+						ARGBColorConverter.inverting(source.getType(), 0, 255),
 						composite,
 						name
 				);
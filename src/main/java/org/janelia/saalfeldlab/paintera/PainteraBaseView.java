@@ -18,6 +18,8 @@ import bdv.viewer.ViewerOptions;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.scene.layout.Pane;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
@@ -45,6 +47,7 @@ import org.janelia.saalfeldlab.paintera.config.NavigationConfigNode;
 import org.janelia.saalfeldlab.paintera.config.OrthoSliceConfig;
 import org.janelia.saalfeldlab.paintera.config.OrthoSliceConfigBase;
 import org.janelia.saalfeldlab.paintera.config.Viewer3DConfig;
+import org.janelia.saalfeldlab.paintera.id.N5IdService;
 import org.janelia.saalfeldlab.paintera.state.GlobalTransformManager;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
 import org.janelia.saalfeldlab.paintera.state.RawSourceState;
@@ -94,6 +97,11 @@ public class PainteraBaseView
 			new NamedThreadFactory("paintera-mesh-worker-%d")
 	                                                                                      );
 
+	private final ExecutorService statisticsExecutorService = Executors.newFixedThreadPool(
+			1,
+			new NamedThreadFactory("paintera-statistics-%d")
+	                                                                                      );
+
 	private final ExecutorService paintQueue = Executors.newFixedThreadPool(1);
 
 	private final ExecutorService propagationQueue = Executors.newFixedThreadPool(1);
@@ -115,9 +123,17 @@ public class PainteraBaseView
 			final int numFetcherThreads,
 			final ViewerOptions viewerOptions,
 			final Function<SourceInfo, Function<Source<?>, Interpolation>> interpolation)
+	{
+		this(new SharedQueue(numFetcherThreads), viewerOptions, interpolation);
+	}
+
+	public PainteraBaseView(
+			final SharedQueue cacheControl,
+			final ViewerOptions viewerOptions,
+			final Function<SourceInfo, Function<Source<?>, Interpolation>> interpolation)
 	{
 		super();
-		this.cacheControl = new SharedQueue(numFetcherThreads);
+		this.cacheControl = cacheControl;
 		this.viewerOptions = viewerOptions
 				.accumulateProjectorFactory(new CompositeProjectorPreMultiply.CompositeProjectorFactory(sourceInfo
 						.composites()))
@@ -211,6 +227,26 @@ public class PainteraBaseView
 		colorConv.minProperty().addListener((obs, oldv, newv) -> orthogonalViews().requestRepaint());
 		colorConv.maxProperty().addListener((obs, oldv, newv) -> orthogonalViews().requestRepaint());
 		colorConv.alphaProperty().addListener((obs, oldv, newv) -> orthogonalViews().requestRepaint());
+		state.statistics().ifPresent(statistics -> statistics.computeInBackground(
+				statisticsExecutorService,
+				() -> askToWriteStatistics(state.nameProperty().get())));
+	}
+
+	private static boolean askToWriteStatistics(final String name)
+	{
+		final boolean[] write = {false};
+		InvokeOnJavaFXApplicationThread.invokeAndWait(() -> {
+			final Alert alert = new Alert(
+					Alert.AlertType.CONFIRMATION,
+					String.format(
+							"Save statistics of raw source '%s' next to its dataset? Saved statistics are re-used " +
+									"instead of computed when the dataset is opened again.",
+							name));
+			alert.setHeaderText(null);
+			alert.setTitle(null);
+			write[0] = alert.showAndWait().orElse(ButtonType.CANCEL).equals(ButtonType.OK);
+		}, e -> Thread.currentThread().interrupt());
+		return write[0];
 	}
 
 	public <D extends IntegerType<D> & NativeType<D>, T extends Volatile<D> & IntegerType<T>> LabelSourceState<D, T>
@@ -354,12 +390,20 @@ public class PainteraBaseView
 		this.generalPurposeExecutorService.shutdownNow();
 		this.meshManagerExecutorService.shutdown();
 		this.meshWorkerExecutorService.shutdownNow();
+		this.statisticsExecutorService.shutdownNow();
 		this.paintQueue.shutdownNow();
 		this.propagationQueue.shutdownNow();
 		this.orthogonalViews().topLeft().viewer().stop();
 		this.orthogonalViews().topRight().viewer().stop();
 		this.orthogonalViews().bottomLeft().viewer().stop();
 		this.cacheControl.shutdown();
+		for (final Source<?> source : sourceInfo().trackSources())
+		{
+			final SourceState<?, ?> state = sourceInfo().getState(source);
+			if (state instanceof LabelSourceState<?, ?>
+					&& ((LabelSourceState<?, ?>) state).idService() instanceof N5IdService)
+				((N5IdService) ((LabelSourceState<?, ?>) state).idService()).close();
+		}
 		LOG.debug("Sent stop requests everywhere");
 	}
 
@@ -68,6 +68,29 @@ public class PainteraCommandLineArgs implements Callable<Boolean>
 
 	@Option(names = "--version", paramLabel = "PRINT_VERSION_STRING", required = false, description = "Print version string and exit")
 	private Boolean printVersionString;
+
+	@Option(names = "--batched-fetching", paramLabel = "BATCHED_FETCHING", required = false, description = "Drain " +
+			"cell requests in batches grouped by dataset and cell index instead of fetching each cell individually. " +
+			"Recommended for high latency backends, e.g. cloud storage.")
+	private Boolean batchedFetching;
+
+	@Option(names = "--num-fetcher-threads", paramLabel = "NUM_FETCHER_THREADS", required = false, description =
+			"Number of cells that are loaded concurrently. Defaults to half the number of available processors (at " +
+					"most 8), or 32 with --batched-fetching.")
+	private Integer numFetcherThreads;
+
+	@Option(names = "--fetch-batch-size", paramLabel = "FETCH_BATCH_SIZE", required = false, description = "Maximum " +
+			"number of cell requests that are drained at once with --batched-fetching. Defaults to 64.")
+	private Integer fetchBatchSize;
+
+	@Option(names = "--metrics-dump", paramLabel = "METRICS_DUMP", required = false, description = "Periodically " +
+			"append snapshots of all performance metrics to this file. Files ending in .json or .jsonl are written as " +
+			"JSON lines, all other files as CSV.")
+	private String metricsDump;
+
+	@Option(names = "--metrics-dump-interval", paramLabel = "METRICS_DUMP_INTERVAL", required = false, description =
+			"Interval between metrics snapshots in seconds. Defaults to 10.")
+	private Double metricsDumpInterval;
 	@Override
 	public Boolean call() throws Exception
 	{
@@ -108,6 +131,14 @@ public class PainteraCommandLineArgs implements Callable<Boolean>
 
 		defaultToTempDirectory = defaultToTempDirectory == null ? false : defaultToTempDirectory;
 
+		batchedFetching = batchedFetching == null ? false : batchedFetching;
+		numFetcherThreads = Optional
+				.ofNullable(numFetcherThreads)
+				.filter(n -> n > 0)
+				.orElse(batchedFetching ? 32 : PainteraBaseView.reasonableNumFetcherThreads());
+		fetchBatchSize = Optional.ofNullable(fetchBatchSize).filter(n -> n > 0).orElse(64);
+		metricsDumpInterval = Optional.ofNullable(metricsDumpInterval).filter(i -> i > 0).orElse(10.0);
+
 		return true;
 	}
 
@@ -148,6 +179,31 @@ public class PainteraCommandLineArgs implements Callable<Boolean>
 		return this.defaultToTempDirectory;
 	}
 
+	public boolean batchedFetching()
+	{
+		return this.batchedFetching;
+	}
+
+	public int numFetcherThreads()
+	{
+		return this.numFetcherThreads;
+	}
+
+	public int fetchBatchSize()
+	{
+		return this.fetchBatchSize;
+	}
+
+	public String metricsDump()
+	{
+		return this.metricsDump;
+	}
+
+	public double metricsDumpInterval()
+	{
+		return this.metricsDumpInterval;
+	}
+
 	private static double[] createScreenScales(final int numScreenScales, final double highestScreenScale, final
 	double screenScaleFactor)
 	throws ZeroLengthScreenScales
@@ -0,0 +1,556 @@
+package org.janelia.saalfeldlab.paintera;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSourceSerializer;
+import org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5;
+import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
+import org.janelia.saalfeldlab.paintera.serialization.CommitCanvasN5Serializer;
+import org.janelia.saalfeldlab.paintera.serialization.FragmentSegmentAssignmentOnlyLocalSerializer;
+import org.janelia.saalfeldlab.paintera.serialization.sourcestate.LabelSourceStateSerializer;
+import org.janelia.saalfeldlab.paintera.serialization.sourcestate.SourceStateSerialization;
+import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Headless commit of saved Paintera projects into their backing N5 datasets, e.g.
+ * <pre>
+ * java -cp paintera.jar org.janelia.saalfeldlab.paintera.PainteraCommitCanvas /path/to/project-1 /path/to/project-2
+ * </pre>
+ * For each label source of each project, the {@link CanvasSnapshotN5 canvas snapshot} that was stored with the project
+ * is merged into the background through the {@link CommitCanvasN5} of the source, and the serialized assignment
+ * actions are applied to the fragment-segment assignment of the dataset and persisted. Sources that target different
+ * datasets are committed in parallel, sources that target the same dataset are committed one after the other in the
+ * order of the projects on the command line, i.e. later projects win where canvases overlap. Committed snapshots and
+ * actions are removed from the projects unless {@code --keep-project-state} is specified.
+ *
+ * Snapshots whose {@link CanvasSnapshotN5#baseCommitCount(N5Reader, String) base commit} differs from the
+ * {@link CommitCanvasN5#commitCount() commit count} of their dataset before this command started are stale: the
+ * dataset was committed to after the snapshot was taken, e.g. from within Paintera. Stale snapshots and snapshots that
+ * Paintera {@link CanvasSnapshotN5#markStale(N5Writer, String) marked stale} are not replayed and stay in the project
+ * unless {@code --discard-stale-snapshots} is specified.
+ */
+@Command(name = "paintera-commit-canvas")
+public class PainteraCommitCanvas implements Callable<Boolean>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String SOURCE_INFO_KEY = "sourceInfo";
+
+	private static final String SOURCES_KEY = "sources";
+
+	private static final String STATE_TYPE_KEY = "type";
+
+	private static final String STATE_KEY = "state";
+
+	@Option(names = {"-h", "--help"}, usageHelp = true, description = "Display this help message.")
+	private boolean helpRequested;
+
+	@Parameters(index = "0", paramLabel = "PROJECT", arity = "1..*", description = "Paintera project directories.")
+	private String[] projects;
+
+	@Option(names = "--num-threads", paramLabel = "NUM_THREADS", required = false, description = "Maximum number of " +
+			"datasets that are committed concurrently. Defaults to the number of available processors.")
+	private Integer numThreads;
+
+	@Option(names = "--keep-project-state", paramLabel = "KEEP_PROJECT_STATE", required = false, description = "Do " +
+			"not remove committed canvas snapshots and assignment actions from the projects.")
+	private Boolean keepProjectState;
+
+	@Option(names = "--discard-stale-snapshots", paramLabel = "DISCARD_STALE_SNAPSHOTS", required = false, description =
+			"Remove stale canvas snapshots from the projects. Stale snapshots are never committed.")
+	private Boolean discardStaleSnapshots;
+
+	@Override
+	public Boolean call() throws Exception
+	{
+		numThreads = Optional
+				.ofNullable(numThreads)
+				.filter(n -> n > 0)
+				.orElse(Runtime.getRuntime().availableProcessors());
+		keepProjectState = keepProjectState == null ? false : keepProjectState;
+		discardStaleSnapshots = discardStaleSnapshots == null ? false : discardStaleSnapshots;
+
+		final List<LockFile> locks = new ArrayList<>();
+		try
+		{
+			final List<Commit> commits = new ArrayList<>();
+			for (final String project : projects)
+			{
+				// fails if the project is open in Paintera
+				final LockFile lock = new LockFile(new File(project, ".paintera"), "lock");
+				lock.lock();
+				locks.add(lock);
+				commits.addAll(readCommits(project));
+			}
+			LOG.info("Found {} label sources with changes in {} projects", commits.size(), projects.length);
+			return commitAll(commits);
+		} catch (final LockFile.UnableToCreateLock e)
+		{
+			LOG.error("Unable to lock project (is it open in Paintera?): {}", e.getLockFile());
+			return false;
+		} finally
+		{
+			locks.forEach(LockFile::remove);
+		}
+	}
+
+	private boolean commitAll(final List<Commit> commits) throws InterruptedException, IOException
+	{
+		final Map<String, List<Commit>> commitsByDataset = new LinkedHashMap<>();
+		for (final Commit commit : commits)
+			commitsByDataset.computeIfAbsent(commit.target(), k -> new ArrayList<>()).add(commit);
+
+		final ExecutorService es = Executors.newFixedThreadPool(
+				Math.max(Math.min(numThreads, commitsByDataset.size()), 1),
+				new NamedThreadFactory("paintera-commit-%d", true));
+		final long start = System.nanoTime();
+		try
+		{
+			final List<Future<?>> futures = new ArrayList<>();
+			for (final List<Commit> commitsForDataset : commitsByDataset.values())
+				futures.add(es.submit(() -> commitsForDataset.forEach(Commit::run)));
+			for (final Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				} catch (final ExecutionException e)
+				{
+					LOG.error("Unexpected error during commit: {}", e.getCause().getMessage());
+				}
+			}
+		} finally
+		{
+			es.shutdown();
+		}
+
+		final StageSummary canvas     = new StageSummary();
+		final StageSummary assignment = new StageSummary();
+		for (final Commit commit : commits)
+		{
+			canvas.add(commit.canvas);
+			assignment.add(commit.assignment);
+		}
+		LOG.info("Committed canvases:    {}", canvas);
+		LOG.info("Committed assignments: {}", assignment);
+		LOG.info("Total time: {} s", String.format("%.1f", (System.nanoTime() - start) * 1e-9));
+
+		if (!keepProjectState)
+			for (final String project : projects)
+				removeCommittedState(project, commits);
+		if (discardStaleSnapshots)
+			for (final String project : projects)
+				discardStaleSnapshots(project, commits);
+
+		return commits.stream().allMatch(Commit::isSuccessful);
+	}
+
+	static List<Commit> readCommits(final String project) throws IOException
+	{
+		final JsonObject properties = Paintera.loadPropertiesIfPresent(project).orElseThrow(() -> new IOException(
+				"Not a Paintera project: " + project));
+		final Gson       gson       = new GsonBuilder()
+				.registerTypeAdapter(CommitCanvasN5.class, new CommitCanvasN5Serializer())
+				.create();
+
+		final N5Reader     n5      = N5Helpers.n5Reader(project, 64, 64, 64);
+		final List<Commit> commits = new ArrayList<>();
+		final JsonArray    sources = sources(properties);
+		for (int index = 0; index < sources.size(); ++index)
+		{
+			final JsonObject typeAndState = sources.get(index).getAsJsonObject();
+			if (!LabelSourceState.class.getName().equals(typeAndState.get(STATE_TYPE_KEY).getAsString()))
+				continue;
+
+			final JsonObject state = typeAndState.get(STATE_KEY).getAsJsonObject();
+			final String     name  = state.get(SourceStateSerialization.NAME_KEY).getAsString();
+			if (!MaskedSource.class.getName().equals(state.get(SourceStateSerialization.SOURCE_TYPE_KEY).getAsString()))
+			{
+				LOG.warn("Ignoring source {} in project {}: Not a masked source", name, project);
+				continue;
+			}
+
+			final JsonObject source    = state.get(SourceStateSerialization.SOURCE_KEY).getAsJsonObject();
+			final String     persister = source.get(MaskedSourceSerializer.PERSIST_CANVAS_CLASS_KEY).getAsString();
+			if (!CommitCanvasN5.class.getName().equals(persister))
+			{
+				LOG.warn("Ignoring source {} in project {}: Cannot commit canvas with {}", name, project, persister);
+				continue;
+			}
+
+			final String snapshot = Optional
+					.ofNullable(source.get(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY))
+					.map(JsonElement::getAsString)
+					.orElse(null);
+			final List<AssignmentAction> actions = actions(state, gson);
+			if (snapshot == null && actions.size() == 0)
+				continue;
+
+			final CommitCanvasN5 commitCanvas = gson.fromJson(
+					source.get(MaskedSourceSerializer.PERSIST_CANVAS_KEY),
+					CommitCanvasN5.class);
+			final boolean isStale = snapshot != null && (CanvasSnapshotN5.isMarkedStale(n5, snapshot)
+					|| CanvasSnapshotN5.baseCommitCount(n5, snapshot) != commitCanvas.commitCount());
+			commits.add(new Commit(project, index, name, commitCanvas, snapshot, isStale, actions));
+		}
+		return commits;
+	}
+
+	private static List<AssignmentAction> actions(final JsonObject state, final Gson gson)
+	{
+		final List<AssignmentAction> actions = new ArrayList<>();
+		final JsonElement assignment = state.get(LabelSourceStateSerializer.ASSIGNMENT_KEY);
+		if (assignment == null || !assignment.getAsJsonObject().has(FragmentSegmentAssignmentOnlyLocalSerializer
+				.ACTIONS_KEY))
+			return actions;
+
+		for (final JsonElement entry : assignment.getAsJsonObject().get(FragmentSegmentAssignmentOnlyLocalSerializer
+				.ACTIONS_KEY).getAsJsonArray())
+		{
+			final AssignmentAction.Type type = gson.fromJson(
+					entry.getAsJsonObject().get(FragmentSegmentAssignmentOnlyLocalSerializer.TYPE_KEY),
+					AssignmentAction.Type.class);
+			actions.add(gson.fromJson(
+					entry.getAsJsonObject().get(FragmentSegmentAssignmentOnlyLocalSerializer.DATA_KEY),
+					type.getClassForType()));
+		}
+		return actions;
+	}
+
+	private static JsonArray sources(final JsonObject properties)
+	{
+		return properties.get(SOURCE_INFO_KEY).getAsJsonObject().get(SOURCES_KEY).getAsJsonArray();
+	}
+
+	/**
+	 * Remove snapshots and assignment actions of successfully committed sources from the project so that they are
+	 * not committed again.
+	 */
+	static void removeCommittedState(final String project, final List<Commit> commits) throws IOException
+	{
+		final N5Writer   n5         = N5Helpers.n5Writer(project, 64, 64, 64);
+		final JsonObject properties = Paintera.loadPropertiesIfPresent(project).get();
+		final JsonArray  sources    = sources(properties);
+		boolean          modified   = false;
+		for (final Commit commit : commits)
+		{
+			if (!commit.project.equals(project) || !commit.isSuccessful())
+				continue;
+			final JsonObject state = sources.get(commit.sourceIndex).getAsJsonObject().get(STATE_KEY).getAsJsonObject();
+			if (commit.snapshot != null)
+			{
+				state.get(SourceStateSerialization.SOURCE_KEY).getAsJsonObject().remove(MaskedSourceSerializer
+						.CANVAS_SNAPSHOT_KEY);
+				n5.remove(commit.snapshot);
+			}
+			Optional
+					.ofNullable(state.get(LabelSourceStateSerializer.ASSIGNMENT_KEY))
+					.map(JsonElement::getAsJsonObject)
+					.ifPresent(a -> a.add(FragmentSegmentAssignmentOnlyLocalSerializer.ACTIONS_KEY, new JsonArray()));
+			modified = true;
+		}
+		if (modified)
+		{
+			n5.setAttribute("", Paintera.PAINTERA_KEY, properties);
+			LOG.info("Removed committed canvas snapshots and assignment actions from project {}", project);
+		}
+	}
+
+	/**
+	 * Remove stale snapshots from the project: the snapshots of {@code commits} that are {@link Commit#isStale() stale}
+	 * and all snapshots that Paintera {@link CanvasSnapshotN5#markStale(N5Writer, String) marked stale}. Snapshots are
+	 * only ever removed through this explicit request.
+	 */
+	static void discardStaleSnapshots(final String project, final List<Commit> commits) throws IOException
+	{
+		final N5Writer   n5         = N5Helpers.n5Writer(project, 64, 64, 64);
+		final JsonObject properties = Paintera.loadPropertiesIfPresent(project).get();
+		final JsonArray  sources    = sources(properties);
+		boolean          modified   = false;
+		for (final Commit commit : commits)
+		{
+			if (!commit.project.equals(project) || commit.snapshot == null || !commit.isStale())
+				continue;
+			final JsonObject state = sources.get(commit.sourceIndex).getAsJsonObject().get(STATE_KEY).getAsJsonObject();
+			state.get(SourceStateSerialization.SOURCE_KEY).getAsJsonObject().remove(MaskedSourceSerializer
+					.CANVAS_SNAPSHOT_KEY);
+			n5.remove(commit.snapshot);
+			LOG.info("{} ({}): Discarded stale canvas snapshot {}", commit.name, project, commit.snapshot);
+			modified = true;
+		}
+		for (final String snapshot : CanvasSnapshotN5.staleSnapshots(n5, MaskedSourceSerializer.CANVAS_SNAPSHOTS_GROUP))
+		{
+			n5.remove(snapshot);
+			LOG.info("Discarded stale canvas snapshot {} in project {}", snapshot, project);
+		}
+		if (modified)
+			n5.setAttribute("", Paintera.PAINTERA_KEY, properties);
+	}
+
+	/**
+	 * Size of all files in {@code group} of {@code n5} that were modified after {@code sinceMillis}, or {@code -1} if
+	 * not an N5 container on the file system. Blocks that were written more than once are counted once.
+	 */
+	private static long bytesWrittenSince(final N5Writer n5, final String group, final long sinceMillis)
+	{
+		if (!(n5 instanceof N5FSReader))
+			return -1;
+		try
+		{
+			final Path root = Paths.get(new N5FSMeta((N5FSReader) n5, group).basePath(), group);
+			if (!Files.exists(root))
+				return 0;
+			try (Stream<Path> files = Files.walk(root))
+			{
+				return files
+						.filter(Files::isRegularFile)
+						.map(Path::toFile)
+						.filter(f -> f.lastModified() >= sinceMillis)
+						.mapToLong(File::length)
+						.sum();
+			}
+		} catch (final IOException | UncheckedIOException | ReflectionException e)
+		{
+			LOG.debug("Unable to determine bytes written into {}: {}", group, e.getMessage());
+			return -1;
+		}
+	}
+
+	private static class StageResult
+	{
+
+		private boolean isSuccessful = true;
+
+		private int numSources = 0;
+
+		private long numItems = 0;
+
+		private long nanos = 0;
+
+		private long bytes = 0;
+	}
+
+	private static class StageSummary
+	{
+
+		private int numSources = 0;
+
+		private int numFailed = 0;
+
+		private long numItems = 0;
+
+		private long nanos = 0;
+
+		private long bytes = 0;
+
+		private boolean isBytesUnknown = false;
+
+		private void add(final StageResult result)
+		{
+			numSources += result.numSources;
+			numFailed += result.isSuccessful ? 0 : 1;
+			numItems += result.numItems;
+			nanos += result.nanos;
+			isBytesUnknown |= result.bytes < 0;
+			bytes += Math.max(result.bytes, 0);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"%d sources (%d failed), %d blocks/actions, %.1f s, %s written",
+					numSources,
+					numFailed,
+					numItems,
+					nanos * 1e-9,
+					isBytesUnknown ? "unknown bytes" : bytes + " bytes"
+			                    );
+		}
+	}
+
+	static class Commit implements Runnable
+	{
+
+		private final String project;
+
+		private final int sourceIndex;
+
+		private final String name;
+
+		private final CommitCanvasN5 commitCanvas;
+
+		private final String snapshot;
+
+		private final boolean isStale;
+
+		private final List<AssignmentAction> actions;
+
+		private final StageResult canvas = new StageResult();
+
+		private final StageResult assignment = new StageResult();
+
+		private Commit(
+				final String project,
+				final int sourceIndex,
+				final String name,
+				final CommitCanvasN5 commitCanvas,
+				final String snapshot,
+				final boolean isStale,
+				final List<AssignmentAction> actions)
+		{
+			this.project = project;
+			this.sourceIndex = sourceIndex;
+			this.name = name;
+			this.commitCanvas = commitCanvas;
+			this.snapshot = snapshot;
+			this.isStale = isStale;
+			this.actions = actions;
+		}
+
+		private String target()
+		{
+			try
+			{
+				return commitCanvas.n5() instanceof N5FSReader
+				       ? Paths.get(new N5FSMeta((N5FSReader) commitCanvas.n5(), commitCanvas.dataset()).basePath(),
+						commitCanvas.dataset()).toAbsolutePath().normalize().toString()
+				       : commitCanvas.n5() + ":" + commitCanvas.dataset();
+			} catch (final ReflectionException e)
+			{
+				return commitCanvas.n5() + ":" + commitCanvas.dataset();
+			}
+		}
+
+		boolean isSuccessful()
+		{
+			return canvas.isSuccessful && assignment.isSuccessful;
+		}
+
+		boolean isStale()
+		{
+			return isStale;
+		}
+
+		@Override
+		public void run()
+		{
+			final String dataset = commitCanvas.dataset();
+			if (snapshot != null && isStale)
+			{
+				LOG.error(
+						"{} ({}): Not committing canvas snapshot {}: {} was committed to after it was taken",
+						name,
+						project,
+						snapshot,
+						dataset);
+				canvas.isSuccessful = false;
+			}
+			else if (snapshot != null)
+			{
+				final long startMillis = System.currentTimeMillis();
+				final long start       = System.nanoTime();
+				try
+				{
+					final long[] blocks = CanvasSnapshotN5.blocks(N5Helpers.n5Reader(project, 64, 64, 64), snapshot);
+					LOG.info("{} ({}): Committing {} canvas blocks into {}", name, project, blocks.length, dataset);
+					if (blocks.length > 0)
+					{
+						final CachedCellImg<UnsignedLongType, ?> img = CanvasSnapshotN5.open(
+								N5Helpers.n5Reader(project, 64, 64, 64),
+								snapshot);
+						final long commitCount = commitCanvas.commitCount();
+						commitCanvas.accept(img, blocks);
+						if (commitCanvas.commitCount() == commitCount)
+							throw new IOException("Commit did not complete");
+					}
+					canvas.numSources = 1;
+					canvas.numItems = blocks.length;
+				} catch (final IOException | RuntimeException e)
+				{
+					LOG.error("{} ({}): Unable to commit canvas: {}", name, project, e.getMessage());
+					canvas.isSuccessful = false;
+				}
+				canvas.nanos = System.nanoTime() - start;
+				canvas.bytes = bytesWrittenSince(commitCanvas.n5(), dataset, startMillis);
+				LOG.info("{} ({}): Canvas stage took {} s", name, project, String.format("%.1f", canvas.nanos * 1e-9));
+			}
+
+			if (actions.size() > 0 && canvas.isSuccessful)
+			{
+				final long startMillis = System.currentTimeMillis();
+				final long start       = System.nanoTime();
+				try
+				{
+					LOG.info("{} ({}): Committing {} assignment actions into {}", name, project, actions.size(),
+							dataset);
+					final FragmentSegmentAssignmentState state = N5Helpers.assignments(commitCanvas.n5(), dataset);
+					state.apply(actions);
+					state.persist();
+					assignment.numSources = 1;
+					assignment.numItems = actions.size();
+				} catch (final Exception e)
+				{
+					LOG.error("{} ({}): Unable to commit assignment: {}", name, project, e.getMessage());
+					assignment.isSuccessful = false;
+				}
+				assignment.nanos = System.nanoTime() - start;
+				assignment.bytes = bytesWrittenSince(
+						commitCanvas.n5(),
+						dataset + "/" + N5Helpers.PAINTERA_FRAGMENT_SEGMENT_ASSIGNMENT_DATASTE,
+						startMillis);
+				LOG.info("{} ({}): Assignment stage took {} s", name, project, String.format("%.1f", assignment.nanos *
+						1e-9));
+			}
+		}
+	}
+
+	public static void main(final String[] args)
+	{
+		final boolean success = Optional
+				.ofNullable(CommandLine.call(new PainteraCommitCanvas(), System.err, args))
+				.orElse(false);
+		System.exit(success ? 0 : 1);
+	}
+
+}
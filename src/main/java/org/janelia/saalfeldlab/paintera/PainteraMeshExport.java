@@ -0,0 +1,547 @@
+package org.janelia.saalfeldlab.paintera;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import bdv.util.volatiles.SharedQueue;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
+import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporterBinary;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporterObj;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporterPly;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.janelia.saalfeldlab.paintera.meshes.cache.BlocksForLabelDelegate;
+import org.janelia.saalfeldlab.paintera.meshes.cache.BlocksForLabelFromFile;
+import org.janelia.saalfeldlab.paintera.meshes.cache.CacheUtils;
+import org.janelia.saalfeldlab.paintera.meshes.cache.SegmentMaskGenerators;
+import org.janelia.saalfeldlab.paintera.meshes.cache.SegmentMeshCacheLoader;
+import org.janelia.saalfeldlab.util.HashWrapper;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Headless export of segment meshes from an N5 label dataset, e.g.
+ * <pre>
+ * java -cp paintera.jar org.janelia.saalfeldlab.paintera.PainteraMeshExport /path/to/data.n5:volumes/labels \
+ *   --ids-file segments.txt --output-directory meshes --format ply
+ * </pre>
+ * Segments are mapped to fragments through the fragment-segment assignment of the dataset. Block lists are read from
+ * the label-to-block mapping of Paintera datasets or collected from unique labels per block otherwise, and meshes are
+ * generated block-wise on a fixed pool of workers by the same loaders that are used for meshes in the viewer. Block
+ * meshes are not cached and are written as soon as they are generated, a bounded number of segments is exported
+ * concurrently and a bounded number of blocks per segment is generated ahead of the writer. The dataset is opened
+ * read-only. Exported segments are recorded in {@value #PROGRESS_FILE} in the output directory and are skipped
+ * when the export is started again, unless {@code --restart} is specified.
+ *
+ * @author Philipp Hanslovsky
+ */
+@Command(name = "paintera-export-meshes")
+public class PainteraMeshExport implements Callable<Boolean>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final String PROGRESS_FILE = "mesh-export-progress.txt";
+
+	private static final int[] DEFAULT_BLOCK_SIZE = {64, 64, 64};
+
+	public enum Format
+	{
+		obj, ply, binary
+	}
+
+	@Option(names = {"-h", "--help"}, usageHelp = true, description = "Display this help message.")
+	private boolean helpRequested;
+
+	@Parameters(index = "0", paramLabel = "LABEL_SOURCE", arity = "1", description = "Label source. Has to be " +
+			"[file://]/path/to/<n5-or-hdf5>:path/to/dataset")
+	private String labelSource;
+
+	@Option(names = {"-o", "--output-directory"}, paramLabel = "OUTPUT_DIRECTORY", required = true, description =
+			"Write one mesh per segment into this directory. File names are segment ids.")
+	private String outputDirectory;
+
+	@Option(names = "--ids", paramLabel = "IDS", required = false, description = "Segment ids to export.", arity =
+			"1..*", split = ",")
+	private long[] ids;
+
+	@Option(names = "--ids-file", paramLabel = "IDS_FILE", required = false, description = "Text file with segment " +
+			"ids to export, separated by white space or commas. Lines starting with # are ignored.")
+	private String idsFile;
+
+	@Option(names = "--format", paramLabel = "FORMAT", required = false, description = "Mesh format, one of obj, " +
+			"ply, binary. Defaults to obj.")
+	private Format format;
+
+	@Option(names = "--scale-level", paramLabel = "SCALE_LEVEL", required = false, description = "Scale level of " +
+			"the label data used for mesh generation. Defaults to 0 (highest resolution).")
+	private Integer scaleLevel;
+
+	@Option(names = "--num-threads", paramLabel = "NUM_THREADS", required = false, description = "Number of threads " +
+			"for mesh generation. Defaults to the number of available processors.")
+	private Integer numThreads;
+
+	@Option(names = "--max-segments-in-flight", paramLabel = "MAX_SEGMENTS_IN_FLIGHT", required = false,
+			description = "Maximum number of segments that are exported concurrently. Limits the number of open " +
+					"files and the memory for vertex de-duplication. Defaults to 4.")
+	private Integer maxSegmentsInFlight;
+
+	@Option(names = "--max-blocks-in-flight", paramLabel = "MAX_BLOCKS_IN_FLIGHT", required = false, description =
+			"Maximum number of blocks per segment that are generated or waiting to be written at any time. Limits " +
+			"the memory for block meshes. Defaults to twice NUM_THREADS.")
+	private Integer maxBlocksInFlight;
+
+	@Option(names = "--restart", paramLabel = "RESTART", required = false, description = "Ignore progress of previous " +
+			"exports into OUTPUT_DIRECTORY and export all segments.")
+	private Boolean restart;
+
+	private final LongAdder numBlocks = new LongAdder();
+
+	private final LongAdder numTriangles = new LongAdder();
+
+	@Override
+	public Boolean call() throws Exception
+	{
+		format = Optional.ofNullable(format).orElse(Format.obj);
+		scaleLevel = Optional.ofNullable(scaleLevel).filter(l -> l >= 0).orElse(0);
+		numThreads = Optional
+				.ofNullable(numThreads)
+				.filter(n -> n > 0)
+				.orElse(Runtime.getRuntime().availableProcessors());
+		maxSegmentsInFlight = Optional.ofNullable(maxSegmentsInFlight).filter(n -> n > 0).orElse(4);
+		maxBlocksInFlight = Optional.ofNullable(maxBlocksInFlight).filter(n -> n > 0).orElse(2 * numThreads);
+		restart = restart == null ? false : restart;
+
+		final long[] segments = readSegmentIds(ids, idsFile);
+		if (segments.length == 0)
+		{
+			LOG.error("No segment ids specified: Use --ids or --ids-file");
+			return false;
+		}
+
+		final String identifier = labelSource.replaceFirst("^file://", "");
+		if (Pattern.matches("^[a-z]+://.+", identifier))
+		{
+			LOG.error("Only file system label sources are supported: {}", labelSource);
+			return false;
+		}
+		final int split = identifier.lastIndexOf(':');
+		if (split < 0)
+		{
+			LOG.error("Label source has to be [file://]/path/to/<n5-or-hdf5>:path/to/dataset but got {}", labelSource);
+			return false;
+		}
+		final N5Reader n5      = N5Helpers.n5Reader(identifier.substring(0, split), DEFAULT_BLOCK_SIZE);
+		final String   dataset = identifier.substring(split + 1);
+
+		Files.createDirectories(Paths.get(outputDirectory));
+		return export(n5, dataset, segments);
+	}
+
+	private <D, T> boolean export(
+			final N5Reader n5,
+			final String dataset,
+			final long[] segments) throws IOException, ReflectionException, InterruptedException
+	{
+		final AffineTransform3D transform = N5Helpers.getTransform(n5, dataset);
+		final DataSource<D, T> source = N5Helpers.openAsLabelSource(
+				n5,
+				dataset,
+				transform,
+				new SharedQueue(1),
+				0,
+				N5Helpers.lastSegmentOfDatasetPath(dataset)
+		                                                           );
+		if (scaleLevel >= source.getNumMipmapLevels())
+		{
+			LOG.error("Scale level {} requested but {} has only {} levels", scaleLevel, dataset, source
+					.getNumMipmapLevels());
+			return false;
+		}
+
+		final FragmentSegmentAssignmentState                             assignment = N5Helpers.readOnlyAssignments(
+				n5,
+				dataset);
+		final Function<TLongHashSet, Interval[]>[]                       blockLists = blockListCaches(
+				n5,
+				dataset,
+				source);
+		final Function<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshes     = meshLoaders(source);
+		final MeshExporter<TLongHashSet>                                 exporter   = headlessExporter(format);
+		exporter.setMaxBlocksInFlight(maxBlocksInFlight);
+
+		final ExecutorService workers         = Executors.newFixedThreadPool(
+				numThreads,
+				new NamedThreadFactory("paintera-mesh-export-worker-%d", true));
+		final ExecutorService segmentExporter = Executors.newFixedThreadPool(
+				maxSegmentsInFlight,
+				new NamedThreadFactory("paintera-mesh-export-segment-%d", true));
+
+		final LongAdder numExported = new LongAdder();
+		final LongAdder numFailed   = new LongAdder();
+		final long      start       = System.nanoTime();
+
+		try (final ExportProgress progress = new ExportProgress(Paths.get(outputDirectory, PROGRESS_FILE), restart))
+		{
+			final long[] pending = Arrays.stream(segments).filter(id -> !progress.isCompleted(id)).toArray();
+			LOG.info(
+					"Exporting {} segments of {} into {} ({} exported previously)",
+					pending.length,
+					dataset,
+					outputDirectory,
+					segments.length - pending.length
+			        );
+
+			final Thread summaryOnInterrupt = new Thread(() -> logSummary(
+					numExported.sum(),
+					segments.length - pending.length,
+					numFailed.sum(),
+					System.nanoTime() - start));
+			Runtime.getRuntime().addShutdownHook(summaryOnInterrupt);
+
+			final List<Future<?>> futures = new ArrayList<>();
+			for (final long segment : pending)
+			{
+				futures.add(segmentExporter.submit(() -> {
+					final String path = Paths.get(outputDirectory, Long.toString(segment)).toString();
+					try
+					{
+						exporter.exportMesh(
+								workers,
+								blockLists,
+								meshes,
+								assignment.getFragments(segment),
+								scaleLevel,
+								path
+						                   );
+						if (Thread.currentThread().isInterrupted())
+							return;
+						progress.markCompleted(segment);
+						numExported.increment();
+						LOG.debug("Exported segment {} to {}", segment, path);
+					} catch (final IOException | RuntimeException e)
+					{
+						numFailed.increment();
+						LOG.error("Unable to export segment {} to {}: {}", segment, path, e.getMessage());
+					}
+				}));
+			}
+
+			for (final Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				} catch (final ExecutionException e)
+				{
+					LOG.error("Unexpected error during export: {}", e.getCause().getMessage());
+					numFailed.increment();
+				}
+			}
+
+			Runtime.getRuntime().removeShutdownHook(summaryOnInterrupt);
+			logSummary(numExported.sum(), segments.length - pending.length, numFailed.sum(), System.nanoTime() - start);
+		} finally
+		{
+			segmentExporter.shutdownNow();
+			workers.shutdownNow();
+			segmentExporter.awaitTermination(1, TimeUnit.SECONDS);
+		}
+
+		return numFailed.sum() == 0;
+	}
+
+	private void logSummary(final long exported, final long skipped, final long failed, final long elapsedNanos)
+	{
+		final double seconds   = Math.max(elapsedNanos, 1) * 1e-9;
+		final long   blocks    = numBlocks.sum();
+		final long   triangles = numTriangles.sum();
+		LOG.info(
+				"Exported {} segments ({} skipped, {} failed), {} blocks, and {} triangles in {} s",
+				exported,
+				skipped,
+				failed,
+				blocks,
+				triangles,
+				String.format("%.1f", seconds)
+		        );
+		LOG.info(
+				"Throughput: {} segments/s, {} blocks/s, {} triangles/s",
+				String.format("%.2f", exported / seconds),
+				String.format("%.1f", blocks / seconds),
+				String.format("%.0f", triangles / seconds)
+		        );
+	}
+
+	/**
+	 * Mesh generation for all scale levels. Meshes are not cached: each block is requested only once per segment.
+	 */
+	@SuppressWarnings("unchecked")
+	private <D, T> Function<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshLoaders(
+			final DataSource<D, T> source)
+	{
+		final Function<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] loaders = new Function[source
+				.getNumMipmapLevels()];
+		for (int level = 0; level < loaders.length; ++level)
+		{
+			final AffineTransform3D transform = new AffineTransform3D();
+			source.getSourceTransform(0, level, transform);
+			final Function<ShapeKey<TLongHashSet>, Pair<float[], float[]>> loader = CacheUtils.wrapAsFunction(
+					new SegmentMeshCacheLoader<>(
+							new int[] {1, 1, 1},
+							source.getDataSource(0, level),
+							SegmentMaskGenerators.forType(source.getDataType()),
+							transform
+					));
+			loaders[level] = key -> {
+				final Pair<float[], float[]> mesh = loader.apply(key);
+				numBlocks.increment();
+				numTriangles.add(mesh.getA().length / 9);
+				return mesh;
+			};
+		}
+		return loaders;
+	}
+
+	/**
+	 * Read block lists from label-to-block mapping if present, collect unique labels for each block otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <D, T> Function<TLongHashSet, Interval[]>[] blockListCaches(
+			final N5Reader n5,
+			final String dataset,
+			final DataSource<D, T> source) throws IOException, ReflectionException
+	{
+		final String[] patterns = N5Helpers.labelMappingFromFileLoaderPattern(n5, dataset);
+		if (Arrays.stream(patterns).allMatch(Objects::nonNull))
+		{
+			final BlocksForLabelFromFile[] loaders = Arrays
+					.stream(patterns)
+					.map(BlocksForLabelFromFile::new)
+					.toArray(BlocksForLabelFromFile[]::new);
+			return BlocksForLabelDelegate.delegate(
+					loaders,
+					(TLongHashSet fragments) -> Arrays
+							.stream(fragments.toArray())
+							.mapToObj(id -> id)
+							.toArray(Long[]::new)
+			                                      );
+		}
+
+		LOG.info("No label-to-block mapping for {}: Collecting unique labels for each block.", dataset);
+		final int                                                  numLevels     = source.getNumMipmapLevels();
+		final int[][]                                              blockSizes    = new int[numLevels][];
+		final InterruptibleFunction<HashWrapper<long[]>, long[]>[] uniqueLabels  = new InterruptibleFunction[numLevels];
+		final BiConsumer<D, TLongHashSet>                          collectLabels = PainteraBaseView.collectLabels(
+				source.getDataType());
+		for (int level = 0; level < numLevels; ++level)
+		{
+			final RandomAccessibleInterval<D> data = source.getDataSource(0, level);
+			if (data instanceof AbstractCellImg<?, ?, ?, ?>)
+			{
+				final CellGrid grid = ((AbstractCellImg<?, ?, ?, ?>) data).getCellGrid();
+				blockSizes[level] = new int[grid.numDimensions()];
+				grid.cellDimensions(blockSizes[level]);
+			}
+			else
+			{
+				blockSizes[level] = DEFAULT_BLOCK_SIZE.clone();
+			}
+
+			final CellGrid                                grid   = new CellGrid(
+					Intervals.dimensionsAsLongArray(data),
+					blockSizes[level]);
+			final CacheLoader<HashWrapper<long[]>, long[]> loader = cellPosition -> {
+				final long[] min  = new long[grid.numDimensions()];
+				final int[]  size = new int[grid.numDimensions()];
+				grid.getCellDimensions(cellPosition.getData(), min, size);
+				final long[] max = new long[min.length];
+				Arrays.setAll(max, d -> min[d] + size[d] - 1);
+				final TLongHashSet labels = new TLongHashSet();
+				for (final D d : Views.flatIterable(Views.interval(data, new FinalInterval(min, max))))
+					collectLabels.accept(d, labels);
+				return labels.toArray();
+			};
+			uniqueLabels[level] = InterruptibleFunction.fromFunction(CacheUtils.wrapAsFunction(CacheUtils
+					.toCacheSoftRefLoaderCache(
+					loader)));
+		}
+
+		return CacheUtils.blocksForLabelCachesHashSetKeys(
+				source,
+				uniqueLabels,
+				blockSizes,
+				PainteraBaseView.scaleFactorsFromAffineTransforms(source),
+				CacheUtils::toCacheSoftRefLoaderCache
+		                                                 );
+	}
+
+	private static MeshExporter<TLongHashSet> headlessExporter(final Format format)
+	{
+		// progress is reported in the summary, there is no JavaFX application thread to update progressProperty()
+		switch (format)
+		{
+			case ply:
+				return new MeshExporterPly<TLongHashSet>()
+				{
+					@Override
+					protected void setProgress(final double progress)
+					{
+					}
+				};
+			case binary:
+				return new MeshExporterBinary<TLongHashSet>()
+				{
+					@Override
+					protected void setProgress(final double progress)
+					{
+					}
+				};
+			case obj:
+			default:
+				return new MeshExporterObj<TLongHashSet>()
+				{
+					@Override
+					protected void setProgress(final double progress)
+					{
+					}
+				};
+		}
+	}
+
+	/**
+	 * @return distinct ids from {@code ids} and {@code idsFile} in order of first occurrence
+	 */
+	static long[] readSegmentIds(final long[] ids, final String idsFile) throws IOException
+	{
+		final TLongArrayList segments = new TLongArrayList();
+		final TLongHashSet   seen     = new TLongHashSet();
+		Optional.ofNullable(ids).map(Arrays::stream).ifPresent(s -> s.filter(seen::add).forEach(segments::add));
+		if (idsFile != null)
+		{
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(idsFile), StandardCharsets.UTF_8))
+			{
+				for (String line = reader.readLine(); line != null; line = reader.readLine())
+				{
+					if (line.trim().startsWith("#"))
+						continue;
+					for (final String token : line.split("[\\s,]+"))
+						if (token.length() > 0 && seen.add(Long.parseLong(token)))
+							segments.add(Long.parseLong(token));
+				}
+			}
+		}
+		return segments.toArray();
+	}
+
+	/**
+	 * Ids of completely exported segments, one per line. A segment is recorded only after its mesh file was closed, a
+	 * segment that was interrupted during export will be exported again.
+	 */
+	static class ExportProgress implements Closeable
+	{
+
+		private final TLongHashSet completed = new TLongHashSet();
+
+		private final BufferedWriter writer;
+
+		ExportProgress(final Path path, final boolean restart) throws IOException
+		{
+			if (!restart && Files.exists(path))
+			{
+				final String   contents = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+				final String[] lines    = contents.split("\\R");
+				// last line is incomplete if previous export was killed while writing it
+				final int numCompleteLines = contents.endsWith("\n") ? lines.length : lines.length - 1;
+				for (int i = 0; i < numCompleteLines; ++i)
+				{
+					if (lines[i].trim().length() > 0)
+						completed.add(Long.parseLong(lines[i].trim()));
+				}
+				// drop the incomplete line, ids appended later would be concatenated with it otherwise
+				if (numCompleteLines < lines.length)
+				{
+					final String completeContents = contents.substring(0, contents.lastIndexOf('\n') + 1);
+					Files.write(path, completeContents.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			this.writer = Files.newBufferedWriter(
+					path,
+					StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					restart ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+		}
+
+		boolean isCompleted(final long segment)
+		{
+			return completed.contains(segment);
+		}
+
+		synchronized void markCompleted(final long segment) throws IOException
+		{
+			writer.write(Long.toString(segment));
+			writer.newLine();
+			writer.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException
+		{
+			writer.close();
+		}
+	}
+
+	public static void main(final String[] args)
+	{
+		final boolean success = Optional
+				.ofNullable(CommandLine.call(new PainteraMeshExport(), System.err, args))
+				.orElse(false);
+		System.exit(success ? 0 : 1);
+	}
+
+}
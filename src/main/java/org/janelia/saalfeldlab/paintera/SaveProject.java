@@ -2,9 +2,17 @@ package org.janelia.saalfeldlab.paintera;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
 
+import bdv.viewer.Source;
 import com.google.gson.GsonBuilder;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSourceSerializer;
+import org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5;
+import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5;
 import org.janelia.saalfeldlab.paintera.serialization.Properties;
+import org.janelia.saalfeldlab.paintera.state.SourceState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,10 +25,76 @@ public class SaveProject
 	throws IOException, ProjectUndefined
 	{
 		if (root == null) { throw new ProjectUndefined(root); }
+		persistCanvasSnapshots(root, properties);
 		LOG.debug("Persisting properties {} into {}", properties, root);
 		N5Helpers.n5Writer(root, builder, 64, 64, 64).setAttribute("", Paintera.PAINTERA_KEY, properties);
 	}
 
+	/**
+	 * Write a {@link CanvasSnapshotN5 snapshot} of the painted blocks of each {@link MaskedSource} in
+	 * {@code properties} into the project, so that they can be committed after Paintera was closed. Snapshots that
+	 * were not committed yet are merged into the new snapshot, snapshots that are out of date because the canvas was
+	 * committed since are {@link CanvasSnapshotN5#markStale(N5Writer, String) marked stale} and kept in the project.
+	 */
+	public static void persistCanvasSnapshots(final String root, final Properties properties) throws IOException
+	{
+		final N5Writer n5 = N5Helpers.n5Writer(root, 64, 64, 64);
+		for (final Source<?> source : properties.sourceInfo.trackSources())
+		{
+			final SourceState<?, ?> state = properties.sourceInfo.getState(source);
+			if (state.getDataSource() instanceof MaskedSource<?, ?>)
+				persistCanvasSnapshot(n5, (MaskedSource<?, ?>) state.getDataSource());
+		}
+	}
+
+	private static void persistCanvasSnapshot(final N5Writer n5, final MaskedSource<?, ?> source) throws IOException
+	{
+		if (!(source.getPersister() instanceof CommitCanvasN5))
+			return;
+
+		final long    commitCount     = ((CommitCanvasN5) source.getPersister()).commitCount();
+		final String  previous        = source.getCanvasSnapshot();
+		final boolean isPreviousValid = previous != null && CanvasSnapshotN5.baseCommitCount(n5, previous) ==
+				commitCount;
+		if (previous != null && !isPreviousValid)
+		{
+			// never remove a snapshot implicitly: it is kept but will not be replayed
+			LOG.warn(
+					"Canvas snapshot {} of {} is stale: The canvas was committed since. The snapshot is kept but " +
+							"will not be committed, discard it with PainteraCommitCanvas --discard-stale-snapshots",
+					previous,
+					source.getName());
+			CanvasSnapshotN5.markStale(n5, previous);
+			source.setCanvasSnapshot(null);
+		}
+
+		final long[] affectedBlocks = source.getAffectedBlocks();
+		if (affectedBlocks.length == 0)
+			return;
+
+		// never overwrite the previous snapshot: it is merged into the new one
+		final String prefix = String.format(
+				"%s/%s-",
+				MaskedSourceSerializer.CANVAS_SNAPSHOTS_GROUP,
+				Paths.get(source.currentCanvasDirectory()).getFileName());
+		long         suffix = System.currentTimeMillis();
+		while (n5.exists(prefix + suffix))
+			++suffix;
+		final String snapshot = prefix + suffix;
+		CanvasSnapshotN5.write(
+				n5,
+				snapshot,
+				source.getReadOnlyDataCanvas(0, 0),
+				source.getCanvasGrid(0),
+				affectedBlocks,
+				commitCount,
+				isPreviousValid ? previous : null);
+		source.setCanvasSnapshot(snapshot);
+		if (isPreviousValid)
+			n5.remove(previous);
+		LOG.debug("Wrote snapshot {} of canvas of {}", snapshot, source.getName());
+	}
+
 	public static class ProjectUndefined extends Exception
 	{
 
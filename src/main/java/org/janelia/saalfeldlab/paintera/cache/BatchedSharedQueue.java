@@ -0,0 +1,447 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+import bdv.util.volatiles.SharedQueue;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SharedQueue} that drains requests in batches instead of one at a time per fetcher thread. Each batch is
+ * grouped by the cache that issued the requests (i.e. by dataset and scale level) and sorted by cell index within each
+ * group so that neighboring cells are requested together. Requests are issued concurrently on an I/O pool with
+ * bounded parallelism; a batch never contains more requests than there are free I/O slots, so requests wait in the
+ * (prioritized) queue rather than in the executor.
+ *
+ * Queue latency (time between enqueueing and start of loading), load time, and failures are recorded in the
+ * {@link MetricsRegistry#global() global metrics}, together with the number of queued and active requests of all
+ * queues.
+ *
+ * Requests that implement {@link Keyed} (see {@link #keyed(Object, Object, Callable)} and
+ * {@link KeyedWeakRefVolatileCache}) are grouped and sorted, all other requests are issued in queue order.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class BatchedSharedQueue extends SharedQueue
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int DEFAULT_PREFETCH_CAPACITY = 16384;
+
+	private static final LatencyHistogram QUEUE_LATENCY = MetricsRegistry.global().histogram("fetch.queue-latency");
+
+	private static final LatencyHistogram LOAD_TIME = MetricsRegistry.global().histogram("fetch.load");
+
+	private static final Counter FAILED = MetricsRegistry.global().counter("fetch.failed");
+
+	// queues that have not been shut down, guarded by itself
+	private static final Set<BatchedSharedQueue> INSTANCES = Collections.newSetFromMap(new WeakHashMap<>());
+
+	static
+	{
+		MetricsRegistry.global().gauge("fetch.queued", () -> sum(BatchedSharedQueue::pendingRequests));
+		MetricsRegistry.global().gauge("fetch.active", () -> sum(BatchedSharedQueue::activeRequests));
+	}
+
+	/**
+	 * Fetch requests that expose the cache that issued them and the key they are loading.
+	 */
+	public interface Keyed
+	{
+		Object cache();
+
+		Object key();
+	}
+
+	private static class KeyedCallable<V> implements Callable<V>, Keyed
+	{
+		private final Object cache;
+
+		private final Object key;
+
+		private final Callable<V> callable;
+
+		private KeyedCallable(final Object cache, final Object key, final Callable<V> callable)
+		{
+			this.cache = cache;
+			this.key = key;
+			this.callable = callable;
+		}
+
+		@Override
+		public V call() throws Exception
+		{
+			return callable.call();
+		}
+
+		@Override
+		public Object cache()
+		{
+			return cache;
+		}
+
+		@Override
+		public Object key()
+		{
+			return key;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("{cache=%s, key=%s}", cache, key);
+		}
+	}
+
+	private static class Request
+	{
+		private final Callable<?> callable;
+
+		private final long enqueueTime = System.nanoTime();
+
+		private Request(final Callable<?> callable)
+		{
+			this.callable = callable;
+		}
+	}
+
+	private final ArrayDeque<Request>[] queues;
+
+	private final ArrayDeque<Request> prefetch;
+
+	private final int prefetchCapacity;
+
+	private int count = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final int maxBatchSize;
+
+	private final Semaphore ioSlots;
+
+	private final ExecutorService io;
+
+	private final Thread dispatcher;
+
+	private final AtomicInteger activeRequests = new AtomicInteger();
+
+	/**
+	 * @param maxParallelIo
+	 * 		maximum number of requests that are loaded concurrently
+	 * @param maxBatchSize
+	 * 		maximum number of requests drained from the queue at once
+	 * @param numPriorities
+	 * 		number of priority levels
+	 */
+	@SuppressWarnings("unchecked")
+	public BatchedSharedQueue(final int maxParallelIo, final int maxBatchSize, final int numPriorities)
+	{
+		// no fetcher threads: requests are handled by the dispatcher
+		super(0);
+		this.queues = new ArrayDeque[Math.max(numPriorities, 1)];
+		for (int i = 0; i < this.queues.length; ++i)
+			this.queues[i] = new ArrayDeque<>();
+		this.prefetchCapacity = DEFAULT_PREFETCH_CAPACITY;
+		this.prefetch = new ArrayDeque<>();
+		this.maxBatchSize = Math.max(maxBatchSize, 1);
+		this.ioSlots = new Semaphore(Math.max(maxParallelIo, 1));
+		this.io = Executors.newFixedThreadPool(
+				Math.max(maxParallelIo, 1),
+				new NamedThreadFactory("paintera-fetcher-io-%d", true));
+		this.dispatcher = new Thread(this::dispatch, "paintera-fetcher-dispatch");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+		synchronized (INSTANCES)
+		{
+			INSTANCES.add(this);
+		}
+	}
+
+	public BatchedSharedQueue(final int maxParallelIo, final int maxBatchSize)
+	{
+		this(maxParallelIo, maxBatchSize, 1);
+	}
+
+	/**
+	 * @return {@code callable} with the cache that issued it and the key it loads, for grouping in batches
+	 */
+	public static <V> Callable<V> keyed(final Object cache, final Object key, final Callable<V> callable)
+	{
+		return new KeyedCallable<>(cache, key, callable);
+	}
+
+	@Override
+	public void put(final Callable<?> element, final int priority, final boolean enqueuToFront)
+	{
+		final Request request = new Request(element);
+		lock.lock();
+		try
+		{
+			final ArrayDeque<Request> queue = queues[Math.min(Math.max(priority, 0), queues.length - 1)];
+			if (enqueuToFront)
+				queue.addFirst(request);
+			else
+				queue.addLast(request);
+			++count;
+			notEmpty.signal();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Callable<?> take() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == 0)
+				notEmpty.await();
+			return poll().callable;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Move all queued requests into the prefetch queue (keeping at most {@link #DEFAULT_PREFETCH_CAPACITY}) and
+	 * advance the frame.
+	 */
+	@Override
+	public void clearToPrefetch()
+	{
+		lock.lock();
+		try
+		{
+			for (int i = queues.length - 1; i >= 0; --i)
+			{
+				final ArrayDeque<Request> queue = queues[i];
+				while (!queue.isEmpty())
+					prefetch.addFirst(queue.pollLast());
+			}
+			while (prefetch.size() > prefetchCapacity)
+				prefetch.pollLast();
+			count = prefetch.size();
+			super.clearToPrefetch();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return time between enqueueing and start of loading of all requests that finished, for all queues
+	 */
+	public static LatencyHistogram queueLatency()
+	{
+		return QUEUE_LATENCY;
+	}
+
+	@Override
+	public void shutdown()
+	{
+		synchronized (INSTANCES)
+		{
+			INSTANCES.remove(this);
+		}
+		super.shutdown();
+		dispatcher.interrupt();
+		io.shutdownNow();
+	}
+
+	/**
+	 * @return number of requests waiting in the queue
+	 */
+	public int pendingRequests()
+	{
+		lock.lock();
+		try
+		{
+			return count;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of requests that are currently loading
+	 */
+	public int activeRequests()
+	{
+		return activeRequests.get();
+	}
+
+	/**
+	 * @return number of I/O slots that are not used by loading or dispatched requests
+	 */
+	public int freeIoSlots()
+	{
+		return ioSlots.availablePermits();
+	}
+
+	private static double sum(final ToIntFunction<BatchedSharedQueue> value)
+	{
+		synchronized (INSTANCES)
+		{
+			return INSTANCES.stream().mapToInt(value).sum();
+		}
+	}
+
+	// must hold lock and count > 0
+	private Request poll()
+	{
+		for (final ArrayDeque<Request> queue : queues)
+			if (!queue.isEmpty())
+			{
+				--count;
+				return queue.pollFirst();
+			}
+		--count;
+		return prefetch.pollFirst();
+	}
+
+	private void awaitRequests() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == 0)
+				notEmpty.await();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private List<Request> takeBatch(final int maxSize) throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == 0)
+				notEmpty.await();
+			final int         size  = Math.min(count, maxSize);
+			final List<Request> batch = new ArrayList<>(size);
+			for (int i = 0; i < size; ++i)
+				batch.add(poll());
+			return batch;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void dispatch()
+	{
+		try
+		{
+			while (!Thread.currentThread().isInterrupted())
+			{
+				// wait for requests and at least one free slot, then take as many requests as there are free slots
+				// (but at most maxBatchSize) and return the slots that were taken but not used
+				awaitRequests();
+				ioSlots.acquire();
+				final int           taken = 1 + ioSlots.drainPermits();
+				final List<Request> batch = takeBatch(Math.min(taken, maxBatchSize));
+				ioSlots.release(taken - batch.size());
+				LOG.trace("Dispatching batch of {} requests", batch.size());
+				for (final Request request : groupByCacheAndKey(batch))
+					io.execute(() -> run(request));
+			}
+		} catch (final InterruptedException e)
+		{
+			LOG.debug("Fetcher dispatch interrupted.");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run(final Request request)
+	{
+		final long start = System.nanoTime();
+		activeRequests.incrementAndGet();
+		try
+		{
+			request.callable.call();
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch (final Exception e)
+		{
+			// volatile caches re-enqueue invalid cells in the next frame
+			FAILED.increment();
+			LOG.debug("Unable to fetch {}: {}", request.callable, e.getMessage());
+		} finally
+		{
+			final long stop = System.nanoTime();
+			QUEUE_LATENCY.record(start - request.enqueueTime);
+			LOAD_TIME.record(stop - start);
+			activeRequests.decrementAndGet();
+			ioSlots.release();
+		}
+	}
+
+	/**
+	 * Group requests by issuing cache in order of first appearance and sort each group by key.
+	 */
+	private static List<Request> groupByCacheAndKey(final List<Request> batch)
+	{
+		if (batch.size() < 2)
+			return batch;
+
+		final Map<Object, List<Request>> groups  = new LinkedHashMap<>();
+		final List<Request>              unkeyed = new ArrayList<>();
+		for (final Request request : batch)
+		{
+			if (request.callable instanceof Keyed)
+				groups.computeIfAbsent(((Keyed) request.callable).cache(), k -> new ArrayList<>()).add(request);
+			else
+				unkeyed.add(request);
+		}
+
+		final List<Request> sorted = new ArrayList<>(batch.size());
+		for (final List<Request> group : groups.values())
+		{
+			group.sort(BatchedSharedQueue::compareKeys);
+			sorted.addAll(group);
+		}
+		sorted.addAll(unkeyed);
+		return sorted;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compareKeys(final Request r1, final Request r2)
+	{
+		final Object k1 = ((Keyed) r1.callable).key();
+		final Object k2 = ((Keyed) r2.callable).key();
+		if (k1 instanceof Comparable && k2 != null && k1.getClass() == k2.getClass())
+			return ((Comparable<Object>) k1).compareTo(k2);
+		return 0;
+	}
+
+}
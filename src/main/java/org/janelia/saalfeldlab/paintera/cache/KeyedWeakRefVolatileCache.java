@@ -0,0 +1,31 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import java.util.concurrent.Callable;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.cache.volatiles.CreateInvalid;
+import tmp.net.imglib2.cache.ref.WeakRefVolatileCache;
+
+/**
+ * {@link WeakRefVolatileCache} whose fetch requests expose this cache and the requested key, so that a
+ * {@link BatchedSharedQueue} can group and sort them.
+ */
+public class KeyedWeakRefVolatileCache<K, V> extends WeakRefVolatileCache<K, V>
+{
+
+	public KeyedWeakRefVolatileCache(
+			final Cache<K, V> backingCache,
+			final BlockingFetchQueues<Callable<?>> fetchQueue,
+			final CreateInvalid<? super K, ? extends V> createInvalid)
+	{
+		super(backingCache, fetchQueue, createInvalid);
+	}
+
+	@Override
+	protected Callable<?> createFetchEntry(final K key)
+	{
+		return BatchedSharedQueue.keyed(this, key, super.createFetchEntry(key));
+	}
+
+}
@@ -0,0 +1,185 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.CacheLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Cache} with softly referenced values, like {@link net.imglib2.cache.ref.SoftRefLoaderCache}, that can
+ * invalidate individual entries, not only all of them. Invalidating a key removes its entry: the stale value cannot be
+ * reached anymore, is re-loaded on the next request, and is garbage collected like any other softly referenced value.
+ *
+ * Entries are removed as soon as their value is garbage collected, so keys are only held as long as their values.
+ */
+public class SoftRefInvalidatableCache<K, V> implements Cache<K, V>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final ConcurrentHashMap<K, Entry> map = new ConcurrentHashMap<>();
+
+	private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+	private final CacheLoader<? super K, ? extends V> loader;
+
+	public SoftRefInvalidatableCache(final CacheLoader<? super K, ? extends V> loader)
+	{
+		super();
+		this.loader = loader;
+	}
+
+	private final class CacheSoftReference extends SoftReference<V>
+	{
+
+		private final Entry entry;
+
+		private CacheSoftReference(final V referent, final Entry entry)
+		{
+			super(referent, queue);
+			this.entry = entry;
+		}
+
+	}
+
+	private final class Entry
+	{
+
+		private final K key;
+
+		private CacheSoftReference ref = null;
+
+		private volatile boolean invalidated = false;
+
+		private Entry(final K key)
+		{
+			this.key = key;
+		}
+
+	}
+
+	@Override
+	public V getIfPresent(final K key)
+	{
+		cleanUp();
+		final Entry entry = map.get(key);
+		if (entry == null)
+		{
+			return null;
+		}
+		synchronized (entry)
+		{
+			return entry.ref == null ? null : entry.ref.get();
+		}
+	}
+
+	@Override
+	public V get(final K key) throws ExecutionException
+	{
+		cleanUp();
+		while (true)
+		{
+			final Entry entry = map.computeIfAbsent(key, Entry::new);
+			synchronized (entry)
+			{
+				// invalidated while waiting for another thread to load it
+				if (entry.invalidated)
+				{
+					continue;
+				}
+
+				if (entry.ref != null)
+				{
+					final V value = entry.ref.get();
+					if (value != null)
+					{
+						return value;
+					}
+					// collected but not cleaned up yet
+					map.remove(key, entry);
+					continue;
+				}
+
+				final V value = load(key);
+				entry.ref = new CacheSoftReference(value, entry);
+				return value;
+			}
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		for (final Entry entry : map.values())
+		{
+			invalidate(entry);
+		}
+	}
+
+	/**
+	 * Invalidate all entries whose key satisfies {@code condition}. Values that are currently being loaded for these
+	 * keys are not returned by subsequent requests.
+	 *
+	 * @return number of invalidated keys
+	 */
+	public int invalidateIf(final Predicate<? super K> condition)
+	{
+		int count = 0;
+		for (final Entry entry : map.values())
+		{
+			if (condition.test(entry.key))
+			{
+				invalidate(entry);
+				++count;
+			}
+		}
+		LOG.debug("Invalidated {} of {} keys", count, map.size());
+		return count;
+	}
+
+	/**
+	 * Remove entries whose values have been garbage collected.
+	 */
+	public void cleanUp()
+	{
+		while (true)
+		{
+			@SuppressWarnings("unchecked") final CacheSoftReference poll = (CacheSoftReference) queue.poll();
+			if (poll == null)
+			{
+				break;
+			}
+			map.remove(poll.entry.key, poll.entry);
+		}
+	}
+
+	private void invalidate(final Entry entry)
+	{
+		// not synchronized on entry: do not wait for values that are currently being loaded
+		entry.invalidated = true;
+		map.remove(entry.key, entry);
+	}
+
+	private V load(final K key) throws ExecutionException
+	{
+		try
+		{
+			return loader.get(key);
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ExecutionException(e);
+		} catch (final Exception e)
+		{
+			throw new ExecutionException(e);
+		}
+	}
+
+}
@@ -79,33 +79,33 @@ public class ARGBCompositeAlphaYCbCr implements Composite<ARGBType, ARGBType>
 
 	static { invert(ycbcr2rgb); }
 
-	final static private double rgb2y(final double r, final double g, final double b)
+	final static double rgb2y(final double r, final double g, final double b)
 	{
 		return rgb2ycbcr[0] * r + rgb2ycbcr[1] * g + rgb2ycbcr[2] * b;
 	}
 
-	final static private double rgb2cb(final double r, final double g, final double b)
+	final static double rgb2cb(final double r, final double g, final double b)
 	{
 		return rgb2ycbcr[3] * r + rgb2ycbcr[4] * g + rgb2ycbcr[5] * b;
 	}
 
-	final static private double rgb2cr(final double r, final double g, final double b)
+	final static double rgb2cr(final double r, final double g, final double b)
 	{
 		return rgb2ycbcr[6] * r + rgb2ycbcr[7] * g + rgb2ycbcr[8] * b;
 	}
 
 
-	final static private double ycbcr2r(final double y, final double cb, final double cr)
+	final static double ycbcr2r(final double y, final double cb, final double cr)
 	{
 		return ycbcr2rgb[0] * y + ycbcr2rgb[1] * cb + ycbcr2rgb[2] * cr;
 	}
 
-	final static private double ycbcr2g(final double y, final double cb, final double cr)
+	final static double ycbcr2g(final double y, final double cb, final double cr)
 	{
 		return ycbcr2rgb[3] * y + ycbcr2rgb[4] * cb + ycbcr2rgb[5] * cr;
 	}
 
-	final static private double ycbcr2b(final double y, final double cb, final double cr)
+	final static double ycbcr2b(final double y, final double cb, final double cr)
 	{
 		return ycbcr2rgb[6] * y + ycbcr2rgb[7] * cb + ycbcr2rgb[8] * cr;
 	}
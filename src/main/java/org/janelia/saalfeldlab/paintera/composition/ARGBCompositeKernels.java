@@ -0,0 +1,175 @@
+package org.janelia.saalfeldlab.paintera.composition;
+
+import net.imglib2.type.numeric.ARGBType;
+
+/**
+ * Row kernels that compose a run of (non-pre-multiplied) ARGB pixels into an accumulator, equivalent to calling
+ * {@link Composite#compose(Object, Object)} for each pixel. {@link CompositeCopy}, {@link ARGBCompositeAlphaAdd}, and
+ * {@link ARGBCompositeAlphaYCbCr} have specialized loops over raw {@code int[]} that produce bit-identical results,
+ * all other composites are wrapped.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class ARGBCompositeKernels
+{
+
+	public interface Kernel
+	{
+		/**
+		 * Compose {@code source[sourceOffset + i]} into {@code accumulator[i]} for {@code i} in {@code [0, length)}.
+		 */
+		void compose(int[] accumulator, int[] source, int sourceOffset, int length);
+	}
+
+	/**
+	 * {@code UNIT[alpha] == alpha / 255.0}
+	 */
+	private static final double[] UNIT = new double[256];
+
+	/**
+	 * Alpha of the composition of two pixels with alpha {@code a} and {@code b} at index {@code a << 8 | b}, as
+	 * computed by {@link ARGBCompositeAlphaAdd} and {@link ARGBCompositeAlphaYCbCr}.
+	 */
+	private static final int[] ALPHA_UNION = new int[256 * 256];
+
+	static
+	{
+		for (int a = 0; a < 256; ++a)
+			UNIT[a] = a / 255.0;
+		for (int a = 0; a < 256; ++a)
+			for (int b = 0; b < 256; ++b)
+			{
+				final double aA = a / 255.0;
+				final double aB = b / 255.0;
+				final double aTarget = aA + aB - aA * aB;
+				ALPHA_UNION[a << 8 | b] = (int) (aTarget * 255) & 0xff;
+			}
+	}
+
+	/**
+	 * @return kernel equivalent to {@code composite}. Kernels may hold state and must not be shared between threads.
+	 */
+	public static Kernel forComposite(final Composite<ARGBType, ARGBType> composite)
+	{
+		if (composite.getClass() == CompositeCopy.class)
+			return ARGBCompositeKernels::copy;
+		if (composite.getClass() == ARGBCompositeAlphaAdd.class)
+			return ARGBCompositeKernels::alphaAdd;
+		if (composite.getClass() == ARGBCompositeAlphaYCbCr.class)
+			return new AlphaYCbCr();
+		return new Wrapped(composite);
+	}
+
+	public static void copy(final int[] accumulator, final int[] source, final int sourceOffset, final int length)
+	{
+		System.arraycopy(source, sourceOffset, accumulator, 0, length);
+	}
+
+	public static void alphaAdd(final int[] accumulator, final int[] source, final int sourceOffset, final int length)
+	{
+		for (int i = 0, k = sourceOffset; i < length; ++i, ++k)
+		{
+			final int    argbA  = accumulator[i];
+			final int    argbB  = source[k];
+			final int    alphaB = argbB >>> 24;
+			final double aB     = UNIT[alphaB];
+			final int    r      = Math.min(255, (int) Math.round((argbA >> 16 & 0xff) + (argbB >> 16 & 0xff) * aB));
+			final int    g      = Math.min(255, (int) Math.round((argbA >> 8 & 0xff) + (argbB >> 8 & 0xff) * aB));
+			final int    b      = Math.min(255, (int) Math.round((argbA & 0xff) + (argbB & 0xff) * aB));
+			accumulator[i] = ALPHA_UNION[argbA >>> 24 << 8 | alphaB] << 24 | r << 16 | g << 8 | b;
+		}
+	}
+
+	/**
+	 * Remembers the last pair of input pixels: neighboring pixels of label and raw data are frequently identical.
+	 */
+	private static class AlphaYCbCr implements Kernel
+	{
+
+		private int lastA = 0;
+
+		private int lastB = 0;
+
+		private int lastResult = alphaYCbCr(0, 0);
+
+		@Override
+		public void compose(final int[] accumulator, final int[] source, final int sourceOffset, final int length)
+		{
+			for (int i = 0, k = sourceOffset; i < length; ++i, ++k)
+			{
+				final int argbA = accumulator[i];
+				final int argbB = source[k];
+				if (argbA != lastA || argbB != lastB)
+				{
+					lastA = argbA;
+					lastB = argbB;
+					lastResult = alphaYCbCr(argbA, argbB);
+				}
+				accumulator[i] = lastResult;
+			}
+		}
+	}
+
+	public static int alphaYCbCr(final int argbA, final int argbB)
+	{
+		final double rA = UNIT[argbA >> 16 & 0xff];
+		final double rB = UNIT[argbB >> 16 & 0xff];
+		final double gA = UNIT[argbA >> 8 & 0xff];
+		final double gB = UNIT[argbB >> 8 & 0xff];
+		final double bA = UNIT[argbA & 0xff];
+		final double bB = UNIT[argbB & 0xff];
+
+		final int    alphaB = argbB >>> 24;
+		final double aB     = UNIT[alphaB];
+
+		final double yA  = ARGBCompositeAlphaYCbCr.rgb2y(rA, gA, bA);
+		final double cbA = ARGBCompositeAlphaYCbCr.rgb2cb(rA, gA, bA);
+		final double crA = ARGBCompositeAlphaYCbCr.rgb2cr(rA, gA, bA);
+
+		final double cbB = ARGBCompositeAlphaYCbCr.rgb2cb(rB, gB, bB);
+		final double crB = ARGBCompositeAlphaYCbCr.rgb2cr(rB, gB, bB);
+
+		final double aBInv = 1.0 - aB;
+
+		final double cbTarget = cbA * aBInv + cbB * aB;
+		final double crTarget = crA * aBInv + crB * aB;
+
+		final double rTarget = ARGBCompositeAlphaYCbCr.ycbcr2r(yA, cbTarget, crTarget);
+		final double gTarget = ARGBCompositeAlphaYCbCr.ycbcr2g(yA, cbTarget, crTarget);
+		final double bTarget = ARGBCompositeAlphaYCbCr.ycbcr2b(yA, cbTarget, crTarget);
+
+		final int r = Math.max(0, Math.min(255, (int) Math.round(rTarget * 255)));
+		final int g = Math.max(0, Math.min(255, (int) Math.round(gTarget * 255)));
+		final int b = Math.max(0, Math.min(255, (int) Math.round(bTarget * 255)));
+
+		return ALPHA_UNION[argbA >>> 24 << 8 | alphaB] << 24 | r << 16 | g << 8 | b;
+	}
+
+	private static class Wrapped implements Kernel
+	{
+
+		private final Composite<ARGBType, ARGBType> composite;
+
+		private final ARGBType a = new ARGBType();
+
+		private final ARGBType b = new ARGBType();
+
+		private Wrapped(final Composite<ARGBType, ARGBType> composite)
+		{
+			this.composite = composite;
+		}
+
+		@Override
+		public void compose(final int[] accumulator, final int[] source, final int sourceOffset, final int length)
+		{
+			for (int i = 0, k = sourceOffset; i < length; ++i, ++k)
+			{
+				a.set(accumulator[i]);
+				b.set(source[k]);
+				composite.compose(a, b);
+				accumulator[i] = a.get();
+			}
+		}
+	}
+
+}
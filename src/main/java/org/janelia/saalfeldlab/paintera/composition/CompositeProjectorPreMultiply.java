@@ -2,28 +2,39 @@ package org.janelia.saalfeldlab.paintera.composition;
 
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import bdv.viewer.Source;
-import bdv.viewer.render.AccumulateProjector;
 import bdv.viewer.render.AccumulateProjectorFactory;
 import bdv.viewer.render.VolatileProjector;
 import com.sun.javafx.image.PixelUtils;
-import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.ui.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Composes the screen images of all sources through their {@link Composite Composites} and pre-multiplies the result.
+ * Rows are composed source by source on raw {@code int[]} pixels through {@link ARGBCompositeKernels} and tasks are
+ * distributed over rows of the target.
+ *
  * @author Stephan Saalfeld <saalfelds@janelia.hhmi.org>
  * @author Philipp Hanslovsky
  */
 @SuppressWarnings("restriction")
-public class CompositeProjectorPreMultiply extends AccumulateProjector<ARGBType, ARGBType>
+public class CompositeProjectorPreMultiply implements VolatileProjector
 {
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -71,6 +82,22 @@ public class CompositeProjectorPreMultiply extends AccumulateProjector<ARGBType,
 
 	final protected ArrayList<Composite<ARGBType, ARGBType>> composites = new ArrayList<>();
 
+	private final ArrayList<VolatileProjector> sourceProjectors;
+
+	private final ArrayList<? extends RandomAccessible<? extends ARGBType>> sources;
+
+	private final RandomAccessibleInterval<ARGBType> target;
+
+	private final int numThreads;
+
+	private final ExecutorService executorService;
+
+	private final AtomicBoolean interrupted = new AtomicBoolean();
+
+	private volatile boolean valid = false;
+
+	private long lastFrameRenderNanoTime = -1;
+
 	public CompositeProjectorPreMultiply(
 			final ArrayList<VolatileProjector> sourceProjectors,
 			final ArrayList<? extends RandomAccessible<? extends ARGBType>> sources,
@@ -78,7 +105,11 @@ public class CompositeProjectorPreMultiply extends AccumulateProjector<ARGBType,
 			final int numThreads,
 			final ExecutorService executorService)
 	{
-		super(sourceProjectors, sources, target, numThreads, executorService);
+		this.sourceProjectors = sourceProjectors;
+		this.sources = sources;
+		this.target = target;
+		this.numThreads = numThreads;
+		this.executorService = executorService;
 		LOG.debug("Creating {}", this.getClass().getName());
 	}
 
@@ -89,28 +120,167 @@ public class CompositeProjectorPreMultiply extends AccumulateProjector<ARGBType,
 	}
 
 	@Override
-	protected void accumulate(final Cursor<? extends ARGBType>[] accesses, final ARGBType t)
+	public void cancel()
+	{
+		interrupted.set(true);
+		for (final VolatileProjector p : sourceProjectors)
+			p.cancel();
+	}
+
+	@Override
+	public long getLastFrameRenderNanoTime()
+	{
+		return lastFrameRenderNanoTime;
+	}
+
+	@Override
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	@Override
+	public boolean map()
+	{
+		return map(true);
+	}
+
+	@Override
+	public boolean map(final boolean clearUntouchedTargetPixels)
+	{
+		interrupted.set(false);
+
+		final StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		valid = true;
+		for (final VolatileProjector p : sourceProjectors)
+			if (!p.isValid())
+			{
+				if (!p.map(clearUntouchedTargetPixels))
+					return false;
+				valid &= p.isValid();
+			}
+
+		final int width  = (int) target.dimension(0);
+		final int height = (int) target.dimension(1);
+
+		// raw pixel arrays of sources, null if a source is not backed by a single int[]
+		final int[][] sourceArrays = new int[sources.size()][];
+		for (int i = 0; i < sourceArrays.length; ++i)
+			sourceArrays[i] = rawArrayOf(sources.get(i), width, height);
+		final IntAccess targetAccess = target instanceof ArrayImg<?, ?> && ((ArrayImg<?, ?>) target).update(null)
+				instanceof IntAccess
+		                               ? (IntAccess) ((ArrayImg<?, ?>) target).update(null)
+		                               : null;
+
+		final int                       numTasks   = numThreads > 1 ? Math.min(numThreads * 10, height) : 1;
+		final double                    taskHeight = (double) height / numTasks;
+		final ArrayList<Callable<Void>> tasks      = new ArrayList<>(numTasks);
+		for (int taskNum = 0; taskNum < numTasks; ++taskNum)
+		{
+			final int minY = (int) (taskNum * taskHeight);
+			final int maxY = taskNum == numTasks - 1 ? height : (int) ((taskNum + 1) * taskHeight);
+			tasks.add(() -> {
+				composeRows(sourceArrays, targetAccess, width, minY, maxY);
+				return null;
+			});
+		}
+
+		final boolean         createExecutor = executorService == null;
+		final ExecutorService ex             = createExecutor
+		                                       ? Executors.newFixedThreadPool(numThreads)
+		                                       : executorService;
+		try
+		{
+			ex.invokeAll(tasks);
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if (createExecutor)
+			ex.shutdown();
+
+		lastFrameRenderNanoTime = stopWatch.nanoTime();
+
+		return !interrupted.get();
+	}
+
+	/**
+	 * Compose rows {@code [minY, maxY)} of all sources and write the pre-multiplied result into target. Rows of sources
+	 * and target that are backed by {@code int[]} are accessed directly, all others are copied through {@link
+	 * RandomAccess RandomAccesses}.
+	 */
+	private void composeRows(
+			final int[][] sourceArrays,
+			final IntAccess targetAccess,
+			final int width,
+			final int minY,
+			final int maxY)
+	{
+		final int                           numSources = sourceArrays.length;
+		final ARGBCompositeKernels.Kernel[] kernels    = new ARGBCompositeKernels.Kernel[numSources];
+		for (int i = 0; i < numSources; ++i)
+			kernels[i] = ARGBCompositeKernels.forComposite(composites.get(i));
+
+		final long  min0        = target.min(0);
+		final long  min1        = target.min(1);
+		final int[] accumulator = new int[width];
+		final int[] rowBuffer   = new int[width];
+		@SuppressWarnings("unchecked") final RandomAccess<? extends ARGBType>[] sourceAccesses =
+				new RandomAccess[numSources];
+		for (int i = 0; i < numSources; ++i)
+			if (sourceArrays[i] == null)
+				sourceAccesses[i] = sources.get(i).randomAccess(target);
+		final RandomAccess<ARGBType> targetRandomAccess = targetAccess == null ? target.randomAccess() : null;
+
+		for (int y = minY; y < maxY; ++y)
+		{
+			if (interrupted.get())
+				return;
+
+			final int offset = y * width;
+			Arrays.fill(accumulator, 0);
+			for (int i = 0; i < numSources; ++i)
+			{
+				if (sourceArrays[i] != null)
+					kernels[i].compose(accumulator, sourceArrays[i], offset, width);
+				else
+				{
+					final RandomAccess<? extends ARGBType> access = sourceAccesses[i];
+					access.setPosition(min0, 0);
+					access.setPosition(min1 + y, 1);
+					for (int x = 0; x < width; ++x, access.fwd(0))
+						rowBuffer[x] = access.get().get();
+					kernels[i].compose(accumulator, rowBuffer, 0, width);
+				}
+			}
+
+			if (targetAccess != null)
+				for (int x = 0; x < width; ++x)
+					targetAccess.setValue(offset + x, PixelUtils.NonPretoPre(accumulator[x]));
+			else
+			{
+				targetRandomAccess.setPosition(min0, 0);
+				targetRandomAccess.setPosition(min1 + y, 1);
+				for (int x = 0; x < width; ++x, targetRandomAccess.fwd(0))
+					targetRandomAccess.get().set(PixelUtils.NonPretoPre(accumulator[x]));
+			}
+		}
+	}
+
+	/**
+	 * @return storage of {@code source} if it is an {@link ArrayImg} of size {@code width * height} backed by {@link
+	 * IntArray}, {@code null} otherwise.
+	 */
+	private static int[] rawArrayOf(final RandomAccessible<?> source, final int width, final int height)
 	{
-		t.set(0);
-		for (int i = 0; i < composites.size(); ++i)
-			composites.get(i).compose(t, accesses[i].get());
-		final int nonpre = t.get();
-		t.set(PixelUtils.NonPretoPre(nonpre));
-		//		@SuppressWarnings( "restriction" )
-		//		final int pre = PixelUtils.NonPretoPre( nonpre );
-		//		final int a = nonpre & 0xff;
-		//		if ( a == 0xff )
-		//			return;
-		//		if ( a == 0x00 )
-		//			return;
-		//		int r = nonpre >> 24 & 0xff;
-		//		int g = nonpre >> 16 & 0xff;
-		//		int b = nonpre >> 8 & 0xff;
-		//		r = ( r * a + 0x7f ) / 0xff;
-		//		g = ( g * a + 0x7f ) / 0xff;
-		//		b = ( b * a + 0x7f ) / 0xff;
-		//		final int pre = a << 0 | r << 24 | g << 16 | b << 8;
-		//		final int pre = PixelUtils.NonPretoPre( nonpre );
-		//		t.set( pre );
+		if (!(source instanceof ArrayImg<?, ?>))
+			return null;
+		final ArrayImg<?, ?> img = (ArrayImg<?, ?>) source;
+		if (img.numDimensions() != 2 || img.dimension(0) != width || img.dimension(1) != height)
+			return null;
+		final Object access = img.update(null);
+		return access instanceof IntArray ? ((IntArray) access).getCurrentStorageArray() : null;
 	}
 }
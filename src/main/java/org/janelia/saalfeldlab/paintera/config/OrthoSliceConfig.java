@@ -74,6 +74,13 @@ public class OrthoSliceConfig
 		};
 		baseConfig.delayInNanoSeconds().addListener(delayListener);
 		delayListener.changed(null, 0, baseConfig.delayInNanoSeconds().get());
+		final ChangeListener<Boolean> onlyWhenIdleListener = (obs, oldv, newv) -> {
+			topLeft.setUpdateTextureOnlyWhenIdle(newv);
+			topRight.setUpdateTextureOnlyWhenIdle(newv);
+			bottomLeft.setUpdateTextureOnlyWhenIdle(newv);
+		};
+		baseConfig.updateTexturesOnlyWhenIdleProperty().addListener(onlyWhenIdleListener);
+		onlyWhenIdleListener.changed(null, false, baseConfig.updateTexturesOnlyWhenIdleProperty().get());
 
 	}
 
@@ -82,4 +89,13 @@ public class OrthoSliceConfig
 		return baseConfig.delayInNanoSeconds();
 	}
 
+	/**
+	 * If {@code true}, ortho-slice textures are updated only after the viewer did not render for the
+	 * {@link #delayInNanoSeconds() delay}, otherwise at most once per delay.
+	 */
+	public BooleanProperty updateTexturesOnlyWhenIdleProperty()
+	{
+		return baseConfig.updateTexturesOnlyWhenIdleProperty();
+	}
+
 }
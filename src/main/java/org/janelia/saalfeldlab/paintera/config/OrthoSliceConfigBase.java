@@ -18,6 +18,8 @@ public class OrthoSliceConfigBase
 
 	private final SimpleLongProperty delayInNanoSeconds = new SimpleLongProperty(200);
 
+	private final SimpleBooleanProperty updateTexturesOnlyWhenIdle = new SimpleBooleanProperty(false);
+
 	public BooleanProperty isEnabledProperty()
 	{
 		return this.enabled;
@@ -43,4 +45,9 @@ public class OrthoSliceConfigBase
 		return this.delayInNanoSeconds;
 	}
 
+	public BooleanProperty updateTexturesOnlyWhenIdleProperty()
+	{
+		return this.updateTexturesOnlyWhenIdle;
+	}
+
 }
@@ -25,6 +25,8 @@ public class OrthoSliceConfigNode
 
 	private final LongField delay = new LongField(200);
 
+	private final CheckBox onlyWhenIdleCheckBox = new CheckBox();
+
 	public OrthoSliceConfigNode()
 	{
 		super();
@@ -35,16 +37,19 @@ public class OrthoSliceConfigNode
 		final Label topRightLabel   = new Label("top right");
 		final Label bottomLeftLabel = new Label("bottom left");
 		final Label delayLabel      = new Label("delay in ms");
+		final Label onlyWhenIdle    = new Label("update only when idle");
 
 		grid.add(topLeftLabel, 0, 0);
 		grid.add(topRightLabel, 0, 1);
 		grid.add(bottomLeftLabel, 0, 2);
 		grid.add(delayLabel, 0, 3);
+		grid.add(onlyWhenIdle, 0, 4);
 
 		grid.add(topLeftCheckBox, 1, 0);
 		grid.add(topRightCheckBox, 1, 1);
 		grid.add(bottomLeftCheckBox, 1, 2);
 		grid.add(delay.textField(), 1, 3);
+		grid.add(onlyWhenIdleCheckBox, 1, 4);
 		delay.textField().setMinWidth(50);
 		delay.textField().setMaxWidth(50);
 		delay.valueProperty().addListener((oldv, obs, newv) -> {
@@ -58,6 +63,7 @@ public class OrthoSliceConfigNode
 		GridPane.setHgrow(topRightLabel, Priority.ALWAYS);
 		GridPane.setHgrow(bottomLeftLabel, Priority.ALWAYS);
 		GridPane.setHgrow(delayLabel, Priority.ALWAYS);
+		GridPane.setHgrow(onlyWhenIdle, Priority.ALWAYS);
 
 		contents = new TitledPane("Ortho-Views", grid);
 		contents.setGraphic(showOrthoViews);
@@ -72,6 +78,7 @@ public class OrthoSliceConfigNode
 		topRightCheckBox.selectedProperty().bindBidirectional(config.showTopRightProperty());
 		bottomLeftCheckBox.selectedProperty().bindBidirectional(config.showBottomLeftProperty());
 		delay.valueProperty().bindBidirectional(config.delayInNanoSeconds());
+		onlyWhenIdleCheckBox.selectedProperty().bindBidirectional(config.updateTexturesOnlyWhenIdleProperty());
 	}
 
 	public Node getContents()
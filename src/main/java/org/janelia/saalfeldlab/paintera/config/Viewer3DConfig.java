@@ -1,7 +1,10 @@
 package org.janelia.saalfeldlab.paintera.config;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.LongProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleLongProperty;
+import org.janelia.saalfeldlab.paintera.meshes.MeshMemoryBudget;
 import org.janelia.saalfeldlab.paintera.viewer3d.Viewer3DFX;
 
 public class Viewer3DConfig
@@ -9,19 +12,31 @@ public class Viewer3DConfig
 
 	private final SimpleBooleanProperty areMeshesEnabled = new SimpleBooleanProperty(true);
 
+	private final SimpleLongProperty meshMemoryBudget = new SimpleLongProperty(MeshMemoryBudget.DEFAULT_BUDGET_BYTES);
+
 	public BooleanProperty areMeshesenabledProperty()
 	{
 		return this.areMeshesEnabled;
 	}
 
+	/**
+	 * @return memory budget for meshes in bytes, see {@link MeshMemoryBudget}
+	 */
+	public LongProperty meshMemoryBudgetProperty()
+	{
+		return this.meshMemoryBudget;
+	}
+
 	public void bindViewerToConfig(final Viewer3DFX viewer)
 	{
 		viewer.isMeshesEnabledProperty().bind(this.areMeshesEnabled);
+		MeshMemoryBudget.global().budgetProperty().bind(this.meshMemoryBudget);
 	}
 
 	public void set(final Viewer3DConfig that)
 	{
 		this.areMeshesEnabled.set(that.areMeshesEnabled.get());
+		this.meshMemoryBudget.set(that.meshMemoryBudget.get());
 	}
 
 }
@@ -1,26 +1,70 @@
 package org.janelia.saalfeldlab.paintera.config;
 
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.LongProperty;
 import javafx.scene.Node;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.TitledPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import org.janelia.saalfeldlab.fx.ui.DoubleField;
+import org.janelia.saalfeldlab.paintera.meshes.MeshMemoryBudget;
 
 public class Viewer3DConfigNode
 {
 
+	private static final double BYTES_PER_MB = 1024 * 1024;
+
 	private final TitledPane contents = new TitledPane("3D Viewer", null);
 
 	private final CheckBox areMeshesEnabledCheckBox = new CheckBox();
 
+	private final DoubleField meshMemoryBudgetField = new DoubleField(MeshMemoryBudget.DEFAULT_BUDGET_BYTES /
+			BYTES_PER_MB);
+
+	private final Label meshMemoryUsage = new Label();
+
 	public Viewer3DConfigNode()
 	{
 		contents.setGraphic(areMeshesEnabledCheckBox);
 		contents.setExpanded(false);
 		contents.collapsibleProperty().bind(areMeshesEnabledCheckBox.selectedProperty());
+
+		final GridPane grid        = new GridPane();
+		final Label    budgetLabel = new Label("Mesh memory (MB)");
+		final Label    usageLabel  = new Label("Used (MB)");
+		GridPane.setHgrow(budgetLabel, Priority.ALWAYS);
+		meshMemoryBudgetField.textField().setMaxWidth(80);
+		meshMemoryBudgetField.textField().setTooltip(new Tooltip(
+				"Meshes that are not visible are discarded when all meshes use more memory than this"));
+		meshMemoryUsage.textProperty().bind(Bindings.createStringBinding(
+				() -> String.format("%.1f", MeshMemoryBudget.global().usageProperty().get() / BYTES_PER_MB),
+				MeshMemoryBudget.global().usageProperty()));
+		grid.add(budgetLabel, 0, 0);
+		grid.add(meshMemoryBudgetField.textField(), 1, 0);
+		grid.add(usageLabel, 0, 1);
+		grid.add(meshMemoryUsage, 1, 1);
+		contents.setContent(grid);
 	}
 
 	public void bind(final Viewer3DConfig config)
 	{
 		areMeshesEnabledCheckBox.selectedProperty().bindBidirectional(config.areMeshesenabledProperty());
+
+		final LongProperty budget = config.meshMemoryBudgetProperty();
+		meshMemoryBudgetField.valueProperty().set(budget.get() / BYTES_PER_MB);
+		// only propagate changes of at least one byte, to avoid round trips between MB and bytes
+		meshMemoryBudgetField.valueProperty().addListener((obs, oldv, newv) -> {
+			final long bytes = Math.round(newv.doubleValue() * BYTES_PER_MB);
+			if (bytes != budget.get())
+				budget.set(bytes);
+		});
+		budget.addListener((obs, oldv, newv) -> {
+			if (newv.longValue() != Math.round(meshMemoryBudgetField.valueProperty().get() * BYTES_PER_MB))
+				meshMemoryBudgetField.valueProperty().set(newv.longValue() / BYTES_PER_MB);
+		});
 	}
 
 	public Node getContents()
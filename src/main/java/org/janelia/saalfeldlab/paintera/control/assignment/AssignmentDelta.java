@@ -0,0 +1,147 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import java.util.Arrays;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Effect of a single {@link org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction} on a
+ * {@link FragmentSegmentAssignmentState}: the segments whose set of fragments changed (including segments that ceased
+ * to exist or that were created), and, for merges, the segments and fragments that were merged.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class AssignmentDelta
+{
+
+	public enum Type
+	{
+		MERGE,
+		DETACH
+	}
+
+	private final Type type;
+
+	private final long segment;
+
+	private final long[] affectedSegments;
+
+	private final long[] mergedSegments;
+
+	private final TLongHashSet[] mergedFragments;
+
+	private AssignmentDelta(
+			final Type type,
+			final long segment,
+			final long[] affectedSegments,
+			final long[] mergedSegments,
+			final TLongHashSet[] mergedFragments)
+	{
+		this.type = type;
+		this.segment = segment;
+		this.affectedSegments = affectedSegments;
+		this.mergedSegments = mergedSegments;
+		this.mergedFragments = mergedFragments;
+	}
+
+	/**
+	 * @param segmentInto
+	 * 		segment that contains all fragments of both segments after the merge
+	 * @param segmentIntoBefore
+	 * 		id of the segment that contained {@code fragmentsInto} before the merge. Differs from {@code segmentInto} if
+	 * 		a new segment was created for a fragment that was not assigned to any segment.
+	 * @param fragmentsInto
+	 * 		fragments of {@code segmentIntoBefore} before the merge
+	 * @param segmentFrom
+	 * 		segment that was merged into {@code segmentInto} and does not exist anymore
+	 * @param fragmentsFrom
+	 * 		fragments of {@code segmentFrom} before the merge
+	 */
+	public static AssignmentDelta merge(
+			final long segmentInto,
+			final long segmentIntoBefore,
+			final TLongHashSet fragmentsInto,
+			final long segmentFrom,
+			final TLongHashSet fragmentsFrom)
+	{
+		return new AssignmentDelta(
+				Type.MERGE,
+				segmentInto,
+				distinct(segmentInto, segmentIntoBefore, segmentFrom),
+				new long[] {segmentIntoBefore, segmentFrom},
+				new TLongHashSet[] {new TLongHashSet(fragmentsInto), new TLongHashSet(fragmentsFrom)}
+		);
+	}
+
+	/**
+	 * @param fragment
+	 * 		fragment that was detached and forms a segment of its own
+	 * @param segmentFrom
+	 * 		segment that contained {@code fragment} before
+	 * @param dissolvedInto
+	 * 		fragments that were left without segment because {@code segmentFrom} was dissolved, if any
+	 */
+	public static AssignmentDelta detach(final long fragment, final long segmentFrom, final long... dissolvedInto)
+	{
+		final long[] affected = new long[dissolvedInto.length + 2];
+		affected[0] = segmentFrom;
+		affected[1] = fragment;
+		System.arraycopy(dissolvedInto, 0, affected, 2, dissolvedInto.length);
+		return new AssignmentDelta(Type.DETACH, segmentFrom, distinct(affected), new long[] {}, new TLongHashSet[] {});
+	}
+
+	public Type type()
+	{
+		return type;
+	}
+
+	/**
+	 * @return segment that results from a merge, or segment that a fragment was detached from.
+	 */
+	public long segment()
+	{
+		return segment;
+	}
+
+	/**
+	 * @return all segments whose fragments changed. Segments that do not exist anymore are included.
+	 */
+	public long[] affectedSegments()
+	{
+		return affectedSegments.clone();
+	}
+
+	/**
+	 * @return ids of the two segments that were merged into {@link #segment()}, empty if this is not a merge.
+	 */
+	public long[] mergedSegments()
+	{
+		return mergedSegments.clone();
+	}
+
+	/**
+	 * @return fragments of the two segments that were merged into {@link #segment()} (in the same order as {@link
+	 * #mergedSegments()}), empty if this is not a merge.
+	 */
+	public TLongHashSet[] mergedFragments()
+	{
+		return Arrays.stream(mergedFragments).map(TLongHashSet::new).toArray(TLongHashSet[]::new);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"{%s: segment=%d, affected=%s}",
+				type,
+				segment,
+				Arrays.toString(affectedSegments)
+		                    );
+	}
+
+	private static long[] distinct(final long... ids)
+	{
+		return new TLongHashSet(ids).toArray();
+	}
+
+}
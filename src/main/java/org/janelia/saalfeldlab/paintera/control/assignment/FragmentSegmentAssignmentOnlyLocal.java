@@ -16,6 +16,9 @@ import net.imglib2.type.label.Label;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +43,12 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final Counter LOOKUPS = MetricsRegistry.global().counter("assignment.lookups");
+
+	private static final LatencyHistogram APPLY_TIME = MetricsRegistry.global().histogram("assignment.apply");
+
+	private static final LatencyHistogram PERSIST_TIME = MetricsRegistry.global().histogram("assignment.persist");
+
 	private final TLongLongHashMap fragmentToSegmentMap = new TLongLongHashMap(
 			Constants.DEFAULT_CAPACITY,
 			Constants.DEFAULT_LOAD_FACTOR,
@@ -85,6 +94,7 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 			return;
 		}
 
+		final long start = System.nanoTime();
 		try
 		{
 			// TODO Should we reset the LUT first to make sure that all previous
@@ -93,6 +103,7 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 			LOG.debug("Committing actions {}", this.actions);
 			this.persister.persist(this.fragmentToSegmentMap.keys(), this.fragmentToSegmentMap.values());
 			this.actions.clear();
+			PERSIST_TIME.recordSince(start);
 		} catch (final Exception e)
 		{
 			throw e instanceof UnableToPersist ? (UnableToPersist) e : new UnableToPersist(e);
@@ -102,6 +113,7 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 	@Override
 	public synchronized long getSegment(final long fragmentId)
 	{
+		LOOKUPS.increment();
 		final long id;
 		final long segmentId = fragmentToSegmentMap.get(fragmentId);
 		if (segmentId == fragmentToSegmentMap.getNoEntryValue())
@@ -123,14 +135,14 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 		return fragments == null ? new TLongHashSet(new long[] {segmentId}) : new TLongHashSet(fragments);
 	}
 
-	private void detachFragmentImpl(final Detach detach)
+	private AssignmentDelta detachFragmentImpl(final Detach detach)
 	{
 		LOG.debug("Detach {}", detach);
 		final long segmentFrom = fragmentToSegmentMap.get(detach.fragmentId);
 		if (fragmentToSegmentMap.get(detach.fragmentFrom) != segmentFrom)
 		{
 			LOG.debug("{} not in same segment -- return without detach", detach);
-			return;
+			return null;
 		}
 
 		final long fragmentId   = detach.fragmentId;
@@ -147,11 +159,13 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 			{
 				this.fragmentToSegmentMap.remove(fragmentFrom);
 				this.segmentToFragmentsMap.remove(segmentFrom);
+				return AssignmentDelta.detach(fragmentId, segmentFrom, fragmentFrom);
 			}
 		}
+		return AssignmentDelta.detach(fragmentId, segmentFrom);
 	}
 
-	private void mergeFragmentsImpl(final Merge merge)
+	private AssignmentDelta mergeFragmentsImpl(final Merge merge)
 	{
 
 		LOG.debug("Merging {}", merge);
@@ -170,13 +184,26 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 		if (fragmentToSegmentMap.contains(from) && fragmentToSegmentMap.get(from) == fragmentToSegmentMap.get(into))
 		{
 			LOG.debug("Fragments already in same segment -- not merging");
-			return;
+			return null;
 		}
 
 		final long         segmentFrom   = fragmentToSegmentMap.contains(from) ? fragmentToSegmentMap.get(from) : from;
 		final TLongHashSet fragmentsFrom = segmentToFragmentsMap.remove(segmentFrom);
 		LOG.debug("From segment: {} To segment: {}", segmentFrom, segmentInto);
 
+		final boolean      isNewSegment      = !segmentToFragmentsMap.contains(segmentInto);
+		final long         segmentIntoBefore = isNewSegment ? into : segmentInto;
+		final TLongHashSet fragmentsInto     = isNewSegment
+		                                       ? new TLongHashSet(new long[] {into})
+		                                       : new TLongHashSet(segmentToFragmentsMap.get(segmentInto));
+		final AssignmentDelta delta = AssignmentDelta.merge(
+				segmentInto,
+				segmentIntoBefore,
+				fragmentsInto,
+				segmentFrom,
+				fragmentsFrom == null ? new TLongHashSet(new long[] {from}) : fragmentsFrom
+		                                                   );
+
 		if (!fragmentToSegmentMap.contains(into))
 		{
 			LOG.debug("Adding segment {} to framgent {}", segmentInto, into);
@@ -204,6 +231,7 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 			segmentToFragmentsMap.get(segmentInto).add(from);
 			fragmentToSegmentMap.put(from, segmentInto);
 		}
+		return delta;
 	}
 
 	private void resetLut()
@@ -217,22 +245,29 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 	}
 
 	@Override
-	protected void applyImpl(final AssignmentAction action)
+	protected AssignmentDelta applyImpl(final AssignmentAction action)
 	{
+		final long start = System.nanoTime();
 		LOG.debug("Applying action {}", action);
+		final AssignmentDelta delta;
 		switch (action.getType())
 		{
 			case MERGE:
 			{
 				LOG.debug("Applying merge {}", action);
-				mergeFragmentsImpl((Merge) action);
+				delta = mergeFragmentsImpl((Merge) action);
 				break;
 			}
 			case DETACH:
 				LOG.debug("Applying detach {}", action);
-				detachFragmentImpl((Detach) action);
+				delta = detachFragmentImpl((Detach) action);
+				break;
+			default:
+				delta = null;
 				break;
 		}
+		APPLY_TIME.recordSince(start);
+		return delta;
 	}
 
 	private synchronized void syncILut()
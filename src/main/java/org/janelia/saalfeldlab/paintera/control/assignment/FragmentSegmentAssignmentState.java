@@ -1,5 +1,8 @@
 package org.janelia.saalfeldlab.paintera.control.assignment;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import javafx.beans.Observable;
 
 public interface FragmentSegmentAssignmentState extends FragmentSegmentAssignment, Observable
@@ -7,4 +10,15 @@ public interface FragmentSegmentAssignmentState extends FragmentSegmentAssignmen
 
 	public void persist() throws UnableToPersist;
 
+	/**
+	 * Listen to {@link AssignmentDelta deltas} of all changes that are applied. Delta listeners are notified before
+	 * invalidation listeners and only if there was at least one change.
+	 *
+	 * @param listener
+	 * 		receives the deltas of all actions that were applied at once
+	 */
+	public void addDeltaListener(Consumer<List<AssignmentDelta>> listener);
+
+	public void removeDeltaListener(Consumer<List<AssignmentDelta>> listener);
+
 }
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.janelia.saalfeldlab.fx.ObservableWithListenersList;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
@@ -24,24 +26,57 @@ public abstract class FragmentSegmentAssignmentStateWithActionTracker extends Ob
 		throw new UnableToPersist(new UnsupportedOperationException("Not implemented yet!"));
 	}
 
-	protected abstract void applyImpl(final AssignmentAction action);
+	private final List<Consumer<List<AssignmentDelta>>> deltaListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @return delta describing the change, or {@code null} if {@code action} did not change the assignment.
+	 */
+	protected abstract AssignmentDelta applyImpl(final AssignmentAction action);
 
 	@Override
 	public void apply(final AssignmentAction action)
 	{
-		applyImpl(action);
+		final AssignmentDelta delta = applyImpl(action);
 		this.actions.add(action);
+		if (delta != null)
+			deltasApplied(Collections.singletonList(delta));
 		stateChanged();
 	}
 
 	@Override
 	public void apply(final Collection<? extends AssignmentAction> actions)
 	{
-		actions.forEach(this::applyImpl);
+		final List<AssignmentDelta> deltas = new ArrayList<>();
+		for (final AssignmentAction action : actions)
+		{
+			final AssignmentDelta delta = applyImpl(action);
+			if (delta != null)
+				deltas.add(delta);
+		}
 		this.actions.addAll(actions);
+		if (deltas.size() > 0)
+			deltasApplied(Collections.unmodifiableList(deltas));
 		stateChanged();
 	}
 
+	@Override
+	public void addDeltaListener(final Consumer<List<AssignmentDelta>> listener)
+	{
+		this.deltaListeners.add(listener);
+	}
+
+	@Override
+	public void removeDeltaListener(final Consumer<List<AssignmentDelta>> listener)
+	{
+		this.deltaListeners.remove(listener);
+	}
+
+	private void deltasApplied(final List<AssignmentDelta> deltas)
+	{
+		LOG.debug("Applied deltas {}", deltas);
+		this.deltaListeners.forEach(listener -> listener.accept(deltas));
+	}
+
 	public List<AssignmentAction> getActionsCopy()
 	{
 		return Collections.unmodifiableList(this.actions);
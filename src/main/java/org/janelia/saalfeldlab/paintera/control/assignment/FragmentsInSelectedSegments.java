@@ -1,13 +1,21 @@
 package org.janelia.saalfeldlab.paintera.control.assignment;
 
-import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import org.janelia.saalfeldlab.fx.ObservableWithListenersList;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectionDelta;
 
+/**
+ * Fragments of all selected segments. Fragments are tracked per segment so that only segments that were (de-)selected
+ * according to the {@link SelectionDelta deltas} of the selection or whose fragments changed according to the {@link
+ * AssignmentDelta deltas} of the assignment are updated.
+ */
 public class FragmentsInSelectedSegments extends ObservableWithListenersList
 {
 
@@ -17,6 +25,16 @@ public class FragmentsInSelectedSegments extends ObservableWithListenersList
 
 	private final TLongHashSet selectedFragments = new TLongHashSet();
 
+	private final TLongObjectHashMap<TLongHashSet> fragmentsBySegment = new TLongObjectHashMap<>();
+
+	private final TLongHashSet staleSegments = new TLongHashSet();
+
+	private final TLongHashSet changedSegments = new TLongHashSet();
+
+	private final Consumer<List<AssignmentDelta>> deltaListener = this::markStale;
+
+	private final Consumer<SelectionDelta> selectionDeltaListener = this::markChanged;
+
 	private final SelectionListener selectionListener = new SelectionListener();
 
 	private final AssignmentListener assignmentListener = new AssignmentListener();
@@ -27,7 +45,10 @@ public class FragmentsInSelectedSegments extends ObservableWithListenersList
 		super();
 		this.activeSegments = activeSegments;
 		this.assignment = assignment;
+		this.changedSegments.addAll(this.activeSegments.getSelectedSegments());
+		this.activeSegments.addDeltaListener(selectionDeltaListener);
 		this.activeSegments.addListener(selectionListener);
+		this.assignment.addDeltaListener(deltaListener);
 		this.assignment.addListener(assignmentListener);
 	}
 
@@ -39,13 +60,55 @@ public class FragmentsInSelectedSegments extends ObservableWithListenersList
 		}
 	}
 
+	private void markStale(final List<AssignmentDelta> deltas)
+	{
+		synchronized (this.selectedFragments)
+		{
+			deltas.stream().map(AssignmentDelta::affectedSegments).forEach(this.staleSegments::addAll);
+		}
+	}
+
+	private void markChanged(final SelectionDelta delta)
+	{
+		synchronized (this.selectedFragments)
+		{
+			this.changedSegments.addAll(delta.added());
+			this.changedSegments.addAll(delta.removed());
+		}
+	}
+
 	private void update()
 	{
 		synchronized (this.selectedFragments)
 		{
-			final long[] activeSegments = this.activeSegments.getSelectedSegments();
-			this.selectedFragments.clear();
-			Arrays.stream(activeSegments).mapToObj(assignment::getFragments).forEach(this.selectedFragments::addAll);
+			final TLongHashSet segments = new TLongHashSet(this.changedSegments);
+			segments.addAll(this.staleSegments);
+
+			// Segments partition fragments: remove all outdated segments first, then add current fragments.
+			segments.forEach(segment -> {
+				if (this.fragmentsBySegment.containsKey(segment))
+				{
+					this.selectedFragments.removeAll(this.fragmentsBySegment.remove(segment));
+				}
+				return true;
+			});
+
+			segments.forEach(segment -> {
+				if (this.activeSegments.isSegmentSelected(segment))
+				{
+					final TLongHashSet fragments = assignment.getFragments(segment);
+					// selection may lag behind assignment: do not add fragments for segments that were merged away
+					if (!fragments.isEmpty() && assignment.getSegment(fragments.iterator().next()) != segment)
+					{
+						fragments.clear();
+					}
+					this.fragmentsBySegment.put(segment, fragments);
+					this.selectedFragments.addAll(fragments);
+				}
+				return true;
+			});
+			this.staleSegments.clear();
+			this.changedSegments.clear();
 		}
 		stateChanged();
 	}
@@ -1,7 +1,9 @@
 package org.janelia.saalfeldlab.paintera.control.selection;
 
 import java.lang.invoke.MethodHandles;
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.type.label.Label;
@@ -18,6 +20,8 @@ public class SelectedIds extends ObservableWithListenersList
 
 	private long lastSelection = Label.INVALID;
 
+	private final List<Consumer<SelectionDelta>> deltaListeners = new CopyOnWriteArrayList<>();
+
 	public SelectedIds()
 	{
 		this(new TLongHashSet());
@@ -35,44 +39,100 @@ public class SelectedIds extends ObservableWithListenersList
 		return selectedIds.contains(id);
 	}
 
+	/**
+	 * Replace the selection with {@code ids}. Listeners are notified once.
+	 */
 	public void activate(final long... ids)
 	{
-		deactivateAll(false);
-		activateAlso(ids);
-		LOG.debug("Activated " + Arrays.toString(ids) + " " + selectedIds);
+		final TLongHashSet newIds  = new TLongHashSet(ids);
+		final TLongHashSet removed = new TLongHashSet(selectedIds);
+		removed.removeAll(newIds);
+		final TLongHashSet added = new TLongHashSet(newIds);
+		added.removeAll(selectedIds);
+		selectedIds.removeAll(removed);
+		selectedIds.addAll(added);
+		final long oldLastSelection = lastSelection;
+		lastSelection = ids.length > 0 ? ids[0] : Label.INVALID;
+		LOG.debug("Activated {} ids: added {} and removed {}", ids.length, added.size(), removed.size());
+		changed(added, removed, oldLastSelection);
 	}
 
+	/**
+	 * Add {@code ids} to the selection. Listeners are notified once.
+	 */
 	public void activateAlso(final long... ids)
 	{
-		for (final long id : ids)
-			selectedIds.add(id);
-		if (ids.length > 0)
-			this.lastSelection = ids[0];
-		stateChanged();
+		update(ids, new long[] {});
 	}
 
 	public void deactivateAll()
 	{
-		deactivateAll(true);
-	}
-
-	private void deactivateAll(final boolean notify)
-	{
+		final TLongHashSet removed          = new TLongHashSet(selectedIds);
+		final long         oldLastSelection = lastSelection;
 		selectedIds.clear();
 		lastSelection = Label.INVALID;
-		if (notify)
-			stateChanged();
+		changed(new TLongHashSet(), removed, oldLastSelection);
 	}
 
+	/**
+	 * Remove {@code ids} from the selection. Listeners are notified once.
+	 */
 	public void deactivate(final long... ids)
 	{
-		for (final long id : ids)
+		update(new long[] {}, ids);
+		LOG.debug("Deactivated {} ids, {} remain active", ids.length, selectedIds.size());
+	}
+
+	/**
+	 * Remove {@code deactivate} from and add {@code activate} to the selection in a single operation: listeners are
+	 * notified once with the net change. If {@code activate} is not empty, its first entry becomes the last selection.
+	 */
+	public void update(final long[] activate, final long[] deactivate)
+	{
+		final TLongHashSet added            = new TLongHashSet();
+		final TLongHashSet removed          = new TLongHashSet();
+		final long         oldLastSelection = lastSelection;
+		for (final long id : deactivate)
 		{
-			selectedIds.remove(id);
+			if (selectedIds.remove(id))
+				removed.add(id);
 			if (id == lastSelection)
 				lastSelection = Label.INVALID;
 		}
-		LOG.debug("Deactivated {}, {}", Arrays.toString(ids), selectedIds);
+		for (final long id : activate)
+		{
+			if (selectedIds.add(id) && !removed.remove(id))
+				added.add(id);
+		}
+		if (activate.length > 0)
+			lastSelection = activate[0];
+		changed(added, removed, oldLastSelection);
+	}
+
+	/**
+	 * Listen to the {@link SelectionDelta net change} of each operation that changes the selection. Delta listeners are
+	 * notified before invalidation listeners and only if the set of selected ids changed.
+	 */
+	public void addDeltaListener(final Consumer<SelectionDelta> listener)
+	{
+		this.deltaListeners.add(listener);
+	}
+
+	public void removeDeltaListener(final Consumer<SelectionDelta> listener)
+	{
+		this.deltaListeners.remove(listener);
+	}
+
+	private void changed(final TLongHashSet added, final TLongHashSet removed, final long oldLastSelection)
+	{
+		if (added.isEmpty() && removed.isEmpty())
+		{
+			if (oldLastSelection != lastSelection)
+				stateChanged();
+			return;
+		}
+		final SelectionDelta delta = new SelectionDelta(added.toArray(), removed.toArray());
+		this.deltaListeners.forEach(l -> l.accept(delta));
 		stateChanged();
 	}
 
@@ -1,13 +1,23 @@
 package org.janelia.saalfeldlab.paintera.control.selection;
 
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import org.janelia.saalfeldlab.fx.ObservableWithListenersList;
+import org.janelia.saalfeldlab.paintera.control.assignment.AssignmentDelta;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 
+/**
+ * Segments of all {@link SelectedIds selected fragments}. The selected fragments of each segment are tracked so that
+ * {@link SelectionDelta deltas} of the selection and {@link AssignmentDelta deltas} of the assignment are applied
+ * incrementally. Each change is published as a {@link SelectionDelta} of segments.
+ */
 public class SelectedSegments extends ObservableWithListenersList
 {
 
@@ -17,7 +27,17 @@ public class SelectedSegments extends ObservableWithListenersList
 
 	private final TLongHashSet selectedSegments = new TLongHashSet();
 
-	private final SelectionListener selectionListener = new SelectionListener();
+	private final TLongObjectHashMap<TLongHashSet> selectedFragmentsBySegment = new TLongObjectHashMap<>();
+
+	private final TLongLongHashMap segmentOfSelectedFragment = new TLongLongHashMap();
+
+	private final TLongHashSet staleSegments = new TLongHashSet();
+
+	private final List<Consumer<SelectionDelta>> deltaListeners = new CopyOnWriteArrayList<>();
+
+	private final Consumer<SelectionDelta> selectionListener = this::selectionChanged;
+
+	private final Consumer<List<AssignmentDelta>> assignmentDeltaListener = this::markStale;
 
 	private final AssignmentListener assignmentListener = new AssignmentListener();
 
@@ -26,7 +46,13 @@ public class SelectedSegments extends ObservableWithListenersList
 		super();
 		this.selectedIds = selectedIds;
 		this.assignment = assignment;
-		this.selectedIds.addListener(selectionListener);
+		synchronized (this.selectedSegments)
+		{
+			for (final long fragment : this.selectedIds.getActiveIds())
+				addFragment(fragment);
+		}
+		this.selectedIds.addDeltaListener(selectionListener);
+		this.assignment.addDeltaListener(assignmentDeltaListener);
 		this.assignment.addListener(assignmentListener);
 	}
 
@@ -40,29 +66,159 @@ public class SelectedSegments extends ObservableWithListenersList
 
 	public boolean isSegmentSelected(final long id)
 	{
-		return this.selectedSegments.contains(id);
+		// selection and assignment deltas modify the set from other threads
+		synchronized (this.selectedSegments)
+		{
+			return this.selectedSegments.contains(id);
+		}
 	}
 
+	/**
+	 * Listen to the {@link SelectionDelta net change} of selected segments. Delta listeners are notified before
+	 * invalidation listeners and only if the set of selected segments changed.
+	 */
+	public void addDeltaListener(final Consumer<SelectionDelta> listener)
+	{
+		this.deltaListeners.add(listener);
+	}
+
+	public void removeDeltaListener(final Consumer<SelectionDelta> listener)
+	{
+		this.deltaListeners.remove(listener);
+	}
+
+	private void selectionChanged(final SelectionDelta delta)
+	{
+		final SelectionDelta segmentsDelta;
+		synchronized (this.selectedSegments)
+		{
+			final TLongHashSet selectedBefore    = new TLongHashSet();
+			final TLongHashSet notSelectedBefore = new TLongHashSet();
+			for (final long fragment : delta.removed())
+				removeFragment(fragment, selectedBefore, notSelectedBefore);
+			for (final long fragment : delta.added())
+				addFragment(fragment, selectedBefore, notSelectedBefore);
+			segmentsDelta = netChange(selectedBefore, notSelectedBefore);
+		}
+		notifyListeners(segmentsDelta);
+	}
+
+	private void markStale(final List<AssignmentDelta> deltas)
+	{
+		synchronized (this.selectedSegments)
+		{
+			deltas.stream().map(AssignmentDelta::affectedSegments).forEach(this.staleSegments::addAll);
+		}
+	}
+
+	/**
+	 * Re-assign the selected fragments of all stale segments.
+	 */
 	private void update()
 	{
+		final SelectionDelta segmentsDelta;
 		synchronized (this.selectedSegments)
 		{
-			this.selectedSegments.clear();
-			this.selectedSegments.addAll(Arrays.stream(this.selectedIds.getActiveIds()).map(assignment::getSegment)
-					.toArray());
+			final TLongHashSet selectedBefore    = new TLongHashSet();
+			final TLongHashSet notSelectedBefore = new TLongHashSet();
+			final TLongHashSet fragments         = new TLongHashSet();
+			this.staleSegments.forEach(segment -> {
+				final TLongHashSet selectedFragments = this.selectedFragmentsBySegment.get(segment);
+				if (selectedFragments != null)
+					fragments.addAll(selectedFragments);
+				return true;
+			});
+			this.staleSegments.clear();
+			fragments.forEach(fragment -> {
+				removeFragment(fragment, selectedBefore, notSelectedBefore);
+				return true;
+			});
+			fragments.forEach(fragment -> {
+				addFragment(fragment, selectedBefore, notSelectedBefore);
+				return true;
+			});
+			segmentsDelta = netChange(selectedBefore, notSelectedBefore);
 		}
-		stateChanged();
+		notifyListeners(segmentsDelta);
 	}
 
-	private class SelectionListener implements InvalidationListener
+	private void addFragment(final long fragment)
 	{
+		addFragment(fragment, new TLongHashSet(), new TLongHashSet());
+	}
 
-		@Override
-		public void invalidated(final Observable obs)
+	private void addFragment(
+			final long fragment,
+			final TLongHashSet selectedBefore,
+			final TLongHashSet notSelectedBefore)
+	{
+		if (this.segmentOfSelectedFragment.containsKey(fragment))
+			return;
+		final long segment = assignment.getSegment(fragment);
+		this.segmentOfSelectedFragment.put(fragment, segment);
+		TLongHashSet fragments = this.selectedFragmentsBySegment.get(segment);
+		if (fragments == null)
 		{
-			update();
+			recordState(segment, selectedBefore, notSelectedBefore);
+			fragments = new TLongHashSet();
+			this.selectedFragmentsBySegment.put(segment, fragments);
+			this.selectedSegments.add(segment);
+		}
+		fragments.add(fragment);
+	}
+
+	private void removeFragment(
+			final long fragment,
+			final TLongHashSet selectedBefore,
+			final TLongHashSet notSelectedBefore)
+	{
+		if (!this.segmentOfSelectedFragment.containsKey(fragment))
+			return;
+		final long         segment   = this.segmentOfSelectedFragment.remove(fragment);
+		final TLongHashSet fragments = this.selectedFragmentsBySegment.get(segment);
+		fragments.remove(fragment);
+		if (fragments.isEmpty())
+		{
+			recordState(segment, selectedBefore, notSelectedBefore);
+			this.selectedFragmentsBySegment.remove(segment);
+			this.selectedSegments.remove(segment);
 		}
+	}
+
+	/**
+	 * Remember whether {@code segment} was selected before it is first modified within an operation.
+	 */
+	private void recordState(
+			final long segment,
+			final TLongHashSet selectedBefore,
+			final TLongHashSet notSelectedBefore)
+	{
+		if (!selectedBefore.contains(segment) && !notSelectedBefore.contains(segment))
+			(this.selectedSegments.contains(segment) ? selectedBefore : notSelectedBefore).add(segment);
+	}
+
+	private SelectionDelta netChange(final TLongHashSet selectedBefore, final TLongHashSet notSelectedBefore)
+	{
+		final TLongHashSet added   = new TLongHashSet();
+		final TLongHashSet removed = new TLongHashSet();
+		notSelectedBefore.forEach(segment -> {
+			if (this.selectedSegments.contains(segment))
+				added.add(segment);
+			return true;
+		});
+		selectedBefore.forEach(segment -> {
+			if (!this.selectedSegments.contains(segment))
+				removed.add(segment);
+			return true;
+		});
+		return new SelectionDelta(added.toArray(), removed.toArray());
+	}
 
+	private void notifyListeners(final SelectionDelta delta)
+	{
+		if (!delta.isEmpty())
+			this.deltaListeners.forEach(l -> l.accept(delta));
+		stateChanged();
 	}
 
 	private class AssignmentListener implements InvalidationListener
@@ -0,0 +1,51 @@
+package org.janelia.saalfeldlab.paintera.control.selection;
+
+import java.util.Arrays;
+
+/**
+ * Net change of a selection, e.g. {@link SelectedIds} or {@link SelectedSegments}, for a single (bulk) operation: ids
+ * that were not selected before and are selected now and vice versa. An id is never contained in both.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class SelectionDelta
+{
+
+	private final long[] added;
+
+	private final long[] removed;
+
+	public SelectionDelta(final long[] added, final long[] removed)
+	{
+		this.added = added;
+		this.removed = removed;
+	}
+
+	/**
+	 * @return ids that were added to the selection.
+	 */
+	public long[] added()
+	{
+		return added.clone();
+	}
+
+	/**
+	 * @return ids that were removed from the selection.
+	 */
+	public long[] removed()
+	{
+		return removed.clone();
+	}
+
+	public boolean isEmpty()
+	{
+		return added.length == 0 && removed.length == 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("{added=%s, removed=%s}", Arrays.toString(added), Arrays.toString(removed));
+	}
+
+}
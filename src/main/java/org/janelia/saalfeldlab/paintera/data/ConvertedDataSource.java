@@ -136,4 +136,12 @@ public class ConvertedDataSource<D, T, U, V> implements DataSource<U, V>
 		return dataTypeExtensionSupplier.get();
 	}
 
+	/**
+	 * @return the source whose data and volatile data are converted
+	 */
+	public DataSource<D, T> underlyingSource()
+	{
+		return source;
+	}
+
 }
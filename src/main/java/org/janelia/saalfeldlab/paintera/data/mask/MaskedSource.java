@@ -81,6 +81,9 @@ import net.imglib2.view.RandomAccessibleTriple;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.mask.PickOne.PickAndConvert;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tmp.bdv.img.cache.VolatileCachedCellImg;
@@ -90,6 +93,14 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final LatencyHistogram APPLY_MASK_TIME = MetricsRegistry.global().histogram("canvas.apply-mask");
+
+	private static final LatencyHistogram PROPAGATE_TIME = MetricsRegistry.global().histogram("canvas.propagate");
+
+	private static final LatencyHistogram PERSIST_TIME = MetricsRegistry.global().histogram("canvas.persist");
+
+	private static final Counter PAINTED_BLOCKS = MetricsRegistry.global().counter("canvas.painted-blocks");
+
 	private static final int NUM_DIMENSIONS = 3;
 
 	private final DataSource<D, T> source;
@@ -143,6 +154,21 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	private final List<Runnable> canvasClearedListeners = new ArrayList<>();
 
+	// snapshot of painted blocks in the project that was not committed yet, may be null
+	private volatile String canvasSnapshot = null;
+
+	/**
+	 * Canvas cells that may hold painted labels, per level. Outside of these cells, {@link #getSource(int, int)} and
+	 * {@link #getDataSource(int, int)} read the background directly unless a mask is deployed.
+	 */
+	private final TouchedCells[] touchedCells;
+
+	/**
+	 * {@code false} while {@link #dMasks} and {@link #tMasks} hold a mask, i.e. from {@link #generateMask} until the
+	 * mask has been propagated to all levels.
+	 */
+	private volatile boolean areMasksConstant = false;
+
 	private final ObservableBooleanValue canBePersited = Bindings.createBooleanBinding(
 			() -> isMaskNotDeployed.get() && isNotPersisting.get() && noMasksCurrentlyApplied.get(),
 			isNotPersisting,
@@ -206,6 +232,10 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 		this.dMasks = new RandomAccessible[this.canvases.length];
 		this.tMasks = new RandomAccessible[this.canvases.length];
 		this.nextCacheDirectory = nextCacheDirectory;
+		this.touchedCells = IntStream
+				.range(0, source.getNumMipmapLevels())
+				.mapToObj(level -> new TouchedCells(new CellGrid(this.dimensions[level], this.blockSizes[level])))
+				.toArray(TouchedCells[]::new);
 
 		this.masks = new HashMap<>();
 		this.pacD = pacD;
@@ -255,6 +285,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				throw new MaskInUse("Busy, cannot generate new mask.");
 			}
 			this.isMaskDeployed.set(true);
+			this.areMasksConstant = false;
 		}
 
 		final DiskCachedCellImgOptions maskOpts = DiskCachedCellImgOptions
@@ -317,6 +348,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 		new Thread(() -> {
 			synchronized (this)
 			{
+				final long start = System.nanoTime();
 				LOG.debug("Applying mask: {}", mask, paintedInterval);
 				final MaskInfo<UnsignedLongType> maskInfo = this.masks.get(mask);
 				if (maskInfo == null)
@@ -332,6 +364,8 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 				final TLongSet affectedBlocks = affectedBlocks(mask, canvas.getCellGrid(), paintedInterval);
 
+				// mark cells before painting so that concurrent readers never skip painted cells
+				this.touchedCells[maskInfo.level].addAll(affectedBlocks);
 				paintAffectedPixels(
 						affectedBlocks,
 						Converters.convert(
@@ -361,8 +395,10 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				this.affectedBlocks.addAll(paintedBlocksAtHighestResolution);
 
 				this.maskApplyCount.set(this.maskApplyCount.get() + 1);
+				PAINTED_BLOCKS.add(affectedBlocks.size());
 
 				propagationExecutor.submit(() -> {
+					final long propagationStart = System.nanoTime();
 					propagateMask(
 							mask,
 							affectedBlocks,
@@ -372,7 +408,9 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 							acceptAsPainted
 					             );
 					setMasksConstant();
+					PROPAGATE_TIME.recordSince(propagationStart);
 				});
+				APPLY_MASK_TIME.recordSince(start);
 
 			}
 		}).start();
@@ -392,6 +430,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 					NUM_DIMENSIONS
 			                                                           );
 		}
+		this.areMasksConstant = true;
 	}
 
 	private Interval scaleIntervalToLevel(final Interval interval, final int intervalLevel, final int targetLevel)
@@ -513,6 +552,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				final long[]                             affectedBlocks = this.affectedBlocks.toArray();
 				this.affectedBlocks.clear();
 				new Thread(() -> {
+					final long start = System.nanoTime();
 					try
 					{
 						this.persistCanvas.accept(canvas, affectedBlocks);
@@ -526,6 +566,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 						}
 					} finally
 					{
+						PERSIST_TIME.recordSince(start);
 						synchronized (this)
 						{
 							this.isPersisting.set(false);
@@ -566,6 +607,10 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				this.tMasks[level],
 				source
 		                                                                                                             );
+		if (this.areMasksConstant)
+		{
+			return new PickOneInTouchedCells<>(source, canvas, mask, this.touchedCells[level], pacT.copy());
+		}
 		final RandomAccessibleTriple<T, VolatileUnsignedLongType, VolatileUnsignedLongType> composed = new
 				RandomAccessibleTriple<>(
 				source,
@@ -628,6 +673,10 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				this.dMasks[level],
 				source
 		                                                                                             );
+		if (this.areMasksConstant)
+		{
+			return new PickOneInTouchedCells<>(source, canvas, mask, this.touchedCells[level], pacD.copy());
+		}
 		final RandomAccessibleTriple<D, UnsignedLongType, UnsignedLongType> composed = new RandomAccessibleTriple<>(
 				source,
 				canvas,
@@ -834,6 +883,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			this.affectedBlocksByLabel[level].computeIfAbsent(label.getIntegerLong(), key -> new TLongHashSet())
 					.addAll(
 					affectedBlocksAtHigherLevel);
+			this.touchedCells[level].addAll(affectedBlocksAtHigherLevel);
 
 			// downsample
 			final int[] steps = DoubleStream.of(relativeScales).mapToInt(d -> (int) d).toArray();
@@ -868,6 +918,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			this.affectedBlocksByLabel[level].computeIfAbsent(label.getIntegerLong(), key -> new TLongHashSet())
 					.addAll(
 					affectedBlocksAtLowerLevel);
+			this.touchedCells[level].addAll(affectedBlocksAtLowerLevel);
 
 			final Interval paintedIntervalAtTargetLevel = scaleIntervalToLevel(
 					intervalAtPaintedScale,
@@ -1171,6 +1222,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 		this.cacheDirectory.set(this.nextCacheDirectory.get());
 		this.affectedBlocks.clear();
 		Arrays.stream(this.affectedBlocksByLabel).forEach(Map::clear);
+		Arrays.stream(this.touchedCells).forEach(TouchedCells::clear);
 		this.canvasClearedListeners.forEach(Runnable::run);
 	}
 
@@ -1292,6 +1344,30 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 		return ((AbstractCellImg<?, ?, ?, ?>) underlyingSource().getSource(t, level)).getCellGrid();
 	}
 
+	/**
+	 * @return grid of the canvas at {@code level}. {@link #getAffectedBlocks()} are flat indices into the grid at level
+	 * 0.
+	 */
+	public CellGrid getCanvasGrid(final int level)
+	{
+		return this.dataCanvases[level].getCellGrid();
+	}
+
+	/**
+	 * @return dataset in the project container that holds a
+	 * {@link org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5 snapshot} of painted blocks that were not
+	 * committed yet, or {@code null}
+	 */
+	public String getCanvasSnapshot()
+	{
+		return this.canvasSnapshot;
+	}
+
+	public void setCanvasSnapshot(final String canvasSnapshot)
+	{
+		this.canvasSnapshot = canvasSnapshot;
+	}
+
 	public long[] getAffectedBlocks()
 	{
 		return this.affectedBlocks.toArray();
@@ -1328,6 +1404,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 		LOG.debug("Affected blocks: {} to add: {}", this.affectedBlocks, blocks);
 		this.affectedBlocks.addAll(blocks);
+		this.touchedCells[0].addAll(blocks);
 		LOG.debug("Affected blocks: {}", this.affectedBlocks);
 
 		LOG.debug("Affected blocks by id: {} to add: {}", this.affectedBlocksByLabel, blocksById);
@@ -1337,6 +1414,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			for (final Entry<Long, long[]> entry : blocksById[level].entrySet())
 			{
 				map.computeIfAbsent(entry.getKey(), key -> new TLongHashSet()).addAll(entry.getValue());
+				this.touchedCells[level].addAll(entry.getValue());
 			}
 		}
 		LOG.debug("Affected blocks by id: {}", this.affectedBlocksByLabel, null);
@@ -1,5 +1,6 @@
 package org.janelia.saalfeldlab.paintera.data.mask;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Type;
 import java.util.HashMap;
@@ -18,7 +19,10 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
+import org.janelia.saalfeldlab.paintera.N5Helpers;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5;
+import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5;
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer;
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer.Arguments;
 import org.janelia.saalfeldlab.paintera.state.SourceState;
@@ -111,6 +115,23 @@ public class MaskedSourceDeserializer implements JsonDeserializer<MaskedSource<?
 						                                                     ))
 						.orElseGet(() -> new Map[] {});
 				returnVal.affectBlocks(blocks, blocksById);
+
+				if (map.has(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY))
+				{
+					// keep the reference until the snapshot is committed: painting in this session is merged into it
+					final String snapshot = map.get(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY).getAsString();
+					returnVal.setCanvasSnapshot(snapshot);
+					if (isUpToDate(snapshot, mergeCanvasIntoBackground))
+						LOG.warn(
+								"Canvas snapshot {} is not shown in the viewer. Commit it with {} or commit the canvas",
+								snapshot,
+								"PainteraCommitCanvas");
+					else
+						LOG.warn(
+								"Canvas snapshot {} is stale and will not be committed: {} was committed since",
+								snapshot,
+								source.getName());
+				}
 			}
 
 			return returnVal;
@@ -121,6 +142,22 @@ public class MaskedSourceDeserializer implements JsonDeserializer<MaskedSource<?
 		}
 	}
 
+	private boolean isUpToDate(final String snapshot, final BiConsumer<?, ?> persister)
+	{
+		if (!(persister instanceof CommitCanvasN5))
+			return true;
+		try
+		{
+			return CanvasSnapshotN5.baseCommitCount(
+					N5Helpers.n5Reader(currentProjectDirectory.get(), 64, 64, 64),
+					snapshot) == ((CommitCanvasN5) persister).commitCount();
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to check canvas snapshot {}: {}", snapshot, e.getMessage());
+			return true;
+		}
+	}
+
 	public static class Factory implements StatefulSerializer.Deserializer<MaskedSource<?, ?>, MaskedSourceDeserializer>
 	{
 
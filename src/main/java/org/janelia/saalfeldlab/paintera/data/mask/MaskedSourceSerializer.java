@@ -7,6 +7,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,13 @@ public class MaskedSourceSerializer implements JsonSerializer<MaskedSource<?, ?>
 
 	public static final String DIRTY_BLOCKS_BY_ID_KEY = "dirtyBlocksById";
 
+	public static final String CANVAS_SNAPSHOT_KEY = "canvasSnapshot";
+
+	/**
+	 * Group in the project N5 container that holds {@link CanvasSnapshotN5 canvas snapshots}.
+	 */
+	public static final String CANVAS_SNAPSHOTS_GROUP = "canvas-snapshots";
+
 	@Override
 	public JsonElement serialize(final MaskedSource<?, ?> src, final Type type, final JsonSerializationContext context)
 	{
@@ -46,6 +54,9 @@ public class MaskedSourceSerializer implements JsonSerializer<MaskedSource<?, ?>
 		// .get( src.currentCanvasDirectory() ) ).toString() );
 		//		map.add( DIRTY_BLOCKS_KEY, context.serialize( src.getAffectedBlocks() ) );
 		//		map.add( DIRTY_BLOCKS_BY_ID_KEY, context.serialize( src.getAffectedBlocksById() ) );
+		// snapshots are written by SaveProject before serialization
+		if (src.getCanvasSnapshot() != null)
+			map.addProperty(CANVAS_SNAPSHOT_KEY, src.getCanvasSnapshot());
 		return map;
 	}
 
@@ -0,0 +1,352 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.set.TLongSet;
+import net.imglib2.AbstractWrappedInterval;
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Triple;
+import org.janelia.saalfeldlab.paintera.data.mask.PickOne.PickAndConvert;
+
+/**
+ * Like {@link PickOne} over the {@link net.imglib2.view.RandomAccessibleTriple triple} of background, canvas, and a
+ * mask that never overrides the background, but consults the canvas and mask only within cells that have been
+ * {@link TouchedCells touched} by painting. Everywhere else, the background value is returned directly. Only the
+ * background access follows moves, canvas and mask accesses are positioned on demand inside touched cells. Whether or
+ * not the current cell is touched is cached until the position leaves that cell or the set of touched cells changes.
+ *
+ * @param <A>
+ * 		background type, also the type of the composed value
+ * @param <B>
+ * 		canvas type
+ * @param <C>
+ * 		mask type
+ *
+ * @author Philipp Hanslovsky
+ */
+public class PickOneInTouchedCells<A, B, C> extends AbstractWrappedInterval<RandomAccessibleInterval<A>>
+		implements RandomAccessibleInterval<A>
+{
+
+	private final RandomAccessible<B> canvas;
+
+	private final RandomAccessible<C> mask;
+
+	private final TouchedCells touched;
+
+	private final PickAndConvert<A, B, C, A> pac;
+
+	public PickOneInTouchedCells(
+			final RandomAccessibleInterval<A> background,
+			final RandomAccessible<B> canvas,
+			final RandomAccessible<C> mask,
+			final TouchedCells touched,
+			final PickAndConvert<A, B, C, A> pac)
+	{
+		super(background);
+		this.canvas = canvas;
+		this.mask = mask;
+		this.touched = touched;
+		this.pac = pac;
+	}
+
+	@Override
+	public RandomAccess<A> randomAccess()
+	{
+		return new PickOneInTouchedCellsAccess<>(
+				sourceInterval.randomAccess(),
+				canvas.randomAccess(),
+				mask.randomAccess(),
+				touched,
+				pac.copy()
+		);
+	}
+
+	@Override
+	public RandomAccess<A> randomAccess(final Interval interval)
+	{
+		return new PickOneInTouchedCellsAccess<>(
+				sourceInterval.randomAccess(interval),
+				canvas.randomAccess(interval),
+				mask.randomAccess(interval),
+				touched,
+				pac.copy()
+		);
+	}
+
+	public static class PickOneInTouchedCellsAccess<A, B, C> implements RandomAccess<A>, Triple<A, B, C>
+	{
+
+		private final RandomAccess<A> a;
+
+		private final RandomAccess<B> b;
+
+		private final RandomAccess<C> c;
+
+		private final TouchedCells touched;
+
+		private final PickAndConvert<A, B, C, A> pac;
+
+		private final long[] gridDimensions;
+
+		private final int[] cellDimensions;
+
+		private final long[] cellPosition;
+
+		private final long[] cellMin;
+
+		private final long[] cellMax;
+
+		private TLongSet cachedCells = null;
+
+		private boolean isCurrentCellTouched = false;
+
+		public PickOneInTouchedCellsAccess(
+				final RandomAccess<A> a,
+				final RandomAccess<B> b,
+				final RandomAccess<C> c,
+				final TouchedCells touched,
+				final PickAndConvert<A, B, C, A> pac)
+		{
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.touched = touched;
+			this.pac = pac;
+			final CellGrid grid = touched.grid();
+			this.gridDimensions = grid.getGridDimensions();
+			this.cellDimensions = new int[grid.numDimensions()];
+			grid.cellDimensions(this.cellDimensions);
+			this.cellPosition = new long[grid.numDimensions()];
+			this.cellMin = new long[grid.numDimensions()];
+			this.cellMax = new long[grid.numDimensions()];
+		}
+
+		@Override
+		public A get()
+		{
+			if (!isCurrentCellTouched())
+				return a.get();
+			b.setPosition(a);
+			c.setPosition(a);
+			return pac.apply(this);
+		}
+
+		@Override
+		public A getA()
+		{
+			return a.get();
+		}
+
+		@Override
+		public B getB()
+		{
+			return b.get();
+		}
+
+		@Override
+		public C getC()
+		{
+			return c.get();
+		}
+
+		private boolean isCurrentCellTouched()
+		{
+			final TLongSet cells = touched.cells();
+			if (cells != cachedCells || !isInCurrentCell())
+				updateCurrentCell(cells);
+			return isCurrentCellTouched;
+		}
+
+		private boolean isInCurrentCell()
+		{
+			for (int d = 0; d < cellMin.length; ++d)
+			{
+				final long p = a.getLongPosition(d);
+				if (p < cellMin[d] || p > cellMax[d])
+					return false;
+			}
+			return true;
+		}
+
+		private void updateCurrentCell(final TLongSet cells)
+		{
+			cachedCells = cells;
+			if (cells.isEmpty())
+			{
+				// nothing painted: valid everywhere until the set of touched cells changes
+				for (int d = 0; d < cellMin.length; ++d)
+				{
+					cellMin[d] = Long.MIN_VALUE;
+					cellMax[d] = Long.MAX_VALUE;
+				}
+				isCurrentCellTouched = false;
+				return;
+			}
+
+			boolean isInGrid = true;
+			for (int d = 0; d < cellMin.length; ++d)
+			{
+				cellPosition[d] = Math.floorDiv(a.getLongPosition(d), cellDimensions[d]);
+				cellMin[d] = cellPosition[d] * cellDimensions[d];
+				cellMax[d] = cellMin[d] + cellDimensions[d] - 1;
+				isInGrid &= cellPosition[d] >= 0 && cellPosition[d] < gridDimensions[d];
+			}
+
+			long index = 0;
+			for (int d = cellPosition.length - 1; d >= 0; --d)
+				index = index * gridDimensions[d] + cellPosition[d];
+			isCurrentCellTouched = isInGrid && cells.contains(index);
+		}
+
+		@Override
+		public void localize(final int[] position)
+		{
+			a.localize(position);
+		}
+
+		@Override
+		public void localize(final long[] position)
+		{
+			a.localize(position);
+		}
+
+		@Override
+		public int getIntPosition(final int d)
+		{
+			return a.getIntPosition(d);
+		}
+
+		@Override
+		public long getLongPosition(final int d)
+		{
+			return a.getLongPosition(d);
+		}
+
+		@Override
+		public void localize(final float[] position)
+		{
+			a.localize(position);
+		}
+
+		@Override
+		public void localize(final double[] position)
+		{
+			a.localize(position);
+		}
+
+		@Override
+		public float getFloatPosition(final int d)
+		{
+			return a.getFloatPosition(d);
+		}
+
+		@Override
+		public double getDoublePosition(final int d)
+		{
+			return a.getDoublePosition(d);
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return a.numDimensions();
+		}
+
+		@Override
+		public void fwd(final int d)
+		{
+			a.fwd(d);
+		}
+
+		@Override
+		public void bck(final int d)
+		{
+			a.bck(d);
+		}
+
+		@Override
+		public void move(final int distance, final int d)
+		{
+			a.move(distance, d);
+		}
+
+		@Override
+		public void move(final long distance, final int d)
+		{
+			a.move(distance, d);
+		}
+
+		@Override
+		public void move(final Localizable localizable)
+		{
+			a.move(localizable);
+		}
+
+		@Override
+		public void move(final int[] distance)
+		{
+			a.move(distance);
+		}
+
+		@Override
+		public void move(final long[] distance)
+		{
+			a.move(distance);
+		}
+
+		@Override
+		public void setPosition(final Localizable localizable)
+		{
+			a.setPosition(localizable);
+		}
+
+		@Override
+		public void setPosition(final int[] position)
+		{
+			a.setPosition(position);
+		}
+
+		@Override
+		public void setPosition(final long[] position)
+		{
+			a.setPosition(position);
+		}
+
+		@Override
+		public void setPosition(final int position, final int d)
+		{
+			a.setPosition(position, d);
+		}
+
+		@Override
+		public void setPosition(final long position, final int d)
+		{
+			a.setPosition(position, d);
+		}
+
+		@Override
+		public PickOneInTouchedCellsAccess<A, B, C> copy()
+		{
+			final PickOneInTouchedCellsAccess<A, B, C> copy = new PickOneInTouchedCellsAccess<>(
+					a.copyRandomAccess(),
+					b.copyRandomAccess(),
+					c.copyRandomAccess(),
+					touched,
+					pac.copy()
+			);
+			copy.setPosition(this);
+			return copy;
+		}
+
+		@Override
+		public PickOneInTouchedCellsAccess<A, B, C> copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.img.cell.CellGrid;
+
+/**
+ * Flat indices of canvas cells that may contain painted labels at a single scale level. Readers see immutable
+ * snapshots that are replaced on every update, i.e. {@link #cells()} can be queried concurrently without locking and
+ * the identity of the returned set changes if and only if the set of touched cells changes.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class TouchedCells
+{
+
+	private final CellGrid grid;
+
+	private volatile TLongSet cells = new TLongHashSet();
+
+	public TouchedCells(final CellGrid grid)
+	{
+		this.grid = grid;
+	}
+
+	public CellGrid grid()
+	{
+		return grid;
+	}
+
+	/**
+	 * @return current snapshot of touched cells. Must not be modified.
+	 */
+	public TLongSet cells()
+	{
+		return cells;
+	}
+
+	public boolean contains(final long cell)
+	{
+		return cells.contains(cell);
+	}
+
+	public synchronized void addAll(final TLongSet blocks)
+	{
+		addAll(blocks.toArray());
+	}
+
+	public synchronized void addAll(final long[] blocks)
+	{
+		if (blocks.length == 0 || cells.containsAll(blocks))
+			return;
+		final TLongHashSet copy = new TLongHashSet(cells);
+		copy.addAll(blocks);
+		this.cells = copy;
+	}
+
+	public synchronized void clear()
+	{
+		if (!cells.isEmpty())
+			this.cells = new TLongHashSet();
+	}
+
+}
@@ -0,0 +1,206 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of the highest resolution canvas of a {@link org.janelia.saalfeldlab.paintera.data.mask.MaskedSource} in an
+ * N5 dataset. Only painted blocks are written and their flat indices are stored in the {@value #BLOCKS_KEY} attribute.
+ * The canvas directories of a running Paintera instance are deleted on exit, snapshots are stored with the project
+ * and can be committed later, e.g. through {@link CommitCanvasN5}.
+ *
+ * Each snapshot records the {@link CommitCanvasN5#commitCount() commit count} of its target dataset at the time it
+ * was taken in the {@value #BASE_COMMIT_COUNT_KEY} attribute. A snapshot must not be committed if the target dataset
+ * was committed to since, because the snapshot would overwrite newer data. Such snapshots are
+ * {@link #markStale(N5Writer, String) marked stale} instead of being removed: they are never replayed but stay in the
+ * project until they are discarded explicitly, e.g. through {@code PainteraCommitCanvas --discard-stale-snapshots}.
+ */
+public class CanvasSnapshotN5
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final String BLOCKS_KEY = "blocks";
+
+	public static final String BASE_COMMIT_COUNT_KEY = "baseCommitCount";
+
+	public static final String STALE_KEY = "stale";
+
+	/**
+	 * Write {@code blocks} of {@code canvas} into {@code dataset}. An existing snapshot in {@code dataset} is replaced.
+	 *
+	 * @param grid
+	 * 		grid of {@code canvas}, {@code blocks} are flat indices into this grid
+	 * @param baseCommitCount
+	 * 		{@link CommitCanvasN5#commitCount() commit count} of the target dataset that {@code canvas} was painted on
+	 * @param previous
+	 * 		snapshot with the same base commit count that is merged into the new snapshot, may be {@code null}. Painted
+	 * 		voxels of {@code canvas} take precedence. Must not be {@code dataset}.
+	 */
+	public static void write(
+			final N5Writer n5,
+			final String dataset,
+			final RandomAccessibleInterval<UnsignedLongType> canvas,
+			final CellGrid grid,
+			final long[] blocks,
+			final long baseCommitCount,
+			final String previous) throws IOException
+	{
+		final int[] blockSize = new int[grid.numDimensions()];
+		grid.cellDimensions(blockSize);
+
+		final TLongSet                                   allBlocks        = new TLongHashSet(blocks);
+		final RandomAccessibleInterval<UnsignedLongType> previousCanvas;
+		final TLongSet                                   previousBlocks;
+		if (previous == null)
+		{
+			previousCanvas = null;
+			previousBlocks = new TLongHashSet();
+		}
+		else
+		{
+			if (baseCommitCount(n5, previous) != baseCommitCount)
+				throw new IOException(String.format("Snapshot %s has a different base commit", previous));
+			previousCanvas = open(n5, previous);
+			previousBlocks = new TLongHashSet(blocks(n5, previous));
+			allBlocks.addAll(previousBlocks);
+		}
+
+		if (n5.exists(dataset))
+			n5.remove(dataset);
+
+		final DatasetAttributes attributes = new DatasetAttributes(
+				grid.getImgDimensions(),
+				blockSize,
+				DataType.UINT64,
+				new GzipCompression()
+		);
+		n5.createDataset(dataset, attributes);
+
+		final long[] gridPosition = new long[grid.numDimensions()];
+		final long[] min          = new long[grid.numDimensions()];
+		final long[] max          = new long[grid.numDimensions()];
+		final int[]  size         = new int[grid.numDimensions()];
+		for (final TLongIterator it = allBlocks.iterator(); it.hasNext(); )
+		{
+			final long block = it.next();
+			grid.getCellGridPositionFlat(block, gridPosition);
+			grid.getCellDimensions(gridPosition, min, size);
+			Arrays.setAll(max, d -> min[d] + size[d] - 1);
+
+			final long[] data = new long[Arrays.stream(size).reduce(1, (s1, s2) -> s1 * s2)];
+			final Cursor<UnsignedLongType> cursor = Views.flatIterable(Views.interval(canvas, min, max)).cursor();
+			for (int i = 0; cursor.hasNext(); ++i)
+				data[i] = cursor.next().getLong();
+			if (previousBlocks.contains(block))
+			{
+				final Cursor<UnsignedLongType> previousCursor = Views.flatIterable(Views.interval(
+						previousCanvas,
+						min,
+						max)).cursor();
+				for (int i = 0; previousCursor.hasNext(); ++i)
+				{
+					final long value = previousCursor.next().getLong();
+					if (data[i] == Label.INVALID)
+						data[i] = value;
+				}
+			}
+			n5.writeBlock(dataset, attributes, new LongArrayDataBlock(size, gridPosition, data));
+		}
+
+		// written last: a snapshot without blocks attribute is incomplete
+		n5.setAttribute(dataset, BASE_COMMIT_COUNT_KEY, baseCommitCount);
+		n5.setAttribute(dataset, BLOCKS_KEY, allBlocks.toArray());
+		LOG.debug("Wrote {} canvas blocks into {}", allBlocks.size(), dataset);
+	}
+
+	/**
+	 * @return {@link CommitCanvasN5#commitCount() commit count} of the target dataset that the snapshot in
+	 * {@code dataset} is based on, or {@code -1} if unknown
+	 */
+	public static long baseCommitCount(final N5Reader n5, final String dataset) throws IOException
+	{
+		return n5.datasetExists(dataset)
+		       ? Optional.ofNullable(n5.getAttribute(dataset, BASE_COMMIT_COUNT_KEY, Long.class)).orElse(-1L)
+		       : -1;
+	}
+
+	/**
+	 * Mark the snapshot in {@code dataset} as stale, i.e. it must not be committed anymore. The snapshot is kept.
+	 */
+	public static void markStale(final N5Writer n5, final String dataset) throws IOException
+	{
+		if (n5.datasetExists(dataset))
+			n5.setAttribute(dataset, STALE_KEY, true);
+	}
+
+	/**
+	 * @return {@code true} if the snapshot in {@code dataset} was {@link #markStale(N5Writer, String) marked stale}
+	 */
+	public static boolean isMarkedStale(final N5Reader n5, final String dataset) throws IOException
+	{
+		return n5.datasetExists(dataset)
+		       && Optional.ofNullable(n5.getAttribute(dataset, STALE_KEY, Boolean.class)).orElse(false);
+	}
+
+	/**
+	 * @return all snapshots in {@code group} that were {@link #markStale(N5Writer, String) marked stale}
+	 */
+	public static List<String> staleSnapshots(final N5Reader n5, final String group) throws IOException
+	{
+		final List<String> stale = new ArrayList<>();
+		if (!n5.exists(group))
+			return stale;
+		for (final String name : n5.list(group))
+			if (isMarkedStale(n5, group + "/" + name))
+				stale.add(group + "/" + name);
+		return stale;
+	}
+
+	/**
+	 * @return flat indices of the blocks in the snapshot, or an empty array if {@code dataset} is not a complete
+	 * snapshot.
+	 */
+	public static long[] blocks(final N5Reader n5, final String dataset) throws IOException
+	{
+		return n5.datasetExists(dataset)
+		       ? Optional.ofNullable(n5.getAttribute(dataset, BLOCKS_KEY, long[].class)).orElseGet(() -> new long[] {})
+		       : new long[] {};
+	}
+
+	/**
+	 * @return canvas stored in {@code dataset}. Only the values inside {@link #blocks(N5Reader, String)} are valid.
+	 */
+	@SuppressWarnings("unchecked")
+	public static CachedCellImg<UnsignedLongType, ?> open(final N5Reader n5, final String dataset) throws IOException
+	{
+		return (CachedCellImg<UnsignedLongType, ?>) (RandomAccessibleInterval<UnsignedLongType>) N5Utils.open(
+				n5,
+				dataset);
+	}
+
+}
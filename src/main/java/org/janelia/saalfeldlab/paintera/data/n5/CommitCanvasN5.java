@@ -50,6 +50,9 @@ import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.paintera.N5Helpers;
 import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
 import org.janelia.saalfeldlab.paintera.meshes.cache.BlocksForLabelFromFile;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.janelia.saalfeldlab.util.HashWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +62,18 @@ public class CommitCanvasN5 implements BiConsumer<CachedCellImg<UnsignedLongType
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final LatencyHistogram COMMIT_TIME = MetricsRegistry.global().histogram("canvas.commit.n5");
+
+	private static final Counter COMMITTED_BLOCKS = MetricsRegistry.global().counter("canvas.commit.n5.blocks");
+
+	private static final Counter FAILED_COMMITS = MetricsRegistry.global().counter("canvas.commit.n5.failed");
+
+	/**
+	 * Attribute of the target dataset that counts successful commits, so that snapshots of a canvas can tell whether
+	 * the dataset changed since they were taken.
+	 */
+	public static final String COMMIT_COUNT_KEY = "canvasCommitCount";
+
 	private final N5Writer n5;
 
 	private final String dataset;
@@ -80,10 +95,31 @@ public class CommitCanvasN5 implements BiConsumer<CachedCellImg<UnsignedLongType
 		return this.dataset;
 	}
 
+	/**
+	 * @return number of canvases that were committed into {@link #dataset()}
+	 */
+	public long commitCount() throws IOException
+	{
+		return Optional.ofNullable(n5.getAttribute(this.dataset, COMMIT_COUNT_KEY, Long.class)).orElse(0L);
+	}
+
+	/**
+	 * Increment {@link #COMMIT_COUNT_KEY} of {@code dataset}. N5 has no atomic attribute updates, so this is a read
+	 * followed by a write. Synchronized so that concurrent commits within this JVM cannot lose an increment; commits
+	 * into the same dataset from separate processes at the same time are not guarded against.
+	 */
+	private static synchronized void incrementCommitCount(final N5Writer n5, final String dataset)
+	throws IOException
+	{
+		final long count = Optional.ofNullable(n5.getAttribute(dataset, COMMIT_COUNT_KEY, Long.class)).orElse(0L);
+		n5.setAttribute(dataset, COMMIT_COUNT_KEY, count + 1);
+	}
+
 	@Override
 	public void accept(final CachedCellImg<UnsignedLongType, ?> canvas, final long[] blocks)
 	{
 		LOG.info("Committing canvas");
+		final long start = System.nanoTime();
 		try
 		{
 			final boolean isPainteraDataset = N5Helpers.isPainteraDataset(n5, this.dataset);
@@ -552,13 +588,18 @@ public class CommitCanvasN5 implements BiConsumer<CachedCellImg<UnsignedLongType
 				//					throw new RuntimeException( "multi-scale export not implemented yet!" );
 			}
 
+			incrementCommitCount(n5, this.dataset);
+			COMMITTED_BLOCKS.add(blocks.length);
+
 			//				if ( isIntegerType() )
 			//					commitForIntegerType( n5, dataset, canvas );
 		} catch (final IOException | ReflectionException e)
 		{
+			FAILED_COMMITS.increment();
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		COMMIT_TIME.recordSince(start);
 		LOG.info("Finished commiting canvas");
 	}
 
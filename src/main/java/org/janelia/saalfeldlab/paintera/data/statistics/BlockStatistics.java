@@ -0,0 +1,166 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import java.util.Arrays;
+
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Minimum, maximum, and coarse histogram of the values in a block. All statistics of a {@link StatisticsPyramid}
+ * share the same histogram range so that they can be merged; values outside of the range are counted in the first or
+ * last bin.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class BlockStatistics
+{
+
+	private final double min;
+
+	private final double max;
+
+	private final double histogramMin;
+
+	private final double histogramMax;
+
+	private final long[] histogram;
+
+	private final long count;
+
+	public BlockStatistics(
+			final double min,
+			final double max,
+			final double histogramMin,
+			final double histogramMax,
+			final long[] histogram)
+	{
+		super();
+		this.min = min;
+		this.max = max;
+		this.histogramMin = histogramMin;
+		this.histogramMax = histogramMax;
+		this.histogram = histogram;
+		this.count = Arrays.stream(histogram).sum();
+	}
+
+	public static BlockStatistics empty(final int numBins, final double histogramMin, final double histogramMax)
+	{
+		return new BlockStatistics(
+				Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY,
+				histogramMin,
+				histogramMax,
+				new long[numBins]);
+	}
+
+	public static <T extends RealType<T>> BlockStatistics compute(
+			final Iterable<T> values,
+			final int numBins,
+			final double histogramMin,
+			final double histogramMax)
+	{
+		final long[] histogram = new long[numBins];
+		final double scale     = histogramMax > histogramMin ? numBins / (histogramMax - histogramMin) : 0.0;
+		double       min       = Double.POSITIVE_INFINITY;
+		double       max       = Double.NEGATIVE_INFINITY;
+		for (final T t : values)
+		{
+			final double value = t.getRealDouble();
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			++histogram[Math.max(Math.min((int) ((value - histogramMin) * scale), numBins - 1), 0)];
+		}
+		return new BlockStatistics(min, max, histogramMin, histogramMax, histogram);
+	}
+
+	/**
+	 * @return statistics of the union of the values of {@code this} and {@code other}, which must have the same
+	 * histogram range
+	 */
+	public BlockStatistics merge(final BlockStatistics other)
+	{
+		final long[] histogram = this.histogram.clone();
+		for (int bin = 0; bin < histogram.length; ++bin)
+		{
+			histogram[bin] += other.histogram[bin];
+		}
+		return new BlockStatistics(
+				Math.min(this.min, other.min),
+				Math.max(this.max, other.max),
+				histogramMin,
+				histogramMax,
+				histogram);
+	}
+
+	/**
+	 * Estimate the {@code q}-quantile from the histogram, assuming values are distributed uniformly within each bin.
+	 *
+	 * @return estimated quantile, within {@code [min(), max()]}
+	 */
+	public double quantile(final double q)
+	{
+		if (isEmpty())
+		{
+			return Double.NaN;
+		}
+		final double target     = q * count;
+		final double binWidth   = (histogramMax - histogramMin) / histogram.length;
+		long         cumulative = 0;
+		for (int bin = 0; bin < histogram.length; ++bin)
+		{
+			if (histogram[bin] > 0 && cumulative + histogram[bin] >= target)
+			{
+				final double fraction = (target - cumulative) / histogram[bin];
+				return Math.max(Math.min(histogramMin + (bin + fraction) * binWidth, max), min);
+			}
+			cumulative += histogram[bin];
+		}
+		return max;
+	}
+
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+
+	public double min()
+	{
+		return min;
+	}
+
+	public double max()
+	{
+		return max;
+	}
+
+	public double histogramMin()
+	{
+		return histogramMin;
+	}
+
+	public double histogramMax()
+	{
+		return histogramMax;
+	}
+
+	public int numBins()
+	{
+		return histogram.length;
+	}
+
+	public long count(final int bin)
+	{
+		return histogram[bin];
+	}
+
+	public long count()
+	{
+		return count;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("{min=%f max=%f count=%d}", min, max, count);
+	}
+
+}
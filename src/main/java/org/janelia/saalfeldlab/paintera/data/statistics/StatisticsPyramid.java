@@ -0,0 +1,409 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import bdv.util.MipmapTransforms;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import net.imglib2.FinalInterval;
+import net.imglib2.FinalRealInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-block {@link BlockStatistics} for all scale levels of a real valued {@link DataSource}, on the cell grid of each
+ * level. Levels are computed in the background, from the coarsest to the finest level, so that coarse statistics of
+ * the whole dataset are available almost immediately. If a {@link Store} is given, levels are read from it if
+ * present, and written to it after they were computed.
+ *
+ * Only coarse levels are kept in memory: levels are computed until the total number of blocks would exceed a bound,
+ * finer levels are neither computed nor read from the store. The merged statistics of each level are computed once
+ * when the level becomes available.
+ *
+ * The histogram range of all blocks is the value range of the coarsest level. Finer levels may contain values outside
+ * of that range, which are counted in the first or last bin; minimum and maximum are exact at every level.
+ */
+public class StatisticsPyramid<D extends RealType<D>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int DEFAULT_NUM_BINS = 64;
+
+	// about 20MB of statistics per source
+	public static final long DEFAULT_MAX_BLOCKS = 1 << 15;
+
+	// blocks of sources that are not cell images
+	private static final int DEFAULT_BLOCK_SIZE = 64;
+
+	/**
+	 * Persistent storage of the statistics of a level.
+	 */
+	public interface Store
+	{
+
+		/**
+		 * @return statistics of all blocks of {@code grid}, or {@link Optional#empty()} if none or incompatible
+		 * statistics were stored for {@code level}
+		 */
+		Optional<BlockStatistics[]> read(int level, CellGrid grid, int numBins) throws IOException;
+
+		void write(int level, CellGrid grid, BlockStatistics[] statistics) throws IOException;
+
+		/**
+		 * @return {@code true} if {@link #write(int, CellGrid, BlockStatistics[])} creates data in a container that
+		 * is not managed by Paintera, which requires permission of the user
+		 */
+		default boolean requiresPermission()
+		{
+			return false;
+		}
+
+	}
+
+	private final DataSource<D, ?> source;
+
+	private final int numBins;
+
+	private final Store store;
+
+	private final long maxBlocks;
+
+	private final CellGrid[] grids;
+
+	private final AtomicReferenceArray<BlockStatistics[]> statistics;
+
+	private final AtomicReferenceArray<BlockStatistics> mergedStatistics;
+
+	private final AtomicInteger finestLevel;
+
+	private final ReadOnlyIntegerWrapper finestLevelProperty;
+
+	private Future<?> computation = null;
+
+	/**
+	 * @param store
+	 * 		persistent storage, may be {@code null}
+	 * @param maxBlocks
+	 * 		maximum total number of blocks of all computed levels. The coarsest level is always computed.
+	 */
+	public StatisticsPyramid(final DataSource<D, ?> source, final int numBins, final Store store, final long maxBlocks)
+	{
+		super();
+		this.source = source;
+		this.numBins = numBins;
+		this.store = store;
+		this.maxBlocks = maxBlocks;
+		this.grids = new CellGrid[source.getNumMipmapLevels()];
+		Arrays.setAll(grids, level -> gridFor(source.getDataSource(0, level)));
+		this.statistics = new AtomicReferenceArray<>(grids.length);
+		this.mergedStatistics = new AtomicReferenceArray<>(grids.length);
+		this.finestLevel = new AtomicInteger(grids.length);
+		this.finestLevelProperty = new ReadOnlyIntegerWrapper(grids.length);
+	}
+
+	/**
+	 * @return pyramid for {@code source}, persisted next to the dataset if {@code source} is a {@link N5DataSource},
+	 * or {@link Optional#empty()} if {@code source} is not real valued
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static Optional<StatisticsPyramid<?>> forSource(final DataSource<?, ?> source)
+	{
+		if (!(source.getDataType() instanceof RealType<?>))
+		{
+			return Optional.empty();
+		}
+		final Store store = source instanceof N5DataSource<?, ?>
+		                    ? new StatisticsPyramidN5(((N5DataSource<?, ?>) source).meta())
+		                    : null;
+		return Optional.of(new StatisticsPyramid(source, DEFAULT_NUM_BINS, store, DEFAULT_MAX_BLOCKS));
+	}
+
+	/**
+	 * Start computing all levels on {@code es}, unless already started.
+	 *
+	 * @param mayWrite
+	 * 		asked at most once, on the computing thread, before computed levels are written to a {@link Store} that
+	 * 		{@link Store#requiresPermission() requires permission}
+	 */
+	public synchronized void computeInBackground(final ExecutorService es, final BooleanSupplier mayWrite)
+	{
+		if (computation == null)
+		{
+			computation = es.submit(() -> computeAll(
+					mayWrite,
+					level -> InvokeOnJavaFXApplicationThread.invoke(() -> finestLevelProperty.set(level))));
+		}
+	}
+
+	/**
+	 * @return finest level for which statistics are available, or {@link #numLevels()} if none are available. Updated
+	 * on the JavaFX application thread.
+	 */
+	public ReadOnlyIntegerProperty finestLevelProperty()
+	{
+		return finestLevelProperty.getReadOnlyProperty();
+	}
+
+	public int numLevels()
+	{
+		return grids.length;
+	}
+
+	public CellGrid grid(final int level)
+	{
+		return grids[level];
+	}
+
+	/**
+	 * @return statistics of the blocks of {@code level} that overlap {@code interval}, or {@link Optional#empty()} if
+	 * {@code level} was not computed yet
+	 */
+	public Optional<BlockStatistics> statistics(final int level, final Interval interval)
+	{
+		final BlockStatistics[] blocks = statistics.get(level);
+		if (blocks == null)
+		{
+			return Optional.empty();
+		}
+
+		final CellGrid grid    = grids[level];
+		final long[]   clipMin = new long[grid.numDimensions()];
+		final long[]   clipMax = new long[grid.numDimensions()];
+		for (int d = 0; d < clipMin.length; ++d)
+		{
+			clipMin[d] = Math.max(interval.min(d), 0);
+			clipMax[d] = Math.min(interval.max(d), grid.imgDimension(d) - 1);
+			if (clipMax[d] < clipMin[d])
+			{
+				return Optional.of(BlockStatistics.empty(numBins, blocks[0].histogramMin(), blocks[0].histogramMax()));
+			}
+		}
+
+		final long[] minCell = new long[grid.numDimensions()];
+		final long[] maxCell = new long[grid.numDimensions()];
+		grid.getCellPosition(clipMin, minCell);
+		grid.getCellPosition(clipMax, maxCell);
+		final long[]           gridDimensions = grid.getGridDimensions();
+		final long[]           cellPosition   = new long[grid.numDimensions()];
+		final IntervalIterator cells          = new IntervalIterator(new FinalInterval(minCell, maxCell));
+		BlockStatistics        merged         = null;
+		while (cells.hasNext())
+		{
+			cells.fwd();
+			cells.localize(cellPosition);
+			final BlockStatistics block = blocks[(int) IntervalIndexer.positionToIndex(cellPosition, gridDimensions)];
+			merged = merged == null ? block : merged.merge(block);
+		}
+		return Optional.of(merged);
+	}
+
+	/**
+	 * @param viewerTransform
+	 * 		global to viewer transform of a viewer with size {@code width} x {@code height}
+	 *
+	 * @return statistics of the blocks visible in the viewer, at the level that the viewer renders or at the finest
+	 * computed level if that is coarser, or {@link Optional#empty()} if no level was computed yet
+	 */
+	public Optional<BlockStatistics> statistics(
+			final AffineTransform3D viewerTransform,
+			final double width,
+			final double height)
+	{
+		final int level = Math.max(MipmapTransforms.getBestMipMapLevel(viewerTransform, source, 0), finestLevel.get());
+		if (level >= grids.length)
+		{
+			return Optional.empty();
+		}
+		final AffineTransform3D sourceToViewer = new AffineTransform3D();
+		source.getSourceTransform(0, level, sourceToViewer);
+		sourceToViewer.preConcatenate(viewerTransform);
+		final FinalRealInterval screen = new FinalRealInterval(new double[] {0, 0, 0}, new double[] {width, height, 0});
+		return statistics(level, Intervals.smallestContainingInterval(sourceToViewer.inverse().estimateBounds(screen)));
+	}
+
+	/**
+	 * @return statistics of the whole dataset at the finest available level, or {@link Optional#empty()} if no level
+	 * was computed yet. Merged once per level, cheap to call.
+	 */
+	public Optional<BlockStatistics> statistics()
+	{
+		final int level = finestLevel.get();
+		return level < grids.length
+		       ? Optional.ofNullable(mergedStatistics.get(level))
+		       : Optional.empty();
+	}
+
+	/**
+	 * Compute all levels on the calling thread, from the coarsest level to the finest level within the block bound.
+	 *
+	 * @param onLevel
+	 * 		called with each level after it became available
+	 */
+	void computeAll(final BooleanSupplier mayWrite, final IntConsumer onLevel)
+	{
+		double  histogramMin = Double.NaN;
+		double  histogramMax = Double.NaN;
+		long    totalBlocks  = 0;
+		Boolean writeLevels  = null;
+		for (int level = grids.length - 1; level >= 0; --level)
+		{
+			if (Thread.currentThread().isInterrupted())
+			{
+				LOG.debug("Interrupted statistics of {} before level {}", source.getName(), level);
+				return;
+			}
+
+			totalBlocks += Intervals.numElements(grids[level].getGridDimensions());
+			if (totalBlocks > maxBlocks && level < grids.length - 1)
+			{
+				LOG.debug("Not computing statistics of {} at level {} and finer: more than {} blocks", source.getName(),
+						level, maxBlocks);
+				return;
+			}
+
+			BlockStatistics[] blocks = read(level).orElse(null);
+			if (blocks != null
+					&& !Double.isNaN(histogramMin)
+					&& (blocks[0].histogramMin() != histogramMin || blocks[0].histogramMax() != histogramMax))
+			{
+				LOG.debug("Stored level {} of {} has a different histogram range", level, source.getName());
+				blocks = null;
+			}
+
+			if (blocks == null)
+			{
+				if (Double.isNaN(histogramMin))
+				{
+					final double[] range = range(source.getDataSource(0, level));
+					histogramMin = range[0];
+					histogramMax = range[1];
+				}
+				blocks = compute(level, histogramMin, histogramMax);
+				if (writeLevels == null)
+				{
+					writeLevels = store != null && (!store.requiresPermission() || mayWrite.getAsBoolean());
+				}
+				if (writeLevels)
+				{
+					write(level, blocks);
+				}
+			}
+			histogramMin = blocks[0].histogramMin();
+			histogramMax = blocks[0].histogramMax();
+
+			statistics.set(level, blocks);
+			mergedStatistics.set(level, merge(blocks));
+			finestLevel.set(level);
+			onLevel.accept(level);
+			LOG.debug("Statistics of {} available at level {}", source.getName(), level);
+		}
+	}
+
+	private BlockStatistics[] compute(final int level, final double histogramMin, final double histogramMax)
+	{
+		final RandomAccessibleInterval<D> data         = source.getDataSource(0, level);
+		final CellGrid                    grid         = grids[level];
+		final BlockStatistics[]           blocks       = new BlockStatistics[(int) Intervals.numElements(grid
+				.getGridDimensions())];
+		final long[]                      cellPosition = new long[grid.numDimensions()];
+		final long[]                      cellMin      = new long[grid.numDimensions()];
+		final long[]                      cellMax      = new long[grid.numDimensions()];
+		final int[]                       cellDims     = new int[grid.numDimensions()];
+		for (int block = 0; block < blocks.length; ++block)
+		{
+			grid.getCellGridPositionFlat(block, cellPosition);
+			grid.getCellDimensions(cellPosition, cellMin, cellDims);
+			Arrays.setAll(cellMax, d -> cellMin[d] + cellDims[d] - 1);
+			blocks[block] = BlockStatistics.compute(
+					Views.interval(data, cellMin, cellMax),
+					numBins,
+					histogramMin,
+					histogramMax);
+		}
+		return blocks;
+	}
+
+	private Optional<BlockStatistics[]> read(final int level)
+	{
+		try
+		{
+			return store == null ? Optional.empty() : store.read(level, grids[level], numBins);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to read statistics of {} at level {}: {}", source.getName(), level, e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	private void write(final int level, final BlockStatistics[] blocks)
+	{
+		try
+		{
+			if (store != null)
+			{
+				store.write(level, grids[level], blocks);
+			}
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to write statistics of {} at level {}: {}", source.getName(), level, e.getMessage());
+		}
+	}
+
+	private static BlockStatistics merge(final BlockStatistics[] blocks)
+	{
+		BlockStatistics merged = blocks[0];
+		for (int block = 1; block < blocks.length; ++block)
+		{
+			merged = merged.merge(blocks[block]);
+		}
+		return merged;
+	}
+
+	private static <D extends RealType<D>> double[] range(final RandomAccessibleInterval<D> data)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (final D d : Views.flatIterable(data))
+		{
+			final double value = d.getRealDouble();
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		return new double[] {min, max};
+	}
+
+	private static CellGrid gridFor(final RandomAccessibleInterval<?> data)
+	{
+		if (data instanceof AbstractCellImg<?, ?, ?, ?>)
+		{
+			return ((AbstractCellImg<?, ?, ?, ?>) data).getCellGrid();
+		}
+		final int[] blockSize = new int[data.numDimensions()];
+		Arrays.fill(blockSize, DEFAULT_BLOCK_SIZE);
+		return new CellGrid(Intervals.dimensionsAsLongArray(data), blockSize);
+	}
+
+}
@@ -0,0 +1,182 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Optional;
+
+import net.imglib2.img.cell.CellGrid;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.DoubleArrayDataBlock;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.N5Helpers;
+import org.janelia.saalfeldlab.paintera.data.n5.N5Meta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store the statistics of a {@link StatisticsPyramid} next to its N5 dataset: in the {@value #STATISTICS_GROUP} group
+ * of a Paintera dataset, or in a sibling group with suffix {@value #STATISTICS_SUFFIX} otherwise. Each level is a
+ * {@link DataType#FLOAT64} dataset {@code s<level>} with one row {@code [min, max, histogram...]} per block. The
+ * {@value #GRID_DIMENSIONS_KEY} attribute is written last and marks a level as complete.
+ *
+ * Writing the sibling group of a dataset that is not a Paintera dataset adds data to a container that Paintera does
+ * not manage, and {@link #requiresPermission() requires permission}.
+ */
+public class StatisticsPyramidN5 implements StatisticsPyramid.Store
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final String STATISTICS_GROUP = "statistics";
+
+	public static final String STATISTICS_SUFFIX = "-statistics";
+
+	public static final String GRID_DIMENSIONS_KEY = "gridDimensions";
+
+	public static final String BLOCK_SIZE_KEY = "blockSize";
+
+	public static final String HISTOGRAM_MIN_KEY = "histogramMin";
+
+	public static final String HISTOGRAM_MAX_KEY = "histogramMax";
+
+	private static final int BLOCKS_PER_CHUNK = 4096;
+
+	private final N5Meta meta;
+
+	public StatisticsPyramidN5(final N5Meta meta)
+	{
+		super();
+		this.meta = meta;
+	}
+
+	@Override
+	public Optional<BlockStatistics[]> read(final int level, final CellGrid grid, final int numBins) throws IOException
+	{
+		final N5Reader n5      = meta.reader();
+		final String   dataset = dataset(n5, level);
+		if (!n5.datasetExists(dataset)
+				|| !Arrays.equals(grid.getGridDimensions(), n5.getAttribute(dataset, GRID_DIMENSIONS_KEY, long[].class))
+				|| !Arrays.equals(cellDimensions(grid), n5.getAttribute(dataset, BLOCK_SIZE_KEY, int[].class)))
+		{
+			return Optional.empty();
+		}
+
+		final DatasetAttributes attributes = n5.getDatasetAttributes(dataset);
+		if (attributes.getDimensions()[0] != 2 + numBins)
+		{
+			LOG.debug(
+					"Stored statistics in {} have {} bins, not {}",
+					dataset,
+					attributes.getDimensions()[0] - 2,
+					numBins);
+			return Optional.empty();
+		}
+		final double histogramMin = n5.getAttribute(dataset, HISTOGRAM_MIN_KEY, double.class);
+		final double histogramMax = n5.getAttribute(dataset, HISTOGRAM_MAX_KEY, double.class);
+
+		final BlockStatistics[] statistics = new BlockStatistics[(int) attributes.getDimensions()[1]];
+		for (int chunk = 0; chunk * BLOCKS_PER_CHUNK < statistics.length; ++chunk)
+		{
+			final DataBlock<?> block = n5.readBlock(dataset, attributes, new long[] {0, chunk});
+			if (block == null)
+			{
+				return Optional.empty();
+			}
+			final double[] data = (double[]) block.getData();
+			for (int row = 0; row < block.getSize()[1]; ++row)
+			{
+				final int    offset    = row * (2 + numBins);
+				final long[] histogram = new long[numBins];
+				Arrays.setAll(histogram, bin -> (long) data[offset + 2 + bin]);
+				statistics[chunk * BLOCKS_PER_CHUNK + row] = new BlockStatistics(
+						data[offset],
+						data[offset + 1],
+						histogramMin,
+						histogramMax,
+						histogram);
+			}
+		}
+		LOG.debug("Read statistics of {} blocks from {}", statistics.length, dataset);
+		return Optional.of(statistics);
+	}
+
+	@Override
+	public void write(final int level, final CellGrid grid, final BlockStatistics[] statistics) throws IOException
+	{
+		final N5Writer n5      = meta.writer();
+		final String   dataset = dataset(n5, level);
+		final int      numBins = statistics[0].numBins();
+
+		if (n5.exists(dataset))
+			n5.remove(dataset);
+
+		final DatasetAttributes attributes = new DatasetAttributes(
+				new long[] {2 + numBins, statistics.length},
+				new int[] {2 + numBins, BLOCKS_PER_CHUNK},
+				DataType.FLOAT64,
+				new GzipCompression()
+		);
+		n5.createDataset(dataset, attributes);
+		n5.setAttribute(dataset, HISTOGRAM_MIN_KEY, statistics[0].histogramMin());
+		n5.setAttribute(dataset, HISTOGRAM_MAX_KEY, statistics[0].histogramMax());
+
+		for (int chunk = 0; chunk * BLOCKS_PER_CHUNK < statistics.length; ++chunk)
+		{
+			final int      first   = chunk * BLOCKS_PER_CHUNK;
+			final int      numRows = Math.min(BLOCKS_PER_CHUNK, statistics.length - first);
+			final double[] data    = new double[numRows * (2 + numBins)];
+			for (int row = 0; row < numRows; ++row)
+			{
+				final BlockStatistics block  = statistics[first + row];
+				final int             offset = row * (2 + numBins);
+				data[offset] = block.min();
+				data[offset + 1] = block.max();
+				for (int bin = 0; bin < numBins; ++bin)
+					data[offset + 2 + bin] = block.count(bin);
+			}
+			n5.writeBlock(
+					dataset,
+					attributes,
+					new DoubleArrayDataBlock(new int[] {2 + numBins, numRows}, new long[] {0, chunk}, data));
+		}
+
+		// written last: statistics without grid attributes are incomplete
+		n5.setAttribute(dataset, BLOCK_SIZE_KEY, cellDimensions(grid));
+		n5.setAttribute(dataset, GRID_DIMENSIONS_KEY, grid.getGridDimensions());
+		LOG.debug("Wrote statistics of {} blocks into {}", statistics.length, dataset);
+	}
+
+	@Override
+	public boolean requiresPermission()
+	{
+		try
+		{
+			return !N5Helpers.isPainteraDataset(meta.reader(), meta.dataset());
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to check if {} is a Paintera dataset: {}", meta.dataset(), e.getMessage());
+			return true;
+		}
+	}
+
+	private String dataset(final N5Reader n5, final int level) throws IOException
+	{
+		final String group = N5Helpers.isPainteraDataset(n5, meta.dataset())
+		                     ? meta.dataset() + "/" + STATISTICS_GROUP
+		                     : meta.dataset() + STATISTICS_SUFFIX;
+		return group + "/s" + level;
+	}
+
+	private static int[] cellDimensions(final CellGrid grid)
+	{
+		final int[] cellDimensions = new int[grid.numDimensions()];
+		grid.cellDimensions(cellDimensions);
+		return cellDimensions;
+	}
+
+}
@@ -1,70 +1,230 @@
 package org.janelia.saalfeldlab.paintera.id;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.LongStream;
 
 import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class N5IdService implements IdService
+/**
+ * {@link IdService} that stores the maximum id in the {@value #MAX_ID_KEY} attribute of an N5 dataset. Ids are handed
+ * out lock-free from a counter. Instead of writing the attribute for every id, ranges of {@code leaseSize} ids are
+ * leased ahead of time and only the upper end of the lease is persisted asynchronously. The counter may run ahead of
+ * the lease while the next lease is being persisted. {@link #reconcile()} writes the largest id that was actually
+ * handed out. Owners should {@link #close()} the service when the project is closed; services that are still open at
+ * JVM shutdown are reconciled by a single shutdown hook that holds them weakly. After reconciliation, leases are
+ * persisted synchronously.
+ */
+public class N5IdService implements IdService, AutoCloseable
 {
 
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final String MAX_ID_KEY = "maxId";
+
+	public static final long DEFAULT_LEASE_SIZE = 1 << 12;
+
+	private static final Set<N5IdService> OPEN = Collections.synchronizedSet(Collections.newSetFromMap(new
+			WeakHashMap<>()));
+
+	static
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread(N5IdService::reconcileOpen, "n5-id-service-shutdown"));
+	}
+
 	private final N5Writer n5;
 
 	private final String dataset;
 
-	private long next;
+	private final long leaseSize;
+
+	/**
+	 * next id to be handed out
+	 */
+	private final AtomicLong next;
+
+	/**
+	 * all ids {@code < leaseEnd} are covered by the lease, only written while holding {@code this}
+	 */
+	private volatile long leaseEnd;
+
+	private long persistedMaxId;
+
+	private final ExecutorService persister = Executors.newSingleThreadExecutor(new NamedThreadFactory(
+			"n5-id-service-%d",
+			true));
+
+	/**
+	 * @param maxId
+	 * 		maximum id in use, the first id handed out is {@code maxId + 1}
+	 */
+	public N5IdService(final N5Writer n5, final String dataset, final long maxId)
+	{
+		this(n5, dataset, maxId, DEFAULT_LEASE_SIZE);
+	}
 
-	public N5IdService(final N5Writer n5, final String dataset, final long next)
+	/**
+	 * @param maxId
+	 * 		maximum id in use, the first id handed out is {@code maxId + 1}
+	 * @param leaseSize
+	 * 		number of ids that are leased at once
+	 */
+	public N5IdService(final N5Writer n5, final String dataset, final long maxId, final long leaseSize)
 	{
 		super();
 		this.n5 = n5;
 		this.dataset = dataset;
-		this.next = next;
+		this.leaseSize = Math.max(leaseSize, 1);
+		this.next = new AtomicLong(maxId + 1);
+		this.leaseEnd = maxId + 1;
+		this.persistedMaxId = maxId;
+		OPEN.add(this);
 	}
 
 	@Override
-	public synchronized void invalidate(final long id)
+	public void invalidate(final long id)
 	{
-		final long oldNext = next;
-		next = IdService.max(next, id + 1);
-		if (next != oldNext)
+		final long oldNext = next.get();
+		final long newNext = next.accumulateAndGet(id + 1, IdService::max);
+		if (newNext != oldNext)
 		{
-			serializeMaxId();
+			ensureLease(newNext);
 		}
 	}
 
 	@Override
-	public synchronized long next()
+	public long next()
+	{
+		final long id = next.getAndIncrement();
+		ensureLease(id + 1);
+		return id;
+	}
+
+	@Override
+	public long[] next(final int n)
 	{
-		++next;
-		serializeMaxId();
-		return next;
+		final long first = next.getAndAdd(n);
+		ensureLease(first + n);
+		return LongStream.range(first, first + n).toArray();
 	}
 
 	@Override
-	public synchronized long[] next(final int n)
+	public boolean isInvalidated(final long id)
+	{
+		return id < next.get();
+	}
+
+	/**
+	 * {@link #reconcile() Reconcile} and stop tracking this service for reconciliation at shutdown.
+	 */
+	@Override
+	public void close()
 	{
-		final long[] ids = LongStream.range(next, next + n).toArray();
-		next += n;
-		serializeMaxId();
-		return ids;
+		reconcile();
+		OPEN.remove(this);
 	}
 
-	private void serializeMaxId()
+	/**
+	 * Wait for pending writes and persist the largest id that was handed out. Unused ids of the current lease are
+	 * returned. Later leases are persisted synchronously.
+	 */
+	public void reconcile()
 	{
+		synchronized (this)
+		{
+			persister.shutdown();
+		}
 		try
 		{
-			n5.setAttribute(dataset, "maxId", next);
-		} catch (final IOException e)
+			persister.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this)
 		{
-			throw new RuntimeException(e);
+			final long maxId = next.get() - 1;
+			// ids after maxId are not covered by a lease anymore
+			leaseEnd = maxId + 1;
+			if (maxId == persistedMaxId)
+				return;
+			try
+			{
+				n5.setAttribute(dataset, MAX_ID_KEY, maxId);
+				persistedMaxId = maxId;
+				LOG.debug("Reconciled {} in {} to {}", MAX_ID_KEY, dataset, maxId);
+			} catch (final IOException e)
+			{
+				LOG.error("Unable to write {} into {}: {}", MAX_ID_KEY, dataset, e.getMessage());
+			}
 		}
 	}
 
-	@Override
-	public boolean isInvalidated(final long id)
+	/**
+	 * Extend the lease if {@code end} is within half a lease of its end. The common case only reads the volatile
+	 * {@code leaseEnd} and does not lock.
+	 *
+	 * @param end
+	 * 		all ids {@code < end} were handed out
+	 */
+	private void ensureLease(final long end)
 	{
-		return id < next;
+		if (end + leaseSize / 2 <= leaseEnd)
+			return;
+		synchronized (this)
+		{
+			if (end + leaseSize / 2 <= leaseEnd)
+				return;
+			leaseEnd = end + leaseSize;
+			final long maxId = leaseEnd - 1;
+			if (persister.isShutdown())
+				persist(maxId);
+			else
+				persister.submit(() -> persist(maxId));
+		}
+	}
+
+	private static void reconcileOpen()
+	{
+		final N5IdService[] open;
+		synchronized (OPEN)
+		{
+			open = OPEN.toArray(new N5IdService[0]);
+		}
+		for (final N5IdService service : open)
+			service.reconcile();
+	}
+
+	private void persist(final long maxId)
+	{
+		synchronized (this)
+		{
+			// skip if a larger lease was requested in the meantime, its task is already queued
+			if (maxId != leaseEnd - 1 || maxId == persistedMaxId)
+				return;
+		}
+		try
+		{
+			n5.setAttribute(dataset, MAX_ID_KEY, maxId);
+			synchronized (this)
+			{
+				persistedMaxId = maxId;
+			}
+			LOG.trace("Leased ids up to {} in {}", maxId, dataset);
+		} catch (final IOException e)
+		{
+			LOG.error("Unable to write {} into {}: {}", MAX_ID_KEY, dataset, e.getMessage());
+		}
 	}
 
 }
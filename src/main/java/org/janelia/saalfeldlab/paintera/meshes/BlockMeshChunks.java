@@ -0,0 +1,183 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+
+/**
+ * Spatial grouping of the block meshes of a shape into chunks of up to {@value #BLOCKS_PER_CHUNK_DIMENSION} blocks
+ * along each dimension. Block meshes are reported as they are generated, in any order and from any thread. When all
+ * blocks of a chunk were reported, the chunk is complete and its block meshes can be {@link #merge(List) merged}
+ * into a single mesh that replaces the block meshes in the scene.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class BlockMeshChunks<T>
+{
+
+	public static final int BLOCKS_PER_CHUNK_DIMENSION = 4;
+
+	public class Chunk
+	{
+
+		private final List<ShapeKey<T>> blocks = new ArrayList<>();
+
+		private final Map<ShapeKey<T>, Pair<float[], float[]>> meshes = new HashMap<>();
+
+		private ShapeKey<T> key;
+
+		private int remaining;
+
+		/**
+		 * @return key that covers all blocks of this chunk
+		 */
+		public ShapeKey<T> key()
+		{
+			return key;
+		}
+
+		public List<ShapeKey<T>> blocks()
+		{
+			return Collections.unmodifiableList(blocks);
+		}
+
+		/**
+		 * @return meshes of all blocks that were generated successfully, in the order of {@link #blocks()}
+		 */
+		public List<Pair<float[], float[]>> meshes()
+		{
+			final List<Pair<float[], float[]>> meshes = new ArrayList<>();
+			synchronized (this)
+			{
+				for (final ShapeKey<T> block : blocks)
+				{
+					final Pair<float[], float[]> mesh = this.meshes.get(block);
+					if (mesh != null)
+					{
+						meshes.add(mesh);
+					}
+				}
+			}
+			return meshes;
+		}
+
+	}
+
+	private final Map<ShapeKey<T>, Chunk> chunks = new HashMap<>();
+
+	/**
+	 * @param blocks
+	 * 		keys of all block meshes of a shape. Blocks must be aligned to a grid, the block size is the largest block
+	 * 		along each dimension.
+	 */
+	public BlockMeshChunks(final List<ShapeKey<T>> blocks)
+	{
+		if (blocks.isEmpty())
+		{
+			return;
+		}
+
+		final int    n         = blocks.get(0).min().length;
+		final long[] blockSize = new long[n];
+		for (final ShapeKey<T> block : blocks)
+		{
+			for (int d = 0; d < n; ++d)
+			{
+				blockSize[d] = Math.max(blockSize[d], block.max()[d] - block.min()[d] + 1);
+			}
+		}
+
+		final Map<List<Long>, Chunk> byPosition = new HashMap<>();
+		final Long[]                 position   = new Long[n];
+		for (final ShapeKey<T> block : blocks)
+		{
+			for (int d = 0; d < n; ++d)
+			{
+				position[d] = Math.floorDiv(block.min()[d], blockSize[d] * BLOCKS_PER_CHUNK_DIMENSION);
+			}
+			final Chunk chunk = byPosition.computeIfAbsent(Arrays.asList(position.clone()), p -> new Chunk());
+			chunk.blocks.add(block);
+			chunks.put(block, chunk);
+		}
+
+		for (final Chunk chunk : byPosition.values())
+		{
+			final ShapeKey<T> first = chunk.blocks.get(0);
+			final long[]      min   = first.min().clone();
+			final long[]      max   = first.max().clone();
+			for (final ShapeKey<T> block : chunk.blocks)
+			{
+				for (int d = 0; d < n; ++d)
+				{
+					min[d] = Math.min(min[d], block.min()[d]);
+					max[d] = Math.max(max[d], block.max()[d]);
+				}
+			}
+			chunk.key = new ShapeKey<>(
+					first.shapeId(),
+					first.scaleIndex(),
+					first.simplificationIterations(),
+					first.smoothingLambda(),
+					first.smoothingIterations(),
+					first.meshExtraction(),
+					min,
+					max);
+			chunk.remaining = chunk.blocks.size();
+		}
+	}
+
+	/**
+	 * Report that {@code block} is done.
+	 *
+	 * @param mesh
+	 * 		mesh of {@code block}, or {@code null} if it could not be generated
+	 *
+	 * @return chunk of {@code block} if it is complete with this block and has more than one block, {@code null}
+	 * otherwise. Each chunk is returned at most once.
+	 */
+	public Chunk complete(final ShapeKey<T> block, final Pair<float[], float[]> mesh)
+	{
+		final Chunk chunk = chunks.get(block);
+		if (chunk == null)
+		{
+			return null;
+		}
+		synchronized (chunk)
+		{
+			if (mesh != null)
+			{
+				chunk.meshes.put(block, mesh);
+			}
+			return --chunk.remaining == 0 && chunk.blocks.size() > 1 ? chunk : null;
+		}
+	}
+
+	/**
+	 * @return concatenation of the vertices and normals of {@code meshes}
+	 */
+	public static Pair<float[], float[]> merge(final List<Pair<float[], float[]>> meshes)
+	{
+		int size = 0;
+		for (final Pair<float[], float[]> mesh : meshes)
+		{
+			size += mesh.getA().length;
+		}
+		final float[] vertices = new float[size];
+		final float[] normals  = new float[size];
+		int           offset   = 0;
+		for (final Pair<float[], float[]> mesh : meshes)
+		{
+			System.arraycopy(mesh.getA(), 0, vertices, offset, mesh.getA().length);
+			System.arraycopy(mesh.getB(), 0, normals, offset, mesh.getB().length);
+			offset += mesh.getA().length;
+		}
+		return new ValuePair<>(vertices, normals);
+	}
+
+}
@@ -0,0 +1,196 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Collection;
+
+import gnu.trove.TLongCollection;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Immutable fragment set of a segment, as handed out by {@link SegmentFragmentsRegistry}. The hash code is computed
+ * once at construction, so that {@link ShapeKey keys} and caches that use the set as identifier do not iterate over
+ * all fragments for every lookup. Equality is content-based, i.e. consistent with any other {@link TLongHashSet}, but
+ * sets with different hash codes or sizes are rejected without comparing their elements. All mutators, including
+ * {@link TLongIterator#remove()} of {@link #iterator()}, throw {@link UnsupportedOperationException}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public final class InternedFragmentSet extends TLongHashSet
+{
+
+	private final long segment;
+
+	private final long version;
+
+	private final int hash;
+
+	// false while the super constructor adds the fragments
+	private final boolean isSealed;
+
+	InternedFragmentSet(final long segment, final long version, final TLongCollection fragments)
+	{
+		super(fragments);
+		this.segment = segment;
+		this.version = version;
+		this.hash = super.hashCode();
+		this.isSealed = true;
+	}
+
+	public long segment()
+	{
+		return this.segment;
+	}
+
+	/**
+	 * @return version of the fragments of {@link #segment()}, increases whenever the fragments of the segment are
+	 * re-interned after a change of the assignment.
+	 */
+	public long version()
+	{
+		return this.version;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(final Object other)
+	{
+		if (other == this)
+			return true;
+		if (other instanceof InternedFragmentSet)
+		{
+			final InternedFragmentSet that = (InternedFragmentSet) other;
+			if (that.hash != this.hash || that.size() != this.size())
+				return false;
+		}
+		return super.equals(other);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("{segment=%d, version=%d, size=%d}", segment, version, size());
+	}
+
+	@Override
+	public boolean add(final long fragment)
+	{
+		checkMutable();
+		return super.add(fragment);
+	}
+
+	@Override
+	public boolean addAll(final Collection<? extends Long> collection)
+	{
+		checkMutable();
+		return super.addAll(collection);
+	}
+
+	@Override
+	public boolean addAll(final TLongCollection collection)
+	{
+		checkMutable();
+		return super.addAll(collection);
+	}
+
+	@Override
+	public boolean addAll(final long[] array)
+	{
+		checkMutable();
+		return super.addAll(array);
+	}
+
+	@Override
+	public boolean remove(final long fragment)
+	{
+		checkMutable();
+		return super.remove(fragment);
+	}
+
+	@Override
+	public boolean removeAll(final Collection<?> collection)
+	{
+		checkMutable();
+		return super.removeAll(collection);
+	}
+
+	@Override
+	public boolean removeAll(final TLongCollection collection)
+	{
+		checkMutable();
+		return super.removeAll(collection);
+	}
+
+	@Override
+	public boolean removeAll(final long[] array)
+	{
+		checkMutable();
+		return super.removeAll(array);
+	}
+
+	@Override
+	public boolean retainAll(final Collection<?> collection)
+	{
+		checkMutable();
+		return super.retainAll(collection);
+	}
+
+	@Override
+	public boolean retainAll(final TLongCollection collection)
+	{
+		checkMutable();
+		return super.retainAll(collection);
+	}
+
+	@Override
+	public boolean retainAll(final long[] array)
+	{
+		checkMutable();
+		return super.retainAll(array);
+	}
+
+	@Override
+	public void clear()
+	{
+		checkMutable();
+		super.clear();
+	}
+
+	@Override
+	public TLongIterator iterator()
+	{
+		final TLongIterator iterator = super.iterator();
+		return new TLongIterator()
+		{
+			@Override
+			public long next()
+			{
+				return iterator.next();
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return iterator.hasNext();
+			}
+
+			@Override
+			public void remove()
+			{
+				checkMutable();
+				iterator.remove();
+			}
+		};
+	}
+
+	private void checkMutable()
+	{
+		if (isSealed)
+			throw new UnsupportedOperationException("Fragments of segment " + segment + " are immutable.");
+	}
+
+}
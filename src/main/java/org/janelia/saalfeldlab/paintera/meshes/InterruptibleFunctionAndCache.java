@@ -1,6 +1,10 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
+import java.util.function.Predicate;
+
+import net.imglib2.cache.Cache;
 import net.imglib2.cache.UncheckedCache;
+import org.janelia.saalfeldlab.paintera.cache.SoftRefInvalidatableCache;
 
 public class InterruptibleFunctionAndCache<K, V> implements UncheckedCache<K, V>, InterruptibleFunction<K, V>
 {
@@ -9,13 +13,35 @@ public class InterruptibleFunctionAndCache<K, V> implements UncheckedCache<K, V>
 
 	private final Interruptible<K> interrupt;
 
+	// null if individual entries cannot be invalidated
+	private final SoftRefInvalidatableCache<K, V> invalidatable;
+
 	public InterruptibleFunctionAndCache(
 			final UncheckedCache<K, V> cacheDelegate,
 			final Interruptible<K> interrupt)
+	{
+		this(cacheDelegate, interrupt, null);
+	}
+
+	public InterruptibleFunctionAndCache(
+			final Cache<K, V> cache,
+			final Interruptible<K> interrupt)
+	{
+		this(
+				cache.unchecked(),
+				interrupt,
+				cache instanceof SoftRefInvalidatableCache<?, ?> ? (SoftRefInvalidatableCache<K, V>) cache : null);
+	}
+
+	private InterruptibleFunctionAndCache(
+			final UncheckedCache<K, V> cacheDelegate,
+			final Interruptible<K> interrupt,
+			final SoftRefInvalidatableCache<K, V> invalidatable)
 	{
 		super();
 		this.cacheDelegate = cacheDelegate;
 		this.interrupt = interrupt;
+		this.invalidatable = invalidatable;
 	}
 
 	@Override
@@ -24,6 +50,17 @@ public class InterruptibleFunctionAndCache<K, V> implements UncheckedCache<K, V>
 		this.cacheDelegate.invalidateAll();
 	}
 
+	/**
+	 * Invalidate all entries whose key satisfies {@code condition}. Does nothing unless the cache is a
+	 * {@link SoftRefInvalidatableCache}.
+	 *
+	 * @return number of invalidated entries
+	 */
+	public int invalidateIf(final Predicate<? super K> condition)
+	{
+		return this.invalidatable == null ? 0 : this.invalidatable.invalidateIf(condition);
+	}
+
 	@Override
 	public V apply(final K key)
 	{
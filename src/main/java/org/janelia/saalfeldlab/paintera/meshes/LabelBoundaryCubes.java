@@ -0,0 +1,479 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.label.LabelMultisetType.Entry;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multi-label surface of a block: all cubes visited by {@link MarchingCubes} whose corners do not carry identical
+ * labels, each tagged with the labels of its eight corners. Corners share a palette of distinct label sets, corners
+ * outside of the data are unlabeled. The labels are sampled once per block. Afterwards, the mesh of any set of
+ * fragments is generated by filtering the cubes by fragment membership of their corners, without accessing the data.
+ * Merging or splitting segments therefore does not re-sample any voxels. The generated mesh is identical to the
+ * mesh of the binary mask of the fragments, for any {@link MeshExtraction}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class LabelBoundaryCubes
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * Labels of a single voxel.
+	 */
+	public interface Labels<T>
+	{
+		/**
+		 * Add all labels of {@code value} to {@code labels}.
+		 */
+		void labels(T value, TLongArrayList labels);
+	}
+
+	private static final int UNLABELED = 0;
+
+	// check for interruption after this many cubes
+	private static final int INTERRUPTION_CHECK_MASK = (1 << 12) - 1;
+
+	private final long[] min;
+
+	private final int[] cubeSize;
+
+	private final int[] numCubes;
+
+	/**
+	 * distinct label sets of all corners, the first entry is {@link #UNLABELED}
+	 */
+	private final long[][] palette;
+
+	/**
+	 * flat index of each boundary cube
+	 */
+	private final int[] cubes;
+
+	/**
+	 * palette indices of the eight corners of each boundary cube, in the order of the bits of the marching cubes
+	 * table index
+	 */
+	private final int[] corners;
+
+	private LabelBoundaryCubes(
+			final long[] min,
+			final int[] cubeSize,
+			final int[] numCubes,
+			final long[][] palette,
+			final int[] cubes,
+			final int[] corners)
+	{
+		this.min = min;
+		this.cubeSize = cubeSize;
+		this.numCubes = numCubes;
+		this.palette = palette;
+		this.cubes = cubes;
+		this.corners = corners;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> Labels<T> labelsForType(final T t)
+	{
+		if (t instanceof LabelMultisetType) { return (Labels<T>) new LabelMultisetTypeLabels(); }
+
+		if (t instanceof IntegerType<?>) { return (Labels<T>) new IntegerTypeLabels<>(); }
+
+		return null;
+	}
+
+	/**
+	 * @return number of cubes whose corners do not carry identical labels.
+	 */
+	public int numBoundaryCubes()
+	{
+		return cubes.length;
+	}
+
+	/**
+	 * Sample the labels of {@code data} at the corners of all cubes that are visited when generating a mesh for {@code
+	 * interval}, on the same grid as {@link MarchingCubes#sampleMask}.
+	 *
+	 * @param data
+	 * 		data to be sampled
+	 * @param bounds
+	 * 		corners outside of {@code bounds} are unlabeled
+	 * @param labels
+	 * 		extracts the labels of each corner, called sequentially from the calling thread only
+	 * @param interval
+	 * 		generate meshes for this interval
+	 * @param cubeSize
+	 * 		size of the cube to walk in the volume
+	 */
+	public static <T> LabelBoundaryCubes sample(
+			final RandomAccessible<T> data,
+			final Interval bounds,
+			final Labels<? super T> labels,
+			final Interval interval,
+			final int[] cubeSize)
+	{
+		final long[]        stride           = Arrays.stream(cubeSize).mapToLong(i -> i).toArray();
+		final FinalInterval expandedInterval = Intervals.expand(
+				interval,
+				Arrays.stream(stride).map(s -> s + 1).toArray()
+		                                                       );
+		final long[] min        = Intervals.minAsLongArray(expandedInterval);
+		final int[]  dimensions = new int[3];
+		for (int d = 0; d < 3; ++d)
+		{
+			dimensions[d] = (int) ((expandedInterval.dimension(d) - 1) / stride[d] + 2);
+		}
+
+		final Palette palette       = new Palette();
+		final int[]   cornerIndices = new int[dimensions[0] * dimensions[1] * dimensions[2]];
+
+		// range of valid grid points per dimension
+		final int[] from = new int[3];
+		final int[] to   = new int[3];
+		boolean isEmpty = false;
+		for (int d = 0; d < 3; ++d)
+		{
+			final long lower = bounds.min(d) - min[d];
+			final long upper = bounds.max(d) - min[d];
+			from[d] = lower <= 0 ? 0 : (int) Math.min((lower + stride[d] - 1) / stride[d], dimensions[d]);
+			to[d] = upper < 0 ? 0 : (int) Math.min(upper / stride[d] + 1, dimensions[d]);
+			isEmpty |= from[d] >= to[d];
+		}
+
+		if (!isEmpty)
+		{
+			final RandomAccess<T> access       = data.randomAccess();
+			final TLongArrayList  cornerLabels = new TLongArrayList();
+			final long[]          position     = new long[3];
+			position[0] = min[0] + from[0] * stride[0];
+			for (int z = from[2]; z < to[2]; ++z)
+			{
+				position[2] = min[2] + z * stride[2];
+				for (int y = from[1]; y < to[1]; ++y)
+				{
+					position[1] = min[1] + y * stride[1];
+					access.setPosition(position);
+					final int rowOffset = (z * dimensions[1] + y) * dimensions[0];
+					for (int x = from[0]; x < to[0]; ++x)
+					{
+						// do not move past the last grid point: data need not be defined outside of bounds
+						if (x > from[0])
+							access.move(stride[0], 0);
+						cornerLabels.resetQuick();
+						labels.labels(access.get(), cornerLabels);
+						cornerIndices[rowOffset + x] = palette.indexOf(cornerLabels);
+					}
+				}
+			}
+		}
+
+		final int[]         numCubes = {dimensions[0] - 1, dimensions[1] - 1, dimensions[2] - 1};
+		final TIntArrayList cubes    = new TIntArrayList();
+		final TIntArrayList corners  = new TIntArrayList();
+		final int           dx       = 1;
+		final int           dy       = dimensions[0];
+		final int           dz       = dimensions[0] * dimensions[1];
+		final int[]         c        = new int[8];
+		for (int z = 0; z < numCubes[2]; ++z)
+		{
+			for (int y = 0; y < numCubes[1]; ++y)
+			{
+				for (int x = 0, i = (z * dimensions[1] + y) * dimensions[0]; x < numCubes[0]; ++x, ++i)
+				{
+					// same corner order as the bits of the marching cubes table index
+					c[0] = cornerIndices[i + dx + dz];
+					c[1] = cornerIndices[i + dx + dy + dz];
+					c[2] = cornerIndices[i + dx + dy];
+					c[3] = cornerIndices[i + dx];
+					c[4] = cornerIndices[i + dz];
+					c[5] = cornerIndices[i + dy + dz];
+					c[6] = cornerIndices[i + dy];
+					c[7] = cornerIndices[i];
+					if (c[0] == c[1] && c[0] == c[2] && c[0] == c[3] && c[0] == c[4] && c[0] == c[5] && c[0] == c[6] &&
+							c[0] == c[7])
+						continue;
+					cubes.add((z * numCubes[1] + y) * numCubes[0] + x);
+					corners.add(c);
+				}
+			}
+		}
+
+		LOG.trace(
+				"Sampled {} boundary cubes with {} distinct label sets for {}",
+				cubes.size(),
+				palette.size(),
+				interval);
+		return new LabelBoundaryCubes(min, cubeSize.clone(), numCubes, palette.toArray(), cubes.toArray(), corners
+				.toArray());
+	}
+
+	/**
+	 * Generate the {@link MeshExtraction#MARCHING_CUBES marching cubes} mesh of {@code fragments}. Data is not
+	 * accessed.
+	 *
+	 * @param fragments
+	 * 		corners are inside of the surface if any of their labels is contained
+	 * @param transform
+	 * 		transform vertices from grid to world coordinates
+	 * @param wasInterrupted
+	 * 		stop early if {@code true}, the returned mesh is incomplete
+	 *
+	 * @return triangle vertices, same layout as {@link MarchingCubes#generateMesh()}
+	 */
+	public float[] generateMesh(
+			final TLongHashSet fragments,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		return generateMesh(fragments, MeshExtraction.MARCHING_CUBES, transform, wasInterrupted);
+	}
+
+	/**
+	 * Generate the mesh of {@code fragments}. Data is not accessed. The mesh is identical to the mesh that {@code
+	 * extraction} generates from the binary mask of {@code fragments}.
+	 *
+	 * @param fragments
+	 * 		corners are inside of the surface if any of their labels is contained
+	 * @param extraction
+	 * 		surface extraction algorithm
+	 * @param transform
+	 * 		transform vertices from grid to world coordinates
+	 * @param wasInterrupted
+	 * 		stop early if {@code true}, the returned mesh is incomplete
+	 *
+	 * @return triangle vertices, same layout as {@link MarchingCubes#generateMesh()}
+	 */
+	public float[] generateMesh(
+			final TLongHashSet fragments,
+			final MeshExtraction extraction,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		final boolean[] isInside  = new boolean[palette.length];
+		boolean         hasInside = false;
+		for (int i = 0; i < palette.length; ++i)
+		{
+			for (final long label : palette[i])
+			{
+				if (fragments.contains(label))
+				{
+					isInside[i] = hasInside = true;
+					break;
+				}
+			}
+		}
+
+		if (!hasInside)
+		{
+			return new float[0];
+		}
+
+		// boundary cubes that are partially inside of the surface and their marching cubes table indices
+		final int[] surfaceCubes    = new int[cubes.length];
+		final int[] configurations  = new int[cubes.length];
+		int         numSurfaceCubes = 0;
+		for (int cube = 0, corner = 0; cube < cubes.length; ++cube, corner += 8)
+		{
+			int vertexValues = 0;
+			for (int bit = 0; bit < 8; ++bit)
+			{
+				if (isInside[corners[corner + bit]])
+					vertexValues |= 1 << bit;
+			}
+
+			// cubes that are entirely inside or outside of the surface do not produce any triangles
+			if (vertexValues != 0 && vertexValues != 0xff)
+			{
+				surfaceCubes[numSurfaceCubes] = cubes[cube];
+				configurations[numSurfaceCubes] = vertexValues;
+				++numSurfaceCubes;
+			}
+		}
+
+		switch (extraction)
+		{
+			case SURFACE_NETS:
+				return SurfaceNets.generateMesh(
+						surfaceCubes,
+						configurations,
+						numSurfaceCubes,
+						numCubes,
+						cubeSize,
+						min,
+						transform,
+						wasInterrupted);
+			case MARCHING_CUBES:
+			default:
+				return marchingCubes(surfaceCubes, configurations, numSurfaceCubes, transform, wasInterrupted);
+		}
+	}
+
+	private float[] marchingCubes(
+			final int[] surfaceCubes,
+			final int[] configurations,
+			final int numSurfaceCubes,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		final TFloatArrayList vertices            = new TFloatArrayList();
+		final float[][]       interpolationPoints = new float[12][3];
+		final int             cubesPerSlice       = numCubes[0] * numCubes[1];
+		for (int cube = 0; cube < numSurfaceCubes; ++cube)
+		{
+			if ((cube & INTERRUPTION_CHECK_MASK) == 0 && wasInterrupted.getAsBoolean())
+			{
+				break;
+			}
+
+			final int vertexValues = configurations[cube];
+			final int index        = surfaceCubes[cube];
+			final int z            = index / cubesPerSlice;
+			final int y            = index % cubesPerSlice / numCubes[0];
+			final int x            = index % numCubes[0];
+			MarchingCubes.triangulation(vertexValues, x, y, z, cubeSize, vertices, interpolationPoints);
+		}
+
+		final float[]  vertexArray = new float[vertices.size()];
+		final double[] p           = new double[3];
+		for (int i = 0; i < vertexArray.length; i += 3)
+		{
+			p[0] = vertices.get(i + 0) + (double) min[0];
+			p[1] = vertices.get(i + 1) + (double) min[1];
+			p[2] = vertices.get(i + 2) + (double) min[2];
+			transform.apply(p, p);
+			vertexArray[i + 0] = (float) p[0];
+			vertexArray[i + 1] = (float) p[1];
+			vertexArray[i + 2] = (float) p[2];
+		}
+
+		return vertexArray;
+	}
+
+	/**
+	 * Distinct label sets. Neighboring corners usually carry the same labels: the last lookup is memoized.
+	 */
+	private static final class Palette
+	{
+
+		private final List<long[]> entries = new ArrayList<>();
+
+		private final TLongIntHashMap singleLabels = new TLongIntHashMap();
+
+		private final Map<TLongArrayList, Integer> multipleLabels = new HashMap<>();
+
+		private final TLongArrayList last = new TLongArrayList();
+
+		private int lastIndex = UNLABELED;
+
+		private Palette()
+		{
+			entries.add(new long[0]);
+		}
+
+		public int indexOf(final TLongArrayList labels)
+		{
+			if (labels.size() > 1)
+				labels.sort();
+
+			if (labels.equals(last))
+				return lastIndex;
+
+			final int index;
+			if (labels.isEmpty())
+			{
+				index = UNLABELED;
+			}
+			else if (labels.size() == 1)
+			{
+				final long label = labels.getQuick(0);
+				if (singleLabels.containsKey(label))
+				{
+					index = singleLabels.get(label);
+				}
+				else
+				{
+					index = entries.size();
+					entries.add(new long[] {label});
+					singleLabels.put(label, index);
+				}
+			}
+			else
+			{
+				final Integer existing = multipleLabels.get(labels);
+				if (existing != null)
+				{
+					index = existing;
+				}
+				else
+				{
+					index = entries.size();
+					entries.add(labels.toArray());
+					multipleLabels.put(new TLongArrayList(labels), index);
+				}
+			}
+
+			last.resetQuick();
+			last.addAll(labels);
+			lastIndex = index;
+			return index;
+		}
+
+		public int size()
+		{
+			return entries.size();
+		}
+
+		public long[][] toArray()
+		{
+			return entries.toArray(new long[entries.size()][]);
+		}
+
+	}
+
+	private static class LabelMultisetTypeLabels implements Labels<LabelMultisetType>
+	{
+
+		@Override
+		public void labels(final LabelMultisetType value, final TLongArrayList labels)
+		{
+			for (final Entry<Label> entry : value.entrySet())
+				labels.add(entry.getElement().id());
+		}
+
+	}
+
+	private static class IntegerTypeLabels<I extends IntegerType<I>> implements Labels<I>
+	{
+
+		@Override
+		public void labels(final I value, final TLongArrayList labels)
+		{
+			labels.add(value.getIntegerLong());
+		}
+
+	}
+
+}
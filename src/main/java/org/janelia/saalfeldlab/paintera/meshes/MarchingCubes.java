@@ -4,16 +4,14 @@ import java.util.Arrays;
 import java.util.function.BooleanSupplier;
 
 import gnu.trove.list.array.TFloatArrayList;
-import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
 import net.imglib2.realtransform.AffineTransform3D;
-import net.imglib2.realtransform.Translation;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BoolType;
 import net.imglib2.util.Intervals;
-import net.imglib2.view.SubsampleIntervalView;
-import net.imglib2.view.Views;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -422,6 +420,8 @@ public class MarchingCubes<B extends BooleanType<B>>
 
 	private final BooleanSupplier wasInterrupted;
 
+	private final PackedMask mask;
+
 	/**
 	 * Initialize the class parameters with default values
 	 */
@@ -437,171 +437,154 @@ public class MarchingCubes<B extends BooleanType<B>>
 		this.cubeSize = cubeSize;
 		this.transform = transform;
 		this.wasInterrupted = wasInterrupted;
+		this.mask = null;
 	}
 
 	/**
-	 * Creates the mesh using the information directly from the RAI structure
+	 * Generate a mesh from a mask that was sampled with {@link #sampleMask(RandomAccessible, Interval, Converter,
+	 * Interval, int[])}. The cube size is given by the grid spacing of {@code mask}.
+	 */
+	public MarchingCubes(
+			final PackedMask mask,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		this.input = null;
+		this.interval = null;
+		this.cubeSize = new int[] {(int) mask.step(0), (int) mask.step(1), (int) mask.step(2)};
+		this.transform = transform;
+		this.wasInterrupted = wasInterrupted;
+		this.mask = mask;
+	}
+
+	/**
+	 * Sample {@code data} at the corners of all cubes that are visited when generating a mesh for {@code interval}.
 	 *
-	 * @param input
-	 * 		RAI with the label (segmentation) information
+	 * @param data
+	 * 		data to be sampled
+	 * @param bounds
+	 * 		corners outside of {@code bounds} are considered background. If {@code null}, {@code data} is evaluated at
+	 * 		all corners.
+	 * @param mask
+	 * 		converts data into foreground/background, evaluated exactly once per corner
+	 * @param interval
+	 * 		generate mesh for this interval
 	 * @param cubeSize
 	 * 		size of the cube to walk in the volume
-	 * @param nextValuesVertex
-	 * 		generic interface to access the information on RAI
+	 */
+	public static <T> PackedMask sampleMask(
+			final RandomAccessible<T> data,
+			final Interval bounds,
+			final Converter<? super T, BoolType> mask,
+			final Interval interval,
+			final int[] cubeSize)
+	{
+		final long[]        stride           = Arrays.stream(cubeSize).mapToLong(i -> i).toArray();
+		final FinalInterval expandedInterval = Intervals.expand(
+				interval,
+				Arrays.stream(stride).map(s -> s + 1).toArray()
+		                                                       );
+		// one more corner than cubes per dimension
+		final int[] dimensions = new int[3];
+		for (int d = 0; d < 3; ++d)
+		{
+			dimensions[d] = (int) ((expandedInterval.dimension(d) - 1) / stride[d] + 2);
+		}
+		return PackedMask.sample(data, bounds, mask, Intervals.minAsLongArray(expandedInterval), stride, dimensions);
+	}
+
+	/**
+	 * Creates the mesh using the information directly from the RAI structure
 	 *
 	 * @return SimpleMesh, basically an array with the vertices
 	 */
 	public float[] generateMesh()
 	{
-		final long[]                   stride           = Arrays.stream(cubeSize).mapToLong(i -> i).toArray();
-		final FinalInterval            expandedInterval = Intervals.expand(
-				interval,
-				Arrays.stream(stride).map(s -> s + 1).toArray()
-		                                                                  );
-		final SubsampleIntervalView<B> subsampled       = Views.subsample(
-				Views.interval(input, expandedInterval),
-				stride
-		                                                                 );
-		final Cursor<B>                cursor0          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						0,
-						0,
-						0
-				            ),
-				subsampled
-		                                                                                   )).localizingCursor();
-		final Cursor<B>                cursor1          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						1,
-						0,
-						0
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor2          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						0,
-						1,
-						0
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor3          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						1,
-						1,
-						0
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor4          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						0,
-						0,
-						1
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor5          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						1,
-						0,
-						1
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor6          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						0,
-						1,
-						1
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Cursor<B>                cursor7          = Views.flatIterable(Views.interval(
-				Views.offset(
-						subsampled,
-						1,
-						1,
-						1
-				            ),
-				subsampled
-		                                                                                   )).cursor();
-		final Translation              translation      = new Translation(Arrays.stream(Intervals.minAsLongArray(
-				expandedInterval)).mapToDouble(l -> l).toArray());
+		final PackedMask mask = this.mask == null
+		                        ? sampleMask(input, null, (b, m) -> m.set(b.get()), interval, cubeSize)
+		                        : this.mask;
+
+		if (mask.isEmpty())
+		{
+			return new float[0];
+		}
 
 		final TFloatArrayList vertices = new TFloatArrayList();
 		final double[]        p        = new double[3];
 
 		final float[][] interpolationPoints = new float[12][3];
 
-		while (cursor0.hasNext() && !wasInterrupted.getAsBoolean())
-		{
-
-			// Remap the vertices of the cube (8 positions) obtained from a RAI
-			// to match the expected order for this implementation
-			// @formatter:off
-			// the values from the cube are given first in z, then y, then x
-			// this way, the vertex_values (from getCube) are positioned in this
-			// way:
-			//
-			//
-			//   4-----6
-			//  /|    /|
-			// 0-----2 |
-			// | 5---|-7
-			// |/    |/
-			// 1-----3
-			//
-			// this algorithm (based on
-			// http://paulbourke.net/geometry/polygonise/)
-			// considers the vertices of the cube in this order:
-			//
-			//   4-----5
-			//  /|    /|
-			// 7-----6 |
-			// | 0---|-1
-			// |/    |/
-			// 3-----2
-			//
-			// This way, we need to remap the cube vertices:
-			// @formatter:on
-			final int vertexValues =
-					(cursor5.next().get() ? 0b00000001 : 0) |
-							(cursor7.next().get() ? 0b00000010 : 0) |
-							(cursor3.next().get() ? 0b00000100 : 0) |
-							(cursor1.next().get() ? 0b00001000 : 0) |
-							(cursor4.next().get() ? 0b00010000 : 0) |
-							(cursor6.next().get() ? 0b00100000 : 0) |
-							(cursor2.next().get() ? 0b01000000 : 0) |
-							(cursor0.next().get() ? 0b10000000 : 0);
-
-			triangulation(
-					vertexValues,
-					cursor0.getLongPosition(0),
-					cursor0.getLongPosition(1),
-					cursor0.getLongPosition(2),
-					vertices,
-					interpolationPoints
-			             );
+		final int numCubesX   = mask.dimension(0) - 1;
+		final int numCubesY   = mask.dimension(1) - 1;
+		final int numCubesZ   = mask.dimension(2) - 1;
+		final int wordsPerRow = mask.wordsPerRow();
 
+		for (int z = 0; z < numCubesZ && !wasInterrupted.getAsBoolean(); ++z)
+		{
+			for (int y = 0; y < numCubesY; ++y)
+			{
+				for (int word = 0; word < wordsPerRow; ++word)
+				{
+					// rows of corners at (y, z), (y + 1, z), (y, z + 1), (y + 1, z + 1)
+					final long w0 = mask.word(word, y, z);
+					final long w2 = mask.word(word, y + 1, z);
+					final long w4 = mask.word(word, y, z + 1);
+					final long w6 = mask.word(word, y + 1, z + 1);
+					// the last cube of a word also needs the first corner of the next word
+					final boolean hasNext = word + 1 < wordsPerRow;
+					final long    n0      = hasNext ? mask.word(word + 1, y, z) : 0;
+					final long    n2      = hasNext ? mask.word(word + 1, y + 1, z) : 0;
+					final long    n4      = hasNext ? mask.word(word + 1, y, z + 1) : 0;
+					final long    n6      = hasNext ? mask.word(word + 1, y + 1, z + 1) : 0;
+
+					// cubes that are entirely inside or outside of the surface do not produce any triangles
+					if ((w0 | w2 | w4 | w6) == 0 && ((n0 | n2 | n4 | n6) & 1) == 0)
+					{
+						continue;
+					}
+					if ((w0 & w2 & w4 & w6) == -1L && (n0 & n2 & n4 & n6 & 1) == 1)
+					{
+						continue;
+					}
+
+					final int xStart = word << 6;
+					final int xStop  = Math.min(xStart + 64, numCubesX);
+					for (int x = xStart; x < xStop; ++x)
+					{
+						final int bit = x & 63;
+						// Remap the vertices of the cube (8 positions) to match the expected order for this
+						// implementation, see comments in triangulation
+						final int vertexValues =
+								(nextBit(w4, n4, bit) ? 0b00000001 : 0) |
+										(nextBit(w6, n6, bit) ? 0b00000010 : 0) |
+										(nextBit(w2, n2, bit) ? 0b00000100 : 0) |
+										(nextBit(w0, n0, bit) ? 0b00001000 : 0) |
+										((w4 >>> bit & 1) != 0 ? 0b00010000 : 0) |
+										((w6 >>> bit & 1) != 0 ? 0b00100000 : 0) |
+										((w2 >>> bit & 1) != 0 ? 0b01000000 : 0) |
+										((w0 >>> bit & 1) != 0 ? 0b10000000 : 0);
+
+						triangulation(
+								vertexValues,
+								x,
+								y,
+								z,
+								cubeSize,
+								vertices,
+								interpolationPoints
+						             );
+					}
+				}
+			}
 		}
 
 		final float[] vertexArray = new float[vertices.size()];
 
 		for (int i = 0; i < vertexArray.length; i += 3)
 		{
-			p[0] = vertices.get(i + 0);
-			p[1] = vertices.get(i + 1);
-			p[2] = vertices.get(i + 2);
-			translation.apply(p, p);
+			p[0] = vertices.get(i + 0) + (double) mask.min(0);
+			p[1] = vertices.get(i + 1) + (double) mask.min(1);
+			p[2] = vertices.get(i + 2) + (double) mask.min(2);
 			transform.apply(p, p);
 			vertexArray[i + 0] = (float) p[0];
 			vertexArray[i + 1] = (float) p[1];
@@ -611,6 +594,14 @@ public class MarchingCubes<B extends BooleanType<B>>
 		return vertexArray;
 	}
 
+	/**
+	 * @return {@code true} if bit {@code bit + 1} of the 65 bit word {@code next:word} is set.
+	 */
+	private static boolean nextBit(final long word, final long next, final int bit)
+	{
+		return (bit == 63 ? next & 1 : word >>> bit + 1 & 1) != 0;
+	}
+
 	/**
 	 * Given the values of the vertices (in a specific order) identifies which of them are inside the mesh. For each
 	 * one
@@ -624,12 +615,15 @@ public class MarchingCubes<B extends BooleanType<B>>
 	 * 		position on y
 	 * @param cursorZ
 	 * 		position on z
+	 * @param cubeSize
+	 * 		size of the cube
 	 */
-	private void triangulation(
+	static void triangulation(
 			final int vertexValues,
 			final long cursorX,
 			final long cursorY,
 			final long cursorZ,
+			final int[] cubeSize,
 			final TFloatArrayList vertices,
 			final float[][] interpolationPoints)
 	{
@@ -670,40 +664,40 @@ public class MarchingCubes<B extends BooleanType<B>>
 		if (McEdge != 0)
 		{
 			if ((McEdge & 1) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 0, interpolationPoints[0]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 0, cubeSize, interpolationPoints[0]);
 
 			if ((McEdge & 2) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 1, interpolationPoints[1]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 1, cubeSize, interpolationPoints[1]);
 
 			if ((McEdge & 4) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 2, interpolationPoints[2]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 2, cubeSize, interpolationPoints[2]);
 
 			if ((McEdge & 8) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 3, interpolationPoints[3]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 3, cubeSize, interpolationPoints[3]);
 
 			if ((McEdge & 16) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 4, interpolationPoints[4]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 4, cubeSize, interpolationPoints[4]);
 
 			if ((McEdge & 32) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 5, interpolationPoints[5]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 5, cubeSize, interpolationPoints[5]);
 
 			if ((McEdge & 64) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 6, interpolationPoints[6]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 6, cubeSize, interpolationPoints[6]);
 
 			if ((McEdge & 128) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 7, interpolationPoints[7]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 7, cubeSize, interpolationPoints[7]);
 
 			if ((McEdge & 256) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 8, interpolationPoints[8]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 8, cubeSize, interpolationPoints[8]);
 
 			if ((McEdge & 512) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 9, interpolationPoints[9]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 9, cubeSize, interpolationPoints[9]);
 
 			if ((McEdge & 1024) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 10, interpolationPoints[10]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 10, cubeSize, interpolationPoints[10]);
 
 			if ((McEdge & 2048) != 0)
-				calculateIntersection(cursorX, cursorY, cursorZ, 11, interpolationPoints[11]);
+				calculateIntersection(cursorX, cursorY, cursorZ, 11, cubeSize, interpolationPoints[11]);
 
 			final int[] McTri = MC_TRI_TABLE[tableIndex];
 
@@ -743,7 +737,13 @@ public class MarchingCubes<B extends BooleanType<B>>
 	 *
 	 * @return intersected point in world coordinates
 	 */
-	private void calculateIntersection(final long cursorX, final long cursorY, final long cursorZ, final int intersectedEdge, final float[] intersection)
+	private static void calculateIntersection(
+			final long cursorX,
+			final long cursorY,
+			final long cursorZ,
+			final int intersectedEdge,
+			final int[] cubeSize,
+			final float[] intersection)
 	{
 		LOGGER.trace("cursor position: " + cursorX + " " + cursorY + " " + cursorZ);
 		long v1x = cursorX, v1y = cursorY, v1z = cursorZ;
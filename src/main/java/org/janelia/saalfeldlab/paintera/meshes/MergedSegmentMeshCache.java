@@ -0,0 +1,206 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Interval;
+import net.imglib2.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mesh cache for a segment that was created by merging other segments (parts). The mesh of the merged segment in a
+ * block is identical to the mesh of a part if no other part is present in that block or any of its neighbors. For
+ * those blocks, the (likely cached) block mesh of the part is returned instead of generating the mesh for the merged
+ * fragments. All other requests are passed through to the underlying cache.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class MergedSegmentMeshCache implements InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final int BITS_PER_DIMENSION = 21;
+
+	private static final long DIMENSION_MASK = (1L << BITS_PER_DIMENSION) - 1;
+
+	private final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>> meshCache;
+
+	private final InterruptibleFunction<TLongHashSet, Interval[]> blockListCache;
+
+	private final TLongHashSet merged;
+
+	private final TLongHashSet[] parts;
+
+	private final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] partMeshCaches;
+
+	// lazily initialized from the block lists of all parts
+	private TLongHashSet[] partBlocks = null;
+
+	private long[] blockSize = null;
+
+	/**
+	 * @param meshCache
+	 * 		generates meshes for {@code merged} and all blocks that cannot be re-used
+	 * @param blockListCache
+	 * 		block lists of parts
+	 * @param merged
+	 * 		union of {@code parts}, preferably the {@link InternedFragmentSet} that identifies the merged segment in keys
+	 * @param parts
+	 * 		disjoint fragment sets whose union is the merged segment
+	 * @param partMeshCaches
+	 * 		mesh caches that were used for each part, e.g. {@code meshCache} or a {@link MergedSegmentMeshCache} if the
+	 * 		part itself was created by a merge
+	 */
+	public MergedSegmentMeshCache(
+			final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>> meshCache,
+			final InterruptibleFunction<TLongHashSet, Interval[]> blockListCache,
+			final TLongHashSet merged,
+			final TLongHashSet[] parts,
+			final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] partMeshCaches)
+	{
+		assert parts.length == partMeshCaches.length;
+		this.meshCache = meshCache;
+		this.blockListCache = blockListCache;
+		this.parts = parts;
+		this.partMeshCaches = partMeshCaches;
+		this.merged = merged;
+	}
+
+	@Override
+	public Pair<float[], float[]> apply(final ShapeKey<TLongHashSet> key)
+	{
+		final int part = reusablePart(key);
+		if (part < 0)
+			return meshCache.apply(key);
+		LOG.trace("Re-using mesh of part {} for {}", parts[part], key);
+		return partMeshCaches[part].apply(keyForPart(key, part));
+	}
+
+	@Override
+	public void interruptFor(final ShapeKey<TLongHashSet> key)
+	{
+		meshCache.interruptFor(key);
+		if (isMerged(key))
+			for (int part = 0; part < parts.length; ++part)
+				partMeshCaches[part].interruptFor(keyForPart(key, part));
+	}
+
+	/**
+	 * @return index of the only part that is present in the block of {@code key} and its neighborhood, or {@code -1}
+	 * if there is none or more than one.
+	 */
+	private int reusablePart(final ShapeKey<TLongHashSet> key)
+	{
+		if (!isMerged(key))
+			return -1;
+
+		final TLongHashSet[] blocks = partBlocks();
+		final long[]         min    = key.min();
+		final long[] gridPosition = new long[min.length];
+		Arrays.setAll(gridPosition, d -> Math.floorDiv(min[d], blockSize[d]));
+
+		int reusable = -1;
+		for (int part = 0; part < blocks.length; ++part)
+		{
+			if (blocks[part].contains(flatIndex(gridPosition)))
+			{
+				if (reusable >= 0)
+					return -1;
+				reusable = part;
+			}
+		}
+
+		if (reusable < 0)
+			return -1;
+
+		for (int part = 0; part < blocks.length; ++part)
+			if (part != reusable && isInNeighborhood(blocks[part], gridPosition))
+				return -1;
+
+		return reusable;
+	}
+
+	private boolean isMerged(final ShapeKey<TLongHashSet> key)
+	{
+		return key.shapeId() == merged || merged.equals(key.shapeId());
+	}
+
+	private synchronized TLongHashSet[] partBlocks()
+	{
+		if (partBlocks == null)
+		{
+			final Interval[][] blockLists = Arrays
+					.stream(parts)
+					.map(blockListCache::apply)
+					.toArray(Interval[][]::new);
+
+			// all blocks are aligned to the same grid: the largest block is a full block
+			final long[] blockSize = new long[3];
+			Arrays.fill(blockSize, 1);
+			for (final Interval[] blockList : blockLists)
+				for (final Interval block : blockList)
+					for (int d = 0; d < blockSize.length; ++d)
+						blockSize[d] = Math.max(blockSize[d], block.dimension(d));
+
+			final TLongHashSet[] partBlocks = new TLongHashSet[blockLists.length];
+			final long[]         position   = new long[3];
+			for (int part = 0; part < blockLists.length; ++part)
+			{
+				partBlocks[part] = new TLongHashSet();
+				for (final Interval block : blockLists[part])
+				{
+					Arrays.setAll(position, d -> Math.floorDiv(block.min(d), blockSize[d]));
+					partBlocks[part].add(flatIndex(position));
+				}
+			}
+			this.blockSize = blockSize;
+			this.partBlocks = partBlocks;
+		}
+		return partBlocks;
+	}
+
+	private ShapeKey<TLongHashSet> keyForPart(final ShapeKey<TLongHashSet> key, final int part)
+	{
+		return new ShapeKey<>(
+				parts[part],
+				key.scaleIndex(),
+				key.simplificationIterations(),
+				key.smoothingLambda(),
+				key.smoothingIterations(),
+				key.meshExtraction(),
+				key.min(),
+				key.max()
+		);
+	}
+
+	private static boolean isInNeighborhood(final TLongHashSet blocks, final long[] gridPosition)
+	{
+		final long[] neighbor = new long[3];
+		for (long z = -1; z <= 1; ++z)
+			for (long y = -1; y <= 1; ++y)
+				for (long x = -1; x <= 1; ++x)
+				{
+					neighbor[0] = gridPosition[0] + x;
+					neighbor[1] = gridPosition[1] + y;
+					neighbor[2] = gridPosition[2] + z;
+					if (blocks.contains(flatIndex(neighbor)))
+						return true;
+				}
+		return false;
+	}
+
+	/**
+	 * Collisions are possible only for grids with more than {@code 2^21} blocks per dimension and can only prevent
+	 * re-use.
+	 */
+	private static long flatIndex(final long[] gridPosition)
+	{
+		return gridPosition[0] & DIMENSION_MASK
+				| (gridPosition[1] & DIMENSION_MASK) << BITS_PER_DIMENSION
+				| (gridPosition[2] & DIMENSION_MASK) << 2 * BITS_PER_DIMENSION;
+	}
+
+}
@@ -1,27 +1,79 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
+import gnu.trove.list.array.TIntArrayList;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import net.imglib2.Interval;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
 import org.janelia.saalfeldlab.util.HashWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Export meshes for segments by generating blocks in parallel on a worker pool and streaming each block mesh into a
+ * {@link MeshWriter} as soon as it becomes available. At most {@link #setMaxBlocksInFlight(int) a bounded number} of
+ * blocks is generated ahead of the writer, so that block meshes of large segments do not pile up in memory when
+ * writing is slower than generating. Implementations keep their output channels open for the whole export.
+ *
+ * @param <T>
+ * 		type of mesh identifier
+ */
 public abstract class MeshExporter<T>
 {
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	protected int numberOfFaces = 0;
+	protected static final int BUFFER_SIZE = 1 << 20;
+
+	private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0.0);
+
+	private int maxBlocksInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @return progress of the currently running (or last) export in {@code [0, 1]}. Updated on the JavaFX application
+	 * thread.
+	 */
+	public ReadOnlyDoubleProperty progressProperty()
+	{
+		return progress.getReadOnlyProperty();
+	}
+
+	/**
+	 * @param maxBlocksInFlight
+	 * 		maximum number of blocks of a mesh that are generated or waiting to be written at any time
+	 */
+	public void setMaxBlocksInFlight(final int maxBlocksInFlight)
+	{
+		if (maxBlocksInFlight < 1)
+			throw new IllegalArgumentException("Need at least one block in flight but got " + maxBlocksInFlight);
+		this.maxBlocksInFlight = maxBlocksInFlight;
+	}
 
 	public void exportMesh(
+			final ExecutorService workers,
 			final Function<T, Interval[]>[][] blockListCaches,
 			final Function<ShapeKey<T>, Pair<float[], float[]>>[][] meshCaches,
 			final T[] ids,
@@ -29,19 +81,42 @@ public abstract class MeshExporter<T>
 			final String[] paths)
 	{
 		assert ids.length == paths.length;
+		setProgress(0.0);
 		for (int i = 0; i < ids.length; i++)
 		{
-			numberOfFaces = 0;
-			exportMesh(blockListCaches[i], meshCaches[i], ids[i], scale, paths[i]);
+			// do not create or truncate the files of the remaining ids
+			if (Thread.currentThread().isInterrupted())
+			{
+				LOG.debug("Interrupted, not exporting meshes for the remaining {} ids", ids.length - i);
+				return;
+			}
+			exportMesh(workers, blockListCaches[i], meshCaches[i], ids[i], scale, paths[i], i, ids.length);
 		}
+		setProgress(1.0);
 	}
 
 	public void exportMesh(
+			final ExecutorService workers,
 			final Function<T, Interval[]>[] blockListCache,
 			final Function<ShapeKey<T>, Pair<float[], float[]>>[] meshCache,
 			final T id,
 			final int scaleIndex,
 			final String path)
+	{
+		setProgress(0.0);
+		exportMesh(workers, blockListCache, meshCache, id, scaleIndex, path, 0, 1);
+		setProgress(1.0);
+	}
+
+	private void exportMesh(
+			final ExecutorService workers,
+			final Function<T, Interval[]>[] blockListCache,
+			final Function<ShapeKey<T>, Pair<float[], float[]>>[] meshCache,
+			final T id,
+			final int scaleIndex,
+			final String path,
+			final int meshIndex,
+			final int numMeshes)
 	{
 		// all blocks from id
 		final Set<HashWrapper<Interval>> blockSet = new HashSet<>();
@@ -70,37 +145,165 @@ public abstract class MeshExporter<T>
 			));
 		}
 
-		for (final ShapeKey<T> key : keys)
+		LOG.debug("Exporting {} blocks for id {} to {}", keys.size(), id, path);
+
+		final CompletionService<Pair<float[], float[]>> completionService = new ExecutorCompletionService<>(workers);
+		final Set<Future<Pair<float[], float[]>>>       futures           = new HashSet<>();
+		// a permit is taken for each submitted block and released by the writer once the block was appended
+		final Semaphore inFlight     = new Semaphore(maxBlocksInFlight);
+		int             numSubmitted = 0;
+
+		// blocks are written in order of completion by this thread only, workers only generate meshes
+		try (final MeshWriter writer = createWriter(path, id.toString()))
 		{
-			Pair<float[], float[]> verticesAndNormals;
-			try
+			for (int block = 0; block < keys.size(); ++block)
 			{
-				verticesAndNormals = meshCache[scaleIndex].apply(key);
+				for (; numSubmitted < keys.size() && inFlight.tryAcquire(); ++numSubmitted)
+				{
+					final ShapeKey<T> key = keys.get(numSubmitted);
+					futures.add(completionService.submit(() -> meshCache[scaleIndex].apply(key)));
+				}
+				final Future<Pair<float[], float[]>> future = completionService.take();
+				// do not keep written blocks reachable through their futures
+				futures.remove(future);
+				final Pair<float[], float[]> verticesAndNormals = future.get();
 				assert verticesAndNormals.getA().length == verticesAndNormals.getB().length : "Vertices and normals " +
 						"must have the same size.";
-				save(
-						path,
-						id.toString(),
-						verticesAndNormals.getA(),
-						verticesAndNormals.getB(),
-						hasFaces(numberOfFaces)
-				    );
-				numberOfFaces += verticesAndNormals.getA().length / 3;
-			} catch (final RuntimeException e)
+				writer.append(verticesAndNormals.getA(), verticesAndNormals.getB());
+				inFlight.release();
+				setProgress((meshIndex + (block + 1.0) / keys.size()) / numMeshes);
+			}
+		} catch (final IOException e)
+		{
+			LOG.warn("Couldn't write mesh for id {} to {}: {}", id, path, e.getMessage());
+			throw new UncheckedIOException(e);
+		} catch (final InterruptedException e)
+		{
+			LOG.debug("Interrupted while exporting mesh for id {}", id);
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException e)
+		{
+			LOG.warn("{} : {}", e.getCause().getClass(), e.getCause().getMessage());
+			throw new RuntimeException(e.getCause());
+		} finally
+		{
+			futures.forEach(f -> f.cancel(true));
+		}
+
+	}
+
+	/**
+	 * Update {@link #progressProperty()} on the JavaFX application thread. Exporters that run without a JavaFX toolkit
+	 * override this.
+	 */
+	protected void setProgress(final double progress)
+	{
+		FXUpdateCoalescer.getInstance().submit(this.progress, () -> this.progress.set(progress));
+	}
+
+	/**
+	 * Create a writer for a single mesh. The writer will receive all block meshes for {@code id} through {@link
+	 * MeshWriter#append(float[], float[])} before it is closed.
+	 *
+	 * @param path
+	 * 		file path without extension
+	 * @param id
+	 * 		string representation of the exported mesh id
+	 */
+	protected abstract MeshWriter createWriter(String path, String id) throws IOException;
+
+	public interface MeshWriter extends Closeable
+	{
+		/**
+		 * @param vertices
+		 * 		flat triangle vertices (stride 9 per triangle)
+		 * @param normals
+		 * 		one normal per entry in {@code vertices}
+		 */
+		void append(float[] vertices, float[] normals) throws IOException;
+	}
+
+	/**
+	 * Writer that deduplicates vertices across all blocks of a mesh through a {@link VertexIndexMap}. Implementations
+	 * receive only newly seen vertices (with the normal of their first occurrence) and faces as indices into all
+	 * vertices received so far.
+	 */
+	protected static abstract class IndexedMeshWriter implements MeshWriter
+	{
+
+		private final VertexIndexMap vertexIndices = new VertexIndexMap();
+
+		private final TIntArrayList faces = new TIntArrayList();
+
+		private float[] newNormals = new float[0];
+
+		@Override
+		public void append(final float[] vertices, final float[] normals) throws IOException
+		{
+			final int numberOfVerticesBefore = vertexIndices.size();
+			if (newNormals.length < normals.length)
+				newNormals = new float[normals.length];
+			faces.resetQuick();
+			for (int k = 0; k < vertices.length; k += 3)
 			{
-				LOG.warn("{} : {}", e.getClass(), e.getMessage());
-				e.printStackTrace();
-				throw e;
+				final int size  = vertexIndices.size();
+				final int index = vertexIndices.insert(vertices[k], vertices[k + 1], vertices[k + 2]);
+				if (index == size)
+				{
+					final int offset = 3 * (index - numberOfVerticesBefore);
+					newNormals[offset] = normals[k];
+					newNormals[offset + 1] = normals[k + 1];
+					newNormals[offset + 2] = normals[k + 2];
+				}
+				faces.add(index);
 			}
+			appendIndexed(
+					vertexIndices,
+					numberOfVerticesBefore,
+					vertexIndices.size(),
+					newNormals,
+					faces.toArray());
 		}
 
+		/**
+		 * @param vertices
+		 * 		all vertices of this mesh seen so far
+		 * @param fromIndex
+		 * 		first vertex that was not passed to any previous call
+		 * @param toIndex
+		 * 		number of vertices seen so far (exclusive upper bound of new vertices)
+		 * @param newNormals
+		 * 		normals for new vertices, starting at offset zero (stride 3)
+		 * @param faces
+		 * 		vertex indices of all triangles of the current block (stride 3)
+		 */
+		protected abstract void appendIndexed(
+				VertexIndexMap vertices,
+				int fromIndex,
+				int toIndex,
+				float[] newNormals,
+				int[] faces) throws IOException;
 	}
 
-	protected abstract void save(String path, String id, float[] vertices, float[] normals, boolean append);
+	protected static FileChannel openChannel(final String path) throws IOException
+	{
+		final Path p = Paths.get(path);
+		return FileChannel.open(
+				p,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
 
-	public static boolean hasFaces(final int numberOfFaces)
+	/**
+	 * Write all remaining bytes of {@code buffer} into {@code channel} and clear buffer.
+	 */
+	protected static void drain(final ByteBuffer buffer, final FileChannel channel) throws IOException
 	{
-		return numberOfFaces > 0;
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
 	}
 
 }
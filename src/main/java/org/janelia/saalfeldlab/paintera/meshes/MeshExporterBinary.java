@@ -1,49 +1,68 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.invoke.MethodHandles;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 
+/**
+ * Export meshes as raw (big endian) float triangle arrays into separate {@code .vertices} and {@code .normals} files.
+ * No vertices are shared between triangles. Use {@link MeshExporterPly} for an indexed binary format.
+ */
 public class MeshExporterBinary<T> extends MeshExporter<T>
 {
-	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
 	@Override
-	protected void save(final String path, final String id, final float[] vertices, final float[] normals, final
-	boolean append)
+	protected MeshWriter createWriter(final String path, final String id) throws IOException
 	{
-		save(path + ".vertices", vertices, append);
-		save(path + ".normals", normals, append);
+		return new BinaryWriter(openChannel(path + ".vertices"), openChannel(path + ".normals"));
 	}
 
-	private void save(final String path, final float[] info, final boolean append)
+	private static class BinaryWriter implements MeshWriter
 	{
-		try
+
+		private final FileChannel vertices;
+
+		private final FileChannel normals;
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		private BinaryWriter(final FileChannel vertices, final FileChannel normals)
+		{
+			this.vertices = vertices;
+			this.normals = normals;
+		}
+
+		@Override
+		public void append(final float[] vertices, final float[] normals) throws IOException
+		{
+			write(vertices, this.vertices);
+			write(normals, this.normals);
+		}
+
+		private void write(final float[] data, final FileChannel channel) throws IOException
+		{
+			for (int offset = 0; offset < data.length; )
+			{
+				final FloatBuffer floats = buffer.asFloatBuffer();
+				final int         length = Math.min(floats.remaining(), data.length - offset);
+				floats.put(data, offset, length);
+				buffer.position(length * Float.BYTES);
+				drain(buffer, channel);
+				offset += length;
+			}
+		}
+
+		@Override
+		public void close() throws IOException
 		{
-			final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
-					path,
-					append
-			)));
 			try
 			{
-				for (int i = 0; i < info.length; i++)
-				{
-					stream.writeFloat(info[i]);
-				}
-				stream.close();
-			} catch (final IOException e)
+				vertices.close();
+			} finally
 			{
-				LOG.warn("Couldn't write data to the file {}: {}", path, e.getMessage());
+				normals.close();
 			}
-		} catch (final FileNotFoundException e)
-		{
-			LOG.warn("Couldn't find file {}: {}", path, e.getMessage());
 		}
 	}
 
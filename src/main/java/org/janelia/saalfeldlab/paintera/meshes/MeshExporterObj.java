@@ -1,77 +1,102 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.invoke.MethodHandles;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Export meshes as Wavefront obj with one vertex and one normal per distinct vertex position. Faces reference vertex
+ * and normal by the same index.
+ */
 public class MeshExporterObj<T> extends MeshExporter<T>
 {
-	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
 	@Override
-	protected void save(String path, final String id, final float[] vertices, final float[] normals, final boolean
-			append)
+	protected MeshWriter createWriter(final String path, final String id) throws IOException
 	{
-		path = path + ".obj";
-		try
-		{
-			final FileWriter    writer    = new FileWriter(path, append);
-			final float[]       texCoords = new float[] {0.0f, 0.0f};
-			final StringBuilder sb        = new StringBuilder();
+		return new ObjWriter(openChannel(path + ".obj"), id);
+	}
 
-			if (!append)
-			{
-				sb.append("# id: ").append(id).append("\n");
-			}
+	private static class ObjWriter extends IndexedMeshWriter
+	{
 
-			final int numVertices = vertices.length;
-			for (int k = 0; k < numVertices; k += 3)
-			{
-				sb.append("\nv ").append(vertices[k + 0]).append(" ").append(vertices[k + 1]).append(" ").append(
-						vertices[k + 2]);
-			}
+		private final FileChannel channel;
+
+		private final CharsetEncoder encoder = StandardCharsets.US_ASCII.newEncoder();
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
-			sb.append("\n");
-			final int numNormals = normals.length;
-			for (int k = 0; k < numNormals; k += 3)
+		private final StringBuilder sb = new StringBuilder();
+
+		private ObjWriter(final FileChannel channel, final String id) throws IOException
+		{
+			this.channel = channel;
+			sb.append("# id: ").append(id).append("\n");
+			flush();
+		}
+
+		@Override
+		protected void appendIndexed(
+				final VertexIndexMap vertices,
+				final int fromIndex,
+				final int toIndex,
+				final float[] newNormals,
+				final int[] faces) throws IOException
+		{
+			for (int index = fromIndex; index < toIndex; ++index)
 			{
-				sb.append("\nvn ").append(normals[k + 0]).append(" ").append(normals[k + 1]).append(" ").append
-						(normals[k + 2]);
+				sb
+						.append("v ")
+						.append(vertices.coordinate(index, 0)).append(" ")
+						.append(vertices.coordinate(index, 1)).append(" ")
+						.append(vertices.coordinate(index, 2)).append("\n");
 			}
 
-			sb.append("\n");
-			final int numTexCoords = texCoords.length;
-			for (int k = 0; k < numTexCoords; k += 2)
+			for (int index = fromIndex, k = 0; index < toIndex; ++index, k += 3)
 			{
-				sb.append("\nvt ").append(texCoords[k + 0]).append(" ").append(texCoords[k + 1]);
+				sb
+						.append("vn ")
+						.append(newNormals[k]).append(" ")
+						.append(newNormals[k + 1]).append(" ")
+						.append(newNormals[k + 2]).append("\n");
 			}
 
-			sb.append("\n");
-			for (int k = 0; k < numVertices / 3; k += 3)
+			for (int k = 0; k < faces.length; k += 3)
 			{
-				sb.append("\nf ").append(k + numberOfFaces + 1).append("/").append(1).append("/").append(k +
-						numberOfFaces + 1)
-						.append(" ").append(k + numberOfFaces + 2).append("/").append(1).append("/").append(k +
-						numberOfFaces + 2)
-						.append(" ").append(k + numberOfFaces + 3).append("/").append(1).append("/").append(k +
-						numberOfFaces + 3);
+				// obj indices are one-based
+				final int v1 = faces[k] + 1;
+				final int v2 = faces[k + 1] + 1;
+				final int v3 = faces[k + 2] + 1;
+				sb
+						.append("f ")
+						.append(v1).append("//").append(v1).append(" ")
+						.append(v2).append("//").append(v2).append(" ")
+						.append(v3).append("//").append(v3).append("\n");
 			}
+			flush();
+		}
 
-			try
-			{
-				writer.append(sb.toString());
-				writer.close();
-			} catch (final IOException e)
+		private void flush() throws IOException
+		{
+			final CharBuffer chars = CharBuffer.wrap(sb);
+			CoderResult      result;
+			do
 			{
-				LOG.warn("Couldn't write data to the file {}: {}", path, e.getMessage());
-			}
+				result = encoder.encode(chars, buffer, true);
+				drain(buffer, channel);
+			} while (result.isOverflow());
+			encoder.reset();
+			sb.setLength(0);
+		}
 
-		} catch (final IOException e)
+		@Override
+		public void close() throws IOException
 		{
-			LOG.warn("Couldn't open the file {}: {}", path, e.getMessage());
+			channel.close();
 		}
 	}
 }
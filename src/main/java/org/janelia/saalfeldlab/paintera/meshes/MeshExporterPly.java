@@ -0,0 +1,145 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Export meshes as indexed binary (little endian) PLY. Vertices are streamed into the output file while faces are
+ * collected in a temporary file that is appended to the output when the export finishes. Element counts are written
+ * into a fixed width header that is updated once all blocks have been written.
+ */
+public class MeshExporterPly<T> extends MeshExporter<T>
+{
+
+	@Override
+	protected MeshWriter createWriter(final String path, final String id) throws IOException
+	{
+		return new PlyWriter(openChannel(path + ".ply"), id);
+	}
+
+	private static class PlyWriter extends IndexedMeshWriter
+	{
+
+		// wide enough for any int
+		private static final int COUNT_WIDTH = 10;
+
+		private static final int VERTEX_BYTES = 6 * Float.BYTES;
+
+		private static final int FACE_BYTES = 1 + 3 * Integer.BYTES;
+
+		private final FileChannel channel;
+
+		private final Path facesPath;
+
+		private final FileChannel faces;
+
+		private final String id;
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		private long numVertices = 0;
+
+		private long numFaces = 0;
+
+		private PlyWriter(final FileChannel channel, final String id) throws IOException
+		{
+			this.channel = channel;
+			this.id = id;
+			this.facesPath = Files.createTempFile("paintera-ply-faces-", ".bin");
+			this.faces = FileChannel.open(
+					facesPath,
+					StandardOpenOption.READ,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+			// placeholder, overwritten with actual counts on close
+			this.channel.write(ByteBuffer.wrap(header(0, 0)));
+		}
+
+		@Override
+		protected void appendIndexed(
+				final VertexIndexMap vertices,
+				final int fromIndex,
+				final int toIndex,
+				final float[] newNormals,
+				final int[] faces) throws IOException
+		{
+			for (int index = fromIndex, k = 0; index < toIndex; ++index, k += 3)
+			{
+				if (buffer.remaining() < VERTEX_BYTES)
+					drain(buffer, channel);
+				buffer.putFloat(vertices.coordinate(index, 0));
+				buffer.putFloat(vertices.coordinate(index, 1));
+				buffer.putFloat(vertices.coordinate(index, 2));
+				buffer.putFloat(newNormals[k]);
+				buffer.putFloat(newNormals[k + 1]);
+				buffer.putFloat(newNormals[k + 2]);
+			}
+			drain(buffer, channel);
+			numVertices += toIndex - fromIndex;
+
+			for (int k = 0; k < faces.length; k += 3)
+			{
+				if (buffer.remaining() < FACE_BYTES)
+					drain(buffer, this.faces);
+				buffer.put((byte) 3);
+				buffer.putInt(faces[k]);
+				buffer.putInt(faces[k + 1]);
+				buffer.putInt(faces[k + 2]);
+			}
+			drain(buffer, this.faces);
+			numFaces += faces.length / 3;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				final long size = faces.position();
+				for (long position = 0; position < size; )
+					position += faces.transferTo(position, size - position, channel);
+				channel.write(ByteBuffer.wrap(header(numVertices, numFaces)), 0);
+			} finally
+			{
+				try
+				{
+					faces.close();
+				} finally
+				{
+					channel.close();
+				}
+			}
+		}
+
+		private byte[] header(final long numVertices, final long numFaces)
+		{
+			return new StringBuilder()
+					.append("ply\n")
+					.append("format binary_little_endian 1.0\n")
+					.append("comment id: ").append(id).append("\n")
+					.append("element vertex ").append(pad(numVertices)).append("\n")
+					.append("property float x\n")
+					.append("property float y\n")
+					.append("property float z\n")
+					.append("property float nx\n")
+					.append("property float ny\n")
+					.append("property float nz\n")
+					.append("element face ").append(pad(numFaces)).append("\n")
+					.append("property list uchar int vertex_indices\n")
+					.append("end_header\n")
+					.toString()
+					.getBytes(StandardCharsets.US_ASCII);
+		}
+
+		private static String pad(final long count)
+		{
+			return String.format("%-" + COUNT_WIDTH + "d", count);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.function.BooleanSupplier;
+
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BoolType;
+
+/**
+ * Algorithm that extracts the surface of a binary mask, selectable through {@link MeshSettings}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public enum MeshExtraction
+{
+	MARCHING_CUBES("Marching Cubes")
+			{
+				@Override
+				public float[] generateMesh(
+						final PackedMask mask,
+						final AffineTransform3D transform,
+						final BooleanSupplier wasInterrupted)
+				{
+					return new MarchingCubes<BoolType>(mask, transform, wasInterrupted).generateMesh();
+				}
+			},
+	SURFACE_NETS("Surface Nets")
+			{
+				@Override
+				public float[] generateMesh(
+						final PackedMask mask,
+						final AffineTransform3D transform,
+						final BooleanSupplier wasInterrupted)
+				{
+					return SurfaceNets.generateMesh(mask, transform, wasInterrupted);
+				}
+			};
+
+	private final String displayName;
+
+	MeshExtraction(final String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Generate a mesh from a mask that was sampled with {@link MarchingCubes#sampleMask}.
+	 *
+	 * @return triangle vertices, same layout as {@link MarchingCubes#generateMesh()}
+	 */
+	public abstract float[] generateMesh(
+			PackedMask mask,
+			AffineTransform3D transform,
+			BooleanSupplier wasInterrupted);
+
+	@Override
+	public String toString()
+	{
+		return displayName;
+	}
+
+}
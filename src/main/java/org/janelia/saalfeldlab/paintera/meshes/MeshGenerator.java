@@ -1,7 +1,14 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -14,6 +21,7 @@ import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableIntegerValue;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -27,11 +35,14 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.CullFace;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
 import net.imglib2.Interval;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.util.Pair;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.meshes.MeshGeneratorJobManager.ManagementTask;
+import org.janelia.saalfeldlab.paintera.viewer3d.FrustumCulling;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -143,6 +154,24 @@ public class MeshGenerator<T>
 
 	private final DoubleProperty inflate = new SimpleDoubleProperty(1.0);
 
+	private final ObjectProperty<MeshExtraction> meshExtraction = new SimpleObjectProperty<>(MeshExtraction
+			.MARCHING_CUBES);
+
+	private final MeshMemoryBudget memoryBudget = MeshMemoryBudget.global();
+
+	// meshes whose geometry was evicted by the memory budget, guarded by meshes
+	private final Set<MeshView> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private final ChangeListener<Boolean> onMeshVisibilityChanged = (obs, oldv, newv) -> {
+		// hidden meshes become candidates for eviction, shown meshes are marked as recently shown
+		memoryBudget.enforceLater();
+		if (newv)
+		{
+			// at most once per pulse, many meshes are shown at once when the camera moves
+			FXUpdateCoalescer.getInstance().submit(this.evicted, this::regenerateIfEvicted);
+		}
+	};
+
 	//
 	public MeshGenerator(
 			final Group root,
@@ -156,6 +185,35 @@ public class MeshGenerator<T>
 			final int smoothingIterations,
 			final ExecutorService managers,
 			final ExecutorService workers)
+	{
+		this(
+				root,
+				segmentId,
+				blockListCache,
+				meshCache,
+				color,
+				scaleIndex,
+				meshSimplificationIterations,
+				smoothingLambda,
+				smoothingIterations,
+				MeshExtraction.MARCHING_CUBES,
+				managers,
+				workers);
+	}
+
+	public MeshGenerator(
+			final Group root,
+			final T segmentId,
+			final InterruptibleFunction<T, Interval[]>[] blockListCache,
+			final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>>[] meshCache,
+			final ObservableIntegerValue color,
+			final int scaleIndex,
+			final int meshSimplificationIterations,
+			final double smoothingLambda,
+			final int smoothingIterations,
+			final MeshExtraction meshExtraction,
+			final ExecutorService managers,
+			final ExecutorService workers)
 	{
 		super();
 		this.id = segmentId;
@@ -191,6 +249,9 @@ public class MeshGenerator<T>
 		this.smoothingIterations.set(smoothingIterations);
 		this.smoothingIterations.addListener((obs, oldv, newv) -> changed.set(true));
 
+		this.meshExtraction.set(meshExtraction);
+		this.meshExtraction.addListener((obs, oldv, newv) -> changed.set(true));
+
 		this.root = root;
 
 		this.isEnabled.addListener((obs, oldv, newv) -> {
@@ -200,18 +261,32 @@ public class MeshGenerator<T>
 					if (newv)
 					{
 						this.root.getChildren().addAll(this.meshes.values());
+						this.meshes.forEach((key, mesh) -> {
+							if (!this.evicted.contains(mesh))
+							{
+								registerWithMemoryBudget(key, mesh);
+							}
+						});
 					}
 					else
 					{
 						this.root.getChildren().removeAll(this.meshes.values());
+						this.meshes.values().forEach(memoryBudget::release);
 					}
 				}
 			});
+			if (newv)
+			{
+				FXUpdateCoalescer.getInstance().submit(this.evicted, this::regenerateIfEvicted);
+			}
 		});
 
 		this.meshes.addListener((MapChangeListener<ShapeKey<T>, MeshView>) change -> {
 			if (change.wasRemoved())
 			{
+				memoryBudget.release(change.getValueRemoved());
+				change.getValueRemoved().visibleProperty().removeListener(this.onMeshVisibilityChanged);
+				this.evicted.remove(change.getValueRemoved());
 				((PhongMaterial) change.getValueRemoved().getMaterial()).diffuseColorProperty().unbind();
 				change.getValueRemoved().visibleProperty().unbind();
 				change.getValueRemoved().drawModeProperty().unbind();
@@ -224,12 +299,18 @@ public class MeshGenerator<T>
 			{
 				((PhongMaterial) change.getValueAdded().getMaterial()).diffuseColorProperty().bind(this
 						.colorWithAlpha);
-				change.getValueAdded().visibleProperty().bind(this.isVisible);
+				change.getValueAdded().visibleProperty().bind(this.isVisible.and(FrustumCulling.inViewProperty(change
+						.getValueAdded())));
+				change.getValueAdded().visibleProperty().addListener(this.onMeshVisibilityChanged);
 				change.getValueAdded().drawModeProperty().bind(this.drawMode);
 				change.getValueAdded().cullFaceProperty().bind(this.cullFace);
 				change.getValueAdded().scaleXProperty().bind(this.inflate);
 				change.getValueAdded().scaleYProperty().bind(this.inflate);
 				change.getValueAdded().scaleZProperty().bind(this.inflate);
+				if (this.isEnabled.get())
+				{
+					registerWithMemoryBudget(change.getKey(), change.getValueAdded());
+				}
 			}
 
 			if (change.wasRemoved())
@@ -283,10 +364,11 @@ public class MeshGenerator<T>
 					meshSimplificationIterations.intValue(),
 					smoothingLambda.doubleValue(),
 					smoothingIterations.intValue(),
+					meshExtraction.get(),
 					blockListCache[scaleIndex],
 					meshCache[scaleIndex],
-					submittedTasks::set,
-					completedTasks::set,
+					this::setSubmittedTasks,
+					this::setCompletedTasks,
 					() -> {
 					}
 			                                                                                                  );
@@ -296,6 +378,167 @@ public class MeshGenerator<T>
 		}
 	}
 
+	/**
+	 * Register {@code mesh} with the memory budget. The mesh is shown if it is {@link MeshView#visibleProperty()
+	 * visible}, i.e. if this generator is visible and the mesh is in view: blocks of shown segments that are outside of
+	 * the view are evicted, too.
+	 */
+	private void registerWithMemoryBudget(final ShapeKey<T> key, final MeshView mesh)
+	{
+		memoryBudget.register(
+				mesh,
+				mesh.visibleProperty(),
+				evictIfCurrent(this.meshes, key, mesh, () -> evict(mesh)));
+	}
+
+	/**
+	 * @return calls {@code evict} unless {@code mesh} has been replaced by a newer mesh for the same block
+	 */
+	static <K> Runnable evictIfCurrent(
+			final Map<K, MeshView> meshes,
+			final K key,
+			final MeshView mesh,
+			final Runnable evict)
+	{
+		return () -> {
+			synchronized (meshes)
+			{
+				if (meshes.get(key) == mesh)
+				{
+					evict.run();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Replace the geometry of {@code mesh} with a {@link #placeholder(TriangleMesh) placeholder} and drop the cached
+	 * arrays of its blocks. The mesh stays in the scene, so that its visibility is still updated, and is regenerated
+	 * when it is shown again.
+	 */
+	private void evict(final MeshView mesh)
+	{
+		if (!(mesh.getMesh() instanceof TriangleMesh) || !this.evicted.add(mesh))
+		{
+			return;
+		}
+		mesh.setMesh(placeholder((TriangleMesh) mesh.getMesh()));
+		for (final ShapeKey<T> block : MeshGeneratorJobManager.<T>blocks(mesh))
+		{
+			final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>> cache = meshCache[block.scaleIndex()];
+			if (cache instanceof InterruptibleFunctionAndCache<?, ?>)
+			{
+				((InterruptibleFunctionAndCache<ShapeKey<T>, Pair<float[], float[]>>) cache).invalidateIf(
+						block::equals);
+			}
+		}
+	}
+
+	/**
+	 * @return mesh without any visible triangles that has the same bounds as {@code mesh}
+	 */
+	static TriangleMesh placeholder(final TriangleMesh mesh)
+	{
+		final float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+		final float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		final float[] points = mesh.getPoints().toArray(null);
+		for (int i = 0; i < points.length; i += 3)
+		{
+			for (int d = 0; d < 3; ++d)
+			{
+				min[d] = Math.min(min[d], points[i + d]);
+				max[d] = Math.max(max[d], points[i + d]);
+			}
+		}
+		final TriangleMesh placeholder = new TriangleMesh();
+		if (points.length > 0)
+		{
+			// degenerate triangle: covers the bounds but has no area
+			placeholder.getPoints().addAll(min);
+			placeholder.getPoints().addAll(max);
+			placeholder.getPoints().addAll(max);
+			placeholder.getTexCoords().addAll(0, 0);
+			placeholder.getFaces().addAll(0, 0, 1, 0, 2, 0);
+		}
+		return placeholder;
+	}
+
+	/**
+	 * Regenerate the evicted meshes that are visible, one task per mesh.
+	 */
+	private void regenerateIfEvicted()
+	{
+		if (!this.isEnabled.get())
+		{
+			return;
+		}
+		final Map<ShapeKey<T>, MeshView> toRegenerate = new HashMap<>();
+		synchronized (this.meshes)
+		{
+			this.meshes.forEach((key, mesh) -> {
+				if (mesh.isVisible() && this.evicted.remove(mesh))
+				{
+					toRegenerate.put(key, mesh);
+				}
+			});
+		}
+		if (toRegenerate.size() > 0)
+		{
+			LOG.debug("Re-generating {} evicted meshes for {}", toRegenerate.size(), this.id);
+		}
+		toRegenerate.forEach((key, mesh) -> this.workers.submit(() -> regenerate(key, mesh)));
+	}
+
+	private void regenerate(final ShapeKey<T> key, final MeshView mesh)
+	{
+		final List<Pair<float[], float[]>> blockMeshes = new ArrayList<>();
+		try
+		{
+			for (final ShapeKey<T> block : MeshGeneratorJobManager.<T>blocks(mesh))
+			{
+				blockMeshes.add(meshCache[block.scaleIndex()].apply(block));
+			}
+		} catch (final RuntimeException e)
+		{
+			LOG.debug("Was not able to re-generate mesh for {}: {}", key, e.getMessage());
+			synchronized (this.meshes)
+			{
+				this.evicted.add(mesh);
+			}
+			return;
+		}
+		final TriangleMesh triangles = MeshGeneratorJobManager.makeMesh(blockMeshes.size() == 1
+		                                                                ? blockMeshes.get(0)
+		                                                                : BlockMeshChunks.merge(blockMeshes));
+		InvokeOnJavaFXApplicationThread.invoke(() -> {
+			synchronized (this.meshes)
+			{
+				if (this.meshes.get(key) != mesh)
+				{
+					return;
+				}
+				mesh.setMesh(triangles);
+				if (this.isEnabled.get())
+				{
+					registerWithMemoryBudget(key, mesh);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Task counts are updated from worker threads for every block: only the latest count is applied, once per pulse.
+	 */
+	private void setSubmittedTasks(final int numTasks)
+	{
+		FXUpdateCoalescer.getInstance().submit(this.submittedTasks, () -> this.submittedTasks.set(numTasks));
+	}
+
+	private void setCompletedTasks(final int numTasks)
+	{
+		FXUpdateCoalescer.getInstance().submit(this.completedTasks, () -> this.completedTasks.set(numTasks));
+	}
+
 	private static final Color fromInt(final int argb)
 	{
 		return Color.rgb(ARGBType.red(argb), ARGBType.green(argb), ARGBType.blue(argb), 1.0);
@@ -336,6 +579,11 @@ public class MeshGenerator<T>
 		return smoothingLambda;
 	}
 
+	public ObjectProperty<MeshExtraction> meshExtractionProperty()
+	{
+		return meshExtraction;
+	}
+
 	public IntegerProperty scaleIndexProperty()
 	{
 		LOG.debug("Querying scale index property {}", this.scaleIndex);
@@ -392,6 +640,7 @@ public class MeshGenerator<T>
 		drawModeProperty().bind(meshSettings.drawModeProperty());
 		smoothingIterationsProperty().bind(meshSettings.smoothingIterationsProperty());
 		smoothingLambdaProperty().bind(meshSettings.smoothingLambdaProperty());
+		meshExtractionProperty().bind(meshSettings.meshExtractionProperty());
 		inflateProperty().bind(meshSettings.inflateProperty());
 		isVisible.bind(meshSettings.isVisibleProperty());
 	}
@@ -3,6 +3,7 @@ package org.janelia.saalfeldlab.paintera.meshes;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,6 +26,9 @@ import net.imglib2.Interval;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
+import org.janelia.saalfeldlab.paintera.metrics.Counter;
+import org.janelia.saalfeldlab.paintera.metrics.LatencyHistogram;
+import org.janelia.saalfeldlab.paintera.metrics.MetricsRegistry;
 import org.janelia.saalfeldlab.util.HashWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +37,16 @@ public class MeshGeneratorJobManager<T>
 {
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final LatencyHistogram BLOCK_LIST_TIME = MetricsRegistry.global().histogram("mesh.block-list");
+
+	private static final LatencyHistogram BLOCK_MESH_TIME = MetricsRegistry.global().histogram("mesh.block");
+
+	private static final Counter FAILED_BLOCKS = MetricsRegistry.global().counter("mesh.block.failed");
+
+	private static final LatencyHistogram CHUNK_MERGE_TIME = MetricsRegistry.global().histogram("mesh.chunk.merge");
+
+	private static final String BLOCKS_KEY = MeshGeneratorJobManager.class.getName() + ".blocks";
+
 	private final ObservableMap<ShapeKey<T>, MeshView> meshes;
 
 	private final ExecutorService manager;
@@ -56,6 +70,7 @@ public class MeshGeneratorJobManager<T>
 			final int simplificationIterations,
 			final double smoothingLambda,
 			final int smoothingIterations,
+			final MeshExtraction meshExtraction,
 			final InterruptibleFunction<T, Interval[]> getBlockList,
 			final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>> getMesh,
 			final IntConsumer setNumberOfTasks,
@@ -68,6 +83,7 @@ public class MeshGeneratorJobManager<T>
 				simplificationIterations,
 				smoothingLambda,
 				smoothingIterations,
+				meshExtraction,
 				getBlockList,
 				getMesh,
 				setNumberOfTasks,
@@ -91,6 +107,8 @@ public class MeshGeneratorJobManager<T>
 
 		private final int smoothingIterations;
 
+		private final MeshExtraction meshExtraction;
+
 		private final InterruptibleFunction<T, Interval[]> getBlockList;
 
 		private final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>> getMesh;
@@ -111,6 +129,7 @@ public class MeshGeneratorJobManager<T>
 				final int simplificationIterations,
 				final double smoothingLambda,
 				final int smoothingIterations,
+				final MeshExtraction meshExtraction,
 				final InterruptibleFunction<T, Interval[]> getBlockList,
 				final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>> getMesh,
 				final IntConsumer setNumberOfTasks,
@@ -123,6 +142,7 @@ public class MeshGeneratorJobManager<T>
 			this.simplificationIterations = simplificationIterations;
 			this.smoothingLambda = smoothingLambda;
 			this.smoothingIterations = smoothingIterations;
+			this.meshExtraction = meshExtraction;
 			this.getBlockList = getBlockList;
 			this.getMesh = getMesh;
 			this.setNumberOfTasks = setNumberOfTasks;
@@ -162,6 +182,7 @@ public class MeshGeneratorJobManager<T>
 				}
 
 				workers.submit(() -> {
+					final long start = System.nanoTime();
 					try
 					{
 
@@ -172,6 +193,7 @@ public class MeshGeneratorJobManager<T>
 										.collect(Collectors.toList()));
 					} finally
 					{
+						BLOCK_LIST_TIME.recordSince(start);
 						countDownOnBlockList.countDown();
 					}
 				});
@@ -218,6 +240,7 @@ public class MeshGeneratorJobManager<T>
 										simplificationIterations,
 										smoothingLambda,
 										smoothingIterations,
+										meshExtraction,
 										Intervals.minAsLongArray(block),
 										Intervals.maxAsLongArray(block)
 								));
@@ -227,14 +250,16 @@ public class MeshGeneratorJobManager<T>
 				if (!isInterrupted)
 				{
 
-					final int            numTasks          = keys.size();
-					final CountDownLatch countDownOnMeshes = new CountDownLatch(numTasks);
+					final int                numTasks          = keys.size();
+					final CountDownLatch     countDownOnMeshes = new CountDownLatch(numTasks);
+					final BlockMeshChunks<T> chunks            = new BlockMeshChunks<>(keys);
 
 					final ArrayList<Callable<Void>> tasks = new ArrayList<>();
 
 					for (final ShapeKey<T> key : keys)
 					{
 						tasks.add(() -> {
+							Pair<float[], float[]> verticesAndNormals = null;
 							try
 							{
 								final String initialName = Thread.currentThread().getName();
@@ -248,9 +273,11 @@ public class MeshGeneratorJobManager<T>
 									         );
 									if (!isInterrupted)
 									{
-										final Pair<float[], float[]> verticesAndNormals = getMesh.apply(key);
-										final MeshView               mv                 = makeMeshView(
-												verticesAndNormals);
+										final long start = System.nanoTime();
+										verticesAndNormals = getMesh.apply(key);
+										final MeshView mv = makeMeshView(verticesAndNormals);
+										mv.getProperties().put(BLOCKS_KEY, Collections.singletonList(key));
+										BLOCK_MESH_TIME.recordSince(start);
 										synchronized (meshes)
 										{
 											if (!isInterrupted)
@@ -261,6 +288,7 @@ public class MeshGeneratorJobManager<T>
 									}
 								} catch (final RuntimeException e)
 								{
+									FAILED_BLOCKS.increment();
 									LOG.debug("Was not able to retrieve mesh for {}: {}", key, e.getMessage());
 								} finally
 								{
@@ -269,6 +297,14 @@ public class MeshGeneratorJobManager<T>
 								return null;
 							} finally
 							{
+								try
+								{
+									// failed blocks complete their chunk, too, so that the remaining blocks are merged
+									replaceWithChunk(chunks.complete(key, verticesAndNormals));
+								} catch (final RuntimeException e)
+								{
+									LOG.debug("Was not able to merge chunk of {}: {}", key, e.getMessage());
+								}
 								synchronized (setNumberOfTasks)
 								{
 									countDownOnMeshes.countDown();
@@ -338,9 +374,70 @@ public class MeshGeneratorJobManager<T>
 
 		}
 
+		/**
+		 * Replace the block meshes of a complete {@code chunk} with a single merged mesh. Does nothing if
+		 * {@code chunk} is {@code null}, if this task was interrupted, or if fewer than two blocks have meshes.
+		 */
+		private void replaceWithChunk(final BlockMeshChunks<T>.Chunk chunk)
+		{
+			if (chunk == null || isInterrupted)
+			{
+				return;
+			}
+			final List<Pair<float[], float[]>> blockMeshes = chunk.meshes();
+			if (blockMeshes.size() < 2)
+			{
+				return;
+			}
+
+			// not cached: merging is a plain copy, and a cache would keep the arrays of the replaced block meshes alive
+			final long     start = System.nanoTime();
+			final MeshView mv    = makeMeshView(BlockMeshChunks.merge(blockMeshes));
+			mv.getProperties().put(BLOCKS_KEY, new ArrayList<>(chunk.blocks()));
+			CHUNK_MERGE_TIME.recordSince(start);
+
+			synchronized (meshes)
+			{
+				if (!isInterrupted)
+				{
+					chunk.blocks().forEach(meshes::remove);
+					meshes.put(chunk.key(), mv);
+				}
+			}
+			LOG.trace("Merged {} blocks into chunk {}", blockMeshes.size(), chunk.key());
+		}
+
+	}
+
+	/**
+	 * @return keys of the blocks whose meshes make up {@code mesh}, more than one if {@code mesh} is a merged chunk,
+	 * or an empty list if {@code mesh} was not generated by a {@link MeshGeneratorJobManager}
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> List<ShapeKey<T>> blocks(final MeshView mesh)
+	{
+		return (List<ShapeKey<T>>) mesh.getProperties().getOrDefault(BLOCKS_KEY, Collections.emptyList());
 	}
 
 	private static MeshView makeMeshView(final Pair<float[], float[]> verticesAndNormals)
+	{
+		final PhongMaterial material = new PhongMaterial();
+		material.setSpecularColor(new Color(1, 1, 1, 1.0));
+		material.setSpecularPower(50);
+		//						material.diffuseColorProperty().bind( color );
+		final MeshView mv = new MeshView(makeMesh(verticesAndNormals));
+		mv.setOpacity(1.0);
+		//						synchronized ( this.isVisible )
+		//						{
+		//							mv.visibleProperty().bind( this.isVisible );
+		//						}
+		mv.setCullFace(CullFace.FRONT);
+		mv.setMaterial(material);
+		mv.setDrawMode(DrawMode.FILL);
+		return mv;
+	}
+
+	static TriangleMesh makeMesh(final Pair<float[], float[]> verticesAndNormals)
 	{
 		final float[]      vertices = verticesAndNormals.getA();
 		final float[]      normals  = verticesAndNormals.getB();
@@ -357,20 +454,7 @@ public class MeshGeneratorJobManager<T>
 			faceIndices[i + 2] = 0;
 		}
 		mesh.getFaces().addAll(faceIndices);
-		final PhongMaterial material = new PhongMaterial();
-		material.setSpecularColor(new Color(1, 1, 1, 1.0));
-		material.setSpecularPower(50);
-		//						material.diffuseColorProperty().bind( color );
-		final MeshView mv = new MeshView(mesh);
-		mv.setOpacity(1.0);
-		//						synchronized ( this.isVisible )
-		//						{
-		//							mv.visibleProperty().bind( this.isVisible );
-		//						}
-		mv.setCullFace(CullFace.FRONT);
-		mv.setMaterial(material);
-		mv.setDrawMode(DrawMode.FILL);
-		return mv;
+		return mesh;
 	}
 
 }
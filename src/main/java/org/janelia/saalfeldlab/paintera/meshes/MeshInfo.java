@@ -199,6 +199,11 @@ public class MeshInfo<T>
 		return this.meshSettings.cullFaceProperty();
 	}
 
+	public ObjectProperty<MeshExtraction> meshExtractionProperty()
+	{
+		return this.meshSettings.meshExtractionProperty();
+	}
+
 	public long[] containedFragments()
 	{
 		return meshManager.containedFragments(segmentId);
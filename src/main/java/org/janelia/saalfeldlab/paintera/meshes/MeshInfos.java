@@ -1,13 +1,17 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import gnu.trove.set.hash.TLongHashSet;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignment;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectionDelta;
 
 public class MeshInfos<T>
 {
@@ -28,24 +32,56 @@ public class MeshInfos<T>
 
 		this.meshSettings = meshSettings;
 
+		this.infos.setAll(createInfos(selectedSegments.getSelectedSegments(), assignment, meshManager));
+		// apply deltas only after all invalidation listeners registered before, e.g. the mesh manager, have been run
+		final List<SelectionDelta> pendingDeltas = new ArrayList<>();
+		selectedSegments.addDeltaListener(delta -> {
+			synchronized (pendingDeltas)
+			{
+				pendingDeltas.add(delta);
+			}
+		});
 		selectedSegments.addListener(obs -> {
-			final long[] segments = selectedSegments.getSelectedSegments();
-			final List<MeshInfo<T>> infos = Arrays
-					.stream(segments)
-					.mapToObj(id -> new MeshInfo<>(
-							id,
-							meshSettings.getOrAddMesh(id),
-							meshSettings.isManagedProperty(id),
-							assignment,
-							meshManager
-					))
-					.collect(Collectors.toList());
-
-			this.infos.forEach(MeshInfo::hangUp);
-			this.infos.setAll(infos);
+			synchronized (pendingDeltas)
+			{
+				pendingDeltas.forEach(delta -> update(delta, assignment, meshManager));
+				pendingDeltas.clear();
+			}
 		});
 	}
 
+	private void update(
+			final SelectionDelta delta,
+			final FragmentSegmentAssignment assignment,
+			final MeshManager<Long, T> meshManager)
+	{
+		final TLongHashSet      removed     = new TLongHashSet(delta.removed());
+		final List<MeshInfo<T>> toBeRemoved = this.infos
+				.stream()
+				.filter(info -> removed.contains(info.segmentId()))
+				.collect(Collectors.toList());
+		toBeRemoved.forEach(MeshInfo::hangUp);
+		this.infos.removeAll(new HashSet<>(toBeRemoved));
+		this.infos.addAll(createInfos(delta.added(), assignment, meshManager));
+	}
+
+	private List<MeshInfo<T>> createInfos(
+			final long[] segments,
+			final FragmentSegmentAssignment assignment,
+			final MeshManager<Long, T> meshManager)
+	{
+		return Arrays
+				.stream(segments)
+				.mapToObj(id -> new MeshInfo<>(
+						id,
+						meshSettings.getOrAddMesh(id),
+						meshSettings.isManagedProperty(id),
+						assignment,
+						meshManager
+				))
+				.collect(Collectors.toList());
+	}
+
 	public ObservableList<MeshInfo<T>> readOnlyInfos()
 	{
 		return this.readOnlyInfos;
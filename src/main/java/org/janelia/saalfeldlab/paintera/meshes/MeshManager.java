@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
@@ -38,4 +39,6 @@ public interface MeshManager<N, T>
 
 	public BooleanProperty areMeshesEnabledProperty();
 
+	public ExecutorService workers();
+
 }
@@ -5,12 +5,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
@@ -23,15 +21,24 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.Group;
 import net.imglib2.Interval;
 import net.imglib2.util.Pair;
+import org.janelia.saalfeldlab.paintera.control.assignment.AssignmentDelta;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentsInSelectedSegments;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectionDelta;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.stream.AbstractHighlightingARGBStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Shows meshes for all selected segments. Only meshes of segments that were (de-)selected according to the {@link
+ * SelectionDelta deltas} of the selection or whose fragments changed according to the {@link AssignmentDelta deltas} of
+ * the assignment are updated. Meshes of segments that result from a
+ * merge re-use block meshes of the merged segments through {@link MergedSegmentMeshCache}. Meshes are identified by
+ * the {@link InternedFragmentSet interned fragments} of their segment so that cache lookups do not iterate over all
+ * fragments.
+ *
  * @author Philipp Hanslovsky
  */
 public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, TLongHashSet>
@@ -47,10 +54,26 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 
 	private final FragmentSegmentAssignmentState assignment;
 
+	private final SegmentFragmentsRegistry segmentFragments;
+
 	private final AbstractHighlightingARGBStream stream;
 
 	private final Map<Long, MeshGenerator<TLongHashSet>> neurons = Collections.synchronizedMap(new HashMap<>());
 
+	// guarded by neurons
+	private final Map<Long, InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[]> meshCaches = new
+			HashMap<>();
+
+	// guarded by neurons
+	private final TLongHashSet staleSegments = new TLongHashSet();
+
+	// guarded by neurons
+	private final TLongHashSet changedSegments = new TLongHashSet();
+
+	// guarded by neurons
+	private final Map<Long, InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[]>
+			mergedMeshCaches = new HashMap<>();
+
 	private final Group root;
 
 	private final SelectedSegments selectedSegments;
@@ -86,6 +109,8 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		this.meshCache = meshCache;
 		this.root = root;
 		this.assignment = assignment;
+		// register before listening to the assignment so that stale fragments are invalidated first
+		this.segmentFragments = new SegmentFragmentsRegistry(assignment);
 		this.selectedSegments = selectedSegments;
 		this.fragmentsInSelectedSegments = new FragmentsInSelectedSegments(selectedSegments, assignment);
 		this.stream = stream;
@@ -96,11 +121,18 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		this.managers = managers;
 		this.workers = workers;
 
+		this.changedSegments.addAll(this.selectedSegments.getSelectedSegments());
+		this.assignment.addDeltaListener(this::assignmentChanged);
 		this.assignment.addListener(obs -> this.update());
+		this.selectedSegments.addDeltaListener(this::selectionChanged);
 		this.selectedSegments.addListener(obs -> this.update());
 		this.areMeshesEnabled.addListener((obs, oldv, newv) -> {
 			if (newv)
 			{
+				synchronized (neurons)
+				{
+					this.changedSegments.addAll(this.selectedSegments.getSelectedSegments());
+				}
 				update();
 			}
 			else
@@ -111,40 +143,115 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 
 	}
 
-	private void update()
+	@SuppressWarnings("unchecked")
+	private void assignmentChanged(final List<AssignmentDelta> deltas)
 	{
 		synchronized (neurons)
 		{
-			final long[]                                         selectedSegments    = this.selectedSegments
-					.getSelectedSegments();
-			final TLongHashSet                                   selectedSegmentsSet = new TLongHashSet
-					(selectedSegments);
-			final Set<Long>                                      currentlyShowing    = new HashSet<>();
-			final List<Entry<Long, MeshGenerator<TLongHashSet>>> toBeRemoved         = new ArrayList<>();
-			neurons.keySet().forEach(currentlyShowing::add);
-			for (final Entry<Long, MeshGenerator<TLongHashSet>> neuron : neurons.entrySet())
+			for (final AssignmentDelta delta : deltas)
 			{
-				final long         segment            = neuron.getKey();
-				final TLongHashSet fragmentsInSegment = assignment.getFragments(segment);
-				final boolean      isSelected         = selectedSegmentsSet.contains(segment);
-				final boolean      isConsistent       = neuron.getValue().getId().equals(fragmentsInSegment);
-				LOG.debug("Fragments in segment {}: {}", segment, fragmentsInSegment);
-				LOG.debug("Segment {} is selected? {}  Is consistent? {}", neuron.getKey(), isSelected, isConsistent);
-				if (!isSelected || !isConsistent)
+				final long[] affectedSegments = delta.affectedSegments();
+				this.staleSegments.addAll(affectedSegments);
+				Arrays.stream(affectedSegments).forEach(this.mergedMeshCaches::remove);
+				if (delta.type() == AssignmentDelta.Type.MERGE)
 				{
-					currentlyShowing.remove(neuron.getKey());
-					toBeRemoved.add(neuron);
+					final long[]         mergedSegments  = delta.mergedSegments();
+					final TLongHashSet[] mergedFragments = delta.mergedFragments();
+					// re-use the interned fragments of the parts' meshes so that their cached block meshes are hit
+					// without comparing fragments for every block
+					for (int part = 0; part < mergedSegments.length; ++part)
+					{
+						final TLongHashSet fragments = mergedFragments[part];
+						mergedFragments[part] = Optional
+								.ofNullable(neurons.get(mergedSegments[part]))
+								.map(MeshGenerator::getId)
+								.filter(fragments::equals)
+								.orElse(fragments);
+					}
+					// the segment may have changed again by a later delta of the same batch: only use its interned
+					// fragments if they are the union of the parts
+					final TLongHashSet union = new TLongHashSet();
+					Arrays.stream(mergedFragments).forEach(union::addAll);
+					final InternedFragmentSet interned = segmentFragments.getFragments(delta.segment());
+					final TLongHashSet        merged   = interned.equals(union) ? interned : union;
+					final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] caches = new
+							InterruptibleFunction[meshCache.length];
+					for (int level = 0; level < caches.length; ++level)
+					{
+						final int finalLevel = level;
+						final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] partCaches = new
+								InterruptibleFunction[mergedSegments.length];
+						for (int part = 0; part < partCaches.length; ++part)
+						{
+							partCaches[part] = Optional
+									.ofNullable(meshCaches.get(mergedSegments[part]))
+									.map(c -> c[finalLevel])
+									.orElse(meshCache[level]);
+						}
+						caches[level] = new MergedSegmentMeshCache(
+								meshCache[level],
+								blockListCache[level],
+								merged,
+								mergedFragments,
+								partCaches
+						);
+					}
+					this.mergedMeshCaches.put(delta.segment(), caches);
 				}
-
 			}
-			toBeRemoved.stream().map(e -> e.getValue()).forEach(this::removeMesh);
-			LOG.debug("Currently showing {} ", currentlyShowing);
-			LOG.debug("Selection {}", selectedSegments);
+		}
+	}
+
+	private void selectionChanged(final SelectionDelta delta)
+	{
+		synchronized (neurons)
+		{
+			this.changedSegments.addAll(delta.added());
+			this.changedSegments.addAll(delta.removed());
+		}
+	}
+
+	private void update()
+	{
+		synchronized (neurons)
+		{
+			final TLongHashSet segments = new TLongHashSet(changedSegments);
+			segments.addAll(staleSegments);
+			final TLongHashSet toBeAdded   = new TLongHashSet();
+			final TLongHashSet toBeRemoved = new TLongHashSet();
+			segments.forEach(segment -> {
+				final MeshGenerator<TLongHashSet> neuron     = neurons.get(segment);
+				final boolean                     isSelected = selectedSegments.isSegmentSelected(segment);
+				final boolean isConsistent = neuron == null
+						|| !isSelected
+						|| !staleSegments.contains(segment)
+						|| neuron.getId().equals(segmentFragments.getFragments(segment));
+				LOG.debug("Segment {} is selected? {}  Is consistent? {}", segment, isSelected, isConsistent);
+				if (neuron != null && (!isSelected || !isConsistent))
+					toBeRemoved.add(segment);
+				if (isSelected && (neuron == null || !isConsistent))
+					toBeAdded.add(segment);
+				return true;
+			});
+			changedSegments.clear();
+			staleSegments.clear();
 			LOG.debug("To be removed {}", toBeRemoved);
-			Arrays
-					.stream(selectedSegments)
-					.filter(id -> !currentlyShowing.contains(id))
-					.forEach(this::generateMesh);
+			LOG.debug("To be added {}", toBeAdded);
+			toBeRemoved.forEach(segment -> {
+				removeMeshForSegment(segment);
+				return true;
+			});
+			toBeAdded.forEach(segment -> {
+				generateMesh(segment);
+				return true;
+			});
+			segments.forEach(segment -> {
+				if (!neurons.containsKey(segment))
+					segmentFragments.remove(segment);
+				return true;
+			});
+			// merged segments that are not selected
+			mergedMeshCaches.clear();
 		}
 	}
 
@@ -164,7 +271,7 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 			return;
 		}
 
-		final TLongHashSet fragments = this.assignment.getFragments(id);
+		final InternedFragmentSet fragments = this.segmentFragments.getFragments(id);
 
 		final IntegerProperty color = new SimpleIntegerProperty(stream.argb(id));
 		stream.addListener(obs -> color.set(stream.argb(id)));
@@ -179,6 +286,11 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 
 		LOG.debug("Adding mesh for segment {}.", id);
 		final MeshSettings meshSettings = this.meshSettings.getOrAddMesh(idObject);
+		final InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCache;
+		synchronized (neurons)
+		{
+			meshCache = Optional.ofNullable(this.mergedMeshCaches.remove(idObject)).orElse(this.meshCache);
+		}
 		final MeshGenerator<TLongHashSet> nfx = new MeshGenerator<>(
 				this.root,
 				fragments,
@@ -189,6 +301,7 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 				meshSettings.simplificationIterationsProperty().get(),
 				meshSettings.smoothingLambdaProperty().get(),
 				meshSettings.smoothingIterationsProperty().get(),
+				meshSettings.meshExtractionProperty().get(),
 				managers,
 				workers
 		);
@@ -198,10 +311,29 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		                                                      : meshSettings));
 		nfx.bindTo(isManaged.get() ? this.meshSettings.getGlobalSettings() : meshSettings);
 
-		neurons.put(idObject, nfx);
+		synchronized (neurons)
+		{
+			neurons.put(idObject, nfx);
+			meshCaches.put(idObject, meshCache);
+		}
 
 	}
 
+	private void removeMeshForSegment(final long segment)
+	{
+		final MeshGenerator<TLongHashSet> mesh;
+		synchronized (neurons)
+		{
+			mesh = this.neurons.remove(segment);
+			this.meshCaches.remove(segment);
+		}
+		if (mesh != null)
+		{
+			mesh.isEnabledProperty().set(false);
+			mesh.interrupt();
+		}
+	}
+
 	@Override
 	public void removeMesh(final Long id)
 	{
@@ -211,17 +343,21 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 	private void removeMesh(final MeshGenerator<TLongHashSet> mesh)
 	{
 		mesh.isEnabledProperty().set(false);
-		final List<Long> toRemove = this.neurons
-				.entrySet()
-				.stream()
-				.filter(e -> e.getValue().getId().equals(mesh.getId()))
-				.map(Entry::getKey)
-				.collect(Collectors.toList());
-		toRemove
-				.stream()
-				.map(this.neurons::remove)
-				.filter(n -> n != null)
-				.forEach(MeshGenerator::interrupt);
+		synchronized (neurons)
+		{
+			final List<Long> toRemove = this.neurons
+					.entrySet()
+					.stream()
+					.filter(e -> e.getValue().getId().equals(mesh.getId()))
+					.map(Entry::getKey)
+					.collect(Collectors.toList());
+			toRemove.forEach(this.meshCaches::remove);
+			toRemove
+					.stream()
+					.map(this.neurons::remove)
+					.filter(n -> n != null)
+					.forEach(MeshGenerator::interrupt);
+		}
 	}
 
 	@Override
@@ -299,4 +435,10 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		return this.areMeshesEnabled;
 	}
 
+	@Override
+	public ExecutorService workers()
+	{
+		return this.workers;
+	}
+
 }
@@ -0,0 +1,236 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory budget for the block {@link MeshView meshes} of all {@link MeshGenerator generators}. Each mesh is
+ * registered with the size of its {@link TriangleMesh} in bytes and whether it is shown. When the total size exceeds
+ * the budget, meshes that are not currently shown are evicted, least recently shown first. Generators register each
+ * block mesh with its visibility, so blocks of a shown segment that are outside of the view are evicted like blocks of
+ * hidden segments. Meshes that are shown are never evicted: the budget may be exceeded if all meshes are shown.
+ * Generators regenerate each evicted block mesh when it is shown again.
+ *
+ * The budget is enforced on the JavaFX application thread, at most once per pulse, because whether a mesh is shown is
+ * a JavaFX property.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class MeshMemoryBudget
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final long DEFAULT_BUDGET_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+	private static final MeshMemoryBudget GLOBAL = new MeshMemoryBudget(DEFAULT_BUDGET_BYTES);
+
+	private static final class Entry
+	{
+
+		private final long bytes;
+
+		private final ObservableBooleanValue isShown;
+
+		private final Runnable evict;
+
+		private long lastShown;
+
+		private Entry(
+				final long bytes,
+				final ObservableBooleanValue isShown,
+				final Runnable evict,
+				final long lastShown)
+		{
+			this.bytes = bytes;
+			this.isShown = isShown;
+			this.evict = evict;
+			this.lastShown = lastShown;
+		}
+
+	}
+
+	private final Executor enforcer;
+
+	private final LongProperty budget = new SimpleLongProperty();
+
+	private final ReadOnlyLongWrapper usage = new ReadOnlyLongWrapper(0);
+
+	// guarded by this
+	private final Map<MeshView, Entry> entries = new HashMap<>();
+
+	// guarded by this
+	private long usedBytes = 0;
+
+	// guarded by this, increases every time it is checked which meshes are shown
+	private long tick = 0;
+
+	public MeshMemoryBudget(final long budgetBytes)
+	{
+		this(budgetBytes, null);
+	}
+
+	/**
+	 * @param enforcer
+	 * 		runs {@link #enforce()}, at most once per pulse on the JavaFX application thread if {@code null}
+	 */
+	MeshMemoryBudget(final long budgetBytes, final Executor enforcer)
+	{
+		super();
+		this.enforcer = enforcer == null
+		                ? update -> FXUpdateCoalescer.getInstance().submit(this, update)
+		                : enforcer;
+		this.budget.set(budgetBytes);
+		this.budget.addListener(obs -> enforceLater());
+	}
+
+	/**
+	 * @return budget that is shared by all mesh managers
+	 */
+	public static MeshMemoryBudget global()
+	{
+		return GLOBAL;
+	}
+
+	/**
+	 * @param isShown
+	 * 		{@code true} if {@code mesh} is shown by its generator, read on the JavaFX application thread
+	 * @param evict
+	 * 		called (outside of any lock) when {@code mesh} is evicted, must remove {@code mesh} from the scene
+	 */
+	public void register(final MeshView mesh, final ObservableBooleanValue isShown, final Runnable evict)
+	{
+		final long bytes = sizeInBytes(mesh);
+		synchronized (this)
+		{
+			final Entry previous = entries.put(mesh, new Entry(bytes, isShown, evict, ++tick));
+			usedBytes += bytes - (previous == null ? 0 : previous.bytes);
+		}
+		enforceLater();
+	}
+
+	/**
+	 * Stop tracking {@code mesh}, e.g. after it was removed by its generator. Does nothing if {@code mesh} is not
+	 * registered.
+	 */
+	public void release(final MeshView mesh)
+	{
+		synchronized (this)
+		{
+			final Entry entry = entries.remove(mesh);
+			if (entry == null)
+			{
+				return;
+			}
+			usedBytes -= entry.bytes;
+		}
+		enforceLater();
+	}
+
+	/**
+	 * @return budget in bytes
+	 */
+	public LongProperty budgetProperty()
+	{
+		return this.budget;
+	}
+
+	/**
+	 * @return bytes used by all registered meshes, updated on the JavaFX application thread
+	 */
+	public ReadOnlyLongProperty usageProperty()
+	{
+		return this.usage.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return size of the vertex, normal, texture coordinate, and face arrays of {@code mesh}
+	 */
+	public static long sizeInBytes(final MeshView mesh)
+	{
+		if (!(mesh.getMesh() instanceof TriangleMesh))
+		{
+			return 0;
+		}
+		final TriangleMesh triangles = (TriangleMesh) mesh.getMesh();
+		return Float.BYTES * (long) (triangles.getPoints().size()
+				+ triangles.getNormals().size()
+				+ triangles.getTexCoords().size())
+				+ Integer.BYTES * (long) triangles.getFaces().size();
+	}
+
+	/**
+	 * Check which meshes are shown and evict meshes that are not shown if the budget is exceeded. Call this when
+	 * meshes are hidden or shown: the budget only learns about that when it is enforced.
+	 */
+	public void enforceLater()
+	{
+		enforcer.execute(this::enforce);
+	}
+
+	void enforce()
+	{
+		final long           budget  = this.budget.get();
+		final List<Runnable> evicted = new ArrayList<>();
+		final long           used;
+		final long           available;
+		synchronized (this)
+		{
+			final List<Map.Entry<MeshView, Entry>> candidates = new ArrayList<>();
+			++tick;
+			for (final Map.Entry<MeshView, Entry> entry : entries.entrySet())
+			{
+				if (entry.getValue().isShown.get())
+				{
+					entry.getValue().lastShown = tick;
+				}
+				else
+				{
+					candidates.add(entry);
+				}
+			}
+
+			if (usedBytes > budget)
+			{
+				candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastShown));
+				for (int i = 0; i < candidates.size() && usedBytes > budget; ++i)
+				{
+					final Map.Entry<MeshView, Entry> candidate = candidates.get(i);
+					entries.remove(candidate.getKey());
+					usedBytes -= candidate.getValue().bytes;
+					evicted.add(candidate.getValue().evict);
+				}
+			}
+			used = usedBytes;
+			available = budget - usedBytes;
+		}
+
+		evicted.forEach(Runnable::run);
+		this.usage.set(used);
+		if (evicted.size() > 0)
+		{
+			LOG.debug("Evicted {} meshes, using {} bytes of {}", evicted.size(), used, budget);
+		}
+		if (available < 0)
+		{
+			LOG.debug("Shown meshes exceed mesh memory budget by {} bytes", -available);
+		}
+	}
+
+}
@@ -34,6 +34,9 @@ public class MeshSettings
 
 	private final BooleanProperty isVisible = new SimpleBooleanProperty(true);
 
+	private final ObjectProperty<MeshExtraction> meshExtraction = new SimpleObjectProperty<>(MeshExtraction
+			.MARCHING_CUBES);
+
 	public MeshSettings(final int numScaleLevels)
 	{
 		super();
@@ -86,6 +89,11 @@ public class MeshSettings
 		return this.isVisible;
 	}
 
+	public ObjectProperty<MeshExtraction> meshExtractionProperty()
+	{
+		return this.meshExtraction;
+	}
+
 	public int numScaleLevels()
 	{
 		return this.numScaleLevels;
@@ -109,6 +117,7 @@ public class MeshSettings
 		this.cullFace.set(that.cullFace.get());
 		this.inflate.set(that.inflate.get());
 		this.isVisible.set(that.isVisible.get());
+		this.meshExtraction.set(that.meshExtraction.get());
 	}
 
 }
@@ -0,0 +1,164 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.logic.BoolType;
+
+/**
+ * Binary mask on a regular 3D grid, stored as one bit per grid point. Each row along the first dimension starts at a
+ * new {@code long} word so that {@link MarchingCubes} can skip entire words of empty (or full) cubes. Grid point
+ * {@code (x, y, z)} corresponds to position {@code min + (x, y, z) * steps} in the sampled data.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class PackedMask
+{
+
+	private final long[] min;
+
+	private final long[] steps;
+
+	private final int[] dimensions;
+
+	private final int wordsPerRow;
+
+	private final long[] words;
+
+	public PackedMask(final long[] min, final long[] steps, final int[] dimensions)
+	{
+		this.min = min.clone();
+		this.steps = steps.clone();
+		this.dimensions = dimensions.clone();
+		this.wordsPerRow = (dimensions[0] + 63) >>> 6;
+		this.words = new long[wordsPerRow * dimensions[1] * dimensions[2]];
+	}
+
+	public long min(final int d)
+	{
+		return min[d];
+	}
+
+	public long step(final int d)
+	{
+		return steps[d];
+	}
+
+	public int dimension(final int d)
+	{
+		return dimensions[d];
+	}
+
+	public int wordsPerRow()
+	{
+		return wordsPerRow;
+	}
+
+	public boolean get(final int x, final int y, final int z)
+	{
+		return (words[rowOffset(y, z) + (x >>> 6)] >>> (x & 63) & 1L) != 0;
+	}
+
+	public void set(final int x, final int y, final int z)
+	{
+		words[rowOffset(y, z) + (x >>> 6)] |= 1L << (x & 63);
+	}
+
+	/**
+	 * @return bits {@code 64 * word} through {@code 64 * word + 63} of row {@code (y, z)}. Bits beyond the last grid
+	 * point of a row are always zero.
+	 */
+	public long word(final int word, final int y, final int z)
+	{
+		return words[rowOffset(y, z) + word];
+	}
+
+	/**
+	 * @return {@code true} if no grid point is set.
+	 */
+	public boolean isEmpty()
+	{
+		for (final long word : words)
+			if (word != 0)
+				return false;
+		return true;
+	}
+
+	private int rowOffset(final int y, final int z)
+	{
+		return (z * dimensions[1] + y) * wordsPerRow;
+	}
+
+	/**
+	 * Evaluate {@code mask} once for each grid point and pack the result.
+	 *
+	 * @param data
+	 * 		data to be sampled
+	 * @param bounds
+	 * 		grid points outside of {@code bounds} are not evaluated and remain unset. If {@code null}, all grid points
+	 * 		are evaluated.
+	 * @param mask
+	 * 		converts data into foreground/background. Called sequentially from the calling thread only.
+	 * @param min
+	 * 		position of the first grid point in {@code data}
+	 * @param steps
+	 * 		grid spacing
+	 * @param dimensions
+	 * 		number of grid points per dimension
+	 */
+	public static <T> PackedMask sample(
+			final RandomAccessible<T> data,
+			final Interval bounds,
+			final Converter<? super T, BoolType> mask,
+			final long[] min,
+			final long[] steps,
+			final int[] dimensions)
+	{
+		final PackedMask packed = new PackedMask(min, steps, dimensions);
+
+		// range of valid grid points per dimension
+		final int[] from = new int[3];
+		final int[] to = new int[3];
+		for (int d = 0; d < 3; ++d)
+		{
+			from[d] = 0;
+			to[d] = dimensions[d];
+			if (bounds != null)
+			{
+				final long lower = bounds.min(d) - min[d];
+				final long upper = bounds.max(d) - min[d];
+				from[d] = lower <= 0 ? 0 : (int) Math.min((lower + steps[d] - 1) / steps[d], dimensions[d]);
+				to[d] = upper < 0 ? 0 : (int) Math.min(upper / steps[d] + 1, dimensions[d]);
+			}
+			if (from[d] >= to[d])
+				return packed;
+		}
+
+		final RandomAccess<T> access   = data.randomAccess();
+		final BoolType        isInMask = new BoolType();
+		final long[]          position = new long[3];
+		position[0] = min[0] + from[0] * steps[0];
+		for (int z = from[2]; z < to[2]; ++z)
+		{
+			position[2] = min[2] + z * steps[2];
+			for (int y = from[1]; y < to[1]; ++y)
+			{
+				position[1] = min[1] + y * steps[1];
+				access.setPosition(position);
+				final int rowOffset = packed.rowOffset(y, z);
+				for (int x = from[0]; x < to[0]; ++x)
+				{
+					// do not move past the last grid point: data need not be defined outside of bounds
+					if (x > from[0])
+						access.move(steps[0], 0);
+					mask.convert(access.get(), isInMask);
+					if (isInMask.get())
+						packed.words[rowOffset + (x >>> 6)] |= 1L << (x & 63);
+				}
+			}
+		}
+		return packed;
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.janelia.saalfeldlab.paintera.control.assignment.AssignmentDelta;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Interns the fragments of segments as {@link InternedFragmentSet}: as long as the assignment of a segment does not
+ * change, the same instance is returned for that segment. Keys and caches that use these sets as identifiers compare
+ * by identity and pre-computed hash instead of iterating over all fragments. Segments that are affected by an {@link
+ * AssignmentDelta} are invalidated and re-interned with a new version on the next request. If the assignment changes
+ * without publishing deltas, all segments are invalidated.
+ *
+ * Register the registry with the assignment before any listener that requests fragments in response to the same
+ * change.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class SegmentFragmentsRegistry
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final FragmentSegmentAssignmentState assignment;
+
+	private final TLongObjectHashMap<InternedFragmentSet> fragments = new TLongObjectHashMap<>();
+
+	// guarded by fragments
+	private long nextVersion = 0;
+
+	// guarded by fragments
+	private boolean receivedDeltas = false;
+
+	public SegmentFragmentsRegistry(final FragmentSegmentAssignmentState assignment)
+	{
+		super();
+		this.assignment = assignment;
+		this.assignment.addDeltaListener(this::invalidate);
+		this.assignment.addListener(obs -> this.assignmentChanged());
+	}
+
+	/**
+	 * @return interned fragments of {@code segment}.
+	 */
+	public InternedFragmentSet getFragments(final long segment)
+	{
+		synchronized (fragments)
+		{
+			final InternedFragmentSet interned = fragments.get(segment);
+			if (interned != null)
+				return interned;
+			final InternedFragmentSet newlyInterned = new InternedFragmentSet(
+					segment,
+					nextVersion++,
+					assignment.getFragments(segment));
+			fragments.put(segment, newlyInterned);
+			return newlyInterned;
+		}
+	}
+
+	/**
+	 * Stop tracking {@code segment}, e.g. when its mesh was removed. Previously returned sets remain valid.
+	 */
+	public void remove(final long segment)
+	{
+		synchronized (fragments)
+		{
+			fragments.remove(segment);
+		}
+	}
+
+	private void invalidate(final List<AssignmentDelta> deltas)
+	{
+		synchronized (fragments)
+		{
+			receivedDeltas = true;
+			for (final AssignmentDelta delta : deltas)
+				for (final long segment : delta.affectedSegments())
+					fragments.remove(segment);
+		}
+	}
+
+	private void assignmentChanged()
+	{
+		synchronized (fragments)
+		{
+			if (!receivedDeltas && !fragments.isEmpty())
+			{
+				LOG.debug("Assignment changed without deltas, invalidating {} segments", fragments.size());
+				fragments.clear();
+			}
+			receivedDeltas = false;
+		}
+	}
+
+}
@@ -5,6 +5,13 @@ import java.util.Arrays;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 
+/**
+ * Key for the mesh of a shape in a block. The hash code is computed once at construction: use identifiers with cheap
+ * {@link Object#hashCode()}, e.g. {@link InternedFragmentSet} instead of plain fragment sets.
+ *
+ * @param <T>
+ * 		shape identifier
+ */
 public class ShapeKey<T>
 {
 
@@ -18,16 +25,41 @@ public class ShapeKey<T>
 
 	private final int smoothingIterations;
 
+	private final MeshExtraction meshExtraction;
+
 	private final long[] min;
 
 	private final long[] max;
 
+	private final int hash;
+
+	public ShapeKey(
+			final T shapeId,
+			final int scaleIndex,
+			final int simplificationIterations,
+			final double smoothingLambda,
+			final int smoothingIterations,
+			final long[] min,
+			final long[] max)
+	{
+		this(
+				shapeId,
+				scaleIndex,
+				simplificationIterations,
+				smoothingLambda,
+				smoothingIterations,
+				MeshExtraction.MARCHING_CUBES,
+				min,
+				max);
+	}
+
 	public ShapeKey(
 			final T shapeId,
 			final int scaleIndex,
 			final int simplificationIterations,
 			final double smoothingLambda,
 			final int smoothingIterations,
+			final MeshExtraction meshExtraction,
 			final long[] min,
 			final long[] max)
 	{
@@ -36,32 +68,42 @@ public class ShapeKey<T>
 		this.simplificationIterations = simplificationIterations;
 		this.smoothingLambda = smoothingLambda;
 		this.smoothingIterations = smoothingIterations;
+		this.meshExtraction = meshExtraction;
 		this.min = min;
 		this.max = max;
+		this.hash = computeHashCode();
 	}
 
 	@Override
 	public String toString()
 	{
 		return String.format(
-				"{shapeId=%s, scaleIndex=%d, simplifications=%d, smoothingLambda=%f, smoothings=%d, min=%s, max=%s}",
+				"{shapeId=%s, scaleIndex=%d, simplifications=%d, smoothingLambda=%f, smoothings=%d, extraction=%s, " +
+						"min=%s, max=%s}",
 				shapeId,
 				scaleIndex,
 				simplificationIterations,
 				smoothingLambda,
 				smoothingIterations,
+				meshExtraction.name(),
 				Arrays.toString(min), Arrays.toString(max)
 		                    );
 	}
 
 	@Override
 	public int hashCode()
+	{
+		return hash;
+	}
+
+	private int computeHashCode()
 	{
 		int result = scaleIndex;
 		result = 31 * result + shapeId.hashCode();
 		result = 31 * result + simplificationIterations;
 		result = 31 * result + Double.hashCode(smoothingLambda);
 		result = 31 * result + smoothingIterations;
+		result = 31 * result + meshExtraction.hashCode();
 		result = 31 * result + Arrays.hashCode(this.min);
 		result = 31 * result + Arrays.hashCode(this.max);
 		return result;
@@ -73,13 +115,16 @@ public class ShapeKey<T>
 		if (other instanceof ShapeKey<?>)
 		{
 			final ShapeKey<?> otherShapeKey = (ShapeKey<?>) other;
-			return shapeId.equals(otherShapeKey.shapeId) &&
+			// compare shape ids last: equality of large ids, e.g. fragment sets, may be expensive
+			return otherShapeKey.hash == hash &&
 					otherShapeKey.scaleIndex == scaleIndex &&
 					otherShapeKey.simplificationIterations == this.simplificationIterations &&
 					otherShapeKey.smoothingLambda == this.smoothingLambda &&
 					otherShapeKey.smoothingIterations == this.smoothingIterations &&
+					otherShapeKey.meshExtraction == this.meshExtraction &&
 					Arrays.equals(otherShapeKey.min, min) &&
-					Arrays.equals(otherShapeKey.max, max);
+					Arrays.equals(otherShapeKey.max, max) &&
+					(shapeId == otherShapeKey.shapeId || shapeId.equals(otherShapeKey.shapeId));
 		}
 		return false;
 	}
@@ -109,6 +154,11 @@ public class ShapeKey<T>
 		return smoothingIterations;
 	}
 
+	public MeshExtraction meshExtraction()
+	{
+		return meshExtraction;
+	}
+
 	public long[] min()
 	{
 		return min.clone();
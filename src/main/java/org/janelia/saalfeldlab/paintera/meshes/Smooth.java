@@ -1,19 +1,21 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
-import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
-import gnu.trove.list.array.TFloatArrayList;
-import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.set.hash.TIntHashSet;
-import net.imglib2.util.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Smooth a triangle mesh.
  *
+ * Vertices are deduplicated once and their neighborhoods are stored in compressed sparse row (CSR) format: the
+ * neighbors of vertex {@code i} are {@code neighbors[offsets[i]]} through {@code neighbors[offsets[i + 1] - 1]}.
+ * Smoothing iterations are tight loops over these primitive arrays that run in parallel over ranges of vertices for
+ * large meshes.
+ *
  * @author Stephan Saalfeld
+ * @author Philipp Hanslovsky
  */
 public class Smooth
 {
@@ -26,131 +28,190 @@ public class Smooth
 
 	public static final int DEFAULT_ITERATIONS = 3;
 
-	private static boolean isBoundary(
-			final ArrayList<TIntHashSet> vertexTriangleLUT,
-			final ArrayList<TIntHashSet> edgeSets,
-			final int vertexIndex)
-	{
-		final TIntHashSet vertexTriangles = vertexTriangleLUT.get(vertexIndex);
-		final TIntHashSet copy            = new TIntHashSet();
-		return edgeSets.get(vertexIndex).forEach(edge ->
-		{
-			copy.clear();
-			copy.addAll(vertexTriangles);
-			copy.retainAll(vertexTriangleLUT.get(edge));
-			return copy.size() < 2;
+	/**
+	 * Meshes with fewer vertices are smoothed sequentially.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
 
-		});
-	}
+	private static final int VERTICES_PER_TASK = 1 << 13;
 
-	private static boolean[] boundaryVertices(
-			final ArrayList<TIntHashSet> vertexTriangleLUT,
-			final ArrayList<TIntArrayList> triangleVertexLUT)
+	public static float[] smooth(final float[] vertices, final double lambda, final int iterations)
 	{
-		final ArrayList<TIntHashSet> edgeSets         = Convert.convertToEdgeSets(vertexTriangleLUT,
-				triangleVertexLUT);
-		final boolean[]              boundaryVertices = new boolean[vertexTriangleLUT.size()];
-		for (int i = 0; i < boundaryVertices.length; ++i)
-			boundaryVertices[i] = isBoundary(vertexTriangleLUT, edgeSets, i);
-		return boundaryVertices;
+		return smooth(vertices, lambda, iterations, PARALLEL_THRESHOLD);
 	}
 
-	private static void getVertex(final float[] vertices, final double[] vertexRef, final int vertexIndex)
+	/**
+	 * @param parallelThreshold
+	 * 		meshes with fewer vertices are smoothed sequentially
+	 */
+	static float[] smooth(
+			final float[] vertices,
+			final double lambda,
+			final int iterations,
+			final int parallelThreshold)
 	{
-		int i = vertexIndex * 3;
-		vertexRef[0] = vertices[i];
-		vertexRef[1] = vertices[++i];
-		vertexRef[2] = vertices[++i];
-	}
+		LOG.debug("Smoothing {} vertices with lambda={} and iterations={}", vertices.length, lambda, iterations);
 
-	private static void setVertex(final float[] vertices, final double[] vertexRef, final int vertexIndex)
-	{
-		int i = vertexIndex * 3;
-		vertices[i] = (float) vertexRef[0];
-		vertices[++i] = (float) vertexRef[1];
-		vertices[++i] = (float) vertexRef[2];
-	}
+		assert vertices.length % 9 == 0;
 
+		// vertex indices of each triangle corner
+		final int[]          triangleVertices = new int[vertices.length / 3];
+		final VertexIndexMap vertexIndices    = new VertexIndexMap(triangleVertices.length / 4);
+		for (int corner = 0, k = 0; corner < triangleVertices.length; ++corner, k += 3)
+			triangleVertices[corner] = vertexIndices.insert(vertices[k], vertices[k + 1], vertices[k + 2]);
 
-	private static void addVertex(final float[] vertices, final double[] vertexRef, final int vertexIndex)
-	{
-		int i = vertexIndex * 3;
-		vertexRef[0] += vertices[i];
-		vertexRef[1] += vertices[++i];
-		vertexRef[2] += vertices[++i];
+		final int numVertices = vertexIndices.size();
+		final int[] offsets = new int[numVertices + 1];
+		final boolean[] isBoundary = new boolean[numVertices];
+		final int[] neighbors = adjacency(triangleVertices, numVertices, offsets, isBoundary);
+
+		float[] coordinates1 = vertexIndices.vertices();
+		float[] coordinates2 = new float[coordinates1.length];
+		final boolean parallel = numVertices >= parallelThreshold;
+		final int numTasks = (numVertices + VERTICES_PER_TASK - 1) / VERTICES_PER_TASK;
+
+		for (int iteration = 0; iteration < iterations; ++iteration)
+		{
+			final float[] source = coordinates1;
+			final float[] target = coordinates2;
+			if (parallel)
+				IntStream.range(0, numTasks).parallel().forEach(task -> smooth(
+						source,
+						target,
+						offsets,
+						neighbors,
+						isBoundary,
+						lambda,
+						task * VERTICES_PER_TASK,
+						Math.min((task + 1) * VERTICES_PER_TASK, numVertices)));
+			else
+				smooth(source, target, offsets, neighbors, isBoundary, lambda, 0, numVertices);
+			coordinates1 = target;
+			coordinates2 = source;
+		}
+
+		final float[] smoothed = new float[vertices.length];
+		for (int corner = 0, k = 0; corner < triangleVertices.length; ++corner, k += 3)
+		{
+			final int v = 3 * triangleVertices[corner];
+			smoothed[k] = coordinates1[v];
+			smoothed[k + 1] = coordinates1[v + 1];
+			smoothed[k + 2] = coordinates1[v + 2];
+		}
+		return smoothed;
 	}
 
-	public static float[] smooth(final float[] vertices, final double lambda, final int iterations)
+	/**
+	 * Move each non-boundary vertex in {@code [fromVertex, toVertex)} towards the mean of its neighbors by {@code
+	 * lambda}. Boundary vertices are copied.
+	 */
+	private static void smooth(
+			final float[] source,
+			final float[] target,
+			final int[] offsets,
+			final int[] neighbors,
+			final boolean[] isBoundary,
+			final double lambda,
+			final int fromVertex,
+			final int toVertex)
 	{
-		LOG.debug("Smoothing {} vertices with lambda={} and iterations={}", vertices.length, lambda, iterations);
-		Triple<TFloatArrayList, ArrayList<TIntHashSet>, ArrayList<TIntArrayList>> luts               = Convert
-				.convertToLUT(
-				vertices);
-		float[]                                                                   vertexCoordinates1 = luts.getA()
-				.toArray();
-		final ArrayList<TIntHashSet>                                              vertexTriangleLUT  = luts.getB();
-		final ArrayList<TIntArrayList>                                            triangleVertexLUT  = luts.getC();
-		final boolean[]                                                           boundaryVertices   =
-				boundaryVertices(
-				vertexTriangleLUT,
-				triangleVertexLUT
-		                                                                                                               );
+		for (int vertex = fromVertex, v = 3 * fromVertex; vertex < toVertex; ++vertex, v += 3)
+		{
+			final double x = source[v];
+			final double y = source[v + 1];
+			final double z = source[v + 2];
+			final int start = offsets[vertex];
+			final int stop = offsets[vertex + 1];
+			if (isBoundary[vertex] || start == stop)
+			{
+				target[v] = (float) x;
+				target[v + 1] = (float) y;
+				target[v + 2] = (float) z;
+				continue;
+			}
+			double sx = 0, sy = 0, sz = 0;
+			for (int n = start; n < stop; ++n)
+			{
+				final int w = 3 * neighbors[n];
+				sx += source[w];
+				sy += source[w + 1];
+				sz += source[w + 2];
+			}
+			final double c = 1.0 / (stop - start);
+			target[v] = (float) ((sx * c - x) * lambda + x);
+			target[v + 1] = (float) ((sy * c - y) * lambda + y);
+			target[v + 2] = (float) ((sz * c - z) * lambda + z);
+		}
+	}
 
-		for (int iteration = 0; iteration < iterations; ++iteration)
+	/**
+	 * Build CSR adjacency of vertices from triangles. A vertex is on the boundary if any of its edges is shared by less
+	 * than two triangles.
+	 *
+	 * @param triangleVertices
+	 * 		vertex indices of triangle corners (stride 3)
+	 * @param numVertices
+	 * 		number of distinct vertices
+	 * @param offsets
+	 * 		output, {@code numVertices + 1} row offsets into the returned neighbor array
+	 * @param isBoundary
+	 * 		output, boundary flag for each vertex
+	 *
+	 * @return neighbor indices of all vertices, each row sorted and without duplicates
+	 */
+	private static int[] adjacency(
+			final int[] triangleVertices,
+			final int numVertices,
+			final int[] offsets,
+			final boolean[] isBoundary)
+	{
+		// each triangle contributes two (directed) edges per corner
+		final int[] rawOffsets = new int[numVertices + 1];
+		for (int corner = 0; corner < triangleVertices.length; ++corner)
+			rawOffsets[triangleVertices[corner] + 1] += 2;
+		for (int vertex = 0; vertex < numVertices; ++vertex)
+			rawOffsets[vertex + 1] += rawOffsets[vertex];
+
+		final int[] raw = new int[rawOffsets[numVertices]];
+		final int[] fill = Arrays.copyOf(rawOffsets, numVertices);
+		for (int t = 0; t < triangleVertices.length; t += 3)
 		{
-			float[] vertexCoordinates2 = new float[vertexCoordinates1.length];
+			final int a = triangleVertices[t];
+			final int b = triangleVertices[t + 1];
+			final int c = triangleVertices[t + 2];
+			raw[fill[a]++] = b;
+			raw[fill[a]++] = c;
+			raw[fill[b]++] = a;
+			raw[fill[b]++] = c;
+			raw[fill[c]++] = a;
+			raw[fill[c]++] = b;
+		}
 
-			final double[]    vertexRef          = new double[3];
-			final double[]    otherVertexRef     = new double[3];
-			AtomicInteger     count              = new AtomicInteger(0);
-			final TIntHashSet otherVertexIndices = new TIntHashSet();
-			for (int vertexIndex = 0; vertexIndex < vertexTriangleLUT.size(); ++vertexIndex)
+		// sort each row, count multiplicities (number of triangles sharing an edge), and compact in place
+		int size = 0;
+		for (int vertex = 0; vertex < numVertices; ++vertex)
+		{
+			final int start = rawOffsets[vertex];
+			final int stop = rawOffsets[vertex + 1];
+			Arrays.sort(raw, start, stop);
+			offsets[vertex] = size;
+			boolean boundary = false;
+			for (int n = start; n < stop; )
 			{
-				getVertex(vertexCoordinates1, vertexRef, vertexIndex);
-				if (!boundaryVertices[vertexIndex])
+				final int neighbor = raw[n];
+				int multiplicity = 0;
+				for (; n < stop && raw[n] == neighbor; ++n)
+					++multiplicity;
+				// degenerate triangles may reference the same vertex twice
+				if (neighbor != vertex)
 				{
-					final int fVertexIndex = vertexIndex;
-					count.set(0);
-					otherVertexIndices.clear();
-					otherVertexRef[0] = 0;
-					otherVertexRef[1] = 0;
-					otherVertexRef[2] = 0;
-
-					vertexTriangleLUT.get(vertexIndex).forEach(otherTriangleIndex ->
-					{
-						final TIntArrayList otherVertices = triangleVertexLUT.get(otherTriangleIndex);
-						for (int k = 0; k < otherVertices.size(); ++k)
-						{
-							final int otherVertexIndex = otherVertices.get(k);
-							if (otherVertexIndex != fVertexIndex)
-								otherVertexIndices.add(otherVertexIndex);
-						}
-						return true;
-					});
-
-					final float[] fVertexCoordinates1 = vertexCoordinates1;
-
-					otherVertexIndices.forEach(l -> {
-						count.incrementAndGet();
-						addVertex(fVertexCoordinates1, otherVertexRef, l);
-						return true;
-					});
-
-					final double c = 1.0 / count.get();
-					vertexRef[0] = (otherVertexRef[0] * c - vertexRef[0]) * lambda + vertexRef[0];
-					vertexRef[1] = (otherVertexRef[1] * c - vertexRef[1]) * lambda + vertexRef[1];
-					vertexRef[2] = (otherVertexRef[2] * c - vertexRef[2]) * lambda + vertexRef[2];
-
-					//					System.out.println( "count = " + count.get() );
+					boundary |= multiplicity < 2;
+					raw[size++] = neighbor;
 				}
-				//				else
-				//					System.out.println( "leaving boundary vertex untouched." );
-
-				setVertex(vertexCoordinates2, vertexRef, vertexIndex);
 			}
-			vertexCoordinates1 = vertexCoordinates2;
+			isBoundary[vertex] = boundary;
 		}
-
-		return Convert.convertFromLUT(TFloatArrayList.wrap(vertexCoordinates1), triangleVertexLUT);
+		offsets[numVertices] = size;
+		return Arrays.copyOf(raw, size);
 	}
 }
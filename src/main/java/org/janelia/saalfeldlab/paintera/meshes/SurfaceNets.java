@@ -0,0 +1,302 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Naive surface nets on the same cube grid as {@link MarchingCubes}. Each cube whose corners are partially inside of
+ * the surface contributes a single vertex, at the mean of the midpoints of its intersected edges. Each intersected grid
+ * edge contributes a quad (two triangles) that connects the vertices of the four cubes around that edge. On binary
+ * masks, the number of triangles is about the same as for marching cubes, but vertices are closer to the surface of
+ * the underlying shape because they are not restricted to edge midpoints. Triangles are oriented like those of {@link
+ * MarchingCubes}, and vertices that are shared between triangles have bit-identical coordinates, so that {@link
+ * Smooth} and {@link AverageNormals} treat them as a single vertex. Unlike marching cubes, shapes that touch only
+ * along an edge or at a corner produce non-manifold edges.
+ *
+ * Quads need all four cubes around an edge: edges on the faces of the cube grid do not produce quads. Blocks overlap
+ * by the same margin as for {@link MarchingCubes}, so meshes of adjacent blocks still meet.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class SurfaceNets
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	// check for interruption after this many cubes
+	private static final int INTERRUPTION_CHECK_MASK = (1 << 12) - 1;
+
+	// corner offsets in the order of the bits of the marching cubes table index
+	private static final int[][] CORNERS = {
+			{1, 0, 1}, {1, 1, 1}, {1, 1, 0}, {1, 0, 0},
+			{0, 0, 1}, {0, 1, 1}, {0, 1, 0}, {0, 0, 0}};
+
+	// corners of the edges, same edge indices as in MarchingCubes
+	private static final int[][] EDGES = {
+			{0, 1}, {1, 2}, {2, 3}, {3, 0},
+			{4, 5}, {5, 6}, {6, 7}, {7, 4},
+			{0, 4}, {1, 5}, {2, 6}, {3, 7}};
+
+	// bits of the corners adjacent to the first corner (0, 0, 0) along x, y, z
+	private static final int ORIGIN_BIT = 7;
+
+	private static final int[] AXIS_BITS = {3, 6, 4};
+
+	/**
+	 * vertex position within the cube for each configuration, in units of cubes
+	 */
+	private static final float[][] VERTEX_OFFSETS = new float[256][];
+
+	static
+	{
+		for (int configuration = 0; configuration < 256; ++configuration)
+		{
+			final float[] offset       = new float[3];
+			int           intersection = 0;
+			for (final int[] edge : EDGES)
+			{
+				if ((configuration >>> edge[0] & 1) != (configuration >>> edge[1] & 1))
+				{
+					for (int d = 0; d < 3; ++d)
+						offset[d] += 0.5f * (CORNERS[edge[0]][d] + CORNERS[edge[1]][d]);
+					++intersection;
+				}
+			}
+			if (intersection > 0)
+				for (int d = 0; d < 3; ++d)
+					offset[d] /= intersection;
+			VERTEX_OFFSETS[configuration] = offset;
+		}
+	}
+
+	/**
+	 * Generate a mesh from a mask that was sampled with {@link MarchingCubes#sampleMask}. The cube size is given by
+	 * the grid spacing of {@code mask}.
+	 *
+	 * @return triangle vertices, same layout as {@link MarchingCubes#generateMesh()}
+	 */
+	public static float[] generateMesh(
+			final PackedMask mask,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		if (mask.isEmpty())
+		{
+			return new float[0];
+		}
+
+		final int[]         numCubes       = {mask.dimension(0) - 1, mask.dimension(1) - 1, mask.dimension(2) - 1};
+		final int           wordsPerRow    = mask.wordsPerRow();
+		final TIntArrayList cubes          = new TIntArrayList();
+		final TIntArrayList configurations = new TIntArrayList();
+		for (int z = 0; z < numCubes[2] && !wasInterrupted.getAsBoolean(); ++z)
+		{
+			for (int y = 0; y < numCubes[1]; ++y)
+			{
+				for (int word = 0; word < wordsPerRow; ++word)
+				{
+					// rows of corners at (y, z), (y + 1, z), (y, z + 1), (y + 1, z + 1)
+					final long w0 = mask.word(word, y, z);
+					final long w2 = mask.word(word, y + 1, z);
+					final long w4 = mask.word(word, y, z + 1);
+					final long w6 = mask.word(word, y + 1, z + 1);
+					// the last cube of a word also needs the first corner of the next word
+					final boolean hasNext = word + 1 < wordsPerRow;
+					final long    n0      = hasNext ? mask.word(word + 1, y, z) : 0;
+					final long    n2      = hasNext ? mask.word(word + 1, y + 1, z) : 0;
+					final long    n4      = hasNext ? mask.word(word + 1, y, z + 1) : 0;
+					final long    n6      = hasNext ? mask.word(word + 1, y + 1, z + 1) : 0;
+
+					// skip words of cubes that are entirely inside or outside of the surface
+					if ((w0 | w2 | w4 | w6) == 0 && ((n0 | n2 | n4 | n6) & 1) == 0)
+					{
+						continue;
+					}
+					if ((w0 & w2 & w4 & w6) == -1L && (n0 & n2 & n4 & n6 & 1) == 1)
+					{
+						continue;
+					}
+
+					final int xStart = word << 6;
+					final int xStop  = Math.min(xStart + 64, numCubes[0]);
+					for (int x = xStart; x < xStop; ++x)
+					{
+						final int bit = x & 63;
+						final int configuration =
+								(nextBit(w4, n4, bit) ? 0b00000001 : 0) |
+										(nextBit(w6, n6, bit) ? 0b00000010 : 0) |
+										(nextBit(w2, n2, bit) ? 0b00000100 : 0) |
+										(nextBit(w0, n0, bit) ? 0b00001000 : 0) |
+										((w4 >>> bit & 1) != 0 ? 0b00010000 : 0) |
+										((w6 >>> bit & 1) != 0 ? 0b00100000 : 0) |
+										((w2 >>> bit & 1) != 0 ? 0b01000000 : 0) |
+										((w0 >>> bit & 1) != 0 ? 0b10000000 : 0);
+						if (configuration != 0 && configuration != 0xff)
+						{
+							cubes.add((z * numCubes[1] + y) * numCubes[0] + x);
+							configurations.add(configuration);
+						}
+					}
+				}
+			}
+		}
+
+		final int[]  cubeSize = {(int) mask.step(0), (int) mask.step(1), (int) mask.step(2)};
+		final long[] min      = {mask.min(0), mask.min(1), mask.min(2)};
+		return generateMesh(
+				cubes.toArray(),
+				configurations.toArray(),
+				cubes.size(),
+				numCubes,
+				cubeSize,
+				min,
+				transform,
+				wasInterrupted);
+	}
+
+	/**
+	 * Generate a mesh from the cubes that are partially inside of the surface.
+	 *
+	 * @param cubes
+	 * 		flat indices of the cubes that are partially inside of the surface, in ascending order
+	 * @param configurations
+	 * 		marching cubes table index of each cube, i.e. one bit per corner that is set if the corner is inside
+	 * @param size
+	 * 		number of cubes
+	 * @param numCubes
+	 * 		number of cubes of the grid per dimension
+	 * @param cubeSize
+	 * 		size of the cube
+	 * @param min
+	 * 		position of the first corner
+	 * @param transform
+	 * 		transform vertices from grid to world coordinates
+	 * @param wasInterrupted
+	 * 		stop early if {@code true}, the returned mesh is incomplete
+	 *
+	 * @return triangle vertices, same layout as {@link MarchingCubes#generateMesh()}
+	 */
+	static float[] generateMesh(
+			final int[] cubes,
+			final int[] configurations,
+			final int size,
+			final int[] numCubes,
+			final int[] cubeSize,
+			final long[] min,
+			final AffineTransform3D transform,
+			final BooleanSupplier wasInterrupted)
+	{
+		final int cubesPerSlice = numCubes[0] * numCubes[1];
+
+		// one vertex per cube, transformed once and copied into every triangle that uses it
+		final float[]  vertices = new float[3 * size];
+		final double[] p        = new double[3];
+		for (int cube = 0; cube < size; ++cube)
+		{
+			final int     index  = cubes[cube];
+			final float[] offset = VERTEX_OFFSETS[configurations[cube]];
+			p[0] = (index % numCubes[0] + (double) offset[0]) * cubeSize[0] + min[0];
+			p[1] = (index % cubesPerSlice / numCubes[0] + (double) offset[1]) * cubeSize[1] + min[1];
+			p[2] = (index / cubesPerSlice + (double) offset[2]) * cubeSize[2] + min[2];
+			transform.apply(p, p);
+			vertices[3 * cube + 0] = (float) p[0];
+			vertices[3 * cube + 1] = (float) p[1];
+			vertices[3 * cube + 2] = (float) p[2];
+		}
+
+		// strides of the flat cube index along x, y, z
+		final int[] strides             = {1, numCubes[0], cubesPerSlice};
+		final int[] quad                = new int[4];
+		final int[] position            = new int[3];
+		final int[] triangles           = new int[6 * 3 * size];
+		int         numTriangleVertices = 0;
+		for (int cube = 0; cube < size; ++cube)
+		{
+			if ((cube & INTERRUPTION_CHECK_MASK) == 0 && wasInterrupted.getAsBoolean())
+			{
+				break;
+			}
+
+			final int     index          = cubes[cube];
+			final int     configuration  = configurations[cube];
+			final boolean isOriginInside = (configuration >>> ORIGIN_BIT & 1) != 0;
+			position[0] = index % numCubes[0];
+			position[1] = index % cubesPerSlice / numCubes[0];
+			position[2] = index / cubesPerSlice;
+
+			for (int axis = 0; axis < 3; ++axis)
+			{
+				if (isOriginInside == ((configuration >>> AXIS_BITS[axis] & 1) != 0))
+				{
+					continue;
+				}
+
+				// the other two axes in right-handed order: u x v = axis
+				final int u = (axis + 1) % 3;
+				final int v = (axis + 2) % 3;
+				if (position[u] == 0 || position[v] == 0)
+				{
+					continue;
+				}
+
+				// cubes around the edge, counter-clockwise when viewed from the positive end of the edge. All of
+				// them are partially inside of the surface, because the edge is intersected.
+				quad[0] = indexOf(cubes, size, index - strides[u] - strides[v]);
+				quad[1] = indexOf(cubes, size, index - strides[v]);
+				quad[2] = cube;
+				quad[3] = indexOf(cubes, size, index - strides[u]);
+
+				// triangles face the inside of the surface, like those of MarchingCubes
+				if (isOriginInside)
+				{
+					triangles[numTriangleVertices++] = quad[0];
+					triangles[numTriangleVertices++] = quad[2];
+					triangles[numTriangleVertices++] = quad[1];
+					triangles[numTriangleVertices++] = quad[0];
+					triangles[numTriangleVertices++] = quad[3];
+					triangles[numTriangleVertices++] = quad[2];
+				}
+				else
+				{
+					triangles[numTriangleVertices++] = quad[0];
+					triangles[numTriangleVertices++] = quad[1];
+					triangles[numTriangleVertices++] = quad[2];
+					triangles[numTriangleVertices++] = quad[0];
+					triangles[numTriangleVertices++] = quad[2];
+					triangles[numTriangleVertices++] = quad[3];
+				}
+			}
+		}
+
+		LOG.trace("Generated {} triangles from {} cubes", numTriangleVertices / 3, size);
+
+		final float[] vertexArray = new float[3 * numTriangleVertices];
+		for (int i = 0, k = 0; i < numTriangleVertices; ++i, k += 3)
+		{
+			System.arraycopy(vertices, 3 * triangles[i], vertexArray, k, 3);
+		}
+		return vertexArray;
+	}
+
+	/**
+	 * @return {@code true} if bit {@code bit + 1} of the 65 bit word {@code next:word} is set.
+	 */
+	private static boolean nextBit(final long word, final long next, final int bit)
+	{
+		return (bit == 63 ? next & 1 : word >>> bit + 1 & 1) != 0;
+	}
+
+	private static int indexOf(final int[] cubes, final int size, final int index)
+	{
+		final int cube = Arrays.binarySearch(cubes, 0, size, index);
+		assert cube >= 0: "Cube " + index + " around intersected edge is not partially inside of the surface";
+		return cube;
+	}
+
+}
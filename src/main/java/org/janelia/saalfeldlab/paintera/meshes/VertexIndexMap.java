@@ -0,0 +1,150 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Arrays;
+
+/**
+ * Assign consecutive indices to vertices that are identical in all three coordinates. Coordinates are compared by
+ * their bit pattern, i.e. vertices are deduplicated exactly as they appear in the flat triangle arrays created by
+ * {@link MarchingCubes}. Keys and coordinates are stored in primitive arrays (open addressing with linear probing) to
+ * avoid allocating an object per vertex.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class VertexIndexMap
+{
+
+	private static final int EMPTY = -1;
+
+	private static final double MAX_LOAD_FACTOR = 0.5;
+
+	private int[] table;
+
+	private int mask;
+
+	private float[] vertices;
+
+	private int size = 0;
+
+	public VertexIndexMap()
+	{
+		this(1024);
+	}
+
+	public VertexIndexMap(final int expectedNumberOfVertices)
+	{
+		final int capacity = tableSizeFor((int) Math.min(Math.max(expectedNumberOfVertices / MAX_LOAD_FACTOR, 16),
+				1 << 30));
+		this.table = new int[capacity];
+		Arrays.fill(this.table, EMPTY);
+		this.mask = capacity - 1;
+		this.vertices = new float[Math.max(expectedNumberOfVertices, 16) * 3];
+	}
+
+	/**
+	 * @return index of vertex {@code (x, y, z)}. If the vertex was not present before, it is assigned the next
+	 * available index, i.e. {@link #size()} before the call.
+	 */
+	public int insert(final float x, final float y, final float z)
+	{
+		final int bx = Float.floatToIntBits(x);
+		final int by = Float.floatToIntBits(y);
+		final int bz = Float.floatToIntBits(z);
+		for (int slot = hash(bx, by, bz) & mask; ; slot = slot + 1 & mask)
+		{
+			final int index = table[slot];
+			if (index == EMPTY)
+			{
+				final int newIndex = add(x, y, z);
+				table[slot] = newIndex;
+				if (size > table.length * MAX_LOAD_FACTOR)
+					rehash(table.length << 1);
+				return newIndex;
+			}
+			final int offset = 3 * index;
+			if (Float.floatToIntBits(vertices[offset]) == bx
+					&& Float.floatToIntBits(vertices[offset + 1]) == by
+					&& Float.floatToIntBits(vertices[offset + 2]) == bz)
+				return index;
+		}
+	}
+
+	/**
+	 * @return number of distinct vertices.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return coordinate {@code dimension} of vertex {@code index}
+	 */
+	public float coordinate(final int index, final int dimension)
+	{
+		return vertices[3 * index + dimension];
+	}
+
+	/**
+	 * @return flat array of all distinct vertices (stride 3) in the order of their indices.
+	 */
+	public float[] vertices()
+	{
+		return Arrays.copyOf(vertices, 3 * size);
+	}
+
+	public void clear()
+	{
+		Arrays.fill(table, EMPTY);
+		size = 0;
+	}
+
+	private int add(final float x, final float y, final float z)
+	{
+		final int offset = 3 * size;
+		if (offset + 3 > vertices.length)
+			vertices = Arrays.copyOf(vertices, vertices.length << 1);
+		vertices[offset] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = z;
+		return size++;
+	}
+
+	private void rehash(final int capacity)
+	{
+		table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		mask = capacity - 1;
+		for (int index = 0, offset = 0; index < size; ++index, offset += 3)
+		{
+			final int h = hash(
+					Float.floatToIntBits(vertices[offset]),
+					Float.floatToIntBits(vertices[offset + 1]),
+					Float.floatToIntBits(vertices[offset + 2]));
+			int slot = h & mask;
+			while (table[slot] != EMPTY)
+				slot = slot + 1 & mask;
+			table[slot] = index;
+		}
+	}
+
+	private static int hash(final int x, final int y, final int z)
+	{
+		int h = x;
+		h = 31 * h + y;
+		h = 31 * h + z;
+		// spread bits because coordinates on a regular grid share most of their low bits
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	private static int tableSizeFor(final int n)
+	{
+		int capacity = 1;
+		while (capacity < n)
+			capacity <<= 1;
+		return capacity;
+	}
+
+}
@@ -31,6 +31,7 @@ import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.meshes.Interruptible;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunctionAndCache;
+import org.janelia.saalfeldlab.paintera.meshes.LabelBoundaryCubes;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.util.HashWrapper;
 import org.janelia.saalfeldlab.util.MakeUnchecked;
@@ -289,7 +290,7 @@ public class CacheUtils
 					transform
 			);
 			final Cache<ShapeKey<Long>, Pair<float[], float[]>> cache = makeCache.apply(loader);
-			caches[i] = new InterruptibleFunctionAndCache<>(cache.unchecked(), loader);
+			caches[i] = new InterruptibleFunctionAndCache<>(cache, loader);
 		}
 
 		return caches;
@@ -356,13 +357,83 @@ public class CacheUtils
 					transform
 			);
 			final Cache<ShapeKey<TLongHashSet>, Pair<float[], float[]>> cache = makeCache.apply(loader);
-			caches[i] = new InterruptibleFunctionAndCache<>(cache.unchecked(), loader);
+			caches[i] = new InterruptibleFunctionAndCache<>(cache, loader);
 		}
 
 		return caches;
 
 	}
 
+	/**
+	 * @param source
+	 * @param labels
+	 * 		Extract labels from data.
+	 * @param makeCache
+	 * 		Build a {@link Cache} from a {@link CacheLoader}
+	 *
+	 * @return Cascade of {@link Cache} of {@link LabelBoundaryCubes} for blocks, queried by blocks expanded by a cube
+	 * size of {@code 1}.
+	 */
+	public static <D, T> UncheckedCache<HashWrapper<Interval>, LabelBoundaryCubes>[] labelBoundaryCubesCaches(
+			final DataSource<D, T> source,
+			final LabelBoundaryCubes.Labels<? super D> labels,
+			final Function<CacheLoader<HashWrapper<Interval>, LabelBoundaryCubes>, Cache<HashWrapper<Interval>,
+					LabelBoundaryCubes>> makeCache)
+	{
+		final int numMipmapLevels = source.getNumMipmapLevels();
+		@SuppressWarnings("unchecked") final UncheckedCache<HashWrapper<Interval>, LabelBoundaryCubes>[] caches = new
+				UncheckedCache[numMipmapLevels];
+
+		for (int i = 0; i < numMipmapLevels; ++i)
+		{
+			final LabelBoundaryCubesLoader<D> loader = new LabelBoundaryCubesLoader<>(
+					new int[] {1, 1, 1},
+					source.getDataSource(0, i),
+					labels
+			);
+			caches[i] = makeCache.apply(loader).unchecked();
+		}
+
+		return caches;
+	}
+
+	/**
+	 * @param source
+	 * @param boundaryCubes
+	 * 		Cascade of {@link LabelBoundaryCubes} caches as created by {@link #labelBoundaryCubesCaches}. Meshes are
+	 * 		generated from the cached boundary cubes without accessing the data.
+	 * @param makeCache
+	 * 		Build a {@link Cache} from a {@link CacheLoader}
+	 *
+	 * @return Cascade of {@link Cache} for retrieval of mesh queried by label id.
+	 */
+	public static <D, T> InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[]
+	segmentMeshCacheLoadersFromBoundaryCubes(
+			final DataSource<D, T> source,
+			final UncheckedCache<HashWrapper<Interval>, LabelBoundaryCubes>[] boundaryCubes,
+			final Function<CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, Cache<ShapeKey<TLongHashSet>,
+					Pair<float[], float[]>>> makeCache)
+	{
+		final int numMipmapLevels = source.getNumMipmapLevels();
+		@SuppressWarnings("unchecked") final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[],
+				float[]>>[] caches = new InterruptibleFunctionAndCache[numMipmapLevels];
+
+		for (int i = 0; i < numMipmapLevels; ++i)
+		{
+			final AffineTransform3D transform = new AffineTransform3D();
+			source.getSourceTransform(0, i, transform);
+			final SegmentMeshCacheLoader<D> loader = new SegmentMeshCacheLoader<>(
+					new int[] {1, 1, 1},
+					boundaryCubes[i]::get,
+					transform
+			);
+			final Cache<ShapeKey<TLongHashSet>, Pair<float[], float[]>> cache = makeCache.apply(loader);
+			caches[i] = new InterruptibleFunctionAndCache<>(cache, loader);
+		}
+
+		return caches;
+	}
+
 	/**
 	 * Utility method that wraps {@link Cache#get(Object)} as {@link Function}, catches any {@link Exception}, and
 	 * re-throws as {@link RuntimeException}
@@ -0,0 +1,54 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import java.lang.invoke.MethodHandles;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.CacheLoader;
+import org.janelia.saalfeldlab.paintera.meshes.LabelBoundaryCubes;
+import org.janelia.saalfeldlab.util.HashWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples {@link LabelBoundaryCubes} for blocks of a label volume. Keys are the intervals that are passed to {@link
+ * LabelBoundaryCubes#sample}, i.e. blocks expanded by the cube size.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class LabelBoundaryCubesLoader<T> implements CacheLoader<HashWrapper<Interval>, LabelBoundaryCubes>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final int[] cubeSize;
+
+	private final RandomAccessibleInterval<T> data;
+
+	private final LabelBoundaryCubes.Labels<? super T> labels;
+
+	public LabelBoundaryCubesLoader(
+			final int[] cubeSize,
+			final RandomAccessibleInterval<T> data,
+			final LabelBoundaryCubes.Labels<? super T> labels)
+	{
+		super();
+		this.cubeSize = cubeSize;
+		this.data = data;
+		this.labels = labels;
+	}
+
+	@Override
+	public LabelBoundaryCubes get(final HashWrapper<Interval> key)
+	{
+		final LabelBoundaryCubes cubes = LabelBoundaryCubes.sample(data, data, labels, key.getData(), cubeSize);
+		LOG.debug("Sampled {} boundary cubes for {}", cubes.numBoundaryCubes(), key);
+		return cubes;
+	}
+
+	public int[] cubeSize()
+	{
+		return cubeSize.clone();
+	}
+
+}
@@ -10,17 +10,16 @@ import java.util.function.LongFunction;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.converter.Converter;
-import net.imglib2.converter.Converters;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.logic.BoolType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
-import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.meshes.AverageNormals;
 import org.janelia.saalfeldlab.paintera.meshes.Interruptible;
 import org.janelia.saalfeldlab.paintera.meshes.MarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.Normals;
+import org.janelia.saalfeldlab.paintera.meshes.PackedMask;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.paintera.meshes.Smooth;
 import org.slf4j.Logger;
@@ -74,11 +73,14 @@ public class MeshCacheLoader<T>
 		//		}
 
 		LOG.debug("key={}, getMaskGenerator={}", key, getMaskGenerator);
-		final RandomAccessibleInterval<BoolType> mask = Converters.convert(
+		// evaluate mask once per cube corner, corners outside of data are background
+		final PackedMask mask = MarchingCubes.sampleMask(
+				data,
 				data,
 				getMaskGenerator.apply(key.shapeId()),
-				new BoolType(false)
-		                                                                  );
+				Intervals.expand(key.interval(), Arrays.stream(cubeSize).mapToLong(size -> size).toArray()),
+				cubeSize
+		                                                );
 
 		final boolean[] isInterrupted = new boolean[] {false};
 		final Consumer<ShapeKey<Long>> listener = interruptedKey -> {
@@ -94,13 +96,7 @@ public class MeshCacheLoader<T>
 
 		try
 		{
-			final float[] mesh = new MarchingCubes<>(
-					Views.extendZero(mask),
-					Intervals.expand(key.interval(), Arrays.stream(cubeSize).mapToLong(size -> size).toArray()),
-					transform,
-					cubeSize,
-					() -> isInterrupted[0]
-			).generateMesh();
+			final float[] mesh = key.meshExtraction().generateMesh(mask, transform, () -> isInterrupted[0]);
 			final float[] normals = new float[mesh.length];
 			if (key.smoothingIterations() > 0)
 			{
@@ -5,7 +5,6 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.function.Function;
 
-import gnu.trove.iterator.TLongIterator;
 import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.converter.Converter;
 import net.imglib2.type.BooleanType;
@@ -16,6 +15,10 @@ import net.imglib2.type.numeric.IntegerType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Generators for masks of segments, i.e. sets of fragment ids. The generated {@link Converter converters} may memoize
+ * previous results and must not be shared across threads. Each call to the generator creates a new converter.
+ */
 public class SegmentMaskGenerators
 {
 
@@ -59,29 +62,31 @@ public class SegmentMaskGenerators
 
 		private final TLongHashSet validLabels;
 
+		// avoid iterator allocation for each voxel
+		private final long[] validLabelsArray;
+
 		public LabelMultisetTypeMask(final TLongHashSet validLabels)
 		{
 			super();
 			this.validLabels = validLabels;
+			this.validLabelsArray = validLabels.toArray();
 		}
 
 		@Override
 		public void convert(final LabelMultisetType input, final B output)
 		{
-			final Set<Entry<Label>> inputSet        = input.entrySet();
-			final int               validLabelsSize = validLabels.size();
-			final int               inputSize       = inputSet.size();
+			final Set<Entry<Label>> inputSet = input.entrySet();
 			// no primitive type support for slf4j
 			// http://mailman.qos.ch/pipermail/slf4j-dev/2005-August/000241.html
 			if (LOG.isTraceEnabled())
 			{
-				LOG.trace("input size={}, validLabels size={}", inputSize, validLabelsSize);
+				LOG.trace("input size={}, validLabels size={}", inputSet.size(), validLabelsArray.length);
 			}
-			if (validLabelsSize < inputSize)
+			if (validLabelsArray.length < inputSet.size())
 			{
-				for (final TLongIterator it = validLabels.iterator(); it.hasNext(); )
+				for (final long validLabel : validLabelsArray)
 				{
-					if (input.contains(it.next()))
+					if (input.contains(validLabel))
 					{
 						output.set(true);
 						return;
@@ -109,6 +114,13 @@ public class SegmentMaskGenerators
 
 		private final TLongHashSet validLabels;
 
+		// neighboring voxels usually share their label: memoize the last lookup
+		private long lastLabel;
+
+		private boolean lastIsValid;
+
+		private boolean hasLast = false;
+
 		public IntegerTypeMask(final TLongHashSet validLabels)
 		{
 			super();
@@ -118,7 +130,14 @@ public class SegmentMaskGenerators
 		@Override
 		public void convert(final I input, final B output)
 		{
-			output.set(validLabels.contains(input.getIntegerLong()));
+			final long label = input.getIntegerLong();
+			if (!hasLast || label != lastLabel)
+			{
+				lastLabel = label;
+				lastIsValid = validLabels.contains(label);
+				hasLast = true;
+			}
+			output.set(lastIsValid);
 		}
 
 	}
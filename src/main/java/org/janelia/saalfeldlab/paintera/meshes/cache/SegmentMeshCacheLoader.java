@@ -8,25 +8,36 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 
 import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.converter.Converter;
-import net.imglib2.converter.Converters;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.logic.BoolType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
-import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.meshes.AverageNormals;
 import org.janelia.saalfeldlab.paintera.meshes.Interruptible;
+import org.janelia.saalfeldlab.paintera.meshes.LabelBoundaryCubes;
 import org.janelia.saalfeldlab.paintera.meshes.MarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.Normals;
+import org.janelia.saalfeldlab.paintera.meshes.PackedMask;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.paintera.meshes.Smooth;
+import org.janelia.saalfeldlab.util.HashWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Generates meshes for segments in a block. The mesh is generated with the {@link ShapeKey#meshExtraction()} of the
+ * key, either from a binary mask of the segment's fragments that is sampled for each request, or from cached {@link
+ * LabelBoundaryCubes} of the block that are filtered by the segment's fragments without accessing the data. The latter
+ * does not re-sample blocks when segments are merged or split.
+ *
+ * @param <T>
+ * 		data type
+ */
 public class SegmentMeshCacheLoader<T>
 		implements CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, Interruptible<ShapeKey<TLongHashSet>>
 {
@@ -38,6 +49,8 @@ public class SegmentMeshCacheLoader<T>
 
 	private final Function<TLongHashSet, Converter<T, BoolType>> getMaskGenerator;
 
+	private final Function<HashWrapper<Interval>, LabelBoundaryCubes> boundaryCubes;
+
 	private final AffineTransform3D transform;
 
 	private final List<Consumer<ShapeKey<TLongHashSet>>> interruptListeners = new ArrayList<>();
@@ -57,9 +70,28 @@ public class SegmentMeshCacheLoader<T>
 		this.data = data;
 		this.getMaskGenerator = getMaskGenerator;
 		this.transform = transform;
+		this.boundaryCubes = null;
 		//		this.containedLabelsInBlock = containedLabelsInBlock;
 	}
 
+	/**
+	 * @param boundaryCubes
+	 * 		{@link LabelBoundaryCubes} for blocks expanded by {@code cubeSize}, usually cached
+	 */
+	public SegmentMeshCacheLoader(
+			final int[] cubeSize,
+			final Function<HashWrapper<Interval>, LabelBoundaryCubes> boundaryCubes,
+			final AffineTransform3D transform)
+	{
+		super();
+		LOG.debug("Constructiong {} from label boundary cubes", getClass().getName());
+		this.cubeSize = cubeSize;
+		this.data = null;
+		this.getMaskGenerator = null;
+		this.transform = transform;
+		this.boundaryCubes = boundaryCubes;
+	}
+
 	@Override
 	public void interruptFor(final ShapeKey<TLongHashSet> key)
 	{
@@ -79,11 +111,18 @@ public class SegmentMeshCacheLoader<T>
 		//		}
 
 		LOG.debug("key={}, getMaskGenerator={}", key, getMaskGenerator);
-		final RandomAccessibleInterval<BoolType> mask = Converters.convert(
+		final Interval expandedInterval = Intervals.expand(
+				key.interval(),
+				Arrays.stream(cubeSize).mapToLong(size -> size).toArray());
+		// evaluate mask once per cube corner, corners outside of data are background
+		final PackedMask mask = boundaryCubes == null
+		                        ? MarchingCubes.sampleMask(
+				data,
 				data,
 				getMaskGenerator.apply(key.shapeId()),
-				new BoolType(false)
-		                                                                  );
+				expandedInterval,
+				cubeSize)
+		                        : null;
 
 		final boolean[] isInterrupted = new boolean[] {false};
 		final Consumer<ShapeKey<TLongHashSet>> listener = interruptedKey -> {
@@ -99,13 +138,15 @@ public class SegmentMeshCacheLoader<T>
 
 		try
 		{
-			final float[] mesh = new MarchingCubes<>(
-					Views.extendZero(mask),
-					Intervals.expand(key.interval(), Arrays.stream(cubeSize).mapToLong(size -> size).toArray()),
-					transform,
-					cubeSize,
-					() -> isInterrupted[0]
-			).generateMesh();
+			final float[] mesh = mask == null
+			                     ? boundaryCubes
+					                     .apply(HashWrapper.interval(expandedInterval))
+					                     .generateMesh(
+							                     key.shapeId(),
+							                     key.meshExtraction(),
+							                     transform,
+							                     () -> isInterrupted[0])
+			                     : key.meshExtraction().generateMesh(mask, transform, () -> isInterrupted[0]);
 			final float[] normals = new float[mesh.length];
 			if (key.smoothingIterations() > 0)
 			{
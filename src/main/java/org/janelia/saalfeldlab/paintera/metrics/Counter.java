@@ -0,0 +1,57 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing count, cheap to update from many threads.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class Counter implements Metric
+{
+
+	private final String name;
+
+	private final LongAdder count = new LongAdder();
+
+	Counter(final String name)
+	{
+		this.name = name;
+	}
+
+	public void increment()
+	{
+		count.increment();
+	}
+
+	public void add(final long n)
+	{
+		count.add(n);
+	}
+
+	public long get()
+	{
+		return count.sum();
+	}
+
+	@Override
+	public String name()
+	{
+		return name;
+	}
+
+	@Override
+	public Type type()
+	{
+		return Type.COUNTER;
+	}
+
+	@Override
+	public Map<String, Number> values()
+	{
+		return Collections.singletonMap("count", get());
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Value that is queried when a snapshot is taken, e.g. the size of a queue.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class Gauge implements Metric
+{
+
+	private final String name;
+
+	private final DoubleSupplier value;
+
+	Gauge(final String name, final DoubleSupplier value)
+	{
+		this.name = name;
+		this.value = value;
+	}
+
+	public double get()
+	{
+		return value.getAsDouble();
+	}
+
+	@Override
+	public String name()
+	{
+		return name;
+	}
+
+	@Override
+	public Type type()
+	{
+		return Type.GAUGE;
+	}
+
+	@Override
+	public Map<String, Number> values()
+	{
+		return Collections.singletonMap("value", get());
+	}
+
+}
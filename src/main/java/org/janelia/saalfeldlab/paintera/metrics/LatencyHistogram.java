@@ -0,0 +1,130 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with power-of-two nanosecond buckets. Recording is lock free and does not allocate;
+ * percentiles are approximated by the upper bound of the bucket that contains them, i.e. they are accurate within a
+ * factor of two.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class LatencyHistogram implements Metric
+{
+
+	private static final int NUM_BUCKETS = 64;
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final String name;
+
+	// bucket b holds durations in [2^(b-1), 2^b) nanoseconds, bucket 0 holds zero
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	LatencyHistogram(final String name)
+	{
+		this.name = name;
+	}
+
+	public void record(final long nanos)
+	{
+		final long duration = Math.max(nanos, 0);
+		buckets.incrementAndGet(NUM_BUCKETS - Long.numberOfLeadingZeros(duration));
+		count.increment();
+		sum.add(duration);
+		max.accumulate(duration);
+	}
+
+	/**
+	 * Record the time since {@code startNanos}, as obtained from {@link System#nanoTime()}.
+	 */
+	public void recordSince(final long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long count()
+	{
+		return count.sum();
+	}
+
+	public long totalNanos()
+	{
+		return sum.sum();
+	}
+
+	public long maxNanos()
+	{
+		return max.get();
+	}
+
+	public double meanNanos()
+	{
+		final long count = count();
+		return count == 0 ? 0.0 : totalNanos() / (double) count;
+	}
+
+	/**
+	 * @param quantile
+	 * 		in {@code [0, 1]}
+	 *
+	 * @return upper bound of the bucket that contains {@code quantile}
+	 */
+	public long quantileNanos(final double quantile)
+	{
+		final long[] counts = new long[NUM_BUCKETS];
+		long         total  = 0;
+		for (int b = 0; b < NUM_BUCKETS; ++b)
+		{
+			counts[b] = buckets.get(b);
+			total += counts[b];
+		}
+		if (total == 0)
+			return 0;
+		final long rank       = Math.max((long) Math.ceil(quantile * total), 1);
+		long       cumulative = 0;
+		for (int b = 0; b < NUM_BUCKETS; ++b)
+		{
+			cumulative += counts[b];
+			if (cumulative >= rank)
+				return Math.min(b == 0 ? 0 : b == NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1, maxNanos());
+		}
+		return maxNanos();
+	}
+
+	@Override
+	public String name()
+	{
+		return name;
+	}
+
+	@Override
+	public Type type()
+	{
+		return Type.HISTOGRAM;
+	}
+
+	@Override
+	public Map<String, Number> values()
+	{
+		final Map<String, Number> values = new LinkedHashMap<>();
+		values.put("count", count());
+		values.put("mean_ms", meanNanos() / NANOS_PER_MILLI);
+		values.put("p50_ms", quantileNanos(0.5) / NANOS_PER_MILLI);
+		values.put("p90_ms", quantileNanos(0.9) / NANOS_PER_MILLI);
+		values.put("p99_ms", quantileNanos(0.99) / NANOS_PER_MILLI);
+		values.put("max_ms", maxNanos() / NANOS_PER_MILLI);
+		return values;
+	}
+
+}
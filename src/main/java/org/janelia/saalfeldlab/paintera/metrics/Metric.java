@@ -0,0 +1,30 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.Map;
+
+/**
+ * A named measurement that is registered with a {@link MetricsRegistry}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public interface Metric
+{
+
+	enum Type
+	{
+		COUNTER,
+		GAUGE,
+		HISTOGRAM
+	}
+
+	String name();
+
+	Type type();
+
+	/**
+	 * @return current values of this metric by field name, e.g. {@code count} or {@code p99_ms}. Iteration order is
+	 * stable across calls.
+	 */
+	Map<String, Number> values();
+
+}
@@ -0,0 +1,166 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically append snapshots of all metrics of a {@link MetricsRegistry} to a file for offline analysis.
+ *
+ * <ul>
+ * <li>{@link Format#CSV}: one row per metric field: {@code timestamp,metric,type,field,value}</li>
+ * <li>{@link Format#JSON}: one JSON object per snapshot and line: {@code {"timestamp": ..., "metrics": {name: {field:
+ * value}}}}</li>
+ * </ul>
+ *
+ * Timestamps are milliseconds since the epoch.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class MetricsDump
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public enum Format
+	{
+		CSV,
+		JSON;
+
+		/**
+		 * @return {@link #JSON} for {@code .json} and {@code .jsonl} files, {@link #CSV} otherwise
+		 */
+		public static Format forPath(final Path path)
+		{
+			final String name = path.getFileName().toString().toLowerCase();
+			return name.endsWith(".json") || name.endsWith(".jsonl") ? JSON : CSV;
+		}
+	}
+
+	private final MetricsRegistry registry;
+
+	private final Path path;
+
+	private final Format format;
+
+	private final long periodMillis;
+
+	private final Gson gson = new Gson();
+
+	private ScheduledExecutorService executor;
+
+	private Writer writer;
+
+	public MetricsDump(final MetricsRegistry registry, final Path path, final long periodMillis)
+	{
+		this(registry, path, Format.forPath(path), periodMillis);
+	}
+
+	public MetricsDump(
+			final MetricsRegistry registry,
+			final Path path,
+			final Format format,
+			final long periodMillis)
+	{
+		this.registry = registry;
+		this.path = path;
+		this.format = format;
+		this.periodMillis = periodMillis;
+	}
+
+	public synchronized void start() throws IOException
+	{
+		if (executor != null)
+			return;
+		final boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+		writer = Files.newBufferedWriter(
+				path,
+				StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+		if (isNew && format == Format.CSV)
+			writer.write("timestamp,metric,type,field,value\n");
+		LOG.info("Writing metrics to {} every {}ms", path, periodMillis);
+		executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("paintera-metrics-dump-%d",
+				true));
+		executor.scheduleAtFixedRate(this::dumpQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop periodic dumps, write a final snapshot, and close the file.
+	 */
+	public synchronized void stop()
+	{
+		if (executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+		try (final Writer writer = this.writer)
+		{
+			dump(writer);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to write metrics to {}: {}", path, e.getMessage());
+		}
+		writer = null;
+	}
+
+	private synchronized void dumpQuietly()
+	{
+		if (writer == null)
+			return;
+		try
+		{
+			dump(writer);
+			writer.flush();
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to write metrics to {}: {}", path, e.getMessage());
+		}
+	}
+
+	private void dump(final Writer writer) throws IOException
+	{
+		final long timestamp = System.currentTimeMillis();
+		if (format == Format.CSV)
+		{
+			final StringBuilder rows = new StringBuilder();
+			for (final Metric metric : registry.metrics())
+				for (final Map.Entry<String, Number> value : metric.values().entrySet())
+					rows
+							.append(timestamp).append(',')
+							.append(metric.name()).append(',')
+							.append(metric.type().name().toLowerCase()).append(',')
+							.append(value.getKey()).append(',')
+							.append(value.getValue()).append('\n');
+			writer.write(rows.toString());
+		}
+		else
+		{
+			final Map<String, Map<String, Number>> metrics = new LinkedHashMap<>();
+			for (final Metric metric : registry.metrics())
+				metrics.put(metric.name(), metric.values());
+			final JsonObject snapshot = new JsonObject();
+			snapshot.addProperty("timestamp", timestamp);
+			snapshot.add("metrics", gson.toJsonTree(metrics));
+			writer.write(gson.toJson(snapshot));
+			writer.write('\n');
+		}
+	}
+
+}
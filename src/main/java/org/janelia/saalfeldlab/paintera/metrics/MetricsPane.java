@@ -0,0 +1,186 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TitledPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * Display all metrics of a {@link MetricsRegistry}, updated once per second while visible. The contents can be
+ * detached into a separate window and are docked back when that window is closed.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class MetricsPane
+{
+
+	private final MetricsRegistry registry;
+
+	private final GridPane grid = new GridPane();
+
+	private final VBox contents;
+
+	private final TitledPane pane;
+
+	private final Timeline timeline;
+
+	private final Map<String, Long> previousCounts = new HashMap<>();
+
+	// value label of each metric, re-used across updates
+	private final Map<String, Label> values = new HashMap<>();
+
+	// metric names in the order of the rows of grid
+	private List<String> rows = new ArrayList<>();
+
+	private long previousUpdateNanos = System.nanoTime();
+
+	private Stage detached = null;
+
+	public MetricsPane(final MetricsRegistry registry)
+	{
+		this.registry = registry;
+
+		final Button detach = new Button("Detach");
+		detach.setTooltip(new Tooltip("Show metrics in separate window"));
+		detach.setOnAction(e -> detach());
+
+		this.grid.setHgap(5);
+		this.contents = new VBox(5, detach, grid);
+		this.pane = new TitledPane("metrics", contents);
+		this.pane.setExpanded(false);
+
+		this.timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> update()));
+		this.timeline.setCycleCount(Timeline.INDEFINITE);
+		this.pane.expandedProperty().addListener((obs, oldv, newv) -> updateTimeline());
+		updateTimeline();
+	}
+
+	public Node getPane()
+	{
+		return this.pane;
+	}
+
+	private void detach()
+	{
+		if (detached != null)
+		{
+			detached.toFront();
+			return;
+		}
+		pane.setContent(null);
+		pane.setExpanded(false);
+		pane.setDisable(true);
+		detached = new Stage();
+		detached.setTitle("Paintera metrics");
+		detached.setScene(new Scene(contents));
+		contents.getChildren().get(0).setVisible(false);
+		detached.setOnHidden(e -> dock());
+		detached.show();
+		updateTimeline();
+	}
+
+	private void dock()
+	{
+		detached.setScene(null);
+		detached = null;
+		contents.getChildren().get(0).setVisible(true);
+		pane.setContent(contents);
+		pane.setDisable(false);
+		pane.setExpanded(true);
+		updateTimeline();
+	}
+
+	private void updateTimeline()
+	{
+		if (detached != null || pane.isExpanded())
+		{
+			update();
+			timeline.play();
+		}
+		else
+			timeline.stop();
+	}
+
+	private void update()
+	{
+		final long   now     = System.nanoTime();
+		final double seconds = Math.max(now - previousUpdateNanos, 1) * 1e-9;
+		previousUpdateNanos = now;
+
+		final List<Metric> metrics = registry.metrics();
+		final List<String> names   = metrics.stream().map(Metric::name).collect(Collectors.toList());
+		if (!names.equals(rows))
+		{
+			layout(names);
+		}
+		for (final Metric metric : metrics)
+		{
+			final Label value = values.get(metric.name());
+			value.setText(summary(metric, seconds));
+			value.getTooltip().setText(metric.values().toString());
+		}
+	}
+
+	/**
+	 * Re-build the rows of the grid when metrics were added or removed, keeping the labels of existing metrics.
+	 */
+	private void layout(final List<String> names)
+	{
+		values.keySet().retainAll(names);
+		grid.getChildren().clear();
+		for (int row = 0; row < names.size(); ++row)
+		{
+			final Label value = values.computeIfAbsent(names.get(row), name -> {
+				final Label label = new Label();
+				label.setFont(Font.font("Monospaced"));
+				label.setTooltip(new Tooltip());
+				return label;
+			});
+			grid.add(new Label(names.get(row)), 0, row);
+			grid.add(value, 1, row);
+		}
+		rows = names;
+	}
+
+	private String summary(final Metric metric, final double seconds)
+	{
+		switch (metric.type())
+		{
+			case COUNTER:
+			{
+				final long count    = ((Counter) metric).get();
+				final Long previous = previousCounts.put(metric.name(), count);
+				return String.format("%d (%.1f/s)", count, previous == null ? 0.0 : (count - previous) / seconds);
+			}
+			case GAUGE:
+				return String.format("%.1f", ((Gauge) metric).get());
+			case HISTOGRAM:
+			{
+				final LatencyHistogram histogram = (LatencyHistogram) metric;
+				return String.format(
+						"n=%d mean=%.1fms p99=%.1fms",
+						histogram.count(),
+						histogram.meanNanos() * 1e-6,
+						histogram.quantileNanos(0.99) * 1e-6);
+			}
+			default:
+				return metric.values().toString();
+		}
+	}
+
+}
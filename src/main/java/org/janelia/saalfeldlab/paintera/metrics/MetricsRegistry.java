@@ -0,0 +1,84 @@
+package org.janelia.saalfeldlab.paintera.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * Collection of named {@link Metric metrics}. Metrics are created on first access and live as long as the registry.
+ * Components that are shared throughout Paintera (renderer, fetch queue, meshes, canvas, assignments) report into
+ * {@link #global()}.
+ *
+ * Metric names are dot-separated paths, e.g. {@code render.frame} or {@code canvas.commit}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class MetricsRegistry
+{
+
+	private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+	private final ConcurrentSkipListMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+	public static MetricsRegistry global()
+	{
+		return GLOBAL;
+	}
+
+	public Counter counter(final String name)
+	{
+		return getOrCreate(name, Counter.class, Counter::new);
+	}
+
+	public LatencyHistogram histogram(final String name)
+	{
+		return getOrCreate(name, LatencyHistogram.class, LatencyHistogram::new);
+	}
+
+	/**
+	 * Register {@code value} as gauge {@code name}, replacing any previously registered gauge with the same name.
+	 */
+	public Gauge gauge(final String name, final DoubleSupplier value)
+	{
+		final Gauge gauge = new Gauge(name, value);
+		final Metric previous = metrics.put(name, gauge);
+		if (previous != null && !(previous instanceof Gauge))
+		{
+			metrics.put(name, previous);
+			throw new IllegalArgumentException(String.format(
+					"Metric %s already registered as %s",
+					name,
+					previous.type()));
+		}
+		return gauge;
+	}
+
+	public void remove(final String name)
+	{
+		metrics.remove(name);
+	}
+
+	/**
+	 * @return all metrics, sorted by name
+	 */
+	public List<Metric> metrics()
+	{
+		return new ArrayList<>(metrics.values());
+	}
+
+	private <M extends Metric> M getOrCreate(final String name, final Class<M> type, final Function<String, M> create)
+	{
+		final Metric metric = metrics.computeIfAbsent(name, create);
+		if (!type.isInstance(metric))
+		{
+			throw new IllegalArgumentException(String.format(
+					"Metric %s already registered as %s",
+					name,
+					metric.type()));
+		}
+		return type.cast(metric);
+	}
+
+}
@@ -182,6 +182,8 @@ public class Properties implements TransformListener<AffineTransform3D>
 					properties.orthoSliceConfig.showTopRightProperty().set(conf.showTopRightProperty().get());
 					properties.orthoSliceConfig.showBottomLeftProperty().set(conf.showBottomLeftProperty().get());
 					properties.orthoSliceConfig.delayInNanoSeconds().set(conf.delayInNanoSeconds().get());
+					properties.orthoSliceConfig.updateTexturesOnlyWhenIdleProperty().set(conf
+							.updateTexturesOnlyWhenIdleProperty().get());
 				});
 		Optional
 				.ofNullable(serializedProperties.get(NAVIGATION_CONFIG_KEY))
@@ -12,6 +12,7 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import javafx.scene.shape.CullFace;
 import javafx.scene.shape.DrawMode;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExtraction;
 import org.janelia.saalfeldlab.paintera.meshes.MeshSettings;
 
 public class MeshSettingsSerializer implements
@@ -39,6 +40,8 @@ public class MeshSettingsSerializer implements
 
 	private static final String IS_VISIBLE_KEY = "isVisible";
 
+	private static final String MESH_EXTRACTION_KEY = "meshExtraction";
+
 	//		private final int numScaleLevels;
 	//
 	//	private final SimpleIntegerProperty scaleLevel = new SimpleIntegerProperty();
@@ -86,6 +89,11 @@ public class MeshSettingsSerializer implements
 				.cullFaceProperty()::set);
 		Optional.ofNullable(map.get(IS_VISIBLE_KEY)).map(JsonElement::getAsBoolean).ifPresent(settings
 				.isVisibleProperty()::set);
+		Optional.ofNullable(map.get(MESH_EXTRACTION_KEY)).map(el -> (MeshExtraction) context.deserialize(
+				el,
+				MeshExtraction.class
+		                                                                                                )).ifPresent(
+				settings.meshExtractionProperty()::set);
 		return settings;
 	}
 
@@ -103,6 +111,7 @@ public class MeshSettingsSerializer implements
 		map.addProperty(IS_VISIBLE_KEY, src.isVisibleProperty().get());
 		map.add(DRAW_MODE_KEY, context.serialize(src.drawModeProperty().get()));
 		map.add(CULL_FACE_KEY, context.serialize(src.cullFaceProperty().get()));
+		map.add(MESH_EXTRACTION_KEY, context.serialize(src.meshExtractionProperty().get()));
 		return map;
 	}
 
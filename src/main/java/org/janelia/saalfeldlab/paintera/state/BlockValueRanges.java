@@ -0,0 +1,217 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimum and maximum value of real valued data within each block of a {@link CellGrid}. The range of a block is
+ * recorded when the block is loaded for the first time through {@link #recordingRanges(CellLoader)}. Data does not
+ * change, so ranges are never re-computed. Blocks that were never loaded have no range and are never reported as
+ * affected: there is nothing cached for them that could be stale.
+ *
+ * If a {@link StatisticsPyramid} of the data has computed the level of the data, ranges are looked up from its
+ * statistics instead of scanning the data. The statistics blocks may be larger than the cells, so looked up ranges
+ * may be wider than the actual ranges, which is conservative for both {@link #blocksAffectedBy(double, double,
+ * double, double)} and skipping cells in {@link #recordingRanges(CellLoader, BiPredicate)}.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class BlockValueRanges<T extends RealType<T>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final RandomAccessibleInterval<T> data;
+
+	private final CellGrid grid;
+
+	private final StatisticsPyramid<?> statistics;
+
+	private final int level;
+
+	private final Map<Long, double[]> ranges = new ConcurrentHashMap<>();
+
+	public BlockValueRanges(final RandomAccessibleInterval<T> data, final CellGrid grid)
+	{
+		this(data, grid, null, 0);
+	}
+
+	/**
+	 * @param statistics
+	 * 		statistics of the data, may be {@code null}
+	 * @param level
+	 * 		scale level of {@code data} in {@code statistics}
+	 */
+	public BlockValueRanges(
+			final RandomAccessibleInterval<T> data,
+			final CellGrid grid,
+			final StatisticsPyramid<?> statistics,
+			final int level)
+	{
+		super();
+		this.data = data;
+		this.grid = grid;
+		this.statistics = statistics;
+		this.level = level;
+	}
+
+	/**
+	 * @return {@link CellLoader} that records the range of each cell before delegating to {@code loader}
+	 */
+	public CellLoader<UnsignedByteType> recordingRanges(final CellLoader<UnsignedByteType> loader)
+	{
+		return recordingRanges(loader, (min, max) -> false);
+	}
+
+	/**
+	 * @param skip
+	 * 		tests the {@code (min, max)} range of a cell. If {@code true}, {@code loader} is not called and the cell is
+	 * 		left as allocated, i.e. zero.
+	 *
+	 * @return {@link CellLoader} that records the range of each cell before delegating to {@code loader}, unless
+	 * {@code skip} is {@code true} for the range
+	 */
+	public CellLoader<UnsignedByteType> recordingRanges(
+			final CellLoader<UnsignedByteType> loader,
+			final BiPredicate<Double, Double> skip)
+	{
+		return cell -> {
+			final double[] range = record(cell);
+			if (skip.test(range[0], range[1]))
+			{
+				LOG.trace("Skipping cell {} with range {}", Intervals.minAsLongArray(cell), range);
+				return;
+			}
+			loader.load(cell);
+		};
+	}
+
+	/**
+	 * Find blocks whose content may change when a threshold {@code min < value < max} moves from {@code (oldMin,
+	 * oldMax)} to {@code (newMin, newMax)}: only values between the old and the new position of a bound change
+	 * whether they are within the threshold.
+	 *
+	 * @return flat indices of all recorded blocks whose range overlaps {@code [oldMin, newMin]} or {@code [oldMax,
+	 * newMax]}
+	 */
+	public TLongSet blocksAffectedBy(
+			final double oldMin,
+			final double oldMax,
+			final double newMin,
+			final double newMax)
+	{
+		final TLongHashSet affected = new TLongHashSet();
+		for (final Map.Entry<Long, double[]> entry : ranges.entrySet())
+		{
+			final double[] range = entry.getValue();
+			if (overlaps(range, oldMin, newMin) || overlaps(range, oldMax, newMax))
+			{
+				affected.add(entry.getKey());
+			}
+		}
+		LOG.debug("{} of {} recorded blocks affected by threshold change", affected.size(), ranges.size());
+		return affected;
+	}
+
+	/**
+	 * @return {@code true} if any block in {@code blocks} overlaps {@code interval}
+	 */
+	public boolean overlapsAny(final Interval interval, final TLongSet blocks)
+	{
+		final Interval clipped = Intervals.intersect(interval, new FinalInterval(grid.getImgDimensions()));
+		if (blocks.isEmpty() || isEmpty(clipped))
+		{
+			return false;
+		}
+		final long[] minCell = new long[grid.numDimensions()];
+		final long[] maxCell = new long[grid.numDimensions()];
+		grid.getCellPosition(Intervals.minAsLongArray(clipped), minCell);
+		grid.getCellPosition(Intervals.maxAsLongArray(clipped), maxCell);
+		final long[]           gridDimensions = grid.getGridDimensions();
+		final long[]           cellPosition   = new long[grid.numDimensions()];
+		final IntervalIterator cells          = new IntervalIterator(new FinalInterval(minCell, maxCell));
+		while (cells.hasNext())
+		{
+			cells.fwd();
+			cells.localize(cellPosition);
+			if (blocks.contains(IntervalIndexer.positionToIndex(cellPosition, gridDimensions)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private double[] record(final Interval cell)
+	{
+		final long[] cellPosition = new long[grid.numDimensions()];
+		grid.getCellPosition(Intervals.minAsLongArray(cell), cellPosition);
+		return ranges.computeIfAbsent(
+				IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions()),
+				index -> range(Intervals.intersect(data, cell))
+		                      );
+	}
+
+	private double[] range(final Interval interval)
+	{
+		final BlockStatistics fromStatistics = statistics == null
+		                                       ? null
+		                                       : statistics.statistics(level, interval).orElse(null);
+		if (fromStatistics != null)
+		{
+			return new double[] {fromStatistics.min(), fromStatistics.max()};
+		}
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		if (!isEmpty(interval))
+		{
+			for (final T t : Views.interval(data, interval))
+			{
+				final double value = t.getRealDouble();
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+		return new double[] {min, max};
+	}
+
+	private static boolean isEmpty(final Interval interval)
+	{
+		for (int d = 0; d < interval.numDimensions(); ++d)
+		{
+			if (interval.max(d) < interval.min(d))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean overlaps(final double[] range, final double bound1, final double bound2)
+	{
+		// closed intervals are conservative for exclusive bounds
+		return bound1 != bound2 && range[0] <= Math.max(bound1, bound2) && range[1] >= Math.min(bound1, bound2);
+	}
+
+}
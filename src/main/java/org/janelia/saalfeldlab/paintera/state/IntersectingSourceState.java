@@ -1,14 +1,18 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 
 import bdv.img.cache.CreateInvalidVolatileCell;
 import bdv.util.volatiles.SharedQueue;
+import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
@@ -16,17 +20,13 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.Volatile;
-import net.imglib2.cache.Cache;
-import net.imglib2.cache.UncheckedCache;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.cache.img.LoadedCellCacheLoader;
-import net.imglib2.cache.ref.SoftRefLoaderCache;
 import net.imglib2.cache.volatiles.CacheHints;
 import net.imglib2.cache.volatiles.CreateInvalid;
 import net.imglib2.cache.volatiles.LoadingStrategy;
-import net.imglib2.cache.volatiles.VolatileCache;
 import net.imglib2.converter.ARGBColorConverter;
 import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
@@ -41,15 +41,20 @@ import net.imglib2.type.Type;
 import net.imglib2.type.label.Label;
 import net.imglib2.type.label.LabelMultisetType;
 import net.imglib2.type.label.LabelMultisetType.Entry;
+import net.imglib2.type.logic.BoolType;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
-import net.imglib2.util.Util;
 import net.imglib2.util.ValueTriple;
 import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.cache.KeyedWeakRefVolatileCache;
+import org.janelia.saalfeldlab.paintera.cache.SoftRefInvalidatableCache;
 import org.janelia.saalfeldlab.paintera.composition.Composite;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentsInSelectedSegments;
@@ -64,7 +69,10 @@ import org.janelia.saalfeldlab.paintera.meshes.MeshManager;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManagerSimple;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.paintera.meshes.cache.CacheUtils;
+import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.Threshold;
+import org.janelia.saalfeldlab.paintera.viewer3d.LatestTaskExecutor;
 import org.janelia.saalfeldlab.util.Colors;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tmp.bdv.img.cache.VolatileCachedCellImg;
@@ -78,8 +86,27 @@ public class IntersectingSourceState
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	// debounce threshold changes, e.g. while dragging a slider
+	private static final long THRESHOLD_UPDATE_DELAY_IN_NANO_SECONDS = 100 * 1000 * 1000;
+
 	private final MeshManagerSimple<TLongHashSet, TLongHashSet> meshManager;
 
+	private final Intersection intersection;
+
+	private final SoftRefInvalidatableCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCaches;
+
+	private final LatestTaskExecutor thresholdUpdates = new LatestTaskExecutor(
+			THRESHOLD_UPDATE_DELAY_IN_NANO_SECONDS,
+			new NamedThreadFactory("intersection-threshold-update", true)
+	);
+
+	// threshold that cached blocks and meshes reflect, only accessed from thresholdUpdates
+	private double appliedMin;
+
+	private double appliedMax;
+
+	private final ExecutorService workers;
+
 	public <D extends IntegerType<D>, T extends Type<T>, B extends BooleanType<B>> IntersectingSourceState(
 			final ThresholdingSourceState<?, ?> thresholded,
 			final LabelSourceState<D, T> labels,
@@ -90,10 +117,32 @@ public class IntersectingSourceState
 			final Group meshesGroup,
 			final ExecutorService manager,
 			final ExecutorService workers)
+	{
+		this(
+				makeIntersect(thresholded, labels, queue, priority, name),
+				thresholded,
+				labels,
+				composite,
+				name,
+				meshesGroup,
+				manager,
+				workers
+		    );
+	}
+
+	private <D extends IntegerType<D>, T extends Type<T>> IntersectingSourceState(
+			final Intersection intersection,
+			final ThresholdingSourceState<?, ?> thresholded,
+			final LabelSourceState<D, T> labels,
+			final Composite<ARGBType, ARGBType> composite,
+			final String name,
+			final Group meshesGroup,
+			final ExecutorService manager,
+			final ExecutorService workers)
 	{
 		// TODO use better converter
 		super(
-				makeIntersect(thresholded, labels, queue, priority, name),
+				intersection.source,
 				new ARGBColorConverter.Imp0<>(0, 1),
 				composite,
 				name,
@@ -101,6 +150,9 @@ public class IntersectingSourceState
 				thresholded,
 				labels
 		     );
+		this.intersection = intersection;
+		this.workers = workers;
+		this.thresholdUpdates.setRestartDelay(true);
 		final DataSource<UnsignedByteType, VolatileUnsignedByteType> source = getDataSource();
 
 		final MeshManager<Long, TLongHashSet> meshManager = labels.meshManager();
@@ -111,12 +163,20 @@ public class IntersectingSourceState
 		//				source,
 		//				l -> ( s, t ) -> t.set( s.get() > 0 ),
 		//				CacheUtils::toCacheSoftRefLoaderCache );
-		final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCaches = CacheUtils
-				.segmentMeshCacheLoaders(
-				source,
-				l -> (s, t) -> t.set(s.get() > 0),
-				CacheUtils::toCacheSoftRefLoaderCache
-		                                                                                                                                     );
+		final List<SoftRefInvalidatableCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>> meshCaches =
+				new ArrayList<>();
+		final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCacheLoaders =
+				CacheUtils.segmentMeshCacheLoaders(
+						source,
+						l -> (s, t) -> t.set(s.get() > 0),
+						loader -> {
+							final SoftRefInvalidatableCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>> cache =
+									new SoftRefInvalidatableCache<>(loader);
+							meshCaches.add(cache);
+							return cache;
+						}
+				                                  );
+		this.meshCaches = meshCaches.toArray(new SoftRefInvalidatableCache[meshCaches.size()]);
 
 		final FragmentSegmentAssignmentState assignment                  = labels.assignment();
 		final SelectedSegments               selectedSegments            = new SelectedSegments(
@@ -134,7 +194,7 @@ public class IntersectingSourceState
 				// meshManager.blockListCache(), key -> Arrays.stream(
 				// fragmentsInSelectedSegments.getFragments() ).mapToObj( l -> l
 				// ).toArray( Long[]::new ) ),
-				meshCaches,
+				meshCacheLoaders,
 				meshesGroup,
 				new SimpleIntegerProperty(),
 				new SimpleDoubleProperty(),
@@ -156,18 +216,24 @@ public class IntersectingSourceState
 		this.meshManager.smoothingIterationsProperty().bind(meshManager.smoothingIterationsProperty());
 		this.meshManager.smoothingLambdaProperty().bind(meshManager.smoothingLambdaProperty());
 
-		thresholded.getThreshold().minValue().addListener((obs, oldv, newv) -> {
-			Arrays.stream(meshCaches).forEach(UncheckedCache::invalidateAll);
-			update(source, fragmentsInSelectedSegments);
-		});
-		thresholded.getThreshold().maxValue().addListener((obs, oldv, newv) -> {
-			Arrays.stream(meshCaches).forEach(UncheckedCache::invalidateAll);
-			update(source, fragmentsInSelectedSegments);
-		});
+		final Threshold<?> threshold = thresholded.getThreshold();
+		this.appliedMin = threshold.getMin();
+		this.appliedMax = threshold.getMax();
+		threshold.minValue().addListener((obs, oldv, newv) -> thresholdUpdates.execute(() -> updateBlocks(
+				threshold,
+				fragmentsInSelectedSegments)));
+		threshold.maxValue().addListener((obs, oldv, newv) -> thresholdUpdates.execute(() -> updateBlocks(
+				threshold,
+				fragmentsInSelectedSegments)));
+		this.meshManager.scaleLevelProperty().addListener((obs, oldv, newv) -> thresholdUpdates.execute(() ->
+				updateBlocks(threshold, fragmentsInSelectedSegments)));
 
 		//		selectedIds.addListener( obs -> update( source, fragmentsInSelectedSegments ) );
 		//		assignment.addListener( obs -> update( source, fragmentsInSelectedSegments ) );
-		fragmentsInSelectedSegments.addListener(obs -> update(source, fragmentsInSelectedSegments));
+		fragmentsInSelectedSegments.addListener(obs -> {
+			update(source, fragmentsInSelectedSegments);
+			thresholdUpdates.execute(() -> updateBlocks(threshold, fragmentsInSelectedSegments));
+		});
 	}
 
 	private void update(
@@ -195,6 +261,106 @@ public class IntersectingSourceState
 
 		}
 
+		refreshMeshes(fragmentsInSelectedSegments);
+	}
+
+	/**
+	 * Invalidate only blocks whose value range overlaps the interval between the old and the new position of a moved
+	 * bound of {@code threshold}, blocks whose components {@link LabelIntersectionCellLoader#mergeAcross(CellGrid,
+	 * long[], ExecutorService) merged} across the blocks of the selected segments changed, and the meshes of these
+	 * blocks. Meshes of all other blocks are re-used from the cache when meshes are re-generated.
+	 */
+	private void updateBlocks(
+			final Threshold<?> threshold,
+			final FragmentsInSelectedSegments fragmentsInSelectedSegments)
+	{
+		final double  min                = threshold.getMin();
+		final double  max                = threshold.getMax();
+		final boolean isThresholdChanged = min != appliedMin || max != appliedMax;
+
+		int numAffectedBlocks = 0;
+		for (int level = 0; level < intersection.ranges.length; ++level)
+		{
+			final BlockValueRanges<?> ranges   = intersection.ranges[level];
+			final TLongSet            affected = isThresholdChanged
+			                                     ? ranges.blocksAffectedBy(appliedMin, appliedMax, min, max)
+			                                     : new TLongHashSet();
+			// invalidated before merging so that the merge sees the new threshold
+			intersection.caches[level].invalidateIf(affected::contains);
+			intersection.volatileCaches[level].invalidateIf(affected::contains);
+			final TLongSet changed = mergeAcrossSegmentBlocks(level, fragmentsInSelectedSegments);
+			changed.removeAll(affected);
+			intersection.caches[level].invalidateIf(changed::contains);
+			intersection.volatileCaches[level].invalidateIf(changed::contains);
+			affected.addAll(changed);
+			if (affected.isEmpty())
+			{
+				continue;
+			}
+			numAffectedBlocks += affected.size();
+			// meshes are generated for blocks expanded by one cube
+			meshCaches[level].invalidateIf(key -> ranges.overlapsAny(Intervals.expand(key.interval(), 1), affected));
+		}
+		LOG.debug(
+				"Threshold ({}, {}) -> ({}, {}) and merged components: invalidated {} blocks",
+				appliedMin,
+				appliedMax,
+				min,
+				max,
+				numAffectedBlocks
+		         );
+		appliedMin = min;
+		appliedMax = max;
+
+		if (numAffectedBlocks > 0)
+		{
+			InvokeOnJavaFXApplicationThread.invoke(() -> refreshMeshes(fragmentsInSelectedSegments));
+		}
+	}
+
+	/**
+	 * Merge the intersection components across the blocks that contain the selected segments at the scale level of
+	 * the meshes, so that meshes of a component that crosses block faces are not cut off at the faces. Other levels
+	 * are populated per block.
+	 *
+	 * @return blocks at {@code level} whose content changed
+	 */
+	private TLongSet mergeAcrossSegmentBlocks(
+			final int level,
+			final FragmentsInSelectedSegments fragmentsInSelectedSegments)
+	{
+		final long[]   fragments = fragmentsInSelectedSegments.getFragments();
+		final CellGrid grid      = intersection.grids[level];
+		final long[]   blocks;
+		if (level != meshManager.scaleLevelProperty().get() || fragments == null || fragments.length == 0)
+		{
+			blocks = new long[] {};
+		}
+		else
+		{
+			final Interval[] intervals    = meshManager.blockListCache()[level].apply(new TLongHashSet(fragments));
+			final TLongSet   blockSet     = new TLongHashSet();
+			final long[]     cellPosition = new long[grid.numDimensions()];
+			for (final Interval interval : intervals)
+			{
+				grid.getCellPosition(Intervals.minAsLongArray(interval), cellPosition);
+				blockSet.add(IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions()));
+			}
+			blocks = blockSet.toArray();
+		}
+
+		try
+		{
+			return intersection.loaders[level].mergeAcross(grid, blocks, workers);
+		} catch (final InterruptedException | ExecutionException e)
+		{
+			LOG.warn("Unable to merge intersection components at level {}: {}", level, e.getMessage());
+			return new TLongHashSet();
+		}
+	}
+
+	private void refreshMeshes(final FragmentsInSelectedSegments fragmentsInSelectedSegments)
+	{
 		this.meshManager.removeAllMeshes();
 		if (Optional.ofNullable(fragmentsInSelectedSegments.getFragments()).map(sel -> sel.length).orElse(0) > 0)
 		{
@@ -207,9 +373,8 @@ public class IntersectingSourceState
 		return this.meshManager;
 	}
 
-	private static <D extends IntegerType<D>, T extends Type<T>, B extends BooleanType<B>>
-	DataSource<UnsignedByteType, VolatileUnsignedByteType> makeIntersect(
-			final SourceState<B, Volatile<B>> thresholded,
+	private static <R extends RealType<R>, D extends IntegerType<D>, T extends Type<T>> Intersection makeIntersect(
+			final ThresholdingSourceState<R, ?> thresholded,
 			final LabelSourceState<D, T> labels,
 			final SharedQueue queue,
 			final int priority,
@@ -231,6 +396,15 @@ public class IntersectingSourceState
 				RandomAccessibleInterval[transforms.length];
 		final RandomAccessibleInterval<VolatileUnsignedByteType>[] vdata      = new
 				RandomAccessibleInterval[transforms.length];
+		@SuppressWarnings("unchecked") final SoftRefInvalidatableCache<Long, Cell<VolatileByteArray>>[] caches =
+				new SoftRefInvalidatableCache[transforms.length];
+		@SuppressWarnings("unchecked") final WeakRefVolatileCache<Long, Cell<VolatileByteArray>>[] volatileCaches =
+				new WeakRefVolatileCache[transforms.length];
+		final BlockValueRanges<?>[] ranges    = new BlockValueRanges[transforms.length];
+		final LabelIntersectionCellLoader<?, ?>[] loaders = new LabelIntersectionCellLoader[transforms.length];
+		final CellGrid[]            grids     = new CellGrid[transforms.length];
+		final DataSource<R, ?>      raw       = thresholded.getDataSource().underlyingSource();
+		final Threshold<R>          threshold = thresholded.getThreshold();
 
 		final SelectedIds                    selectedIds                 = labels.selectedIds();
 		final FragmentSegmentAssignmentState assignment                  = labels.assignment();
@@ -257,8 +431,8 @@ public class IntersectingSourceState
 				throw new RuntimeException("Incompatible sources ( transforms )");
 			}
 
-			final RandomAccessibleInterval<B> thresh = thresholded.getDataSource().getDataSource(0, level);
-			final RandomAccessibleInterval<D> label  = labelsSource.getDataSource(0, level);
+			final RandomAccessibleInterval<BoolType> thresh = thresholded.getDataSource().getDataSource(0, level);
+			final RandomAccessibleInterval<D>        label  = labelsSource.getDataSource(0, level);
 
 			final CellGrid grid = label instanceof AbstractCellImg<?, ?, ?, ?>
 			                      ? ((AbstractCellImg<?, ?, ?, ?>) label).getCellGrid()
@@ -268,19 +442,28 @@ public class IntersectingSourceState
 							                      .toArray()
 			                      );
 
-			final B extension = Util.getTypeFromInterval(thresh);
-			extension.set(false);
-			final LabelIntersectionCellLoader<D, B> loader = new LabelIntersectionCellLoader<>(
+			final BoolType extension = new BoolType(false);
+			final LabelIntersectionCellLoader<D, BoolType> loader = new LabelIntersectionCellLoader<>(
 					label,
 					Views.extendValue(thresh, extension),
 					checkForType(labelsSource.getDataType(), fragmentsInSelectedSegments),
-					BooleanType::get,
-					extension::copy
+					BoolType::get
 			);
+			final BlockValueRanges<R> rangesAtLevel = new BlockValueRanges<>(
+					raw.getDataSource(0, level),
+					grid,
+					thresholded.statistics().orElse(null),
+					level);
 
 			final Set<AccessFlags> accessFlags = AccessFlags.setOf(AccessFlags.VOLATILE);
-			final Cache<Long, Cell<VolatileByteArray>> cache = new SoftRefLoaderCache<Long, Cell<VolatileByteArray>>()
-					.withLoader(LoadedCellCacheLoader.get(grid, loader, new UnsignedByteType(), accessFlags));
+			final SoftRefInvalidatableCache<Long, Cell<VolatileByteArray>> cache = new SoftRefInvalidatableCache<>(
+					LoadedCellCacheLoader.get(
+							grid,
+							// no voxel of a cell passes the threshold if its range is outside of the threshold
+							rangesAtLevel.recordingRanges(loader, threshold::excludes),
+							new UnsignedByteType(),
+							accessFlags
+					                         ));
 
 			LOG.debug("Making intersect for level={} with grid={}", level, grid);
 
@@ -295,7 +478,7 @@ public class IntersectingSourceState
 					new VolatileUnsignedByteType(),
 					false
 			                                                                                                      );
-			final VolatileCache<Long, Cell<VolatileByteArray>>       volatileCache = new WeakRefVolatileCache<>(
+			final WeakRefVolatileCache<Long, Cell<VolatileByteArray>> volatileCache = new KeyedWeakRefVolatileCache<>(
 					cache,
 					queue,
 					createInvalid
@@ -320,14 +503,26 @@ public class IntersectingSourceState
 			data[level] = img;
 			vdata[level] = vimg;
 			transforms[level] = tf1;
+			caches[level] = cache;
+			volatileCaches[level] = volatileCache;
+			ranges[level] = rangesAtLevel;
+			loaders[level] = loader;
+			grids[level] = grid;
 
 		}
 
-		return new RandomAccessibleIntervalDataSource<>(
-				new ValueTriple<>(data, vdata, transforms),
-				Interpolations.nearestNeighbor(),
-				Interpolations.nearestNeighbor(),
-				name
+		return new Intersection(
+				new RandomAccessibleIntervalDataSource<>(
+						new ValueTriple<>(data, vdata, transforms),
+						Interpolations.nearestNeighbor(),
+						Interpolations.nearestNeighbor(),
+						name
+				),
+				caches,
+				volatileCaches,
+				ranges,
+				loaders,
+				grids
 		);
 	}
 
@@ -352,4 +547,41 @@ public class IntersectingSourceState
 		};
 	}
 
+	/**
+	 * Intersection source and the per-level caches and block value ranges that allow to invalidate individual blocks,
+ * and the per-level loaders and their grids that merge components across blocks.
+	 */
+	private static class Intersection
+	{
+
+		private final DataSource<UnsignedByteType, VolatileUnsignedByteType> source;
+
+		private final SoftRefInvalidatableCache<Long, Cell<VolatileByteArray>>[] caches;
+
+		private final WeakRefVolatileCache<Long, Cell<VolatileByteArray>>[] volatileCaches;
+
+		private final BlockValueRanges<?>[] ranges;
+
+		private final LabelIntersectionCellLoader<?, ?>[] loaders;
+
+		private final CellGrid[] grids;
+
+		private Intersection(
+				final DataSource<UnsignedByteType, VolatileUnsignedByteType> source,
+				final SoftRefInvalidatableCache<Long, Cell<VolatileByteArray>>[] caches,
+				final WeakRefVolatileCache<Long, Cell<VolatileByteArray>>[] volatileCaches,
+				final BlockValueRanges<?>[] ranges,
+				final LabelIntersectionCellLoader<?, ?>[] loaders,
+				final CellGrid[] grids)
+		{
+			this.source = source;
+			this.caches = caches;
+			this.volatileCaches = volatileCaches;
+			this.ranges = ranges;
+			this.loaders = loaders;
+			this.grids = grids;
+		}
+
+	}
+
 }
@@ -15,7 +15,7 @@ public class InvertingRawSourceState<D, T extends RealType<T>>
 	{
 		super(
 				duplicate(dependsOn.dataSource()),
-				new ARGBColorConverter.InvertingImp1<>(0, 255),
+				ARGBColorConverter.inverting(dependsOn.dataSource().getType(), 0, 255),
 				dependsOn.compositeProperty().get(),
 				name,
 				dependsOn
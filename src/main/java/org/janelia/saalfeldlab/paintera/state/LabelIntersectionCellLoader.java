@@ -1,23 +1,48 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
-import net.imglib2.algorithm.fill.FloodFill;
-import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.img.CellLoader;
 import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.logic.BoolType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.util.ConnectedComponents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tmp.net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
 
+/**
+ * Populate each cell with the components of {@code data2} that intersect {@code data1}: a voxel is set if it
+ * satisfies {@code check2} and is connected within the cell, through voxels that satisfy {@code check2}, to a voxel
+ * that satisfies both {@code check1} and {@code check2}. Components are labeled with {@link ConnectedComponents} over
+ * primitive arrays; cells are loaded in parallel by the cache that uses this loader.
+ *
+ * {@link #mergeAcross(CellGrid, long[], ExecutorService)} connects components across the faces of a list of cells,
+ * e.g. the blocks that contain a segment, so that a component is set in all of these cells if it intersects
+ * {@code data1} in any of them.
+ */
 public class LabelIntersectionCellLoader<T, U> implements CellLoader<UnsignedByteType>
 {
 
@@ -31,21 +56,19 @@ public class LabelIntersectionCellLoader<T, U> implements CellLoader<UnsignedByt
 
 	private final Predicate<U> check2;
 
-	private final Supplier<U> extension;
+	private volatile Merged merged = new Merged(null, new TLongObjectHashMap<>());
 
 	public LabelIntersectionCellLoader(
 			final RandomAccessible<T> data1,
 			final RandomAccessible<U> data2,
 			final Predicate<T> check1,
-			final Predicate<U> check2,
-			final Supplier<U> extension)
+			final Predicate<U> check2)
 	{
 		super();
 		this.data1 = data1;
 		this.data2 = data2;
 		this.check1 = check1;
 		this.check2 = check2;
-		this.extension = extension;
 	}
 
 	@Override
@@ -57,31 +80,167 @@ public class LabelIntersectionCellLoader<T, U> implements CellLoader<UnsignedByt
 				Intervals.maxAsLongArray(cell),
 				cell.size()
 		         );
-		final IntervalView<U> label2Interval        = Views.interval(data2, cell);
-		final Cursor<T> label1Cursor                = Views.flatIterable(Views.interval(data1, cell)).cursor();
-		final Cursor<U> label2Cursor                = Views.flatIterable(label2Interval).cursor();
-		final Cursor<UnsignedByteType> targetCursor = cell.localizingCursor();
+		final int[]     dimensions   = Intervals.dimensionsAsIntArray(cell);
+		final int       size         = (int) cell.size();
+		final boolean[] foreground   = new boolean[size];
+		final boolean[] seeds        = new boolean[size];
+		final Cursor<T> label1Cursor = Views.flatIterable(Views.interval(data1, cell)).cursor();
+		final Cursor<U> label2Cursor = Views.flatIterable(Views.interval(data2, cell)).cursor();
+		for (int index = 0; index < size; ++index)
+		{
+			final T label1Type = label1Cursor.next();
+			foreground[index] = check2.test(label2Cursor.next());
+			seeds[index] = foreground[index] && check1.test(label1Type);
+		}
 
-		//		cell.forEach( UnsignedByteType::setZero );
-		while (targetCursor.hasNext())
+		final int[]     labels        = new int[size];
+		final int       numComponents = ConnectedComponents.label(foreground, dimensions, labels);
+		final boolean[] mergedSeeded  = merged.isSeeded(cell);
+		final boolean[] isSeeded;
+		if (mergedSeeded != null && mergedSeeded.length == numComponents + 1)
+		{
+			isSeeded = mergedSeeded;
+		}
+		else
 		{
-			final UnsignedByteType targetType = targetCursor.next();
-			final T                label1Type = label1Cursor.next();
-			final U                label2Type = label2Cursor.next();
-			if (targetType.get() == 0)
+			isSeeded = new boolean[numComponents + 1];
+			for (int index = 0; index < size; ++index)
 			{
-				if (check1.test(label1Type) && check2.test(label2Type))
+				isSeeded[labels[index]] |= seeds[index];
+			}
+		}
+
+		final Cursor<UnsignedByteType> targetCursor = Views.flatIterable(cell).cursor();
+		for (int index = 0; index < size; ++index)
+		{
+			targetCursor.next().set(isSeeded[labels[index]] ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Label the components of {@code data2} within {@code blocks} across block faces and set each component that
+	 * intersects {@code data1} in any of {@code blocks} in all of {@code blocks}. Cells outside of {@code blocks} are
+	 * populated on their own. Replaces the blocks of the previous call. The labels of all {@code blocks} are held in
+	 * memory until the components are merged, only one flag per component and block is kept.
+	 *
+	 * @param grid
+	 * 		grid of the cells populated by this loader
+	 * @param blocks
+	 * 		distinct flat indices into {@code grid}
+	 *
+	 * @return flat indices of the cells whose content changed and that need to be re-loaded
+	 */
+	public TLongSet mergeAcross(final CellGrid grid, final long[] blocks, final ExecutorService es)
+	throws InterruptedException, ExecutionException
+	{
+		final RandomAccessibleInterval<BoolType> foreground = Converters.convert(
+				Views.interval(data2, new FinalInterval(grid.getImgDimensions())),
+				(s, t) -> t.set(check2.test(s)),
+				new BoolType());
+		final ConnectedComponents components = ConnectedComponents.label(foreground, grid, blocks, es);
+
+		// local components of each block that intersect data1
+		final List<Future<boolean[]>> futures = new ArrayList<>();
+		for (final long block : blocks)
+		{
+			futures.add(es.submit(() -> {
+				final int[]     labels   = components.labels(block);
+				final boolean[] isSeeded = new boolean[components.numComponents(block) + 1];
+				final Cursor<T> cursor   = Views.flatIterable(Views.interval(data1, cellInterval(grid, block)))
+						.cursor();
+				for (int index = 0; index < labels.length; ++index)
 				{
-					FloodFill.fill(
-							Views.extend(label2Interval, new OutOfBoundsConstantValueFactory<>(extension)),
-							Views.extendValue(cell, new UnsignedByteType(1)),
-							targetCursor,
-							new UnsignedByteType(1),
-							new DiamondShape(1),
-							(s, t) -> check2.test(s) && t.get() == 0
-					              );
+					final T t = cursor.next();
+					isSeeded[labels[index]] |= labels[index] != ConnectedComponents.BACKGROUND && check1.test(t);
+				}
+				return isSeeded;
+			}));
+		}
+
+		final TLongObjectMap<boolean[]> isSeededInBlock  = new TLongObjectHashMap<>();
+		final TIntSet                   seededComponents = new TIntHashSet();
+		for (int index = 0; index < blocks.length; ++index)
+		{
+			final boolean[] isSeeded = futures.get(index).get();
+			isSeededInBlock.put(blocks[index], isSeeded);
+			for (int label = 1; label < isSeeded.length; ++label)
+			{
+				if (isSeeded[label])
+				{
+					seededComponents.add(components.component(blocks[index], label));
 				}
 			}
 		}
+
+		final TLongObjectMap<boolean[]> isSeeded = new TLongObjectHashMap<>();
+		for (final long block : blocks)
+		{
+			final boolean[] isBlockSeeded = new boolean[components.numComponents(block) + 1];
+			for (int label = 1; label < isBlockSeeded.length; ++label)
+			{
+				isBlockSeeded[label] = seededComponents.contains(components.component(block, label));
+			}
+			isSeeded.put(block, isBlockSeeded);
+		}
+
+		final Merged   previous = this.merged;
+		final TLongSet changed  = new TLongHashSet(previous.isSeeded.keySet());
+		changed.removeAll(isSeeded.keySet());
+		isSeeded.forEachEntry((block, flags) -> {
+			// without previous flags, the cell was populated on its own
+			final boolean[] previousFlags = previous.isSeeded.containsKey(block)
+			                                ? previous.isSeeded.get(block)
+			                                : isSeededInBlock.get(block);
+			if (!Arrays.equals(flags, previousFlags))
+			{
+				changed.add(block);
+			}
+			return true;
+		});
+		this.merged = new Merged(grid, isSeeded);
+		LOG.debug("Merged {} components in {} blocks, {} blocks changed", seededComponents.size(), blocks.length,
+				changed.size());
+		return changed;
+	}
+
+	private static Interval cellInterval(final CellGrid grid, final long block)
+	{
+		final long[] cellPosition = new long[grid.numDimensions()];
+		final long[] min          = new long[grid.numDimensions()];
+		final long[] max          = new long[grid.numDimensions()];
+		final int[]  dimensions   = new int[grid.numDimensions()];
+		grid.getCellGridPositionFlat(block, cellPosition);
+		grid.getCellDimensions(cellPosition, min, dimensions);
+		Arrays.setAll(max, d -> min[d] + dimensions[d] - 1);
+		return new FinalInterval(min, max);
+	}
+
+	/**
+	 * Flags for the components of each cell in a list of cells, merged across cell faces.
+	 */
+	private static class Merged
+	{
+
+		private final CellGrid grid;
+
+		private final TLongObjectMap<boolean[]> isSeeded;
+
+		private Merged(final CellGrid grid, final TLongObjectMap<boolean[]> isSeeded)
+		{
+			this.grid = grid;
+			this.isSeeded = isSeeded;
+		}
+
+		private boolean[] isSeeded(final Interval cell)
+		{
+			if (isSeeded.isEmpty())
+			{
+				return null;
+			}
+			final long[] cellPosition = new long[grid.numDimensions()];
+			grid.getCellPosition(Intervals.minAsLongArray(cell), cellPosition);
+			return isSeeded.get(IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions()));
+		}
+
 	}
 }
@@ -37,6 +37,7 @@ import net.imglib2.util.Pair;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.PainteraBaseView;
+import org.janelia.saalfeldlab.paintera.cache.SoftRefInvalidatableCache;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaYCbCr;
 import org.janelia.saalfeldlab.paintera.composition.Composite;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
@@ -53,6 +54,7 @@ import org.janelia.saalfeldlab.paintera.id.LocalIdService;
 import org.janelia.saalfeldlab.paintera.meshes.Interruptible;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunctionAndCache;
+import org.janelia.saalfeldlab.paintera.meshes.LabelBoundaryCubes;
 import org.janelia.saalfeldlab.paintera.meshes.ManagedMeshSettings;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManager;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManagerWithAssignmentForSegments;
@@ -97,6 +99,9 @@ public class LabelSourceState<D extends IntegerType<D>, T>
 
 	private final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCaches;
 
+	// null if labels cannot be extracted from the data type
+	private final UncheckedCache<HashWrapper<Interval>, LabelBoundaryCubes>[] boundaryCubesCaches;
+
 	private final LockedSegmentsState lockedSegments;
 
 	public LabelSourceState(
@@ -152,12 +157,24 @@ public class LabelSourceState<D extends IntegerType<D>, T>
 				ids -> Arrays.stream(ids.toArray()).mapToObj(id -> id).toArray(Long[]::new)
 		                                                                                                        );
 
-		final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCaches = CacheUtils
-				.segmentMeshCacheLoaders(
-				dataSource,
-				segmentMaskGenerator,
-				CacheUtils::toCacheSoftRefLoaderCache
-		                                                                                                                                     );
+		// sample labels once per block if possible: merges and splits do not re-sample data
+		final LabelBoundaryCubes.Labels<D> labels = LabelBoundaryCubes.labelsForType(d);
+		this.boundaryCubesCaches = labels == null
+		                           ? null
+		                           : CacheUtils.labelBoundaryCubesCaches(
+				                           dataSource,
+				                           labels,
+				                           CacheUtils::toCacheSoftRefLoaderCache);
+		final InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>[] meshCaches =
+				this.boundaryCubesCaches == null
+				? CacheUtils.segmentMeshCacheLoaders(
+						dataSource,
+						segmentMaskGenerator,
+						SoftRefInvalidatableCache::new)
+				: CacheUtils.segmentMeshCacheLoadersFromBoundaryCubes(
+						dataSource,
+						this.boundaryCubesCaches,
+						SoftRefInvalidatableCache::new);
 		this.meshCaches = meshCaches;
 
 		this.managedMeshSettings = new ManagedMeshSettings(dataSource.getNumMipmapLevels());
@@ -226,6 +243,10 @@ public class LabelSourceState<D extends IntegerType<D>, T>
 		Arrays
 				.stream(this.meshCaches)
 				.forEach(UncheckedCache::invalidateAll);
+		if (this.boundaryCubesCaches != null)
+			Arrays
+					.stream(this.boundaryCubesCaches)
+					.forEach(UncheckedCache::invalidateAll);
 	}
 
 	public LockedSegmentsState lockedSegments()
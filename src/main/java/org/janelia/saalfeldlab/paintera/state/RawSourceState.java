@@ -1,5 +1,7 @@
 package org.janelia.saalfeldlab.paintera.state;
 
+import java.util.Optional;
+
 import bdv.util.volatiles.VolatileTypeMatcher;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.ARGBColorConverter;
@@ -16,11 +18,14 @@ import org.janelia.saalfeldlab.paintera.composition.Composite;
 import org.janelia.saalfeldlab.paintera.composition.CompositeCopy;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 
 public class RawSourceState<D, T extends RealType<T>>
 		extends MinimalSourceState<D, T, DataSource<D, T>, ARGBColorConverter<T>>
 {
 
+	private final StatisticsPyramid<?> statistics;
+
 	public RawSourceState(
 			final DataSource<D, T> dataSource,
 			final ARGBColorConverter<T> converter,
@@ -28,6 +33,16 @@ public class RawSourceState<D, T extends RealType<T>>
 			final String name)
 	{
 		super(dataSource, converter, composite, name);
+		this.statistics = StatisticsPyramid.forSource(dataSource).orElse(null);
+	}
+
+	/**
+	 * @return per-block statistics of the raw data, or {@link Optional#empty()} if the data is not real valued. The
+	 * statistics are computed once the state is added to a {@link org.janelia.saalfeldlab.paintera.PainteraBaseView}.
+	 */
+	public Optional<StatisticsPyramid<?>> statistics()
+	{
+		return Optional.ofNullable(statistics);
 	}
 
 	public static <D extends RealType<D> & NativeType<D>, T extends AbstractVolatileNativeRealType<D, T>>
@@ -69,7 +84,7 @@ public class RawSourceState<D, T extends RealType<T>>
 
 		return new RawSourceState<>(
 				dataSource,
-				new ARGBColorConverter.InvertingImp0<>(min, max),
+				ARGBColorConverter.inverting(vt, min, max),
 				new CompositeCopy<>(),
 				name
 		);
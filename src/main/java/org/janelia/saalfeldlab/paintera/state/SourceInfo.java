@@ -154,7 +154,7 @@ public class SourceInfo
 			final ARGBType color,
 			final Composite<ARGBType, ARGBType> composite)
 	{
-		final ARGBColorConverter<T> converter = new ARGBColorConverter.InvertingImp1<>(min, max);
+		final ARGBColorConverter<T> converter = ARGBColorConverter.inverting(source.getType(), min, max);
 		converter.colorProperty().set(color);
 		final RawSourceState<D, T> state = new RawSourceState<>(source, converter, composite, source.getName());
 		return state;
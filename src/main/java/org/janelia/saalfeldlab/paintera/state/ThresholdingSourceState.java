@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 import javafx.beans.property.DoubleProperty;
@@ -19,6 +20,7 @@ import net.imglib2.type.volatiles.AbstractVolatileRealType;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaAdd;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.PredicateDataSource;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.Threshold;
 import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.VolatileMaskConverter;
 import org.janelia.saalfeldlab.util.Colors;
@@ -37,6 +39,8 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 
 	private final Threshold<D> threshold;
 
+	private final Optional<StatisticsPyramid<?>> statistics;
+
 	public ThresholdingSourceState(
 			final String name,
 			final RawSourceState<D, T> toBeThresholded)
@@ -54,6 +58,7 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 				toBeThresholded
 		     );
 		this.threshold = getDataSource().getPredicate();
+		this.statistics = toBeThresholded.statistics();
 	}
 
 	public Threshold<D> getThreshold()
@@ -61,6 +66,14 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 		return this.threshold;
 	}
 
+	/**
+	 * @return statistics of the thresholded data, see {@link RawSourceState#statistics()}
+	 */
+	public Optional<StatisticsPyramid<?>> statistics()
+	{
+		return this.statistics;
+	}
+
 	private static <D extends RealType<D>, T extends AbstractVolatileRealType<D, T>> PredicateDataSource<D, T,
 			Threshold<D>> threshold(
 			final DataSource<D, T> source,
@@ -148,9 +161,9 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 
 		private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-		private double min;
+		private volatile double min;
 
-		private double max;
+		private volatile double max;
 
 		private final ObservableDoubleValue minSupplier;
 
@@ -176,6 +189,15 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 			return isWithinMinMax;
 		}
 
+		/**
+		 * @return {@code true} if no value in {@code [min, max]} passes the threshold. Blocks with such a value range,
+		 * e.g. from {@link ThresholdingSourceState#statistics()}, can be skipped in threshold computations.
+		 */
+		public boolean excludes(final double min, final double max)
+		{
+			return max <= this.min || min >= this.max;
+		}
+
 		private void update()
 		{
 			final double m = this.minSupplier.get();
@@ -193,6 +215,24 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 			}
 		}
 
+		/**
+		 * @return lower (exclusive) bound of the threshold, i.e. the smaller of {@link #minValue()} and {@link
+		 * #maxValue()}
+		 */
+		public double getMin()
+		{
+			return this.min;
+		}
+
+		/**
+		 * @return upper (exclusive) bound of the threshold, i.e. the larger of {@link #minValue()} and {@link
+		 * #maxValue()}
+		 */
+		public double getMax()
+		{
+			return this.max;
+		}
+
 		public ObservableDoubleValue minValue()
 		{
 			return this.minSupplier;
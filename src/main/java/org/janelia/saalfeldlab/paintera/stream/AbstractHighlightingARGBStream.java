@@ -14,10 +14,14 @@
 package org.janelia.saalfeldlab.paintera.stream;
 
 import java.lang.invoke.MethodHandles;
+import java.util.function.Consumer;
 
 import gnu.trove.impl.Constants;
 import gnu.trove.map.TLongIntMap;
 import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import net.imglib2.type.label.Label;
@@ -26,6 +30,7 @@ import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssign
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.control.lock.LockedSegments;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectionDelta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +82,17 @@ public abstract class AbstractHighlightingARGBStream extends ObservableWithListe
 
 	protected final TLongIntHashMap explicitlySpecifiedColors = new TLongIntHashMap();
 
+	/**
+	 * Segments of all highlighted fragments, {@code null} if it needs to be re-built. Guarded by itself.
+	 */
+	private TLongHashSet activeSegments = null;
+
+	private final Object activeSegmentsLock = new Object();
+
+	private final Consumer<SelectionDelta> highlightsListener = this::highlightsChanged;
+
+	private final InvalidationListener assignmentListener = obs -> invalidateActiveSegments();
+
 	public AbstractHighlightingARGBStream(
 			final SelectedIds highlights,
 			final FragmentSegmentAssignmentState assignment,
@@ -86,6 +102,7 @@ public abstract class AbstractHighlightingARGBStream extends ObservableWithListe
 		this.assignment = assignment;
 		this.lockedSegments = lockedSegments;
 		this.colorFromSegmentId.addListener((obs, oldv, newv) -> stateChanged());
+		listenTo(highlights, assignment);
 	}
 
 	protected TLongIntHashMap argbCache = new TLongIntHashMap(
@@ -109,24 +126,63 @@ public abstract class AbstractHighlightingARGBStream extends ObservableWithListe
 
 	public boolean isActiveFragment(final long id)
 	{
-		// TODO FIX THIS THING HERE!
-		for (final long i : highlights.getActiveIds())
+		return highlights.isActive(id);
+	}
+
+	public boolean isActiveSegment(final long id)
+	{
+		final long segment = this.assignment.getSegment(id);
+		synchronized (activeSegmentsLock)
 		{
-			if (id == i) { return true; }
+			if (activeSegments == null)
+			{
+				activeSegments = new TLongHashSet();
+				for (final long fragment : highlights.getActiveIds())
+					activeSegments.add(this.assignment.getSegment(fragment));
+			}
+			return activeSegments.contains(segment);
 		}
+	}
 
-		return false;
+	/**
+	 * Added highlights are applied to the active segments directly. Removed highlights may leave other highlighted
+	 * fragments in the same segment, the active segments are re-built on next access in that case.
+	 */
+	private void highlightsChanged(final SelectionDelta delta)
+	{
+		synchronized (activeSegmentsLock)
+		{
+			if (activeSegments == null)
+				return;
+			if (delta.removed().length > 0)
+				activeSegments = null;
+			else
+				for (final long fragment : delta.added())
+					activeSegments.add(this.assignment.getSegment(fragment));
+		}
 	}
 
-	public boolean isActiveSegment(final long id)
+	private void invalidateActiveSegments()
 	{
-		// TODO FIX THIS THING HERE!
-		final long segment = this.assignment.getSegment(id);
-		for (final long i : highlights.getActiveIds())
+		synchronized (activeSegmentsLock)
 		{
-			if (this.assignment.getSegment(i) == segment) { return true; }
+			activeSegments = null;
 		}
-		return false;
+	}
+
+	private void listenTo(final SelectedIds highlights, final FragmentSegmentAssignment assignment)
+	{
+		highlights.addDeltaListener(highlightsListener);
+		if (assignment instanceof Observable)
+			((Observable) assignment).addListener(assignmentListener);
+		invalidateActiveSegments();
+	}
+
+	private void stopListeningTo(final SelectedIds highlights, final FragmentSegmentAssignment assignment)
+	{
+		highlights.removeDeltaListener(highlightsListener);
+		if (assignment instanceof Observable)
+			((Observable) assignment).removeListener(assignmentListener);
 	}
 
 	public boolean isLockedSegment(final long id)
@@ -291,13 +347,17 @@ public abstract class AbstractHighlightingARGBStream extends ObservableWithListe
 
 	public void setHighlights(final SelectedIds highlights)
 	{
+		stopListeningTo(this.highlights, this.assignment);
 		this.highlights = highlights;
+		listenTo(this.highlights, this.assignment);
 		clearCache();
 	}
 
 	public void setAssignment(final FragmentSegmentAssignment assignment)
 	{
+		stopListeningTo(this.highlights, this.assignment);
 		this.assignment = assignment;
+		listenTo(this.highlights, this.assignment);
 		clearCache();
 	}
 
@@ -312,9 +372,11 @@ public abstract class AbstractHighlightingARGBStream extends ObservableWithListe
 			final FragmentSegmentAssignment assignment,
 			final LockedSegments lockedSegments)
 	{
+		stopListeningTo(this.highlights, this.assignment);
 		this.highlights = highlights;
 		this.assignment = assignment;
 		this.lockedSegments = lockedSegments;
+		listenTo(this.highlights, this.assignment);
 		clearCache();
 	}
 
@@ -6,13 +6,13 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 
 import bdv.fx.viewer.ViewerPanelFX;
-import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.scene.control.Label;
 import javafx.scene.input.MouseEvent;
 import net.imglib2.RealPoint;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.ui.TransformListener;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,14 +41,15 @@ public class MouseCoordinatePrinter
 		{
 			viewer.displayToGlobalCoordinates(x, y, p);
 			LOG.trace("display-coordinates=({} {}), world-coordinates={}", x, y, p);
-			Platform.runLater(() -> statusBar.setText(String.format(
+			final String text = String.format(
 					"(%.3f, %.3f) (%.3f, %.3f, %.3f)",
 					x,
 					y,
 					pos[0],
 					pos[1],
 					pos[2]
-			                                                       )));
+			                                 );
+			FXUpdateCoalescer.getInstance().submit(statusBar, () -> statusBar.setText(text));
 		}
 
 		@Override
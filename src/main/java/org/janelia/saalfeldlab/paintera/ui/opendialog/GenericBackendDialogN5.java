@@ -37,7 +37,6 @@ import javafx.scene.layout.Priority;
 import net.imglib2.Volatile;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.converter.ARGBColorConverter;
-import net.imglib2.converter.ARGBColorConverter.InvertingImp1;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.IntegerType;
@@ -347,12 +346,12 @@ public class GenericBackendDialogN5 implements BackendDialog
 			final SharedQueue sharedQueue,
 			final int priority) throws Exception
 	{
-		final N5Reader             reader     = n5.get();
-		final String               dataset    = this.dataset.get();
-		final double[]             resolution = asPrimitiveArray(resolution());
-		final double[]             offset     = asPrimitiveArray(offset());
-		final AffineTransform3D    transform  = N5Helpers.fromResolutionAndOffset(resolution, offset);
-		final DataSource<T, V>     source     = N5Helpers.openRawAsSource(
+		final N5Reader              reader     = n5.get();
+		final String                dataset    = this.dataset.get();
+		final double[]              resolution = asPrimitiveArray(resolution());
+		final double[]              offset     = asPrimitiveArray(offset());
+		final AffineTransform3D     transform  = N5Helpers.fromResolutionAndOffset(resolution, offset);
+		final DataSource<T, V>      source     = N5Helpers.openRawAsSource(
 				reader,
 				dataset,
 				transform,
@@ -360,8 +359,8 @@ public class GenericBackendDialogN5 implements BackendDialog
 				priority,
 				name
 		                                                                 );
-		final InvertingImp1<V>     converter  = new ARGBColorConverter.InvertingImp1<>(min().get(), max().get());
-		final RawSourceState<T, V> state      = new RawSourceState<>(source, converter, new CompositeCopy<>(), name);
+		final ARGBColorConverter<V> converter  = ARGBColorConverter.inverting(source.getType(), min().get(), max().get());
+		final RawSourceState<T, V>  state      = new RawSourceState<>(source, converter, new CompositeCopy<>(), name);
 		LOG.debug("Returning raw source state {} {}", name, state);
 		return state;
 	}
@@ -39,10 +39,10 @@ import net.imglib2.util.ValueTriple;
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.paintera.N5Helpers;
+import org.janelia.saalfeldlab.paintera.cache.KeyedWeakRefVolatileCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tmp.bdv.img.cache.VolatileCachedCellImg;
-import tmp.net.imglib2.cache.ref.WeakRefVolatileCache;
 
 public class VolatileHelpers
 {
@@ -78,7 +78,10 @@ public class VolatileHelpers
 			final SharedQueue queue,
 			final CacheHints hints)
 	{
-		final VolatileCache<Long, Cell<A>> volatileCache = new WeakRefVolatileCache<>(cache, queue, createInvalid);
+		final VolatileCache<Long, Cell<A>> volatileCache = new KeyedWeakRefVolatileCache<>(
+				cache,
+				queue,
+				createInvalid);
 		final VolatileCachedCellImg<T, A>  volatileImg   = new VolatileCachedCellImg<>(
 				grid,
 				entitiesPerPixel,
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -25,6 +26,8 @@ import javafx.scene.control.ScrollPane.ScrollBarPolicy;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 import org.janelia.saalfeldlab.paintera.state.SourceInfo;
 import org.janelia.saalfeldlab.paintera.ui.source.state.StatePane;
 import org.slf4j.Logger;
@@ -64,10 +67,15 @@ public class SourceTabs implements Supplier<Node>
 
 	private final DoubleProperty width = new SimpleDoubleProperty();
 
+	/**
+	 * @param visibleStatistics
+	 * 		statistics of the currently visible data of a raw source
+	 */
 	public SourceTabs(
 			final ObservableIntegerValue currentSourceIndex,
 			final Consumer<Source<?>> remove,
-			final SourceInfo info)
+			final SourceInfo info,
+			final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics)
 	{
 		LOG.debug("Constructiong {}", SourceTabs.class.getName());
 		this.info = info;
@@ -80,7 +88,8 @@ public class SourceTabs implements Supplier<Node>
 							info.getState(src),
 							info,
 							s -> removeDialog(remove, s),
-							width
+							width,
+							visibleStatistics
 					)
 			                                                                                       )).collect
 					(Collectors.toList());
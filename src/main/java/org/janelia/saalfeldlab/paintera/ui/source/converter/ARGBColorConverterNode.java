@@ -1,7 +1,10 @@
 package org.janelia.saalfeldlab.paintera.ui.source.converter;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Optional;
+import java.util.function.Function;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
@@ -9,6 +12,9 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
@@ -17,12 +23,15 @@ import javafx.scene.control.Tooltip;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.TilePane;
 import javafx.scene.paint.Color;
 import net.imglib2.converter.ARGBColorConverter;
 import net.imglib2.type.numeric.ARGBType;
 import org.janelia.saalfeldlab.fx.ui.NumericSliderWithField;
 import org.janelia.saalfeldlab.fx.util.DoubleStringFormatter;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 import org.janelia.saalfeldlab.paintera.ui.BindUnbindAndNodeSupplier;
 import org.janelia.saalfeldlab.util.Colors;
 import org.slf4j.Logger;
@@ -33,6 +42,13 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final double HISTOGRAM_WIDTH = 200;
+
+	private static final double HISTOGRAM_HEIGHT = 50;
+
+	// fraction of values that auto contrast saturates at either end
+	private static final double AUTO_CONTRAST_SATURATION = 0.005;
+
 	private final ARGBColorConverter<?> converter;
 
 	private final ObjectProperty<Color> colorProperty = new SimpleObjectProperty<>(Color.WHITE);
@@ -45,12 +61,45 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 
 	private final DoubleProperty max = new SimpleDoubleProperty();
 
+	private final Optional<StatisticsPyramid<?>> statistics;
+
+	private final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics;
+
+	private final Canvas histogram = new Canvas(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+
+	// drawn on top of the histogram, so that min and max changes do not redraw the histogram
+	private final Canvas markers = new Canvas(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+
+	private final InvalidationListener histogramUpdate = obs -> drawHistogram();
+
+	private final InvalidationListener markersUpdate = obs -> drawMarkers();
+
 	public ARGBColorConverterNode(final ARGBColorConverter<?> converter)
+	{
+		this(converter, Optional.empty(), s -> Optional.empty());
+	}
+
+	/**
+	 * @param statistics
+	 * 		if present, show a histogram of the data and an auto contrast button
+	 * @param visibleStatistics
+	 * 		statistics of the currently visible data, used for auto contrast. Auto contrast falls back to the
+	 * 		statistics of the whole dataset if empty.
+	 */
+	public ARGBColorConverterNode(
+			final ARGBColorConverter<?> converter,
+			final Optional<StatisticsPyramid<?>> statistics,
+			final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics)
 	{
 		super();
 		this.converter = converter;
+		this.statistics = statistics;
+		this.visibleStatistics = visibleStatistics;
 		this.colorProperty.addListener((obs, oldv, newv) -> argbProperty.set(Colors.toARGBType(newv)));
 		this.argbProperty.addListener((obs, oldv, newv) -> colorProperty.set(Colors.toColor(newv)));
+		this.argbProperty.addListener(markersUpdate);
+		this.min.addListener(markersUpdate);
+		this.max.addListener(markersUpdate);
 	}
 
 	@Override
@@ -66,6 +115,8 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 		alphaProperty.bindBidirectional(converter.alphaProperty());
 		this.min.bindBidirectional(converter.minProperty());
 		this.max.bindBidirectional(converter.maxProperty());
+		statistics.ifPresent(s -> s.finestLevelProperty().addListener(histogramUpdate));
+		drawHistogram();
 	}
 
 	@Override
@@ -75,6 +126,7 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 		alphaProperty.unbindBidirectional(converter.alphaProperty());
 		this.min.unbindBidirectional(converter.minProperty());
 		this.max.unbindBidirectional(converter.maxProperty());
+		statistics.ifPresent(s -> s.finestLevelProperty().removeListener(histogramUpdate));
 	}
 
 	private Node getNodeForARGBColorConverter()
@@ -141,6 +193,19 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 		HBox.setHgrow(alphaSliderWithField.slider(), Priority.ALWAYS);
 		tilePane.getChildren().add(alphaBox);
 
+		if (statistics.isPresent())
+		{
+			final Button autoContrast = new Button("Auto contrast");
+			autoContrast.setTooltip(new Tooltip("Set min and max to the range of the bulk of the visible data"));
+			autoContrast.setOnAction(event -> autoContrast());
+			autoContrast.disableProperty().bind(statistics.get().finestLevelProperty().isEqualTo(statistics.get()
+					.numLevels()));
+			final StackPane histogramWithMarkers = new StackPane(histogram, markers);
+			Tooltip.install(histogramWithMarkers, new Tooltip("Histogram (log scale) of the data, min and max"));
+			tilePane.getChildren().addAll(histogramWithMarkers, autoContrast);
+			drawHistogram();
+		}
+
 		LOG.debug("Returning TilePane with children: ", tilePane.getChildren());
 
 		final TitledPane contents = new TitledPane("Converter", tilePane);
@@ -148,4 +213,69 @@ public class ARGBColorConverterNode implements BindUnbindAndNodeSupplier
 		return contents;
 	}
 
+	private void autoContrast()
+	{
+		if (!statistics.isPresent())
+		{
+			return;
+		}
+		final Optional<BlockStatistics> visible = visibleStatistics.apply(statistics.get()).filter(s -> !s.isEmpty());
+		(visible.isPresent() ? visible : statistics.get().statistics())
+				.filter(s -> !s.isEmpty())
+				.ifPresent(s -> {
+					LOG.debug("Auto contrast from statistics {}", s);
+					this.min.set(s.quantile(AUTO_CONTRAST_SATURATION));
+					this.max.set(s.quantile(1.0 - AUTO_CONTRAST_SATURATION));
+				});
+	}
+
+	private void drawHistogram()
+	{
+		final GraphicsContext gc = histogram.getGraphicsContext2D();
+		gc.clearRect(0, 0, histogram.getWidth(), histogram.getHeight());
+		drawMarkers();
+		final Optional<BlockStatistics> data = statistics.flatMap(StatisticsPyramid::statistics);
+		if (!data.isPresent() || data.get().isEmpty())
+		{
+			return;
+		}
+
+		final BlockStatistics s        = data.get();
+		final double          binWidth = histogram.getWidth() / s.numBins();
+		double                maxCount = 0;
+		for (int bin = 0; bin < s.numBins(); ++bin)
+		{
+			maxCount = Math.max(maxCount, Math.log1p(s.count(bin)));
+		}
+		gc.setFill(Color.GRAY);
+		for (int bin = 0; bin < s.numBins(); ++bin)
+		{
+			final double height = histogram.getHeight() * Math.log1p(s.count(bin)) / maxCount;
+			gc.fillRect(bin * binWidth, histogram.getHeight() - height, binWidth, height);
+		}
+	}
+
+	private void drawMarkers()
+	{
+		final GraphicsContext gc = markers.getGraphicsContext2D();
+		gc.clearRect(0, 0, markers.getWidth(), markers.getHeight());
+		final Optional<BlockStatistics> data = statistics.flatMap(StatisticsPyramid::statistics);
+		if (!data.isPresent() || data.get().isEmpty())
+		{
+			return;
+		}
+
+		final BlockStatistics s     = data.get();
+		final double          range = s.histogramMax() - s.histogramMin();
+		if (range > 0)
+		{
+			gc.setStroke(Colors.toColor(argbProperty.get()));
+			for (final double bound : new double[] {this.min.get(), this.max.get()})
+			{
+				final double x = (bound - s.histogramMin()) / range * markers.getWidth();
+				gc.strokeLine(x, 0, x, markers.getHeight());
+			}
+		}
+	}
+
 }
@@ -1,11 +1,15 @@
 package org.janelia.saalfeldlab.paintera.ui.source.converter;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Optional;
+import java.util.function.Function;
 
 import javafx.scene.Node;
 import net.imglib2.converter.ARGBColorConverter;
 import net.imglib2.converter.Converter;
 import net.imglib2.type.numeric.ARGBType;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 import org.janelia.saalfeldlab.paintera.stream.HighlightingStreamConverter;
 import org.janelia.saalfeldlab.paintera.ui.BindUnbindAndNodeSupplier;
 import org.slf4j.Logger;
@@ -18,12 +22,32 @@ public class ConverterPane implements BindUnbindAndNodeSupplier
 
 	private final Converter<?, ARGBType> converter;
 
+	private final Optional<StatisticsPyramid<?>> statistics;
+
+	private final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics;
+
 	private final BindUnbindAndNodeSupplier converterNode;
 
 	public ConverterPane(final Converter<?, ARGBType> converter)
+	{
+		this(converter, Optional.empty(), s -> Optional.empty());
+	}
+
+	/**
+	 * @param statistics
+	 * 		statistics of the data, shown as histogram and used for auto contrast, if supported by {@code converter}
+	 * @param visibleStatistics
+	 * 		statistics of the currently visible data, used for auto contrast
+	 */
+	public ConverterPane(
+			final Converter<?, ARGBType> converter,
+			final Optional<StatisticsPyramid<?>> statistics,
+			final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics)
 	{
 		super();
 		this.converter = converter;
+		this.statistics = statistics;
+		this.visibleStatistics = visibleStatistics;
 		this.converterNode = getNodeForConverter();
 	}
 
@@ -47,16 +71,20 @@ public class ConverterPane implements BindUnbindAndNodeSupplier
 
 	private BindUnbindAndNodeSupplier getNodeForConverter()
 	{
-		return getNodeForConverter(this.converter);
+		return getNodeForConverter(this.converter, this.statistics, this.visibleStatistics);
 	}
 
-	private static BindUnbindAndNodeSupplier getNodeForConverter(final Converter<?, ARGBType> converter)
+	private static BindUnbindAndNodeSupplier getNodeForConverter(
+			final Converter<?, ARGBType> converter,
+			final Optional<StatisticsPyramid<?>> statistics,
+			final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics)
 	{
 		LOG.debug("Creating node for converter: {}", converter);
 		if (converter == null)
 			return BindUnbindAndNodeSupplier.empty();
 		if (converter instanceof ARGBColorConverter<?>)
-			return new ARGBColorConverterNode((net.imglib2.converter.ARGBColorConverter<?>) converter);
+			return new ARGBColorConverterNode((net.imglib2.converter.ARGBColorConverter<?>) converter, statistics,
+					visibleStatistics);
 		else if (converter instanceof HighlightingStreamConverter<?>)
 			return new HighlightingStreamConverterNode<>((org.janelia.saalfeldlab.paintera.stream
 					.HighlightingStreamConverter<?>) converter);
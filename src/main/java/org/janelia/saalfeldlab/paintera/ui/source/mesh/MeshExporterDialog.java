@@ -1,9 +1,13 @@
 package org.janelia.saalfeldlab.paintera.ui.source.mesh;
 
 import java.io.File;
+import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -12,33 +16,49 @@ import javafx.beans.binding.BooleanBinding;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import org.controlsfx.control.CheckListView;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
 import org.janelia.saalfeldlab.paintera.meshes.MeshExporterBinary;
 import org.janelia.saalfeldlab.paintera.meshes.MeshExporterObj;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporterPly;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfo;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfos;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MeshExporterDialog<T> extends Dialog<ExportResult<T>>
 {
 
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
 	public static enum FILETYPE
 	{
-		obj, binary
+		obj, ply, binary
 	}
 
 	;
 
+	/**
+	 * Runs one export at a time, further exports are queued.
+	 */
+	private static final ExecutorService EXPORTER = Executors.newSingleThreadExecutor(new NamedThreadFactory(
+			"paintera-mesh-export-%d",
+			true));
+
 	final int LIST_CELL_HEIGHT = 25;
 
 	private final TextField scale;
@@ -258,6 +278,9 @@ public class MeshExporterDialog<T> extends Dialog<ExportResult<T>>
 			case "binary":
 				meshExporter = new MeshExporterBinary<>();
 				break;
+			case "ply":
+				meshExporter = new MeshExporterPly<>();
+				break;
 			case ".obj":
 			default:
 				meshExporter = new MeshExporterObj<>();
@@ -265,6 +288,55 @@ public class MeshExporterDialog<T> extends Dialog<ExportResult<T>>
 		}
 	}
 
+	/**
+	 * Run {@code export} on {@link #EXPORTER} and show the progress reported by {@code exporter} until the export
+	 * finishes. Cancelling or closing the progress dialog interrupts the export; meshes that were not started yet are
+	 * not written.
+	 *
+	 * @param exporter
+	 * 		exporter used by {@code export}
+	 * @param export
+	 * 		export job, e.g. a call to one of the {@code exportMesh} methods of {@code exporter}
+	 */
+	public static void exportWithProgress(final MeshExporter<?> exporter, final Runnable export)
+	{
+		final ProgressBar progressBar = new ProgressBar();
+		progressBar.setMaxWidth(Double.POSITIVE_INFINITY);
+		progressBar.progressProperty().bind(exporter.progressProperty());
+
+		final Alert progressDialog = new Alert(Alert.AlertType.INFORMATION, null, ButtonType.OK, ButtonType.CANCEL);
+		progressDialog.setTitle("Export mesh");
+		progressDialog.setHeaderText("Exporting meshes...");
+		progressDialog.getDialogPane().setContent(progressBar);
+		progressDialog.getDialogPane().lookupButton(ButtonType.OK).setDisable(true);
+
+		final Future<?> task = EXPORTER.submit(() -> {
+			String message = "Export finished.";
+			try
+			{
+				export.run();
+				if (Thread.currentThread().isInterrupted())
+					message = "Export cancelled.";
+			} catch (final RuntimeException e)
+			{
+				LOG.warn("Unable to export mesh: {}", e.getMessage(), e);
+				message = "Export failed: " + e.getMessage();
+			} finally
+			{
+				final String finalMessage = message;
+				InvokeOnJavaFXApplicationThread.invoke(() -> {
+					progressBar.progressProperty().unbind();
+					progressDialog.setHeaderText(finalMessage);
+					progressDialog.getDialogPane().lookupButton(ButtonType.OK).setDisable(false);
+					progressDialog.getDialogPane().lookupButton(ButtonType.CANCEL).setDisable(true);
+				});
+			}
+		});
+		// no-op if the export has finished already
+		progressDialog.setOnHidden(event -> task.cancel(true));
+		progressDialog.show();
+	}
+
 	private void setNumericTextField(final TextField textField, final int max)
 	{
 		// force the field to be numeric only
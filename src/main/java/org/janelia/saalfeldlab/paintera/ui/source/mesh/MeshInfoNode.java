@@ -4,9 +4,8 @@ import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Optional;
 
-import javafx.beans.property.DoubleProperty;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.scene.Node;
@@ -25,7 +24,10 @@ import javafx.scene.shape.CullFace;
 import javafx.scene.shape.DrawMode;
 import org.controlsfx.control.StatusBar;
 import org.janelia.saalfeldlab.fx.ui.NumericSliderWithField;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExtraction;
 import org.janelia.saalfeldlab.paintera.meshes.MeshGenerator;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfo;
 import org.janelia.saalfeldlab.paintera.ui.BindUnbindAndNodeSupplier;
@@ -59,6 +61,8 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 
 	private final ComboBox<CullFace> cullFaceChoice;
 
+	private final ComboBox<MeshExtraction> meshExtractionChoice;
+
 	private final CheckBox hasIndividualSettings = new CheckBox("Individual Settings");
 
 	private final CheckBox isVisible = new CheckBox("Is Visible");
@@ -81,6 +85,9 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 		this.cullFaceChoice = new ComboBox<>(FXCollections.observableArrayList(CullFace.values()));
 		this.cullFaceChoice.setValue(meshInfo.cullFaceProperty().get());
 
+		this.meshExtractionChoice = new ComboBox<>(FXCollections.observableArrayList(MeshExtraction.values()));
+		this.meshExtractionChoice.setValue(meshInfo.meshExtractionProperty().get());
+
 		this.contents = createContents();
 
 	}
@@ -97,6 +104,7 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 		inflateSlider.slider().valueProperty().bindBidirectional(meshInfo.inflateProperty());
 		drawModeChoice.valueProperty().bindBidirectional(meshInfo.drawModeProperty());
 		cullFaceChoice.valueProperty().bindBidirectional(meshInfo.cullFaceProperty());
+		meshExtractionChoice.valueProperty().bindBidirectional(meshInfo.meshExtractionProperty());
 		this.submittedTasks.bind(meshInfo.submittedTasksProperty());
 		this.completedTasks.bind(meshInfo.completedTasksProperty());
 		meshInfo.isManagedProperty().bind(this.hasIndividualSettings.selectedProperty().not());
@@ -113,6 +121,7 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 		inflateSlider.slider().valueProperty().unbindBidirectional(meshInfo.inflateProperty());
 		drawModeChoice.valueProperty().unbindBidirectional(meshInfo.drawModeProperty());
 		cullFaceChoice.valueProperty().unbindBidirectional(meshInfo.cullFaceProperty());
+		meshExtractionChoice.valueProperty().unbindBidirectional(meshInfo.meshExtractionProperty());
 		this.submittedTasks.unbind();
 		this.completedTasks.unbind();
 		meshInfo.isManagedProperty().unbind();
@@ -125,6 +134,11 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 		return contents;
 	}
 
+	public MeshInfo<T> meshInfo()
+	{
+		return meshInfo;
+	}
+
 	private Node createContents()
 	{
 		final VBox       vbox = new VBox();
@@ -133,15 +147,6 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 
 		final long[] fragments = meshInfo.meshManager().containedFragments(meshInfo.segmentId());
 
-		final DoubleProperty progress = new SimpleDoubleProperty(0);
-		submittedTasks.addListener((obs, oldv, newv) -> progress.set(submittedTasks.intValue() <= 0
-		                                                             ? submittedTasks.intValue()
-		                                                             : completedTasks.doubleValue() / submittedTasks
-				                                                             .doubleValue()));
-		completedTasks.addListener((obs, oldv, newv) -> progress.set(submittedTasks.intValue() <= 0
-		                                                             ? submittedTasks.intValue()
-		                                                             : completedTasks.doubleValue() / submittedTasks
-				                                                             .doubleValue()));
 		final StatusBar statusBar = new StatusBar();
 		//		final ProgressBar statusBar = new ProgressBar( 0.0 );
 		// TODO come up with better way to ensure proper size of this!
@@ -150,15 +155,23 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 		statusBar.setPrefWidth(200);
 		statusBar.setText("" + meshInfo.segmentId());
 		final Tooltip statusToolTip = new Tooltip();
-		progress.addListener((obs, oldv, newv) -> InvokeOnJavaFXApplicationThread.invoke(() -> statusToolTip.setText(
-				statusBarToolTipText(submittedTasks.intValue(), completedTasks.intValue()))));
-		submittedTasks.addListener(obs -> InvokeOnJavaFXApplicationThread.invoke(() -> statusBar.setStyle(
-				progressBarStyleColor(submittedTasks.get()))));
 		statusBar.setTooltip(statusToolTip);
 		statusBar.setProgress(0.0);
-		progress.addListener((obs, oldv, newv) -> InvokeOnJavaFXApplicationThread.invoke(() -> statusBar.setProgress(
-				Double.isFinite(newv.doubleValue()) ? newv.doubleValue() : 0.0)));
-		InvokeOnJavaFXApplicationThread.invoke(() -> statusBar.setProgress(Math.max(progress.get(), 0.0)));
+		// task counts change for every block: update the status bar at most once per pulse
+		final Runnable updateStatus = () -> {
+			final int    submitted = submittedTasks.get();
+			final int    completed = completedTasks.get();
+			final double progress  = submitted <= 0 ? submitted : completed / (double) submitted;
+			statusToolTip.setText(statusBarToolTipText(submitted, completed));
+			statusBar.setStyle(progressBarStyleColor(submitted));
+			statusBar.setProgress(Double.isFinite(progress) ? progress : 0.0);
+		};
+		final InvalidationListener scheduleStatusUpdate = obs -> FXUpdateCoalescer.getInstance().submit(
+				statusBar,
+				updateStatus);
+		submittedTasks.addListener(scheduleStatusUpdate);
+		completedTasks.addListener(scheduleStatusUpdate);
+		scheduleStatusUpdate.invalidated(submittedTasks);
 		pane.setGraphic(statusBar);
 		//		pane.setGraphic( pb );
 
@@ -169,13 +182,17 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 			if (result.isPresent())
 			{
 				final ExportResult<T> parameters = result.get();
-				parameters.getMeshExporter().exportMesh(
+				final MeshExporter<T> exporter = parameters.getMeshExporter();
+				final T               id       = meshInfo.meshManager().unmodifiableMeshMap().get(parameters
+						.getSegmentId()[0]).getId();
+				MeshExporterDialog.exportWithProgress(exporter, () -> exporter.exportMesh(
+						meshInfo.meshManager().workers(),
 						meshInfo.meshManager().blockListCache(),
 						meshInfo.meshManager().meshCache(),
-						meshInfo.meshManager().unmodifiableMeshMap().get(parameters.getSegmentId()[0]).getId(),
+						id,
 						parameters.getScale(),
 						parameters.getFilePaths()[0]
-				                                       );
+				                                                                        ));
 			}
 		});
 
@@ -203,7 +220,8 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 				smoothingIterationsSlider,
 				inflateSlider,
 				drawModeChoice,
-				cullFaceChoice
+				cullFaceChoice,
+				meshExtractionChoice
 		                                     );
 		hasIndividualSettings.selectedProperty().addListener((obs, oldv, newv) -> {
 			if (newv)
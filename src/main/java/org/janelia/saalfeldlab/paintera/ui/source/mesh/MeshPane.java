@@ -3,21 +3,24 @@ package org.janelia.saalfeldlab.paintera.ui.source.mesh;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import gnu.trove.set.hash.TLongHashSet;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.ObservableMap;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TitledPane;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.GridPane;
@@ -31,6 +34,8 @@ import org.janelia.saalfeldlab.fx.ui.NumericSliderWithField;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
 import org.janelia.saalfeldlab.paintera.meshes.ManagedMeshSettings;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExtraction;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfo;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfos;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManager;
@@ -61,10 +66,26 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 
 	private final NumericSliderWithField inflateSlider;
 
-	final ObservableMap<MeshInfo<TLongHashSet>, MeshInfoNode<TLongHashSet>> infoNodesCache = FXCollections
-			.observableHashMap();
+	/**
+	 * Snapshot of {@link MeshInfos#readOnlyInfos()}, only modified on the JavaFX application thread.
+	 */
+	private final ObservableList<MeshInfo<TLongHashSet>> items = FXCollections.observableArrayList();
 
-	final ObservableList<MeshInfoNode<TLongHashSet>> infoNodes = FXCollections.observableArrayList();
+	private final AtomicBoolean isItemsUpdateScheduled = new AtomicBoolean(false);
+
+	/**
+	 * Node of each segment in {@link #items}, created when the segment is first shown and re-used when it is scrolled
+	 * back into view. Only accessed on the JavaFX application thread.
+	 */
+	private final Map<Long, MeshInfoNode<TLongHashSet>> nodes = new HashMap<>();
+
+	/**
+	 * Nodes of rows that are currently visible and the cell that shows them, only accessed on the JavaFX application
+	 * thread.
+	 */
+	private final Map<MeshInfoNode<TLongHashSet>, MeshInfoCell> visibleNodes = new HashMap<>();
+
+	private final ListView<MeshInfo<TLongHashSet>> meshList = new ListView<>(items);
 
 	private final VBox managerSettingsPane;
 
@@ -76,6 +97,8 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 
 	private final ComboBox<CullFace> cullFaceChoice;
 
+	private final ComboBox<MeshExtraction> meshExtractionChoice;
+
 	private final CheckBox isVisible = new CheckBox("Is Visible");
 
 	private boolean isBound = false;
@@ -112,7 +135,15 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 		this.cullFaceChoice = new ComboBox<>(FXCollections.observableArrayList(CullFace.values()));
 		this.cullFaceChoice.setValue(meshInfos.meshSettings().getGlobalSettings().cullFaceProperty().get());
 
+		this.meshExtractionChoice = new ComboBox<>(FXCollections.observableArrayList(MeshExtraction.values()));
+		this.meshExtractionChoice.setValue(meshInfos.meshSettings().getGlobalSettings().meshExtractionProperty().get());
+
 		this.meshesPane.setExpanded(false);
+		// only rows that are visible are materialized: each cell binds the MeshInfoNode of its current item
+		this.meshList.setCellFactory(listView -> new MeshInfoCell());
+		this.meshList.setPlaceholder(new Label("No segments selected"));
+		this.meshesBox.getChildren().setAll(this.meshList, createExportAllButton());
+		this.meshesPane.expandedProperty().addListener((obs, oldv, newv) -> scheduleItemsUpdate());
 
 		managerSettingsPane = new VBox(setupManagerSliderGrid(), meshesPane);
 
@@ -144,7 +175,8 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 		inflateSlider.slider().valueProperty().bindBidirectional(globalSettings.inflateProperty());
 		drawModeChoice.valueProperty().bindBidirectional(globalSettings.drawModeProperty());
 		cullFaceChoice.valueProperty().bindBidirectional(globalSettings.cullFaceProperty());
-		new ArrayList<>(this.infoNodes).forEach(MeshInfoNode::bind);
+		meshExtractionChoice.valueProperty().bindBidirectional(globalSettings.meshExtractionProperty());
+		InvokeOnJavaFXApplicationThread.invoke(() -> this.visibleNodes.keySet().forEach(MeshInfoNode::bind));
 		this.isVisible.selectedProperty().bindBidirectional(globalSettings.isVisibleProperty());
 	}
 
@@ -163,31 +195,46 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 		inflateSlider.slider().valueProperty().unbindBidirectional(globalSettings.inflateProperty());
 		drawModeChoice.valueProperty().unbindBidirectional(globalSettings.drawModeProperty());
 		cullFaceChoice.valueProperty().unbindBidirectional(globalSettings.cullFaceProperty());
-		new ArrayList<>(this.infoNodes).forEach(MeshInfoNode::unbind);
+		meshExtractionChoice.valueProperty().unbindBidirectional(globalSettings.meshExtractionProperty());
+		InvokeOnJavaFXApplicationThread.invoke(() -> this.visibleNodes.keySet().forEach(MeshInfoNode::unbind));
 		this.isVisible.selectedProperty().unbindBidirectional(globalSettings.isVisibleProperty());
 	}
 
 	@Override
 	public void onChanged(final Change<? extends MeshInfo<TLongHashSet>> change)
 	{
-		while (change.next())
+		scheduleItemsUpdate();
+	}
+
+	/**
+	 * Coalesce all changes of {@link MeshInfos#readOnlyInfos()} until the next pulse into a single update of the list.
+	 * The list is not updated while it is collapsed.
+	 */
+	private void scheduleItemsUpdate()
+	{
+		if (isItemsUpdateScheduled.compareAndSet(false, true))
 		{
-			if (change.wasRemoved())
-			{
-				change.getRemoved().forEach(info -> Optional.ofNullable(infoNodesCache.remove(info)).ifPresent(
-						MeshInfoNode::unbind));
-			}
+			Platform.runLater(() -> {
+				isItemsUpdateScheduled.set(false);
+				if (this.meshesPane.isExpanded())
+				{
+					this.items.setAll(new ArrayList<>(this.meshInfos.readOnlyInfos()));
+				}
+				else
+				{
+					this.items.clear();
+				}
+				// drop nodes of segments that are not listed anymore
+				final Map<Long, MeshInfo<TLongHashSet>> listed = new HashMap<>();
+				this.items.forEach(info -> listed.put(info.segmentId(), info));
+				this.nodes.entrySet().removeIf(e -> listed.get(e.getKey()) != e.getValue().meshInfo());
+				LOG.debug("Updated mesh list with {} entries", this.items.size());
+			});
 		}
-		populateInfoNodes(this.meshInfos.readOnlyInfos());
 	}
 
-	private void populateInfoNodes(final List<MeshInfo<TLongHashSet>> infos)
+	private Button createExportAllButton()
 	{
-		final List<MeshInfoNode<TLongHashSet>> infoNodes = new ArrayList<>(infos).stream().map(this::fromMeshInfo)
-				.collect(
-				Collectors.toList());
-		LOG.debug("Setting info nodes: {}: ", infoNodes);
-		this.infoNodes.setAll(infoNodes);
 		final Button exportMeshButton = new Button("Export all");
 		exportMeshButton.setOnAction(event -> {
 			final MeshExporterDialog<TLongHashSet>     exportDialog = new MeshExporterDialog<>(meshInfos);
@@ -207,22 +254,23 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 						.limit(meshInfos.readOnlyInfos().size())
 						.toArray(InterruptibleFunction[][]::new);
 
-				parameters.getMeshExporter().exportMesh(
+				final TLongHashSet[] ids = Arrays
+						.stream(parameters.getSegmentId())
+						.mapToObj(id -> manager.unmodifiableMeshMap().get(id).getId())
+						.toArray(TLongHashSet[]::new);
+
+				final MeshExporter<TLongHashSet> exporter = parameters.getMeshExporter();
+				MeshExporterDialog.exportWithProgress(exporter, () -> exporter.exportMesh(
+						manager.workers(),
 						blockListCaches,
 						meshCaches,
-						Arrays.stream(parameters.getSegmentId()).mapToObj(id -> manager.unmodifiableMeshMap().get(id)
-								.getId()).toArray(
-								TLongHashSet[]::new),
+						ids,
 						parameters.getScale(),
 						parameters.getFilePaths()
-				                                       );
+				                                                                        ));
 			}
 		});
-		InvokeOnJavaFXApplicationThread.invoke(() -> {
-			this.meshesBox.getChildren().setAll(infoNodes.stream().map(MeshInfoNode::get).collect(Collectors.toList
-					()));
-			this.meshesBox.getChildren().add(exportMeshButton);
-		});
+		return exportMeshButton;
 	}
 
 	private Node setupManagerSliderGrid()
@@ -239,7 +287,8 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 				smoothingIterationsSlider,
 				inflateSlider,
 				drawModeChoice,
-				cullFaceChoice
+				cullFaceChoice,
+				meshExtractionChoice
 		                                            );
 
 		final Button refresh = new Button("Refresh Meshes");
@@ -260,7 +309,8 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 			final NumericSliderWithField smoothingIterationsSlider,
 			final NumericSliderWithField inflateSlider,
 			final ComboBox<DrawMode> drawModeChoice,
-			final ComboBox<CullFace> cullFaceChoice)
+			final ComboBox<CullFace> cullFaceChoice,
+			final ComboBox<MeshExtraction> meshExtractionChoice)
 	{
 		int row = initialRow;
 
@@ -326,17 +376,86 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 		cullFaceChoice.setMaxWidth(textFieldWidth);
 		++row;
 
+		contents.add(labelWithToolTip("Extraction"), 0, row);
+		contents.add(meshExtractionChoice, 2, row);
+		meshExtractionChoice.setMaxWidth(textFieldWidth);
+		meshExtractionChoice.setTooltip(new Tooltip(
+				"Surface extraction: Surface Nets produces fewer triangles without slivers."));
+		++row;
+
 		return row;
 	}
 
-	private MeshInfoNode<TLongHashSet> fromMeshInfo(final MeshInfo<TLongHashSet> info)
+	/**
+	 * @return node for {@code info}, re-used for the same segment as long as its {@link MeshInfo} does not change
+	 */
+	private MeshInfoNode<TLongHashSet> nodeFor(final MeshInfo<TLongHashSet> info)
+	{
+		final MeshInfoNode<TLongHashSet> node = this.nodes.get(info.segmentId());
+		if (node != null && node.meshInfo() == info)
+		{
+			return node;
+		}
+		final MeshInfoNode<TLongHashSet> newNode = new MeshInfoNode<>(info);
+		this.nodes.put(info.segmentId(), newNode);
+		return newNode;
+	}
+
+	/**
+	 * Row of the mesh list. Cells are re-used by the {@link ListView} while scrolling, the {@link MeshInfoNode} of a
+	 * cell is bound to its {@link MeshInfo} only while it is shown.
+	 */
+	private class MeshInfoCell extends ListCell<MeshInfo<TLongHashSet>>
 	{
-		final MeshInfoNode<TLongHashSet> node = new MeshInfoNode<>(info);
-		if (this.isBound)
+
+		private MeshInfo<TLongHashSet> info;
+
+		private MeshInfoNode<TLongHashSet> node;
+
+		@Override
+		protected void updateItem(final MeshInfo<TLongHashSet> item, final boolean empty)
 		{
-			node.bind();
+			super.updateItem(item, empty);
+			final MeshInfo<TLongHashSet> newInfo = empty ? null : item;
+			if (newInfo != null && newInfo == this.info)
+			{
+				return;
+			}
+
+			// the node may already have been taken over by the cell that shows the same item now
+			if (this.node != null && visibleNodes.remove(this.node, this))
+			{
+				this.node.unbind();
+			}
+
+			this.info = newInfo;
+			this.node = newInfo == null ? null : nodeFor(newInfo);
+			if (this.node != null)
+			{
+				final MeshInfoCell previous = visibleNodes.put(this.node, this);
+				if (previous == null && isBound)
+				{
+					this.node.bind();
+				}
+				if (previous != null)
+				{
+					previous.release();
+				}
+			}
+			setText(null);
+			setGraphic(this.node == null ? null : this.node.get());
 		}
-		return node;
+
+		/**
+		 * Forget the node without unbinding it: another cell shows the same item now.
+		 */
+		private void release()
+		{
+			this.info = null;
+			this.node = null;
+			setGraphic(null);
+		}
+
 	}
 
 	private static final Node labelWithToolTip(final String text)
@@ -4,6 +4,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.LongPredicate;
 
 import bdv.viewer.Source;
@@ -33,10 +34,13 @@ import javafx.scene.layout.VBox;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.janelia.saalfeldlab.paintera.data.statistics.BlockStatistics;
+import org.janelia.saalfeldlab.paintera.data.statistics.StatisticsPyramid;
 import org.janelia.saalfeldlab.paintera.meshes.ManagedMeshSettings;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfos;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManager;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
+import org.janelia.saalfeldlab.paintera.state.RawSourceState;
 import org.janelia.saalfeldlab.paintera.state.SourceInfo;
 import org.janelia.saalfeldlab.paintera.state.SourceState;
 import org.janelia.saalfeldlab.paintera.ui.BindUnbindAndNodeSupplier;
@@ -70,14 +74,20 @@ public class StatePane implements BindUnbindAndNodeSupplier
 			final SourceState<?, ?> state,
 			final SourceInfo sourceInfo,
 			final Consumer<Source<?>> remove,
-			final ObservableDoubleValue width)
+			final ObservableDoubleValue width,
+			final Function<StatisticsPyramid<?>, Optional<BlockStatistics>> visibleStatistics)
 	{
 		super();
 		this.state = state;
 		this.sourceInfo = sourceInfo;
 		this.children = new BindUnbindAndNodeSupplier[] {
 				new CompositePane(state.compositeProperty()),
-				new ConverterPane(state.converter()),
+				new ConverterPane(
+						state.converter(),
+						state instanceof RawSourceState<?, ?>
+						? ((RawSourceState<?, ?>) state).statistics()
+						: Optional.empty(),
+						visibleStatistics),
 				state instanceof LabelSourceState<?, ?>
 				? selectedIds((LabelSourceState<?, ?>) state)
 				: BindUnbindAndNodeSupplier.empty(),
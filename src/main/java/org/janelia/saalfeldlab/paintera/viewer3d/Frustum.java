@@ -0,0 +1,69 @@
+package org.janelia.saalfeldlab.paintera.viewer3d;
+
+import javafx.geometry.Bounds;
+import javafx.scene.PerspectiveCamera;
+
+/**
+ * Symmetric view frustum of a {@link PerspectiveCamera} in camera coordinates: the camera is at the origin and looks
+ * along the positive z-axis.
+ */
+class Frustum
+{
+
+	private final double near;
+
+	private final double far;
+
+	private final double tanX;
+
+	private final double tanY;
+
+	Frustum(final PerspectiveCamera camera, final double aspectRatio)
+	{
+		this(
+				camera.getFieldOfView(),
+				camera.isVerticalFieldOfView(),
+				camera.getNearClip(),
+				camera.getFarClip(),
+				aspectRatio);
+	}
+
+	/**
+	 * @param fieldOfView
+	 * 		in degrees, as {@link PerspectiveCamera#getFieldOfView()}
+	 * @param isVerticalFieldOfView
+	 * 		{@code true} if {@code fieldOfView} is the vertical field of view, horizontal otherwise
+	 * @param aspectRatio
+	 * 		width / height
+	 */
+	Frustum(
+			final double fieldOfView,
+			final boolean isVerticalFieldOfView,
+			final double near,
+			final double far,
+			final double aspectRatio)
+	{
+		final double tan = Math.tan(Math.toRadians(fieldOfView) / 2);
+		this.near = near;
+		this.far = far;
+		this.tanX = isVerticalFieldOfView ? tan * aspectRatio : tan;
+		this.tanY = isVerticalFieldOfView ? tan : tan / aspectRatio;
+	}
+
+	/**
+	 * Conservative test: a box may be reported as intersecting if it is close to a corner of the frustum.
+	 */
+	boolean intersects(final Bounds box)
+	{
+		if (box.isEmpty() || box.getMaxZ() < near || box.getMinZ() > far)
+		{
+			return false;
+		}
+		// a box is outside of a side plane if all of its corners are, e.g. x > z * tanX for all corners
+		return box.getMinX() <= box.getMaxZ() * tanX
+				&& -box.getMaxX() <= box.getMaxZ() * tanX
+				&& box.getMinY() <= box.getMaxZ() * tanY
+				&& -box.getMaxY() <= box.getMaxZ() * tanY;
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.janelia.saalfeldlab.paintera.viewer3d;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.SubScene;
+import javafx.scene.shape.MeshView;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hide block {@link MeshView meshes} that are outside of the view frustum of a {@link PerspectiveCamera}, so that
+ * JavaFX does not submit their triangles for rendering. Meshes are not detached from the scene graph: each mesh that
+ * is a descendant of the culled group has an {@link #inViewProperty(MeshView) in-view property} that owners of the
+ * mesh combine into its visibility. The bounds of a mesh are the bounds of its block geometry, computed by JavaFX.
+ *
+ * Culling runs on the JavaFX application thread, at most once per pulse, when the transform of the culled group, the
+ * size of the scene, or the children of any group in the culled group change.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class FrustumCulling
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String IN_VIEW_KEY = FrustumCulling.class.getName() + ".inView";
+
+	private final Group group;
+
+	private final SubScene scene;
+
+	private final PerspectiveCamera camera;
+
+	private final BooleanProperty isEnabled = new SimpleBooleanProperty(true);
+
+	// groups whose children are observed, weak so that removed groups can be collected
+	private final Set<Group> observedGroups = Collections.newSetFromMap(new WeakHashMap<>());
+
+	private final ListChangeListener<Node> onChildrenChanged = change -> requestCulling();
+
+	public FrustumCulling(final Group group, final SubScene scene, final PerspectiveCamera camera)
+	{
+		super();
+		this.group = group;
+		this.scene = scene;
+		this.camera = camera;
+		this.group.localToSceneTransformProperty().addListener(obs -> requestCulling());
+		this.scene.widthProperty().addListener(obs -> requestCulling());
+		this.scene.heightProperty().addListener(obs -> requestCulling());
+		this.isEnabled.addListener(obs -> requestCulling());
+		observe(group);
+	}
+
+	/**
+	 * @return {@code false} if {@code mesh} is outside of the view frustum. Owners of {@code mesh} should hide it if
+	 * this is {@code false}.
+	 */
+	public static BooleanProperty inViewProperty(final MeshView mesh)
+	{
+		return (BooleanProperty) mesh.getProperties().computeIfAbsent(
+				IN_VIEW_KEY,
+				k -> new SimpleBooleanProperty(true));
+	}
+
+	public BooleanProperty isEnabledProperty()
+	{
+		return this.isEnabled;
+	}
+
+	public void requestCulling()
+	{
+		FXUpdateCoalescer.getInstance().submit(this, this::cull);
+	}
+
+	private void cull()
+	{
+		// validate so that the next transform change invalidates and triggers culling again
+		group.getLocalToSceneTransform();
+		final Frustum frustum = new Frustum(camera, scene.getWidth() / Math.max(scene.getHeight(), 1.0));
+		final int[]   counts  = new int[2];
+		cull(group, frustum, counts);
+		LOG.trace("{} of {} meshes in view", counts[0], counts[1]);
+	}
+
+	private void cull(final Node node, final Frustum frustum, final int[] counts)
+	{
+		if (node instanceof MeshView)
+		{
+			final MeshView mesh   = (MeshView) node;
+			final boolean  inView = !isEnabled.get() || frustum.intersects(camera.sceneToLocal(mesh.localToScene(mesh
+					.getBoundsInLocal())));
+			inViewProperty(mesh).set(inView);
+			counts[0] += inView ? 1 : 0;
+			counts[1] += 1;
+		}
+		else if (node instanceof Group)
+		{
+			observe((Group) node);
+			for (final Node child : ((Group) node).getChildren())
+			{
+				cull(child, frustum, counts);
+			}
+		}
+	}
+
+	private void observe(final Group group)
+	{
+		if (observedGroups.add(group))
+		{
+			group.getChildren().addListener(onChildrenChanged);
+		}
+	}
+
+}
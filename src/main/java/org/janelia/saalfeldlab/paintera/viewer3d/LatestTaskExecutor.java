@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
@@ -15,6 +16,10 @@ public class LatestTaskExecutor implements Executor
 
 	private long delayInNanoSeconds;
 
+	private ScheduledFuture<?> scheduled = null;
+
+	private boolean restartDelay = false;
+
 	public LatestTaskExecutor(final ThreadFactory factory)
 	{
 		this(0, factory);
@@ -34,22 +39,32 @@ public class LatestTaskExecutor implements Executor
 		{
 			final Runnable pendingTask = task;
 			task = command;
-			if (pendingTask == null)
+			if (pendingTask == null || restartDelay)
 			{
-				executor.schedule(
-						() -> {
-							final Runnable currentTask;
-							synchronized (LatestTaskExecutor.this)
-							{
-								currentTask = task;
-								task = null;
-							}
-							currentTask.run();
-						}, delayInNanoSeconds, TimeUnit.NANOSECONDS);
+				if (scheduled != null)
+				{
+					scheduled.cancel(false);
+				}
+				scheduled = executor.schedule(this::runLatestTask, delayInNanoSeconds, TimeUnit.NANOSECONDS);
 			}
 		}
 	}
 
+	private void runLatestTask()
+	{
+		final Runnable currentTask;
+		synchronized (this)
+		{
+			currentTask = task;
+			task = null;
+		}
+		// a task that was re-scheduled may have been picked up already
+		if (currentTask != null)
+		{
+			currentTask.run();
+		}
+	}
+
 	public boolean busy()
 	{
 		return task == null;
@@ -69,4 +84,14 @@ public class LatestTaskExecutor implements Executor
 	{
 		this.delayInNanoSeconds = delayInNanoSeconds;
 	}
+
+	/**
+	 * @param restartDelay
+	 * 		if {@code true}, every call to {@link #execute(Runnable)} restarts the delay, i.e. the latest task runs only
+	 * 		once no task was submitted for the delay. Otherwise, the latest task runs at most once per delay.
+	 */
+	public synchronized void setRestartDelay(final boolean restartDelay)
+	{
+		this.restartDelay = restartDelay;
+	}
 }
@@ -3,6 +3,8 @@ package org.janelia.saalfeldlab.paintera.viewer3d;
 import java.util.ArrayList;
 import java.util.List;
 
+import bdv.fx.viewer.BufferExposingWritableImage;
+import bdv.fx.viewer.MultiResolutionRendererFX;
 import bdv.fx.viewer.ViewerPanelFX;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -10,15 +12,17 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.CullFace;
 import javafx.scene.shape.MeshView;
 import net.imglib2.RealPoint;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.realtransform.AffineTransform3D;
+import org.janelia.saalfeldlab.fx.util.FXUpdateCoalescer;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.util.NamedThreadFactory;
 
@@ -62,6 +66,22 @@ public class OrthoSliceFX
 		});
 	}
 
+	private static final int TEXTURE_SIZE = 512;
+
+	private static final MultiResolutionRendererFX.MakeWritableImage TEXTURE_FACTORY = new MultiResolutionRendererFX
+			.MakeWritableImage();
+
+	/**
+	 * Two textures that are re-used: one is displayed, the other one is written by the ortho-slice executor.
+	 */
+	private final BufferExposingWritableImage[] textures = new BufferExposingWritableImage[2];
+
+	// guarded by textures, only written on the JavaFX application thread
+	private int displayedTexture = -1;
+
+	// guarded by textures
+	private int writtenTexture = -1;
+
 	// TODO re-think/reduce this delay
 	// 500ms delay
 	LatestTaskExecutor es = new LatestTaskExecutor(
@@ -98,7 +118,8 @@ public class OrthoSliceFX
 			this.viewer.getState().getViewerTransform(viewerTransform);
 		}
 		if (w <= 0 || h <= 0) { return; }
-		InvokeOnJavaFXApplicationThread.invoke(() -> {
+		// only the latest transform matters: update the mesh at most once per pulse
+		FXUpdateCoalescer.getInstance().submit(mesh, () -> {
 			mesh.update(
 					new RealPoint(0, 0),
 					new RealPoint(w, 0),
@@ -109,34 +130,123 @@ public class OrthoSliceFX
 		});
 		es.execute(() -> {
 			Thread.currentThread().setName("ortho-slice-executor");
-			final double    scale     = 512.0 / Math.max(w, h);
-			final int       fitWidth  = (int) Math.round(w * scale);
-			final int       fitHeight = (int) Math.round(h * scale);
-			final ImageView imageView = new ImageView(image);
-			imageView.setPreserveRatio(true);
-			imageView.setFitWidth(fitWidth);
-			imageView.setFitHeight(fitHeight);
-			final SnapshotParameters snapshotParameters = new SnapshotParameters();
-			snapshotParameters.setFill(Color.BLACK);
-			InvokeOnJavaFXApplicationThread.invoke(() -> {
-				imageView.snapshot(snapshotResult -> {
-					InvokeOnJavaFXApplicationThread.invoke(() -> {
-
-						material.setSelfIlluminationMap(snapshotResult.getImage());
-						mesh.update(
-								new RealPoint(0, 0),
-								new RealPoint(w, 0),
-								new RealPoint(w, h),
-								new RealPoint(0, h),
-								viewerTransform.inverse()
-						           );
-					});
-					return null;
-				}, snapshotParameters, null);
-			});
+			updateTexture(image, w, h, viewerTransform);
+		});
+	}
+
+	/**
+	 * Downsample {@code image} into the texture that is not currently displayed and push it to the material with the
+	 * next pulse. Runs on the ortho-slice executor, the JavaFX application thread only swaps the texture.
+	 */
+	private void updateTexture(final Image image, final double w, final double h, final AffineTransform3D viewerTransform)
+	{
+		final double scale         = TEXTURE_SIZE / Math.max(w, h);
+		final int    textureWidth  = (int) Math.max(Math.round(w * scale), 1);
+		final int    textureHeight = (int) Math.max(Math.round(h * scale), 1);
+		final int    imageWidth    = (int) image.getWidth();
+		final int    imageHeight   = (int) image.getHeight();
+		if (imageWidth <= 0 || imageHeight <= 0) { return; }
+
+		final int                         index;
+		final BufferExposingWritableImage texture;
+		synchronized (textures)
+		{
+			index = displayedTexture == 0 ? 1 : 0;
+			if (textures[index] == null
+					|| (int) textures[index].getWidth() != textureWidth
+					|| (int) textures[index].getHeight() != textureHeight)
+			{
+				textures[index] = TEXTURE_FACTORY.create(textureWidth, textureHeight);
+			}
+			texture = textures[index];
+			writtenTexture = index;
+		}
+
+		final IntAccess source;
+		if (image instanceof BufferExposingWritableImage)
+		{
+			source = ((BufferExposingWritableImage) image).asArrayImg().update(null);
+		}
+		else
+		{
+			final int[] pixels = new int[imageWidth * imageHeight];
+			image.getPixelReader().getPixels(
+					0,
+					0,
+					imageWidth,
+					imageHeight,
+					PixelFormat.getIntArgbPreInstance(),
+					pixels,
+					0,
+					imageWidth
+			                                );
+			source = new IntArray(pixels);
+		}
+		downsample(source, imageWidth, imageHeight, texture.asArrayImg().update(null), textureWidth, textureHeight);
+
+		synchronized (textures)
+		{
+			writtenTexture = -1;
+		}
+
+		FXUpdateCoalescer.getInstance().submit(material, () -> {
+			synchronized (textures)
+			{
+				// texture is re-written already, a newer update will follow
+				if (writtenTexture == index) { return; }
+				displayedTexture = index;
+			}
+			texture.setPixelsDirty();
+			material.setSelfIlluminationMap(texture);
+			mesh.update(
+					new RealPoint(0, 0),
+					new RealPoint(w, 0),
+					new RealPoint(w, h),
+					new RealPoint(0, h),
+					viewerTransform.inverse()
+			           );
 		});
 	}
 
+	/**
+	 * Box-filter premultiplied ARGB {@code source} into {@code target}. Each target pixel averages at least one source
+	 * pixel. Pixels are composited over black, i.e. the result is opaque.
+	 */
+	private static void downsample(
+			final IntAccess source,
+			final int sourceWidth,
+			final int sourceHeight,
+			final IntAccess target,
+			final int targetWidth,
+			final int targetHeight)
+	{
+		for (int y = 0, targetIndex = 0; y < targetHeight; ++y)
+		{
+			final int minY = (int) ((long) y * sourceHeight / targetHeight);
+			final int maxY = Math.max(minY + 1, (int) ((long) (y + 1) * sourceHeight / targetHeight));
+			for (int x = 0; x < targetWidth; ++x, ++targetIndex)
+			{
+				final int minX = (int) ((long) x * sourceWidth / targetWidth);
+				final int maxX = Math.max(minX + 1, (int) ((long) (x + 1) * sourceWidth / targetWidth));
+				long      r    = 0;
+				long      g    = 0;
+				long      b    = 0;
+				for (int sy = minY; sy < maxY; ++sy)
+				{
+					for (int sx = minX, sourceIndex = sy * sourceWidth + minX; sx < maxX; ++sx, ++sourceIndex)
+					{
+						final int argb = source.getValue(sourceIndex);
+						r += argb >>> 16 & 0xff;
+						g += argb >>> 8 & 0xff;
+						b += argb & 0xff;
+					}
+				}
+				final long n = (maxY - minY) * (maxX - minX);
+				target.setValue(targetIndex, 0xff000000 | (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n));
+			}
+		}
+	}
+
 	private final class RenderTransformListener implements ChangeListener<Image>
 	{
 
@@ -181,4 +291,14 @@ public class OrthoSliceFX
 	{
 		this.es.setDelay(delayInNanoSeconds);
 	}
+
+	/**
+	 * @param onlyWhenIdle
+	 * 		if {@code true}, update the texture only after the viewer did not render for the delay, otherwise at most
+	 * 		once per delay while the viewer renders.
+	 */
+	public void setUpdateTextureOnlyWhenIdle(final boolean onlyWhenIdle)
+	{
+		this.es.setRestartDelay(onlyWhenIdle);
+	}
 }
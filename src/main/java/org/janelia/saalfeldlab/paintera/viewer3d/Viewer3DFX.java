@@ -44,6 +44,8 @@ public class Viewer3DFX extends Pane
 
 	private final BooleanProperty isMeshesEnabled = new SimpleBooleanProperty();
 
+	private final FrustumCulling culling;
+
 	public Viewer3DFX(final double width, final double height)
 	{
 		super();
@@ -63,6 +65,7 @@ public class Viewer3DFX extends Pane
 		this.camera.setTranslateZ(0);
 		this.camera.setFieldOfView(90);
 		this.scene.setCamera(this.camera);
+		this.culling = new FrustumCulling(meshesGroup, scene, camera);
 		this.cameraGroup = new Group();
 
 		this.getChildren().add(this.scene);
@@ -112,4 +115,9 @@ public class Viewer3DFX extends Pane
 	{
 		return this.isMeshesEnabled;
 	}
+
+	public FrustumCulling culling()
+	{
+		return this.culling;
+	}
 }
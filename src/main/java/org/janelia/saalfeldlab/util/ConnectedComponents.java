@@ -0,0 +1,404 @@
+package org.janelia.saalfeldlab.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.BooleanType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Face-connected (6-connected in 3D) components of a binary mask, computed with two-pass union-find labeling over
+ * primitive arrays.
+ *
+ * {@link #label(boolean[], int[], int[])} labels a single block. {@link #label(RandomAccessibleInterval, CellGrid,
+ * ExecutorService)} labels all blocks of a {@link CellGrid} in parallel and merges the labels of foreground voxels
+ * that touch across block faces, so that components are connected across blocks. {@link
+ * #label(RandomAccessibleInterval, CellGrid, long[], ExecutorService)} does the same for a subset of the blocks, all
+ * other blocks are background.
+ *
+ * @author Philipp Hanslovsky
+ */
+public class ConnectedComponents
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int BACKGROUND = 0;
+
+	private final CellGrid grid;
+
+	private final int[][] blockLabels;
+
+	private final int[] offsets;
+
+	private final int numLabels;
+
+	private final UnionFind equivalences;
+
+	private ConnectedComponents(
+			final CellGrid grid,
+			final int[][] blockLabels,
+			final int[] offsets,
+			final int numLabels,
+			final UnionFind equivalences)
+	{
+		this.grid = grid;
+		this.blockLabels = blockLabels;
+		this.offsets = offsets;
+		this.numLabels = numLabels;
+		this.equivalences = equivalences;
+	}
+
+	/**
+	 * @return component at {@code position}, or {@link #BACKGROUND}. Voxels of the same component have the same
+	 * value, across blocks.
+	 */
+	public int component(final long[] position)
+	{
+		final int    n            = grid.numDimensions();
+		final long[] cellPosition = new long[n];
+		final long[] cellMin      = new long[n];
+		final int[]  cellDims     = new int[n];
+		grid.getCellPosition(position, cellPosition);
+		grid.getCellDimensions(cellPosition, cellMin, cellDims);
+		final int    block          = (int) IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions());
+		final long[] positionInCell = new long[n];
+		for (int d = 0; d < n; ++d)
+		{
+			positionInCell[d] = position[d] - cellMin[d];
+		}
+		if (blockLabels[block] == null)
+		{
+			return BACKGROUND;
+		}
+		return component(block, blockLabels[block][(int) IntervalIndexer.positionToIndex(positionInCell, cellDims)]);
+	}
+
+	/**
+	 * @return component of the {@code label}-th component of {@code block}, as labeled by {@link #labels(long)}, or
+	 * {@link #BACKGROUND}
+	 */
+	public int component(final long block, final int label)
+	{
+		return label == BACKGROUND ? BACKGROUND : equivalences.find(offsets[(int) block] + label);
+	}
+
+	/**
+	 * @return labels of {@code block} as labeled by {@link #label(boolean[], int[], int[])}, first dimension fastest,
+	 * or {@code null} if {@code block} was not labeled. Must not be modified.
+	 */
+	public int[] labels(final long block)
+	{
+		return blockLabels[(int) block];
+	}
+
+	/**
+	 * @return number of components within {@code block}, before merging across block faces
+	 */
+	public int numComponents(final long block)
+	{
+		final int next = (int) block + 1 < offsets.length ? offsets[(int) block + 1] : numLabels;
+		return next - offsets[(int) block];
+	}
+
+	/**
+	 * Label the components of a block.
+	 *
+	 * @param foreground
+	 * 		flat mask, first dimension fastest
+	 * @param dimensions
+	 * 		dimensions of the block
+	 * @param labels
+	 * 		receives {@link #BACKGROUND} for background voxels, and labels {@code 1, ..., n} for the {@code n}
+	 * 		components, in order of their first voxel
+	 *
+	 * @return number of components
+	 */
+	public static int label(final boolean[] foreground, final int[] dimensions, final int[] labels)
+	{
+		final int[] strides = new int[dimensions.length];
+		int         size    = 1;
+		for (int d = 0; d < dimensions.length; ++d)
+		{
+			strides[d] = size;
+			size *= dimensions[d];
+		}
+
+		// a provisional label is created only for voxels whose predecessor along the first dimension is background
+		final UnionFind provisional     = new UnionFind((dimensions[0] + 1) / 2 * (size / dimensions[0]) + 1);
+		final int[]     position        = new int[dimensions.length];
+		int             nextProvisional = 1;
+		for (int index = 0; index < size; ++index)
+		{
+			if (foreground[index])
+			{
+				int label = BACKGROUND;
+				for (int d = 0; d < dimensions.length; ++d)
+				{
+					if (position[d] > 0 && foreground[index - strides[d]])
+					{
+						final int neighbor = labels[index - strides[d]];
+						label = label == BACKGROUND ? neighbor : provisional.join(label, neighbor);
+					}
+				}
+				labels[index] = label == BACKGROUND ? nextProvisional++ : label;
+			}
+			else
+			{
+				labels[index] = BACKGROUND;
+			}
+
+			for (int d = 0; d < dimensions.length && ++position[d] == dimensions[d]; ++d)
+			{
+				position[d] = 0;
+			}
+		}
+
+		// roots are the smallest provisional label of each component, i.e. compact labels follow first voxels
+		final int[] compact       = new int[nextProvisional];
+		int         numComponents = 0;
+		for (int label = 1; label < nextProvisional; ++label)
+		{
+			final int root = provisional.find(label);
+			compact[label] = root == label ? ++numComponents : compact[root];
+		}
+		for (int index = 0; index < size; ++index)
+		{
+			labels[index] = compact[labels[index]];
+		}
+		return numComponents;
+	}
+
+	/**
+	 * Label the components of {@code foreground}, one task per block of {@code grid}. Components that touch across
+	 * block faces are merged after all blocks are labeled.
+	 */
+	public static <B extends BooleanType<B>> ConnectedComponents label(
+			final RandomAccessibleInterval<B> foreground,
+			final CellGrid grid,
+			final ExecutorService es) throws InterruptedException, ExecutionException
+	{
+		final long[] blocks = new long[(int) Intervals.numElements(grid.getGridDimensions())];
+		Arrays.setAll(blocks, block -> block);
+		return label(foreground, grid, blocks, es);
+	}
+
+	/**
+	 * Label the components of {@code foreground} within {@code blocks}, one task per block. Components that touch
+	 * across faces of {@code blocks} are merged after all blocks are labeled. All voxels outside of {@code blocks} are
+	 * {@link #BACKGROUND}.
+	 *
+	 * @param blocks
+	 * 		distinct flat indices into {@code grid}
+	 */
+	public static <B extends BooleanType<B>> ConnectedComponents label(
+			final RandomAccessibleInterval<B> foreground,
+			final CellGrid grid,
+			final long[] blocks,
+			final ExecutorService es) throws InterruptedException, ExecutionException
+	{
+		final int    n              = grid.numDimensions();
+		final long[] gridDimensions = grid.getGridDimensions();
+		final int    numBlocks      = (int) Intervals.numElements(gridDimensions);
+
+		final int[][]               blockLabels   = new int[numBlocks][];
+		final List<Future<Integer>> numComponents = new ArrayList<>();
+		for (final long block : blocks)
+		{
+			final int finalBlock = (int) block;
+			numComponents.add(es.submit(() -> {
+				final long[] cellPosition = new long[n];
+				final long[] cellMin      = new long[n];
+				final int[]  cellDims     = new int[n];
+				grid.getCellGridPositionFlat(finalBlock, cellPosition);
+				grid.getCellDimensions(cellPosition, cellMin, cellDims);
+				final long[] cellMax = new long[n];
+				for (int d = 0; d < n; ++d)
+				{
+					cellMax[d] = cellMin[d] + cellDims[d] - 1;
+				}
+				final int       size   = (int) Intervals.numElements(cellDims);
+				final boolean[] mask   = new boolean[size];
+				final Cursor<B> cursor = Views.flatIterable(Views.interval(
+						foreground,
+						new FinalInterval(cellMin, cellMax))).cursor();
+				for (int index = 0; index < size; ++index)
+				{
+					mask[index] = cursor.next().get();
+				}
+				blockLabels[finalBlock] = new int[size];
+				return label(mask, cellDims, blockLabels[finalBlock]);
+			}));
+		}
+
+		// labels of block b are offsets[b] + 1, ..., offsets[b] + numComponents[b]
+		final int[] numComponentsInBlock = new int[numBlocks];
+		for (int index = 0; index < blocks.length; ++index)
+		{
+			numComponentsInBlock[(int) blocks[index]] = numComponents.get(index).get();
+		}
+		final int[] offsets = new int[numBlocks];
+		int         total   = 0;
+		for (int block = 0; block < numBlocks; ++block)
+		{
+			offsets[block] = total;
+			total += numComponentsInBlock[block];
+		}
+
+		final UnionFind equivalences = new UnionFind(total + 1);
+		final long[]    cellPosition = new long[n];
+		final long[]    cellMin      = new long[n];
+		final int[]     cellDims     = new int[n];
+		final long[]    nextPosition = new long[n];
+		final int[]     nextDims     = new int[n];
+		for (final long block : blocks)
+		{
+			grid.getCellGridPositionFlat(block, cellPosition);
+			grid.getCellDimensions(cellPosition, cellMin, cellDims);
+			for (int d = 0; d < n; ++d)
+			{
+				if (cellPosition[d] + 1 >= gridDimensions[d])
+				{
+					continue;
+				}
+				System.arraycopy(cellPosition, 0, nextPosition, 0, n);
+				++nextPosition[d];
+				final int next = (int) IntervalIndexer.positionToIndex(nextPosition, gridDimensions);
+				if (blockLabels[next] == null)
+				{
+					continue;
+				}
+				grid.getCellDimensions(nextPosition, new long[n], nextDims);
+				mergeFace(
+						blockLabels[(int) block],
+						offsets[(int) block],
+						blockLabels[next],
+						offsets[next],
+						cellDims,
+						nextDims,
+						d,
+						equivalences);
+			}
+		}
+
+		LOG.debug("Labeled {} components in {} blocks", total, blocks.length);
+		return new ConnectedComponents(grid, blockLabels, offsets, total, equivalences);
+	}
+
+	/**
+	 * Join components of the last slice of block {@code labels} along {@code dimension} with components of the first
+	 * slice of the adjacent block {@code nextLabels}.
+	 */
+	private static void mergeFace(
+			final int[] labels,
+			final int offset,
+			final int[] nextLabels,
+			final int nextOffset,
+			final int[] dims,
+			final int[] nextDims,
+			final int dimension,
+			final UnionFind equivalences)
+	{
+		final int[] strides     = new int[dims.length];
+		final int[] nextStrides = new int[dims.length];
+		for (int d = 0, stride = 1, nextStride = 1; d < dims.length; ++d)
+		{
+			strides[d] = stride;
+			nextStrides[d] = nextStride;
+			stride *= dims[d];
+			nextStride *= nextDims[d];
+		}
+
+		final int[] position  = new int[dims.length];
+		final int   faceStart = (dims[dimension] - 1) * strides[dimension];
+		final int   faceSize  = (int) (Intervals.numElements(dims) / dims[dimension]);
+		for (int i = 0; i < faceSize; ++i)
+		{
+			int index     = faceStart;
+			int nextIndex = 0;
+			for (int d = 0; d < dims.length; ++d)
+			{
+				index += position[d] * strides[d];
+				nextIndex += position[d] * nextStrides[d];
+			}
+			if (labels[index] != BACKGROUND && nextLabels[nextIndex] != BACKGROUND)
+			{
+				equivalences.join(offset + labels[index], nextOffset + nextLabels[nextIndex]);
+			}
+
+			// iterate over all dimensions but the face normal
+			for (int d = 0; d < dims.length; ++d)
+			{
+				if (d == dimension)
+				{
+					continue;
+				}
+				if (++position[d] < dims[d])
+				{
+					break;
+				}
+				position[d] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Disjoint sets of {@code int} with path halving. The smaller root becomes the root of the joined set, so that
+	 * the root of each set is its smallest element.
+	 */
+	public static class UnionFind
+	{
+
+		private final int[] parents;
+
+		public UnionFind(final int size)
+		{
+			this.parents = new int[size];
+			for (int i = 0; i < size; ++i)
+			{
+				parents[i] = i;
+			}
+		}
+
+		public int find(int element)
+		{
+			while (parents[element] != element)
+			{
+				parents[element] = parents[parents[element]];
+				element = parents[element];
+			}
+			return element;
+		}
+
+		/**
+		 * @return root of the joined set
+		 */
+		public int join(final int element1, final int element2)
+		{
+			final int root1 = find(element1);
+			final int root2 = find(element2);
+			if (root1 < root2)
+			{
+				parents[root2] = root1;
+				return root1;
+			}
+			parents[root1] = root2;
+			return root2;
+		}
+
+	}
+
+}
@@ -5,6 +5,7 @@ import java.lang.ref.WeakReference;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 
 import net.imglib2.cache.Cache;
 import net.imglib2.cache.iotiming.CacheIoTiming;
@@ -222,6 +223,15 @@ public class WeakRefVolatileCache<K, V> implements VolatileCache<K, V>
 		this.map.clear();
 	}
 
+	/**
+	 * Remove entries whose key satisfies {@code condition}, without invalidating the backing cache. Subsequent requests
+	 * for these keys query the backing cache again, e.g. after the corresponding entries were invalidated there.
+	 */
+	public void invalidateIf(final Predicate<? super K> condition)
+	{
+		this.map.keySet().removeIf(condition);
+	}
+
 	// ================ private methods =====================
 
 	private V getDontLoad(final Entry entry) throws ExecutionException
@@ -425,10 +435,19 @@ public class WeakRefVolatileCache<K, V> implements VolatileCache<K, V>
 		if (entry.enqueueFrame < currentQueueFrame)
 		{
 			entry.enqueueFrame = currentQueueFrame;
-			fetchQueue.put(new FetchEntry(entry.key), hints.getQueuePriority(), hints.isEnqueuToFront());
+			fetchQueue.put(createFetchEntry(entry.key), hints.getQueuePriority(), hints.isEnqueuToFront());
 		}
 	}
 
+	/**
+	 * Create the {@link Callable} that is put into the fetch queue to load {@code key}. Subclasses may wrap it, e.g. to
+	 * attach information for the queue.
+	 */
+	protected Callable<?> createFetchEntry(final K key)
+	{
+		return new FetchEntry(key);
+	}
+
 	/**
 	 * Estimate of how much time is left for budgeted loading.
 	 *
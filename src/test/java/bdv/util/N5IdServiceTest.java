@@ -0,0 +1,102 @@
+package bdv.util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.id.N5IdService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class N5IdServiceTest
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String DATASET = "labels";
+
+	private static final int NUM_THREADS = 8;
+
+	private static final int IDS_PER_THREAD = 100000;
+
+	@Test
+	public void testConcurrentAllocation() throws IOException, InterruptedException, ExecutionException
+	{
+		final N5Writer n5 = new N5FSWriter(Files.createTempDirectory("n5-id-service").toString());
+		n5.createGroup(DATASET);
+		n5.setAttribute(DATASET, N5IdService.MAX_ID_KEY, 10L);
+
+		final N5IdService          service = new N5IdService(n5, DATASET, 10L, 1000);
+		final ExecutorService      es      = Executors.newFixedThreadPool(NUM_THREADS);
+		final List<Future<long[]>> futures = new ArrayList<>();
+		final long                 start   = System.nanoTime();
+		for (int thread = 0; thread < NUM_THREADS; ++thread)
+		{
+			final boolean single = thread % 2 == 0;
+			futures.add(es.submit(() -> {
+				if (!single)
+					return service.next(IDS_PER_THREAD);
+				final long[] ids = new long[IDS_PER_THREAD];
+				for (int i = 0; i < ids.length; ++i)
+					ids[i] = service.next();
+				return ids;
+			}));
+		}
+
+		final long[] ids = new long[NUM_THREADS * IDS_PER_THREAD];
+		for (int thread = 0; thread < NUM_THREADS; ++thread)
+			System.arraycopy(futures.get(thread).get(), 0, ids, thread * IDS_PER_THREAD, IDS_PER_THREAD);
+		final long nanos = System.nanoTime() - start;
+		es.shutdown();
+		LOG.info(
+				"Allocated {} ids on {} threads in {} ms ({} ids/ms)",
+				ids.length,
+				NUM_THREADS,
+				nanos / 1000000,
+				ids.length * 1000000L / Math.max(nanos, 1));
+
+		// no id handed out twice, no id skipped
+		Arrays.sort(ids);
+		Assert.assertArrayEquals(LongStream.range(11, 11 + ids.length).toArray(), ids);
+		Assert.assertTrue(service.isInvalidated(ids[ids.length - 1]));
+		Assert.assertFalse(service.isInvalidated(ids[ids.length - 1] + 1));
+
+		// persisted lease covers all ids, reconcile releases the rest of the lease
+		Assert.assertTrue(n5.getAttribute(DATASET, N5IdService.MAX_ID_KEY, Long.class) >= 10L);
+		service.reconcile();
+		Assert.assertEquals(ids[ids.length - 1], (long) n5.getAttribute(DATASET, N5IdService.MAX_ID_KEY, Long.class));
+
+		final N5IdService reopened = new N5IdService(n5, DATASET, ids[ids.length - 1]);
+		Assert.assertEquals(ids[ids.length - 1] + 1, reopened.next());
+	}
+
+	@Test
+	public void testLeaseAfterCloseIsPersisted() throws IOException
+	{
+		final N5Writer n5 = new N5FSWriter(Files.createTempDirectory("n5-id-service").toString());
+		n5.createGroup(DATASET);
+		n5.setAttribute(DATASET, N5IdService.MAX_ID_KEY, 10L);
+
+		final N5IdService service = new N5IdService(n5, DATASET, 10L, 100);
+		Assert.assertEquals(11L, service.next());
+		service.close();
+		Assert.assertEquals(11L, (long) n5.getAttribute(DATASET, N5IdService.MAX_ID_KEY, Long.class));
+
+		// no persister after close: the lease has to be written before the ids are handed out
+		final long[] ids = service.next(1000);
+		Assert.assertTrue(n5.getAttribute(DATASET, N5IdService.MAX_ID_KEY, Long.class) >= ids[ids.length - 1]);
+	}
+
+}
@@ -0,0 +1,163 @@
+package net.imglib2.converter;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ARGBColorConverterTest
+{
+
+	@Test
+	public void testUnsignedByteLookup()
+	{
+		final ARGBColorConverter<UnsignedByteType> lookup    = ARGBColorConverter.inverting(
+				new UnsignedByteType(),
+				10,
+				200);
+		final ARGBColorConverter<UnsignedByteType> reference = new ARGBColorConverter.InvertingImp1<>(10, 200);
+		Assert.assertTrue(lookup instanceof ARGBColorConverter.InvertingLookup<?>);
+		assertSameForAll(lookup, reference, new UnsignedByteType(), 1 << 8);
+
+		// inverted range, color, and alpha
+		for (final ARGBColorConverter<UnsignedByteType> converter : new ARGBColorConverter[] {lookup, reference})
+		{
+			converter.setMin(250);
+			converter.setMax(3);
+			converter.setColor(new ARGBType(ARGBType.rgba(255, 128, 0, 255)));
+			converter.alphaProperty().set(0.5);
+		}
+		assertSameForAll(lookup, reference, new UnsignedByteType(), 1 << 8);
+	}
+
+	@Test
+	public void testVolatileUnsignedShortLookup()
+	{
+		final ARGBColorConverter<VolatileUnsignedShortType> lookup    = ARGBColorConverter.inverting(
+				new VolatileUnsignedShortType(),
+				1000,
+				40000);
+		final ARGBColorConverter<VolatileUnsignedShortType> reference = new ARGBColorConverter.InvertingImp1<>(
+				1000,
+				40000);
+		Assert.assertTrue(lookup instanceof ARGBColorConverter.InvertingLookup<?>);
+		assertSameForAll(lookup, reference, new VolatileUnsignedShortType(), 1 << 16);
+	}
+
+	@Test
+	public void testFallBack()
+	{
+		Assert.assertTrue(ARGBColorConverter.inverting(
+				new FloatType(),
+				0,
+				1) instanceof ARGBColorConverter.InvertingImp1<?>);
+		Assert.assertFalse(ARGBColorConverter.inverting(
+				new UnsignedShortType(),
+				0,
+				1) instanceof ARGBColorConverter.InvertingImp1<?>);
+	}
+
+	/**
+	 * Compare the time to convert a screen of 8-bit and 16-bit data with {@link ARGBColorConverter.InvertingImp1} and
+	 * {@link ARGBColorConverter.InvertingLookup}, and the time to rebuild the lookup table when the contrast changes.
+	 */
+	public static void main(final String[] args)
+	{
+		final int    width  = 1920;
+		final int    height = 1080;
+		final Random rng    = new Random(100);
+
+		final ArrayImg<UnsignedByteType, ByteArray> bytes = ArrayImgs.unsignedBytes(width, height);
+		bytes.forEach(b -> b.set(rng.nextInt(1 << 8)));
+		final ArrayImg<UnsignedShortType, ShortArray> shorts = ArrayImgs.unsignedShorts(width, height);
+		shorts.forEach(s -> s.set(rng.nextInt(1 << 16)));
+
+		time("uint8", bytes, new ARGBColorConverter.InvertingImp1<>(10, 200), ARGBColorConverter.inverting(
+				new UnsignedByteType(),
+				10,
+				200));
+		time("uint16", shorts, new ARGBColorConverter.InvertingImp1<>(1000, 40000), ARGBColorConverter.inverting(
+				new UnsignedShortType(),
+				1000,
+				40000));
+	}
+
+	private static <R extends RealType<R>> void time(
+			final String name,
+			final ArrayImg<R, ?> img,
+			final ARGBColorConverter<R> reference,
+			final ARGBColorConverter<R> lookup)
+	{
+		final int runs = 20;
+		for (final ARGBColorConverter<R> converter : new ARGBColorConverter[] {reference, lookup})
+		{
+			long checksum = 0;
+			// warm up
+			for (int run = 0; run < 3; ++run)
+				checksum += convertAll(img, converter);
+			final long start = System.nanoTime();
+			for (int run = 0; run < runs; ++run)
+				checksum += convertAll(img, converter);
+			final double millis = (System.nanoTime() - start) * 1e-6 / runs;
+			System.out.println(String.format(
+					"%-6s %-40s convert=%8.2fms checksum=%d",
+					name,
+					converter.getClass().getSimpleName(),
+					millis,
+					checksum));
+		}
+
+		final long start = System.nanoTime();
+		for (int run = 0; run < runs; ++run)
+			lookup.setMin(lookup.getMin() + 1);
+		System.out.println(String.format(
+				"%-6s %-40s update=%8.2fms",
+				name,
+				lookup.getClass().getSimpleName(),
+				(System.nanoTime() - start) * 1e-6 / runs));
+	}
+
+	private static <R extends RealType<R>> long convertAll(
+			final ArrayImg<R, ?> img,
+			final Converter<R, ARGBType> converter)
+	{
+		final ARGBType  argb   = new ARGBType();
+		final Cursor<R> cursor = img.cursor();
+		long            sum    = 0;
+		while (cursor.hasNext())
+		{
+			converter.convert(cursor.next(), argb);
+			sum += argb.get();
+		}
+		return sum;
+	}
+
+	private static <R extends RealType<R>> void assertSameForAll(
+			final ARGBColorConverter<R> lookup,
+			final ARGBColorConverter<R> reference,
+			final R value,
+			final int numValues)
+	{
+		final ARGBType expected = new ARGBType();
+		final ARGBType actual   = new ARGBType();
+		for (int v = 0; v < numValues; ++v)
+		{
+			value.setReal(v);
+			reference.convert(value, expected);
+			lookup.convert(value, actual);
+			Assert.assertEquals(expected.get(), actual.get());
+		}
+	}
+
+}
@@ -0,0 +1,324 @@
+package org.janelia.saalfeldlab.paintera;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.FromIntegerTypeConverter;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.label.LabelUtils;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.paintera.N5Helpers;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSourceSerializer;
+import org.janelia.saalfeldlab.paintera.data.n5.CanvasSnapshotN5;
+import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5;
+import org.janelia.saalfeldlab.paintera.serialization.CommitCanvasN5Serializer;
+import org.janelia.saalfeldlab.paintera.serialization.sourcestate.SourceStateSerialization;
+import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PainteraCommitCanvasTest
+{
+
+	private static final String DATASET = "labels";
+
+	private static final String SNAPSHOT = MaskedSourceSerializer.CANVAS_SNAPSHOTS_GROUP + "/canvas";
+
+	private static final int[] BLOCK_SIZE = {2, 2, 2};
+
+	private static final CellGrid GRID = new CellGrid(new long[] {4, 4, 4}, BLOCK_SIZE);
+
+	private final List<Path> containers = new ArrayList<>();
+
+	@Test
+	public void testUpToDateSnapshotIsCommittedAndRemoved() throws IOException
+	{
+		final N5Writer target  = new N5FSWriter(temporaryContainer("commit-canvas-target"));
+		final String   project = temporaryContainer("commit-canvas-project");
+		target.createGroup(DATASET);
+		target.setAttribute(DATASET, CommitCanvasN5.COMMIT_COUNT_KEY, 2L);
+		writeProject(project, new CommitCanvasN5(target, DATASET), 2L);
+
+		final List<PainteraCommitCanvas.Commit> commits = PainteraCommitCanvas.readCommits(project);
+		Assert.assertEquals(1, commits.size());
+		Assert.assertFalse(commits.get(0).isStale());
+
+		commits.get(0).run();
+		Assert.assertTrue(commits.get(0).isSuccessful());
+
+		PainteraCommitCanvas.removeCommittedState(project, commits);
+		Assert.assertFalse(snapshotReference(project).has(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY));
+		Assert.assertFalse(new N5FSWriter(project).exists(SNAPSHOT));
+	}
+
+	@Test
+	public void testStaleSnapshotIsNotCommitted() throws IOException
+	{
+		final N5Writer target  = new N5FSWriter(temporaryContainer("commit-canvas-target"));
+		final String   project = temporaryContainer("commit-canvas-project");
+		target.createGroup(DATASET);
+		// committed to once more after the snapshot was taken
+		target.setAttribute(DATASET, CommitCanvasN5.COMMIT_COUNT_KEY, 3L);
+		writeProject(project, new CommitCanvasN5(target, DATASET), 2L);
+
+		final List<PainteraCommitCanvas.Commit> commits = PainteraCommitCanvas.readCommits(project);
+		Assert.assertEquals(1, commits.size());
+		Assert.assertTrue(commits.get(0).isStale());
+
+		commits.get(0).run();
+		Assert.assertFalse(commits.get(0).isSuccessful());
+
+		PainteraCommitCanvas.removeCommittedState(project, commits);
+		Assert.assertEquals(
+				SNAPSHOT,
+				snapshotReference(project).get(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY).getAsString());
+		Assert.assertTrue(new N5FSWriter(project).exists(SNAPSHOT));
+		Assert.assertEquals(3L, new CommitCanvasN5(target, DATASET).commitCount());
+	}
+
+	@Test
+	public void testStaleSnapshotIsOnlyRemovedWhenDiscarded() throws IOException
+	{
+		final N5Writer target  = new N5FSWriter(temporaryContainer("commit-canvas-target"));
+		final String   project = temporaryContainer("commit-canvas-project");
+		target.createGroup(DATASET);
+		target.setAttribute(DATASET, CommitCanvasN5.COMMIT_COUNT_KEY, 2L);
+		writeProject(project, new CommitCanvasN5(target, DATASET), 2L);
+
+		// marked stale by Paintera, e.g. because the canvas was committed in a later session
+		final String marked = MaskedSourceSerializer.CANVAS_SNAPSHOTS_GROUP + "/marked";
+		CanvasSnapshotN5.write(
+				new N5FSWriter(project),
+				marked,
+				ArrayImgs.unsignedLongs(GRID.getImgDimensions()),
+				GRID,
+				new long[] {},
+				1L,
+				null);
+		CanvasSnapshotN5.markStale(new N5FSWriter(project), marked);
+		CanvasSnapshotN5.markStale(new N5FSWriter(project), SNAPSHOT);
+
+		final List<PainteraCommitCanvas.Commit> commits = PainteraCommitCanvas.readCommits(project);
+		Assert.assertEquals(1, commits.size());
+		Assert.assertTrue(commits.get(0).isStale());
+
+		commits.get(0).run();
+		PainteraCommitCanvas.removeCommittedState(project, commits);
+		Assert.assertTrue(new N5FSWriter(project).exists(SNAPSHOT));
+		Assert.assertTrue(new N5FSWriter(project).exists(marked));
+
+		PainteraCommitCanvas.discardStaleSnapshots(project, commits);
+		Assert.assertFalse(snapshotReference(project).has(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY));
+		Assert.assertFalse(new N5FSWriter(project).exists(SNAPSHOT));
+		Assert.assertFalse(new N5FSWriter(project).exists(marked));
+	}
+
+	@Test
+	public void testPaintedBlocksAreCommitted() throws IOException
+	{
+		final N5Writer target  = new N5FSWriter(temporaryContainer("commit-canvas-target"));
+		final String   project = temporaryContainer("commit-canvas-project");
+		writeLabels(target, DATASET, 5);
+		target.setAttribute(DATASET, CommitCanvasN5.COMMIT_COUNT_KEY, 2L);
+
+		// painted 7 and 8 into block 0 and 9 into block 7, everything else is left unpainted
+		final ArrayImg<UnsignedLongType, LongArray> canvas = ArrayImgs.unsignedLongs(GRID.getImgDimensions());
+		canvas.forEach(p -> p.set(Label.INVALID));
+		final RandomAccess<UnsignedLongType> painter = canvas.randomAccess();
+		painter.setPosition(new long[] {0, 0, 0});
+		painter.get().set(7);
+		painter.setPosition(new long[] {1, 1, 1});
+		painter.get().set(8);
+		painter.setPosition(new long[] {3, 3, 3});
+		painter.get().set(9);
+		writeProject(project, new CommitCanvasN5(target, DATASET), 2L, canvas, new long[] {0, 7});
+
+		final List<PainteraCommitCanvas.Commit> commits = PainteraCommitCanvas.readCommits(project);
+		Assert.assertEquals(1, commits.size());
+		commits.get(0).run();
+		Assert.assertTrue(commits.get(0).isSuccessful());
+		Assert.assertEquals(3L, new CommitCanvasN5(target, DATASET).commitCount());
+
+		final RandomAccess<LabelMultisetType> labels = LabelUtils.openVolatile(
+				target,
+				DATASET + "/" + N5Helpers.PAINTERA_DATA_DATASET + "/s0").randomAccess();
+		Assert.assertEquals(7, label(labels, 0, 0, 0));
+		Assert.assertEquals(8, label(labels, 1, 1, 1));
+		Assert.assertEquals(9, label(labels, 3, 3, 3));
+		// unpainted voxels in painted blocks keep the background
+		Assert.assertEquals(5, label(labels, 1, 0, 0));
+		Assert.assertEquals(5, label(labels, 2, 2, 3));
+		// blocks that were not painted are not touched
+		Assert.assertEquals(5, label(labels, 2, 0, 0));
+		Assert.assertEquals(5, label(labels, 0, 3, 3));
+
+		PainteraCommitCanvas.removeCommittedState(project, commits);
+		Assert.assertFalse(new N5FSWriter(project).exists(SNAPSHOT));
+	}
+
+	@After
+	public void deleteTemporaryContainers() throws IOException
+	{
+		for (final Path container : containers)
+		{
+			try (Stream<Path> paths = Files.walk(container))
+			{
+				for (final Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+				{
+					Files.delete(path);
+				}
+			}
+		}
+		containers.clear();
+	}
+
+	private String temporaryContainer(final String prefix) throws IOException
+	{
+		final Path container = Files.createTempDirectory(prefix);
+		containers.add(container);
+		return container.toString();
+	}
+
+	/**
+	 * Write a single scale Paintera label dataset into {@code group} that contains {@code background} only.
+	 */
+	private static void writeLabels(final N5Writer n5, final String group, final long background) throws IOException
+	{
+		final String data    = group + "/" + N5Helpers.PAINTERA_DATA_DATASET;
+		final String dataset = data + "/s0";
+		n5.createGroup(group);
+		n5.setAttribute(group, N5Helpers.PAINTERA_DATA_KEY, Collections.singletonMap("type", "label"));
+		n5.createGroup(data);
+		n5.setAttribute(data, N5Helpers.MULTI_SCALE_KEY, true);
+		n5.createDataset(dataset, GRID.getImgDimensions(), BLOCK_SIZE, DataType.UINT8, new RawCompression());
+		n5.setAttribute(dataset, N5Helpers.LABEL_MULTISETTYPE_KEY, true);
+		// unique labels have to exist but are only updated along with a label to block mapping
+		n5.createDataset(
+				group + "/unique-labels/s0",
+				GRID.getImgDimensions(),
+				BLOCK_SIZE,
+				DataType.UINT64,
+				new RawCompression());
+
+		final ArrayImg<UnsignedLongType, LongArray> labels = ArrayImgs.unsignedLongs(GRID.getImgDimensions());
+		labels.forEach(p -> p.set(background));
+		final RandomAccessibleInterval<LabelMultisetType> multisets = Converters.convert(
+				(RandomAccessibleInterval<UnsignedLongType>) labels,
+				new FromIntegerTypeConverter<>(),
+				FromIntegerTypeConverter.geAppropriateType());
+
+		final DatasetAttributes attributes   = n5.getDatasetAttributes(dataset);
+		final long[]            gridPosition = new long[GRID.numDimensions()];
+		final long[]            min          = new long[GRID.numDimensions()];
+		final long[]            max          = new long[GRID.numDimensions()];
+		for (long block = 0; block < Intervals.numElements(GRID.getGridDimensions()); ++block)
+		{
+			GRID.getCellGridPositionFlat(block, gridPosition);
+			Arrays.setAll(min, d -> gridPosition[d] * BLOCK_SIZE[d]);
+			Arrays.setAll(max, d -> min[d] + BLOCK_SIZE[d] - 1);
+			final IntervalView<LabelMultisetType> cell = Views.interval(multisets, min, max);
+			final byte[] bytes = LabelUtils.serializeLabelMultisetTypes(
+					Views.flatIterable(cell),
+					(int) Intervals.numElements(cell));
+			n5.writeBlock(
+					dataset,
+					attributes,
+					new ByteArrayDataBlock(Intervals.dimensionsAsIntArray(cell), gridPosition, bytes));
+		}
+	}
+
+	private static long label(final RandomAccess<LabelMultisetType> access, final long x, final long y, final long z)
+	{
+		access.setPosition(new long[] {x, y, z});
+		return access.get().entrySet().iterator().next().getElement().id();
+	}
+
+	private static void writeProject(final String project, final CommitCanvasN5 commitCanvas, final long baseCommit)
+	throws IOException
+	{
+		// empty snapshot: committing it does not require a label dataset
+		writeProject(project, commitCanvas, baseCommit, ArrayImgs.unsignedLongs(GRID.getImgDimensions()), new
+				long[] {});
+	}
+
+	private static void writeProject(
+			final String project,
+			final CommitCanvasN5 commitCanvas,
+			final long baseCommit,
+			final RandomAccessibleInterval<UnsignedLongType> canvas,
+			final long[] blocks)
+	throws IOException
+	{
+		final N5Writer n5 = new N5FSWriter(project);
+		CanvasSnapshotN5.write(n5, SNAPSHOT, canvas, GRID, blocks, baseCommit, null);
+
+		final Gson       gson   = new GsonBuilder()
+				.registerTypeAdapter(CommitCanvasN5.class, new CommitCanvasN5Serializer())
+				.create();
+		final JsonObject source = new JsonObject();
+		source.addProperty(MaskedSourceSerializer.PERSIST_CANVAS_CLASS_KEY, CommitCanvasN5.class.getName());
+		source.add(MaskedSourceSerializer.PERSIST_CANVAS_KEY, gson.toJsonTree(commitCanvas));
+		source.addProperty(MaskedSourceSerializer.CANVAS_SNAPSHOT_KEY, SNAPSHOT);
+
+		final JsonObject state = new JsonObject();
+		state.addProperty(SourceStateSerialization.NAME_KEY, "labels");
+		state.addProperty(SourceStateSerialization.SOURCE_TYPE_KEY, MaskedSource.class.getName());
+		state.add(SourceStateSerialization.SOURCE_KEY, source);
+
+		final JsonObject typeAndState = new JsonObject();
+		typeAndState.addProperty("type", LabelSourceState.class.getName());
+		typeAndState.add("state", state);
+
+		final JsonArray sources = new JsonArray();
+		sources.add(typeAndState);
+		final JsonObject sourceInfo = new JsonObject();
+		sourceInfo.add("sources", sources);
+		final JsonObject properties = new JsonObject();
+		properties.add("sourceInfo", sourceInfo);
+		n5.setAttribute("", Paintera.PAINTERA_KEY, properties);
+	}
+
+	private static JsonObject snapshotReference(final String project)
+	{
+		return Paintera
+				.loadPropertiesIfPresent(project)
+				.get()
+				.get("sourceInfo").getAsJsonObject()
+				.get("sources").getAsJsonArray()
+				.get(0).getAsJsonObject()
+				.get("state").getAsJsonObject()
+				.get(SourceStateSerialization.SOURCE_KEY).getAsJsonObject();
+	}
+
+}
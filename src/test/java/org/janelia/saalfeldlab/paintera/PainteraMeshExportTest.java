@@ -0,0 +1,94 @@
+package org.janelia.saalfeldlab.paintera;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PainteraMeshExportTest
+{
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException
+	{
+		directory = Files.createTempDirectory("mesh-export");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException
+	{
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+		{
+			for (final Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testReadSegmentIds() throws IOException
+	{
+		Assert.assertArrayEquals(new long[] {}, PainteraMeshExport.readSegmentIds(null, null));
+		Assert.assertArrayEquals(new long[] {3, 1}, PainteraMeshExport.readSegmentIds(new long[] {3, 1, 3}, null));
+
+		final Path idsFile = directory.resolve("ids.txt");
+		write(idsFile, "# segments to export\n1, 2 5\n\n  7,,8\t9\n# 10\n2,11");
+		Assert.assertArrayEquals(
+				new long[] {1, 2, 5, 7, 8, 9, 11},
+				PainteraMeshExport.readSegmentIds(null, idsFile.toString()));
+
+		// ids from the command line come first, duplicates are dropped
+		Assert.assertArrayEquals(
+				new long[] {3, 1, 2, 5, 7, 8, 9, 11},
+				PainteraMeshExport.readSegmentIds(new long[] {3, 1}, idsFile.toString()));
+	}
+
+	@Test
+	public void testResumeProgress() throws IOException
+	{
+		final Path path = directory.resolve(PainteraMeshExport.PROGRESS_FILE);
+		// previous export was killed while writing 3
+		write(path, "1\n2\n\n3");
+
+		try (PainteraMeshExport.ExportProgress progress = new PainteraMeshExport.ExportProgress(path, false))
+		{
+			Assert.assertTrue(progress.isCompleted(1));
+			Assert.assertTrue(progress.isCompleted(2));
+			Assert.assertFalse(progress.isCompleted(3));
+			progress.markCompleted(4);
+		}
+
+		try (PainteraMeshExport.ExportProgress progress = new PainteraMeshExport.ExportProgress(path, false))
+		{
+			Assert.assertTrue(progress.isCompleted(1));
+			Assert.assertTrue(progress.isCompleted(2));
+			Assert.assertFalse(progress.isCompleted(3));
+			Assert.assertFalse(progress.isCompleted(34));
+			Assert.assertTrue(progress.isCompleted(4));
+		}
+
+		try (PainteraMeshExport.ExportProgress progress = new PainteraMeshExport.ExportProgress(path, true))
+		{
+			Assert.assertFalse(progress.isCompleted(1));
+			Assert.assertFalse(progress.isCompleted(4));
+			progress.markCompleted(5);
+		}
+		Assert.assertEquals("5" + System.lineSeparator(), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+	}
+
+	private static void write(final Path path, final String contents) throws IOException
+	{
+		Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,44 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchedSharedQueueTest
+{
+
+	private static final int MAX_PARALLEL_IO = 8;
+
+	private static final int MAX_BATCH_SIZE = 2;
+
+	private static final int NUM_REQUESTS = 100;
+
+	@Test
+	public void testSlotsAreReturnedWhenBatchIsSmallerThanFreeSlots() throws InterruptedException
+	{
+		final BatchedSharedQueue queue = new BatchedSharedQueue(MAX_PARALLEL_IO, MAX_BATCH_SIZE);
+		try
+		{
+			final CountDownLatch done = new CountDownLatch(NUM_REQUESTS);
+			for (int i = 0; i < NUM_REQUESTS; ++i)
+				queue.put(() -> {
+					done.countDown();
+					return null;
+				}, 0, false);
+			Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			// slots are released after the request returns
+			final long deadline = System.currentTimeMillis() + 10000;
+			while (queue.freeIoSlots() < MAX_PARALLEL_IO && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			Assert.assertEquals(0, queue.pendingRequests());
+			Assert.assertEquals(MAX_PARALLEL_IO, queue.freeIoSlots());
+		} finally
+		{
+			queue.shutdown();
+		}
+	}
+
+}
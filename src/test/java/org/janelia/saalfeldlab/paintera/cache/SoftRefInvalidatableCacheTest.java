@@ -0,0 +1,37 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SoftRefInvalidatableCacheTest
+{
+
+	@Test
+	public void testInvalidateIf() throws ExecutionException
+	{
+		final AtomicInteger loads = new AtomicInteger();
+		final SoftRefInvalidatableCache<Integer, String> cache = new SoftRefInvalidatableCache<>(
+				key -> key + "-" + loads.incrementAndGet());
+
+		final String one = cache.get(1);
+		final String two = cache.get(2);
+		Assert.assertSame(one, cache.get(1));
+		Assert.assertSame(one, cache.getIfPresent(1));
+		Assert.assertEquals(2, loads.get());
+
+		Assert.assertEquals(1, cache.invalidateIf(key -> key == 1));
+		Assert.assertNull(cache.getIfPresent(1));
+		Assert.assertSame(two, cache.getIfPresent(2));
+		Assert.assertEquals("1-3", cache.get(1));
+
+		cache.invalidateAll();
+		Assert.assertNull(cache.getIfPresent(1));
+		Assert.assertNull(cache.getIfPresent(2));
+		Assert.assertEquals("2-4", cache.get(2));
+		Assert.assertEquals(0, cache.invalidateIf(key -> key == 1));
+	}
+
+}
@@ -0,0 +1,173 @@
+package org.janelia.saalfeldlab.paintera.composition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.type.numeric.ARGBType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ARGBCompositeKernelsTest
+{
+
+	private static final int LENGTH = 4096;
+
+	@Test
+	public void testCopy()
+	{
+		testEquivalence(new CompositeCopy<>());
+	}
+
+	@Test
+	public void testAlphaAdd()
+	{
+		testEquivalence(new ARGBCompositeAlphaAdd());
+	}
+
+	@Test
+	public void testAlphaYCbCr()
+	{
+		testEquivalence(new ARGBCompositeAlphaYCbCr());
+	}
+
+	/**
+	 * Compare the time to composite a screen of 2 to 6 sources pixel by pixel through {@link Composite} and row by row
+	 * through {@link ARGBCompositeKernels}. The first source is copied, all others are composited with
+	 * {@link ARGBCompositeAlphaAdd} or {@link ARGBCompositeAlphaYCbCr}.
+	 */
+	public static void main(final String[] args)
+	{
+		final int    width  = 1920;
+		final int    height = 1080;
+		final int    runs   = 20;
+		final Random rng    = new Random(100);
+
+		final int[][] sources = new int[6][width * height];
+		for (final int[] source : sources)
+			for (int i = 0; i < source.length; ++i)
+				// runs of identical pixels like in label data
+				source[i] = i % 7 < 3 ? 0x80ff00ff : rng.nextInt();
+
+		final List<Composite<ARGBType, ARGBType>> overlays = Arrays.asList(
+				new ARGBCompositeAlphaAdd(),
+				new ARGBCompositeAlphaYCbCr());
+
+		for (final Composite<ARGBType, ARGBType> overlay : overlays)
+			for (int numSources = 2; numSources <= sources.length; ++numSources)
+			{
+				final List<Composite<ARGBType, ARGBType>> composites = new ArrayList<>();
+				composites.add(new CompositeCopy<>());
+				for (int source = 1; source < numSources; ++source)
+					composites.add(overlay);
+
+				final int[] perPixel = new int[width * height];
+				final int[] perRow   = new int[width * height];
+				// warm up
+				for (int run = 0; run < 3; ++run)
+				{
+					composePerPixel(composites, sources, perPixel, width);
+					composePerRow(composites, sources, perRow, width);
+				}
+
+				long start = System.nanoTime();
+				for (int run = 0; run < runs; ++run)
+					composePerPixel(composites, sources, perPixel, width);
+				final double perPixelMillis = (System.nanoTime() - start) * 1e-6 / runs;
+
+				start = System.nanoTime();
+				for (int run = 0; run < runs; ++run)
+					composePerRow(composites, sources, perRow, width);
+				final double perRowMillis = (System.nanoTime() - start) * 1e-6 / runs;
+
+				System.out.println(String.format(
+						"%-24s sources=%d per pixel=%8.2fms per row=%8.2fms speedup=%5.2f equal=%s",
+						overlay.getClass().getSimpleName(),
+						numSources,
+						perPixelMillis,
+						perRowMillis,
+						perPixelMillis / perRowMillis,
+						Arrays.equals(perPixel, perRow)));
+			}
+	}
+
+	private static void composePerPixel(
+			final List<Composite<ARGBType, ARGBType>> composites,
+			final int[][] sources,
+			final int[] target,
+			final int width)
+	{
+		final ARGBType t = new ARGBType();
+		final ARGBType s = new ARGBType();
+		for (int i = 0; i < target.length; ++i)
+		{
+			t.set(0);
+			for (int source = 0; source < composites.size(); ++source)
+			{
+				s.set(sources[source][i]);
+				composites.get(source).compose(t, s);
+			}
+			target[i] = t.get();
+		}
+	}
+
+	private static void composePerRow(
+			final List<Composite<ARGBType, ARGBType>> composites,
+			final int[][] sources,
+			final int[] target,
+			final int width)
+	{
+		final ARGBCompositeKernels.Kernel[] kernels = new ARGBCompositeKernels.Kernel[composites.size()];
+		for (int source = 0; source < kernels.length; ++source)
+			kernels[source] = ARGBCompositeKernels.forComposite(composites.get(source));
+		final int[] row = new int[width];
+		for (int offset = 0; offset < target.length; offset += width)
+		{
+			Arrays.fill(row, 0);
+			for (int source = 0; source < kernels.length; ++source)
+				kernels[source].compose(row, sources[source], offset, width);
+			System.arraycopy(row, 0, target, offset, width);
+		}
+	}
+
+	private static void testEquivalence(final Composite<ARGBType, ARGBType> composite)
+	{
+		final Random rng    = new Random(100);
+		final int[]  source = new int[LENGTH + 3];
+		final int[]  a      = new int[LENGTH];
+		for (int i = 0; i < source.length; ++i)
+			// runs of identical pixels like in label data
+			source[i] = i % 7 < 3 ? 0xff00ff00 : rng.nextInt();
+		for (int i = 0; i < a.length; ++i)
+			a[i] = i % 5 < 2 ? 0 : rng.nextInt();
+
+		final int[]    expected = new int[LENGTH];
+		final ARGBType t        = new ARGBType();
+		final ARGBType s        = new ARGBType();
+		for (int i = 0; i < LENGTH; ++i)
+		{
+			t.set(a[i]);
+			s.set(source[i + 3]);
+			composite.compose(t, s);
+			expected[i] = t.get();
+		}
+
+		final int[] actual = a.clone();
+		ARGBCompositeKernels.forComposite(composite).compose(actual, source, 3, LENGTH);
+		Assert.assertArrayEquals(expected, actual);
+
+		// composite several times into the same accumulator
+		final int[] expectedTwice = Arrays.copyOf(expected, LENGTH);
+		for (int i = 0; i < LENGTH; ++i)
+		{
+			t.set(expectedTwice[i]);
+			s.set(source[i]);
+			composite.compose(t, s);
+			expectedTwice[i] = t.get();
+		}
+		ARGBCompositeKernels.forComposite(composite).compose(actual, source, 0, LENGTH);
+		Assert.assertArrayEquals(expectedTwice, actual);
+	}
+
+}
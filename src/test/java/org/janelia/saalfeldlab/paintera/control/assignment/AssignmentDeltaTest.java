@@ -0,0 +1,147 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.set.hash.TLongHashSet;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AssignmentDeltaTest
+{
+
+	private FragmentSegmentAssignmentOnlyLocal assignment;
+
+	private List<List<AssignmentDelta>> published;
+
+	@Before
+	public void createAssignment()
+	{
+		assignment = new FragmentSegmentAssignmentOnlyLocal(new FragmentSegmentAssignmentOnlyLocal.DoesNotPersist());
+		published = new ArrayList<>();
+		assignment.addDeltaListener(published::add);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		// two fragments without segment form a new segment
+		assignment.apply(assignment.getMergeAction(1, 2, () -> 10).get());
+		AssignmentDelta delta = onlyDelta();
+		assertDelta(delta, AssignmentDelta.Type.MERGE, 10, 10, 2, 1);
+		Assert.assertArrayEquals(new long[] {2, 1}, delta.mergedSegments());
+		assertFragments(delta.mergedFragments()[0], 2);
+		assertFragments(delta.mergedFragments()[1], 1);
+		assertFragments(assignment.getFragments(10), 1, 2);
+
+		// a fragment without segment is merged into an existing segment
+		assignment.apply(new Merge(3, 1, 10));
+		delta = onlyDelta();
+		assertDelta(delta, AssignmentDelta.Type.MERGE, 10, 10, 3);
+		Assert.assertArrayEquals(new long[] {10, 3}, delta.mergedSegments());
+		assertFragments(delta.mergedFragments()[0], 1, 2);
+		assertFragments(delta.mergedFragments()[1], 3);
+
+		// two existing segments are merged, the segment that was merged from does not exist anymore
+		assignment.apply(assignment.getMergeAction(4, 5, () -> 20).get());
+		published.clear();
+		assignment.apply(new Merge(4, 1, 10));
+		delta = onlyDelta();
+		assertDelta(delta, AssignmentDelta.Type.MERGE, 10, 10, 20);
+		Assert.assertArrayEquals(new long[] {10, 20}, delta.mergedSegments());
+		assertFragments(delta.mergedFragments()[0], 1, 2, 3);
+		assertFragments(delta.mergedFragments()[1], 4, 5);
+		assertFragments(assignment.getFragments(10), 1, 2, 3, 4, 5);
+		Assert.assertEquals(10, assignment.getSegment(5));
+
+		// fragments that are already in the same segment do not change the assignment
+		assignment.apply(new Merge(2, 1, 10));
+		Assert.assertTrue(published.isEmpty());
+	}
+
+	@Test
+	public void testDeltasAreNotShared()
+	{
+		assignment.apply(assignment.getMergeAction(1, 2, () -> 10).get());
+		final AssignmentDelta delta = onlyDelta();
+		delta.affectedSegments()[0] = 99;
+		delta.mergedSegments()[0] = 99;
+		delta.mergedFragments()[0].add(99);
+		assertDelta(delta, AssignmentDelta.Type.MERGE, 10, 10, 2, 1);
+		Assert.assertArrayEquals(new long[] {2, 1}, delta.mergedSegments());
+		assertFragments(delta.mergedFragments()[0], 2);
+	}
+
+	@Test
+	public void testDetach()
+	{
+		assignment.apply(assignment.getMergeAction(1, 2, () -> 10).get());
+		assignment.apply(new Merge(3, 1, 10));
+		published.clear();
+
+		assignment.apply(assignment.getDetachAction(3, 1).get());
+		AssignmentDelta delta = onlyDelta();
+		assertDelta(delta, AssignmentDelta.Type.DETACH, 10, 10, 3);
+		Assert.assertArrayEquals(new long[] {}, delta.mergedSegments());
+		Assert.assertEquals(0, delta.mergedFragments().length);
+		assertFragments(assignment.getFragments(10), 1, 2);
+		Assert.assertEquals(3, assignment.getSegment(3));
+
+		// detaching from a segment of two fragments dissolves the segment
+		assignment.apply(new Detach(2, 1));
+		delta = onlyDelta();
+		assertDelta(delta, AssignmentDelta.Type.DETACH, 10, 10, 2, 1);
+		Assert.assertEquals(1, assignment.getSegment(1));
+		Assert.assertEquals(2, assignment.getSegment(2));
+
+		// fragments that are not in the same segment cannot be detached
+		assignment.apply(assignment.getMergeAction(4, 5, () -> 20).get());
+		published.clear();
+		assignment.apply(new Detach(4, 1));
+		Assert.assertTrue(published.isEmpty());
+		assertFragments(assignment.getFragments(20), 4, 5);
+	}
+
+	@Test
+	public void testBatchIsPublishedOnce()
+	{
+		assignment.apply(Arrays.asList(new Merge(8, 9, 40), new Merge(11, 9, 40), new Merge(11, 8, 40)));
+		Assert.assertEquals(1, published.size());
+		final List<AssignmentDelta> deltas = published.get(0);
+		Assert.assertEquals(2, deltas.size());
+		assertDelta(deltas.get(0), AssignmentDelta.Type.MERGE, 40, 40, 9, 8);
+		assertDelta(deltas.get(1), AssignmentDelta.Type.MERGE, 40, 40, 11);
+		assertFragments(deltas.get(1).mergedFragments()[0], 8, 9);
+		assertFragments(assignment.getFragments(40), 8, 9, 11);
+	}
+
+	private AssignmentDelta onlyDelta()
+	{
+		Assert.assertEquals(1, published.size());
+		Assert.assertEquals(1, published.get(0).size());
+		final AssignmentDelta delta = published.get(0).get(0);
+		published.clear();
+		return delta;
+	}
+
+	private static void assertDelta(
+			final AssignmentDelta delta,
+			final AssignmentDelta.Type type,
+			final long segment,
+			final long... affectedSegments)
+	{
+		Assert.assertEquals(type, delta.type());
+		Assert.assertEquals(segment, delta.segment());
+		assertFragments(new TLongHashSet(delta.affectedSegments()), affectedSegments);
+	}
+
+	private static void assertFragments(final TLongHashSet actual, final long... expected)
+	{
+		Assert.assertEquals(new TLongHashSet(expected), actual);
+	}
+
+}
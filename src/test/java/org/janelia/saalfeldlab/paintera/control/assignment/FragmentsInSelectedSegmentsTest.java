@@ -0,0 +1,98 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gnu.trove.set.hash.TLongHashSet;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FragmentsInSelectedSegmentsTest
+{
+
+	private static final int NUM_FRAGMENTS = 30;
+
+	@Test
+	public void testAgainstUnionOfSelectedSegments()
+	{
+		final FragmentSegmentAssignmentOnlyLocal assignment = new FragmentSegmentAssignmentOnlyLocal(new
+				FragmentSegmentAssignmentOnlyLocal.DoesNotPersist());
+		final SelectedIds                 selectedIds      = new SelectedIds();
+		final SelectedSegments            selectedSegments = new SelectedSegments(selectedIds, assignment);
+		final FragmentsInSelectedSegments fragments        = new FragmentsInSelectedSegments(
+				selectedSegments,
+				assignment);
+		final Random     random    = new Random(100);
+		final AtomicLong segmentId = new AtomicLong(NUM_FRAGMENTS + 1);
+
+		assertFragments(selectedIds, assignment, fragments);
+		for (int step = 0; step < 1000; ++step)
+		{
+			switch (random.nextInt(6))
+			{
+				case 0:
+					selectedIds.activate(randomFragments(random));
+					break;
+				case 1:
+					selectedIds.activateAlso(randomFragments(random));
+					break;
+				case 2:
+					selectedIds.deactivate(randomFragments(random));
+					break;
+				case 3:
+				case 4:
+					assignment
+							.getMergeAction(randomFragment(random), randomFragment(random), segmentId::getAndIncrement)
+							.ifPresent(assignment::apply);
+					break;
+				default:
+				{
+					final long   fragment = randomFragment(random);
+					final long[] segment  = assignment.getFragments(assignment.getSegment(fragment)).toArray();
+					final long   from     = segment[random.nextInt(segment.length)];
+					assignment.getDetachAction(fragment, from).ifPresent(assignment::apply);
+					break;
+				}
+			}
+			assertFragments(selectedIds, assignment, fragments);
+		}
+	}
+
+	private static long randomFragment(final Random random)
+	{
+		return 1 + random.nextInt(NUM_FRAGMENTS);
+	}
+
+	private static long[] randomFragments(final Random random)
+	{
+		final long[] fragments = new long[random.nextInt(4)];
+		for (int i = 0; i < fragments.length; ++i)
+		{
+			fragments[i] = randomFragment(random);
+		}
+		return fragments;
+	}
+
+	/**
+	 * Compare against the union of the fragments of the segments of all selected fragments.
+	 */
+	private static void assertFragments(
+			final SelectedIds selectedIds,
+			final FragmentSegmentAssignmentState assignment,
+			final FragmentsInSelectedSegments fragments)
+	{
+		final TLongHashSet expected = new TLongHashSet();
+		for (final long fragment : selectedIds.getActiveIds())
+		{
+			expected.addAll(assignment.getFragments(assignment.getSegment(fragment)));
+		}
+		Assert.assertEquals(expected, new TLongHashSet(fragments.getFragments()));
+		for (final long fragment : expected.toArray())
+		{
+			Assert.assertTrue(fragments.contains(fragment));
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import java.util.Random;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.ConstantUtils;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.RandomAccessibleTriple;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PickOneInTouchedCellsTest
+{
+
+	private static final long[] DIMENSIONS = {10, 9, 7};
+
+	private static final CellGrid GRID = new CellGrid(DIMENSIONS, new int[] {4, 4, 4});
+
+	private static final int NUM_CELLS = (int) Intervals.numElements(GRID.getGridDimensions());
+
+	@Test
+	public void testAgainstPickOne()
+	{
+		final Random                                random     = new Random(100);
+		final ArrayImg<UnsignedLongType, LongArray> background = ArrayImgs.unsignedLongs(DIMENSIONS);
+		background.forEach(p -> p.set(1 + random.nextInt(5)));
+		final ArrayImg<UnsignedLongType, LongArray> canvas  = ArrayImgs.unsignedLongs(DIMENSIONS);
+		final TouchedCells                          touched = new TouchedCells(GRID);
+		canvas.forEach(p -> p.set(Label.INVALID));
+
+		final RandomAccessibleInterval<UnsignedLongType> fast     = pickOneInTouchedCells(background, canvas, touched);
+		final RandomAccessibleInterval<UnsignedLongType> expected = pickOne(background, canvas);
+		final RandomAccess<UnsignedLongType>             access   = fast.randomAccess();
+
+		// nothing painted
+		assertEquals(expected, fast);
+		assertEquals(expected, access, random);
+
+		// paint into every other cell, one touched cell remains unpainted
+		final TLongHashSet painted = new TLongHashSet();
+		for (long cell = 0; cell < NUM_CELLS; cell += 2)
+		{
+			painted.add(cell);
+		}
+		paint(canvas, painted, random);
+		touched.addAll(painted);
+		touched.addAll(new long[] {1});
+		assertEquals(expected, fast);
+		assertEquals(expected, access, random);
+		assertEquals(expected, fast.randomAccess(), random);
+
+		// accesses created before a cell was touched see paint within that cell
+		paint(canvas, new TLongHashSet(new long[] {3}), random);
+		touched.addAll(new long[] {3});
+		assertEquals(expected, access, random);
+		final FinalInterval interval = new FinalInterval(new long[] {2, 3, 1}, new long[] {8, 8, 5});
+		assertEquals(Views.interval(expected, interval), Views.interval(fast, interval));
+
+		// canvas cleared after commit
+		canvas.forEach(p -> p.set(Label.INVALID));
+		touched.clear();
+		assertEquals(expected, access, random);
+		assertEquals(expected, fast);
+	}
+
+	private static RandomAccessibleInterval<UnsignedLongType> pickOneInTouchedCells(
+			final RandomAccessibleInterval<UnsignedLongType> background,
+			final RandomAccessible<UnsignedLongType> canvas,
+			final TouchedCells touched)
+	{
+		return new PickOneInTouchedCells<>(background, canvas, constantMask(), touched, pickAndConvert());
+	}
+
+	private static RandomAccessibleInterval<UnsignedLongType> pickOne(
+			final RandomAccessibleInterval<UnsignedLongType> background,
+			final RandomAccessible<UnsignedLongType> canvas)
+	{
+		final RandomAccessibleTriple<UnsignedLongType, UnsignedLongType, UnsignedLongType> composed = new
+				RandomAccessibleTriple<>(background, canvas, constantMask());
+		return new PickOne<>(Views.interval(composed, background), pickAndConvert());
+	}
+
+	/**
+	 * Mask of {@link MaskedSource} while no mask is in use.
+	 */
+	private static RandomAccessible<UnsignedLongType> constantMask()
+	{
+		return ConstantUtils.constantRandomAccessible(new UnsignedLongType(Label.INVALID), DIMENSIONS.length);
+	}
+
+	/**
+	 * Same as the data {@link PickOne.PickAndConvert} of {@link Masks#fromIntegerType}.
+	 */
+	private static PickOneAllIntegerTypes<UnsignedLongType, UnsignedLongType> pickAndConvert()
+	{
+		return new PickOneAllIntegerTypes<>(
+				l -> Label.regular(l.getIntegerLong()),
+				(l1, l2) -> l2.getIntegerLong() != Label.TRANSPARENT && Label.regular(l1.getIntegerLong()),
+				new UnsignedLongType());
+	}
+
+	/**
+	 * Paint random labels into about half of the voxels of each of {@code cells}.
+	 */
+	private static void paint(
+			final RandomAccessibleInterval<UnsignedLongType> canvas,
+			final TLongHashSet cells,
+			final Random random)
+	{
+		final long[]                   position     = new long[GRID.numDimensions()];
+		final long[]                   cellPosition = new long[GRID.numDimensions()];
+		final Cursor<UnsignedLongType> cursor       = Views.flatIterable(canvas).localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			cursor.localize(position);
+			GRID.getCellPosition(position, cellPosition);
+			final long cell = IntervalIndexer.positionToIndex(cellPosition, GRID.getGridDimensions());
+			if (cells.contains(cell) && random.nextBoolean())
+				cursor.get().set(10 + random.nextInt(5));
+		}
+	}
+
+	/**
+	 * Compare in flat iteration order, i.e. through moves of a single access.
+	 */
+	private static void assertEquals(
+			final RandomAccessibleInterval<UnsignedLongType> expected,
+			final RandomAccessibleInterval<UnsignedLongType> actual)
+	{
+		final Cursor<UnsignedLongType> e = Views.flatIterable(expected).cursor();
+		final Cursor<UnsignedLongType> a = Views.flatIterable(actual).cursor();
+		while (e.hasNext())
+		{
+			Assert.assertEquals(e.next().getIntegerLong(), a.next().getIntegerLong());
+		}
+	}
+
+	/**
+	 * Compare at random positions, i.e. through {@code setPosition} of a long lived access.
+	 */
+	private static void assertEquals(
+			final RandomAccessibleInterval<UnsignedLongType> expected,
+			final RandomAccess<UnsignedLongType> access,
+			final Random random)
+	{
+		final RandomAccess<UnsignedLongType> expectedAccess = expected.randomAccess();
+		final long[]                         position       = new long[DIMENSIONS.length];
+		for (int i = 0; i < 1000; ++i)
+		{
+			for (int d = 0; d < position.length; ++d)
+			{
+				position[d] = random.nextInt((int) DIMENSIONS[d]);
+			}
+			expectedAccess.setPosition(position);
+			access.setPosition(position);
+			Assert.assertEquals(expectedAccess.get().getIntegerLong(), access.get().getIntegerLong());
+		}
+	}
+
+}
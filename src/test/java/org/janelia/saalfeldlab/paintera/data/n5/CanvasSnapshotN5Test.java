@@ -0,0 +1,95 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CanvasSnapshotN5Test
+{
+
+	private static final CellGrid GRID = new CellGrid(new long[] {4, 4, 4}, new int[] {2, 2, 2});
+
+	@Test
+	public void testMergeWithPrevious() throws IOException
+	{
+		final N5Writer n5 = new N5FSWriter(Files.createTempDirectory("canvas-snapshot").toString());
+
+		// previous session painted 1 into block 0 and 2 into block 1
+		final ArrayImg<UnsignedLongType, LongArray> previous = invalidCanvas();
+		set(previous, 0, 0, 0, 1);
+		set(previous, 2, 0, 0, 2);
+		CanvasSnapshotN5.write(n5, "previous", previous, GRID, new long[] {0, 1}, 5, null);
+
+		// this session painted 3 into block 0 and 4 into block 7
+		final ArrayImg<UnsignedLongType, LongArray> canvas = invalidCanvas();
+		set(canvas, 0, 0, 0, 3);
+		set(canvas, 3, 3, 3, 4);
+		CanvasSnapshotN5.write(n5, "current", canvas, GRID, new long[] {0, 7}, 5, "previous");
+
+		Assert.assertEquals(5, CanvasSnapshotN5.baseCommitCount(n5, "current"));
+		final long[] blocks = CanvasSnapshotN5.blocks(n5, "current");
+		Arrays.sort(blocks);
+		Assert.assertArrayEquals(new long[] {0, 1, 7}, blocks);
+
+		final RandomAccess<UnsignedLongType> access = CanvasSnapshotN5.open(n5, "current").randomAccess();
+		Assert.assertEquals(3, get(access, 0, 0, 0));
+		Assert.assertEquals(2, get(access, 2, 0, 0));
+		Assert.assertEquals(4, get(access, 3, 3, 3));
+		Assert.assertEquals(Label.INVALID, get(access, 1, 1, 1));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMergeWithDifferentBaseCommit() throws IOException
+	{
+		final N5Writer n5 = new N5FSWriter(Files.createTempDirectory("canvas-snapshot").toString());
+		CanvasSnapshotN5.write(n5, "previous", invalidCanvas(), GRID, new long[] {0}, 5, null);
+		CanvasSnapshotN5.write(n5, "current", invalidCanvas(), GRID, new long[] {0}, 6, "previous");
+	}
+
+	@Test
+	public void testMissingSnapshot() throws IOException
+	{
+		final N5Writer n5 = new N5FSWriter(Files.createTempDirectory("canvas-snapshot").toString());
+		Assert.assertEquals(-1, CanvasSnapshotN5.baseCommitCount(n5, "missing"));
+		Assert.assertArrayEquals(new long[] {}, CanvasSnapshotN5.blocks(n5, "missing"));
+	}
+
+	private static ArrayImg<UnsignedLongType, LongArray> invalidCanvas()
+	{
+		final ArrayImg<UnsignedLongType, LongArray> canvas = ArrayImgs.unsignedLongs(4, 4, 4);
+		Views.iterable(canvas).forEach(p -> p.set(Label.INVALID));
+		return canvas;
+	}
+
+	private static void set(
+			final ArrayImg<UnsignedLongType, LongArray> canvas,
+			final long x,
+			final long y,
+			final long z,
+			final long value)
+	{
+		final RandomAccess<UnsignedLongType> access = canvas.randomAccess();
+		access.setPosition(new long[] {x, y, z});
+		access.get().set(value);
+	}
+
+	private static long get(final RandomAccess<UnsignedLongType> access, final long x, final long y, final long z)
+	{
+		access.setPosition(new long[] {x, y, z});
+		return access.get().get();
+	}
+
+}
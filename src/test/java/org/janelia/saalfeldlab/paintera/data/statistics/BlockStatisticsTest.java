@@ -0,0 +1,56 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockStatisticsTest
+{
+
+	@Test
+	public void testComputeAndMerge()
+	{
+		final ArrayImg<DoubleType, DoubleArray> values1 = ArrayImgs.doubles(new double[] {0.0, 1.0, 2.0, 3.0}, 4);
+		// outside of the histogram range: counted in the first and last bin
+		final ArrayImg<DoubleType, DoubleArray> values2 = ArrayImgs.doubles(new double[] {-1.0, 5.0}, 2);
+
+		final BlockStatistics s1 = BlockStatistics.compute(values1, 4, 0.0, 4.0);
+		final BlockStatistics s2 = BlockStatistics.compute(values2, 4, 0.0, 4.0);
+		Assert.assertEquals(0.0, s1.min(), 0.0);
+		Assert.assertEquals(3.0, s1.max(), 0.0);
+		Assert.assertArrayEquals(new long[] {1, 1, 1, 1}, counts(s1));
+
+		final BlockStatistics merged = s1.merge(s2);
+		Assert.assertEquals(-1.0, merged.min(), 0.0);
+		Assert.assertEquals(5.0, merged.max(), 0.0);
+		Assert.assertEquals(6, merged.count());
+		Assert.assertArrayEquals(new long[] {2, 1, 1, 2}, counts(merged));
+
+		Assert.assertTrue(BlockStatistics.empty(4, 0.0, 4.0).merge(s1).merge(s2).toString().equals(merged.toString()));
+	}
+
+	@Test
+	public void testQuantile()
+	{
+		final double[] data = new double[100];
+		for (int i = 0; i < data.length; ++i)
+			data[i] = i;
+		final BlockStatistics s = BlockStatistics.compute(ArrayImgs.doubles(data, data.length), 10, 0.0, 100.0);
+		Assert.assertEquals(0.0, s.quantile(0.0), 0.0);
+		Assert.assertEquals(50.0, s.quantile(0.5), 1e-9);
+		Assert.assertEquals(99.0, s.quantile(1.0), 0.0);
+		Assert.assertTrue(Double.isNaN(BlockStatistics.empty(10, 0.0, 100.0).quantile(0.5)));
+	}
+
+	private static long[] counts(final BlockStatistics statistics)
+	{
+		final long[] counts = new long[statistics.numBins()];
+		for (int bin = 0; bin < counts.length; ++bin)
+			counts[bin] = statistics.count(bin);
+		return counts;
+	}
+
+}
@@ -0,0 +1,93 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import net.imglib2.img.cell.CellGrid;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.paintera.N5Helpers;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatisticsPyramidN5Test
+{
+
+	// more blocks than fit into a single chunk of the statistics dataset
+	private static final CellGrid GRID = new CellGrid(new long[] {68, 64, 64}, new int[] {4, 4, 4});
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		final String                directory  = Files.createTempDirectory("statistics").toString();
+		final StatisticsPyramidN5   store      = new StatisticsPyramidN5(new N5FSMeta(directory, "raw"));
+		final BlockStatistics[]     statistics = statistics(GRID, 4);
+		new N5FSWriter(directory).createGroup("raw");
+
+		Assert.assertFalse(store.read(0, GRID, 4).isPresent());
+		store.write(0, GRID, statistics);
+
+		final Optional<BlockStatistics[]> read = store.read(0, GRID, 4);
+		Assert.assertTrue(read.isPresent());
+		Assert.assertEquals(statistics.length, read.get().length);
+		for (int block = 0; block < statistics.length; ++block)
+		{
+			assertEquals(statistics[block], read.get()[block]);
+		}
+
+		// other levels, grids and bins are not compatible
+		Assert.assertFalse(store.read(1, GRID, 4).isPresent());
+		Assert.assertFalse(store.read(0, new CellGrid(new long[] {68, 64, 64}, new int[] {4, 4, 8}), 4).isPresent());
+		Assert.assertFalse(store.read(0, new CellGrid(new long[] {64, 64, 64}, new int[] {4, 4, 4}), 4).isPresent());
+		Assert.assertFalse(store.read(0, GRID, 8).isPresent());
+	}
+
+	@Test
+	public void testRequiresPermission() throws IOException
+	{
+		final String     directory = Files.createTempDirectory("statistics").toString();
+		final N5FSWriter n5        = new N5FSWriter(directory);
+		n5.createGroup("raw");
+		n5.createGroup("paintera");
+		n5.setAttribute("paintera", N5Helpers.PAINTERA_DATA_KEY, "{}");
+
+		final StatisticsPyramidN5 foreign  = new StatisticsPyramidN5(new N5FSMeta(directory, "raw"));
+		final StatisticsPyramidN5 paintera = new StatisticsPyramidN5(new N5FSMeta(directory, "paintera"));
+		Assert.assertTrue(foreign.requiresPermission());
+		Assert.assertFalse(paintera.requiresPermission());
+
+		final CellGrid grid = new CellGrid(new long[] {4, 4, 4}, new int[] {2, 2, 2});
+		foreign.write(0, grid, statistics(grid, 4));
+		paintera.write(0, grid, statistics(grid, 4));
+		Assert.assertTrue(n5.datasetExists("raw" + StatisticsPyramidN5.STATISTICS_SUFFIX + "/s0"));
+		Assert.assertTrue(n5.datasetExists("paintera/" + StatisticsPyramidN5.STATISTICS_GROUP + "/s0"));
+	}
+
+	private static BlockStatistics[] statistics(final CellGrid grid, final int numBins)
+	{
+		final BlockStatistics[] statistics = new BlockStatistics[(int) (grid.getGridDimensions()[0] * grid
+				.getGridDimensions()[1] * grid.getGridDimensions()[2])];
+		for (int block = 0; block < statistics.length; ++block)
+		{
+			final long[] histogram = new long[numBins];
+			histogram[block % numBins] = block;
+			statistics[block] = new BlockStatistics(-block, block, -1.0, 1.0, histogram);
+		}
+		return statistics;
+	}
+
+	private static void assertEquals(final BlockStatistics expected, final BlockStatistics actual)
+	{
+		Assert.assertEquals(expected.min(), actual.min(), 0.0);
+		Assert.assertEquals(expected.max(), actual.max(), 0.0);
+		Assert.assertEquals(expected.histogramMin(), actual.histogramMin(), 0.0);
+		Assert.assertEquals(expected.histogramMax(), actual.histogramMax(), 0.0);
+		Assert.assertEquals(expected.numBins(), actual.numBins());
+		for (int bin = 0; bin < expected.numBins(); ++bin)
+		{
+			Assert.assertEquals(expected.count(bin), actual.count(bin));
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.janelia.saalfeldlab.paintera.data.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatisticsPyramidTest
+{
+
+	@Test
+	public void testStatisticsInInterval()
+	{
+		final StatisticsPyramid<DoubleType> pyramid = new StatisticsPyramid<>(source(), 8, null, Long.MAX_VALUE);
+		final List<Integer>                 levels  = new ArrayList<>();
+		pyramid.computeAll(() -> false, levels::add);
+		Assert.assertEquals(2, levels.size());
+		Assert.assertEquals(1, (int) levels.get(0));
+		Assert.assertEquals(0, (int) levels.get(1));
+
+		// s0 has value x in blocks of size 4: an interval within the first block only covers x in [0, 3]
+		final BlockStatistics firstBlock = pyramid.statistics(0, new FinalInterval(new long[] {1, 0, 0}, new long[]
+				{2, 7, 7})).get();
+		Assert.assertEquals(0.0, firstBlock.min(), 0.0);
+		Assert.assertEquals(3.0, firstBlock.max(), 0.0);
+		Assert.assertEquals(4 * 8 * 8, firstBlock.count());
+
+		// an interval that straddles the block boundary covers both blocks along x
+		final BlockStatistics bothBlocks = pyramid.statistics(0, new FinalInterval(new long[] {3, 0, 0}, new long[]
+				{4, 0, 0})).get();
+		Assert.assertEquals(0.0, bothBlocks.min(), 0.0);
+		Assert.assertEquals(7.0, bothBlocks.max(), 0.0);
+
+		// intervals are clipped to the data
+		Assert.assertEquals(512, pyramid.statistics(0, new FinalInterval(new long[] {-5, -5, -5}, new long[] {20,
+				20, 20})).get().count());
+		Assert.assertTrue(pyramid.statistics(0, new FinalInterval(new long[] {8, 0, 0}, new long[] {9, 1, 1})).get()
+				.isEmpty());
+
+		// whole dataset at the finest level
+		final BlockStatistics whole = pyramid.statistics().get();
+		Assert.assertEquals(0.0, whole.min(), 0.0);
+		Assert.assertEquals(7.0, whole.max(), 0.0);
+		Assert.assertEquals(512, whole.count());
+	}
+
+	@Test
+	public void testBoundedLevels()
+	{
+		// s1 has 1 block, s0 has 8 blocks: only the coarsest level fits the bound
+		final StatisticsPyramid<DoubleType> pyramid = new StatisticsPyramid<>(source(), 8, null, 4);
+		final List<Integer>                 levels  = new ArrayList<>();
+		pyramid.computeAll(() -> false, levels::add);
+		Assert.assertEquals(1, levels.size());
+		Assert.assertEquals(1, (int) levels.get(0));
+		Assert.assertFalse(pyramid.statistics(0, new FinalInterval(8, 8, 8)).isPresent());
+		Assert.assertEquals(64, pyramid.statistics().get().count());
+	}
+
+	@Test
+	public void testWritePermission()
+	{
+		final RecordingStore store = new RecordingStore(true);
+		new StatisticsPyramid<>(source(), 8, store, Long.MAX_VALUE).computeAll(() -> false, level -> {});
+		Assert.assertEquals(0, store.written.size());
+
+		final RecordingStore permitted = new RecordingStore(true);
+		new StatisticsPyramid<>(source(), 8, permitted, Long.MAX_VALUE).computeAll(() -> true, level -> {});
+		Assert.assertEquals(2, permitted.written.size());
+
+		// never asked if the store does not require permission
+		final RecordingStore painteraStore = new RecordingStore(false);
+		new StatisticsPyramid<>(source(), 8, painteraStore, Long.MAX_VALUE).computeAll(
+				() -> {
+					throw new AssertionError("Asked for permission");
+				},
+				level -> {});
+		Assert.assertEquals(2, painteraStore.written.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static RandomAccessibleIntervalDataSource<DoubleType, DoubleType> source()
+	{
+		final AffineTransform3D s1Transform = new AffineTransform3D();
+		s1Transform.scale(2.0);
+		final RandomAccessibleInterval<DoubleType>[] data = new RandomAccessibleInterval[] {
+				img(8, 1.0),
+				img(4, 2.0)
+		};
+		return new RandomAccessibleIntervalDataSource<>(
+				data,
+				data,
+				new AffineTransform3D[] {new AffineTransform3D(), s1Transform},
+				i -> new NearestNeighborInterpolatorFactory<>(),
+				i -> new NearestNeighborInterpolatorFactory<>(),
+				"source"
+		);
+	}
+
+	private static CellImg<DoubleType, ?> img(final long size, final double scale)
+	{
+		final CellImg<DoubleType, ?> img    = new CellImgFactory<>(new DoubleType(), 4).create(size, size, size);
+		final Cursor<DoubleType>     cursor = img.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			cursor.get().set(cursor.getDoublePosition(0) * scale);
+		}
+		return img;
+	}
+
+	private static class RecordingStore implements StatisticsPyramid.Store
+	{
+
+		private final boolean requiresPermission;
+
+		private final List<Integer> written = new ArrayList<>();
+
+		private RecordingStore(final boolean requiresPermission)
+		{
+			this.requiresPermission = requiresPermission;
+		}
+
+		@Override
+		public Optional<BlockStatistics[]> read(final int level, final CellGrid grid, final int numBins)
+		{
+			return Optional.empty();
+		}
+
+		@Override
+		public void write(final int level, final CellGrid grid, final BlockStatistics[] statistics)
+		{
+			written.add(level);
+		}
+
+		@Override
+		public boolean requiresPermission()
+		{
+			return requiresPermission;
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockMeshChunksTest
+{
+
+	@Test
+	public void testComplete()
+	{
+		// blocks 0-3 and 4-7 form one chunk each, block 8 is alone in its chunk
+		final List<ShapeKey<Long>>  blocks = blocks(9);
+		final BlockMeshChunks<Long> chunks = new BlockMeshChunks<>(blocks);
+
+		final List<Pair<float[], float[]>> meshes = new ArrayList<>();
+		for (int block = 0; block < 3; ++block)
+		{
+			meshes.add(mesh(block));
+			Assert.assertNull(chunks.complete(blocks.get(block), meshes.get(block)));
+		}
+		meshes.add(mesh(3));
+		final BlockMeshChunks<Long>.Chunk chunk = chunks.complete(blocks.get(3), meshes.get(3));
+		Assert.assertNotNull(chunk);
+		Assert.assertEquals(blocks.subList(0, 4), chunk.blocks());
+		Assert.assertArrayEquals(new long[] {0, 0, 0}, chunk.key().min());
+		Assert.assertArrayEquals(new long[] {7, 1, 1}, chunk.key().max());
+		Assert.assertEquals(meshes, chunk.meshes());
+
+		// each chunk is returned at most once
+		Assert.assertNull(chunks.complete(blocks.get(3), meshes.get(3)));
+		Assert.assertNull(chunks.complete(blocks.get(0), meshes.get(0)));
+
+		// chunks of a single block are never returned
+		Assert.assertNull(chunks.complete(blocks.get(8), mesh(8)));
+
+		// unknown blocks
+		Assert.assertNull(chunks.complete(key(new long[] {100, 0, 0}, new long[] {101, 1, 1}), mesh(100)));
+	}
+
+	@Test
+	public void testFailedBlock()
+	{
+		final List<ShapeKey<Long>>  blocks = blocks(8);
+		final BlockMeshChunks<Long> chunks = new BlockMeshChunks<>(blocks);
+
+		// completed in any order, block 5 failed
+		Assert.assertNull(chunks.complete(blocks.get(7), mesh(7)));
+		Assert.assertNull(chunks.complete(blocks.get(5), null));
+		Assert.assertNull(chunks.complete(blocks.get(4), mesh(4)));
+		final BlockMeshChunks<Long>.Chunk chunk = chunks.complete(blocks.get(6), mesh(6));
+		Assert.assertNotNull(chunk);
+		Assert.assertEquals(blocks.subList(4, 8), chunk.blocks());
+
+		// meshes of the successful blocks, in block order
+		final List<Pair<float[], float[]>> meshes = chunk.meshes();
+		Assert.assertEquals(3, meshes.size());
+		Assert.assertEquals(4.0f, meshes.get(0).getA()[0], 0.0f);
+		Assert.assertEquals(6.0f, meshes.get(1).getA()[0], 0.0f);
+		Assert.assertEquals(7.0f, meshes.get(2).getA()[0], 0.0f);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final Pair<float[], float[]> merged = BlockMeshChunks.merge(Arrays.asList(
+				new ValuePair<>(new float[] {1, 2, 3}, new float[] {4, 5, 6}),
+				new ValuePair<>(new float[] {}, new float[] {}),
+				new ValuePair<>(new float[] {7, 8, 9, 10, 11, 12}, new float[] {13, 14, 15, 16, 17, 18})));
+		Assert.assertArrayEquals(new float[] {1, 2, 3, 7, 8, 9, 10, 11, 12}, merged.getA(), 0.0f);
+		Assert.assertArrayEquals(new float[] {4, 5, 6, 13, 14, 15, 16, 17, 18}, merged.getB(), 0.0f);
+
+		final Pair<float[], float[]> empty = BlockMeshChunks.merge(new ArrayList<>());
+		Assert.assertEquals(0, empty.getA().length);
+		Assert.assertEquals(0, empty.getB().length);
+	}
+
+	/**
+	 * @return {@code n} blocks of size 2 along the x axis
+	 */
+	private static List<ShapeKey<Long>> blocks(final int n)
+	{
+		final List<ShapeKey<Long>> blocks = new ArrayList<>();
+		for (int block = 0; block < n; ++block)
+		{
+			blocks.add(key(new long[] {2 * block, 0, 0}, new long[] {2 * block + 1, 1, 1}));
+		}
+		return blocks;
+	}
+
+	private static ShapeKey<Long> key(final long[] min, final long[] max)
+	{
+		return new ShapeKey<>(1L, 0, 0, 0.0, 0, min, max);
+	}
+
+	private static Pair<float[], float[]> mesh(final int block)
+	{
+		return new ValuePair<>(new float[] {block, 0, 0}, new float[] {0, 0, 1});
+	}
+
+}
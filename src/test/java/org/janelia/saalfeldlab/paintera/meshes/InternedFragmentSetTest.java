@@ -0,0 +1,53 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InternedFragmentSetTest
+{
+
+	@Test
+	public void testEquality()
+	{
+		final TLongHashSet        fragments = new TLongHashSet(new long[] {1, 2, 3});
+		final InternedFragmentSet interned  = new InternedFragmentSet(10, 0, fragments);
+
+		Assert.assertEquals(fragments.hashCode(), interned.hashCode());
+		Assert.assertEquals(fragments, interned);
+		Assert.assertEquals(interned, fragments);
+		Assert.assertEquals(interned, new InternedFragmentSet(11, 1, fragments));
+		Assert.assertNotEquals(interned, new InternedFragmentSet(10, 0, new TLongHashSet(new long[] {1, 2})));
+	}
+
+	@Test
+	public void testIteratorRemoveIsUnsupported()
+	{
+		final InternedFragmentSet interned = new InternedFragmentSet(10, 0, new TLongHashSet(new long[] {1, 2, 3}));
+		final TLongIterator       iterator = interned.iterator();
+		final TLongHashSet        iterated = new TLongHashSet();
+		while (iterator.hasNext())
+		{
+			iterated.add(iterator.next());
+		}
+		Assert.assertEquals(new TLongHashSet(new long[] {1, 2, 3}), iterated);
+
+		try
+		{
+			iterator.remove();
+			Assert.fail("Removed a fragment through the iterator.");
+		} catch (final UnsupportedOperationException e)
+		{
+			// expected
+		}
+		Assert.assertEquals(3, interned.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAddIsUnsupported()
+	{
+		new InternedFragmentSet(10, 0, new TLongHashSet(new long[] {1})).add(2);
+	}
+
+}
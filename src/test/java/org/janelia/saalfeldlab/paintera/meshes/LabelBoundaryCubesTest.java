@@ -0,0 +1,78 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Random;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class LabelBoundaryCubesTest
+{
+
+	@Test
+	public void testAgainstMarchingCubes()
+	{
+		// blocky random labels so that fragments form connected regions
+		final Random                                rnd    = new Random(100);
+		final ArrayImg<UnsignedLongType, LongArray> labels = ArrayImgs.unsignedLongs(24, 20, 16);
+		final long[][][]                            coarse = new long[6][5][4];
+		for (final long[][] plane : coarse)
+			for (final long[] row : plane)
+				for (int i = 0; i < row.length; ++i)
+					row[i] = rnd.nextInt(6);
+		final Cursor<UnsignedLongType> cursor = labels.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			final int x = cursor.getIntPosition(0) / 4;
+			final int y = cursor.getIntPosition(1) / 4;
+			final int z = cursor.getIntPosition(2) / 4;
+			cursor.get().set(coarse[x][y][z]);
+		}
+
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.set(1.0, 0, 0);
+		transform.set(2.0, 1, 1);
+		transform.set(3.0, 2, 2);
+		transform.set(5.0, 0, 3);
+
+		final int[]    cubeSize = {1, 1, 1};
+		final Interval block    = new FinalInterval(new long[] {3, 2, 1}, new long[] {18, 13, 10});
+
+		final LabelBoundaryCubes cubes = LabelBoundaryCubes.sample(
+				labels,
+				labels,
+				LabelBoundaryCubes.labelsForType(labels.firstElement()),
+				block,
+				cubeSize);
+
+		for (final long[] fragmentsArray : new long[][] {{0}, {1, 2}, {0, 3, 5}, {7}})
+		{
+			final TLongHashSet fragments = new TLongHashSet(fragmentsArray);
+			final PackedMask mask = MarchingCubes.sampleMask(
+					labels,
+					labels,
+					(s, t) -> t.set(fragments.contains(s.getIntegerLong())),
+					block,
+					cubeSize);
+			final float[] expected = new MarchingCubes<BoolType>(mask, transform, () -> false).generateMesh();
+			assertArrayEquals(expected, cubes.generateMesh(fragments, transform, () -> false), 0.0f);
+			for (final MeshExtraction extraction : MeshExtraction.values())
+				assertArrayEquals(
+						extraction.generateMesh(mask, transform, () -> false),
+						cubes.generateMesh(fragments, extraction, transform, () -> false),
+						0.0f);
+		}
+	}
+
+}
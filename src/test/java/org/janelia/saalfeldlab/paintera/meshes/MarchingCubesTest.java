@@ -0,0 +1,196 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gnu.trove.list.array.TFloatArrayList;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.Translation;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.SubsampleIntervalView;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MarchingCubesTest
+{
+
+	@Test
+	public void testAgainstReference()
+	{
+		// wider than 64 cubes along x, so that cubes span multiple words of the packed mask
+		final ArrayImg<BitType, LongArray> img       = blobs(150, 37, 29);
+		final RandomAccessible<BitType>    extended  = Views.extendZero(img);
+		final AffineTransform3D            transform = new AffineTransform3D();
+		transform.set(2.0, 0.1, 0.0, 3.0, 0.0, 1.5, 0.0, -4.0, 0.0, 0.0, 0.5, 7.0);
+
+		final Interval[] intervals = {
+				img,
+				new FinalInterval(new long[] {3, 5, 7}, new long[] {140, 30, 20}),
+				new FinalInterval(new long[] {64, 0, 0}, new long[] {127, 10, 10})};
+		final int[][] cubeSizes = {{1, 1, 1}, {2, 3, 1}, {4, 4, 4}};
+
+		for (final Interval interval : intervals)
+			for (final int[] cubeSize : cubeSizes)
+			{
+				final String  description = Arrays.toString(Intervals.minAsLongArray(interval)) + " " +
+						Arrays.toString(Intervals.maxAsLongArray(interval)) + " " + Arrays.toString(cubeSize);
+				final float[] expected    = reference(extended, interval, transform, cubeSize);
+				Assert.assertTrue(description, expected.length > 0);
+
+				final float[] fromView = new MarchingCubes<>(extended, interval, transform, cubeSize, () -> false)
+						.generateMesh();
+				Assert.assertArrayEquals(description, expected, fromView, 0.0f);
+
+				// as sampled by the mesh cache loaders, corners outside of the data are background
+				final PackedMask mask       = MarchingCubes.sampleMask(
+						img,
+						img,
+						(s, t) -> t.set(s.get()),
+						interval,
+						cubeSize);
+				final float[]    fromMask   = new MarchingCubes<BitType>(mask, transform, () -> false).generateMesh();
+				Assert.assertArrayEquals(description, expected, fromMask, 0.0f);
+			}
+	}
+
+	@Test
+	public void testEmptyAndFull()
+	{
+		final ArrayImg<BitType, LongArray> img      = ArrayImgs.bits(70, 5, 5);
+		final RandomAccessible<BitType>    extended = Views.extendZero(img);
+		final int[]                        cubeSize = {1, 1, 1};
+		Assert.assertEquals(0, new MarchingCubes<>(extended, img, new AffineTransform3D(), cubeSize, () -> false)
+				.generateMesh().length);
+
+		// only the faces of the image produce triangles
+		img.forEach(b -> b.set(true));
+		final float[] expected = reference(extended, img, new AffineTransform3D(), cubeSize);
+		Assert.assertTrue(expected.length > 0);
+		Assert.assertArrayEquals(
+				expected,
+				new MarchingCubes<>(extended, img, new AffineTransform3D(), cubeSize, () -> false).generateMesh(),
+				0.0f);
+	}
+
+	/**
+	 * Union of random balls and some isolated voxels.
+	 */
+	private static ArrayImg<BitType, LongArray> blobs(final long... dimensions)
+	{
+		final Random                       rng    = new Random(100);
+		final ArrayImg<BitType, LongArray> img    = ArrayImgs.bits(dimensions);
+		final double[][]                   balls  = new double[20][4];
+		for (final double[] ball : balls)
+		{
+			for (int d = 0; d < 3; ++d)
+				ball[d] = rng.nextDouble() * dimensions[d];
+			ball[3] = 2 + rng.nextDouble() * 8;
+		}
+		final Cursor<BitType> cursor = img.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			boolean foreground = rng.nextDouble() < 0.01;
+			for (final double[] ball : balls)
+			{
+				double distance = 0;
+				for (int d = 0; d < 3; ++d)
+				{
+					final double diff = cursor.getDoublePosition(d) - ball[d];
+					distance += diff * diff;
+				}
+				foreground |= distance <= ball[3] * ball[3];
+			}
+			cursor.get().set(foreground);
+		}
+		return img;
+	}
+
+	/**
+	 * Corner sampling of the marching cubes implementation before corners were packed into bits: eight cursors over
+	 * subsampled views of {@code input}. Triangulation and edge intersections are shared with {@link MarchingCubes}:
+	 * they did not change.
+	 */
+	private static <B extends BooleanType<B>> float[] reference(
+			final RandomAccessible<B> input,
+			final Interval interval,
+			final AffineTransform3D transform,
+			final int[] cubeSize)
+	{
+		final long[]                   stride           = Arrays.stream(cubeSize).mapToLong(i -> i).toArray();
+		final FinalInterval            expandedInterval = Intervals.expand(
+				interval,
+				Arrays.stream(stride).map(s -> s + 1).toArray());
+		final SubsampleIntervalView<B> subsampled       = Views.subsample(
+				Views.interval(input, expandedInterval),
+				stride);
+		final Cursor<B>                cursor0          = corners(subsampled, 0, 0, 0);
+		final Cursor<B>                cursor1          = corners(subsampled, 1, 0, 0);
+		final Cursor<B>                cursor2          = corners(subsampled, 0, 1, 0);
+		final Cursor<B>                cursor3          = corners(subsampled, 1, 1, 0);
+		final Cursor<B>                cursor4          = corners(subsampled, 0, 0, 1);
+		final Cursor<B>                cursor5          = corners(subsampled, 1, 0, 1);
+		final Cursor<B>                cursor6          = corners(subsampled, 0, 1, 1);
+		final Cursor<B>                cursor7          = corners(subsampled, 1, 1, 1);
+		final Translation              translation      = new Translation(Arrays.stream(Intervals.minAsLongArray(
+				expandedInterval)).mapToDouble(l -> l).toArray());
+
+		final TFloatArrayList vertices            = new TFloatArrayList();
+		final float[][]       interpolationPoints = new float[12][3];
+		while (cursor0.hasNext())
+		{
+			final int vertexValues =
+					(cursor5.next().get() ? 0b00000001 : 0) |
+							(cursor7.next().get() ? 0b00000010 : 0) |
+							(cursor3.next().get() ? 0b00000100 : 0) |
+							(cursor1.next().get() ? 0b00001000 : 0) |
+							(cursor4.next().get() ? 0b00010000 : 0) |
+							(cursor6.next().get() ? 0b00100000 : 0) |
+							(cursor2.next().get() ? 0b01000000 : 0) |
+							(cursor0.next().get() ? 0b10000000 : 0);
+			MarchingCubes.triangulation(
+					vertexValues,
+					cursor0.getLongPosition(0),
+					cursor0.getLongPosition(1),
+					cursor0.getLongPosition(2),
+					cubeSize,
+					vertices,
+					interpolationPoints);
+		}
+
+		final float[]  vertexArray = new float[vertices.size()];
+		final double[] p           = new double[3];
+		for (int i = 0; i < vertexArray.length; i += 3)
+		{
+			p[0] = vertices.get(i + 0);
+			p[1] = vertices.get(i + 1);
+			p[2] = vertices.get(i + 2);
+			translation.apply(p, p);
+			transform.apply(p, p);
+			vertexArray[i + 0] = (float) p[0];
+			vertexArray[i + 1] = (float) p[1];
+			vertexArray[i + 2] = (float) p[2];
+		}
+		return vertexArray;
+	}
+
+	private static <B> Cursor<B> corners(
+			final SubsampleIntervalView<B> subsampled,
+			final long x,
+			final long y,
+			final long z)
+	{
+		return Views.flatIterable(Views.interval(Views.offset(subsampled, x, y, z), subsampled)).localizingCursor();
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MergedSegmentMeshCacheTest
+{
+
+	private static final int BLOCK_SIZE = 4;
+
+	private static final TLongHashSet PART_1 = new TLongHashSet(new long[] {1});
+
+	private static final TLongHashSet PART_2 = new TLongHashSet(new long[] {2, 3});
+
+	private static final TLongHashSet MERGED = new TLongHashSet(new long[] {1, 2, 3});
+
+	private final Map<TLongHashSet, Interval[]> blockLists = new HashMap<>();
+
+	private final List<ShapeKey<TLongHashSet>> generated = new ArrayList<>();
+
+	private final List<ShapeKey<TLongHashSet>> generatedForPart1 = new ArrayList<>();
+
+	private final List<ShapeKey<TLongHashSet>> generatedForPart2 = new ArrayList<>();
+
+	@Test
+	public void testReuseBlocksWithoutOtherParts()
+	{
+		blockLists.put(PART_1, new Interval[] {block(0, 0, 0), block(1, 0, 0)});
+		blockLists.put(PART_2, new Interval[] {block(3, 0, 0), block(3, 1, 0)});
+		final MergedSegmentMeshCache cache = mergedCache();
+
+		cache.apply(key(MERGED, block(0, 0, 0)));
+		cache.apply(key(MERGED, block(1, 0, 0)));
+		cache.apply(key(MERGED, block(3, 1, 0)));
+		Assert.assertTrue(generated.isEmpty());
+		Assert.assertEquals(2, generatedForPart1.size());
+		Assert.assertEquals(1, generatedForPart2.size());
+		Assert.assertEquals(key(PART_1, block(0, 0, 0)), generatedForPart1.get(0));
+		Assert.assertEquals(key(PART_1, block(1, 0, 0)), generatedForPart1.get(1));
+		Assert.assertEquals(key(PART_2, block(3, 1, 0)), generatedForPart2.get(0));
+	}
+
+	@Test
+	public void testNoReuseNextToOtherPart()
+	{
+		// part 2 is painted into a block that touches a corner of the only block of part 1
+		blockLists.put(PART_1, new Interval[] {block(0, 0, 0)});
+		blockLists.put(PART_2, new Interval[] {block(1, 1, 1), block(2, 1, 1)});
+		final MergedSegmentMeshCache cache = mergedCache();
+
+		cache.apply(key(MERGED, block(0, 0, 0)));
+		cache.apply(key(MERGED, block(1, 1, 1)));
+		cache.apply(key(MERGED, block(2, 1, 1)));
+		Assert.assertEquals(2, generated.size());
+		Assert.assertEquals(key(MERGED, block(0, 0, 0)), generated.get(0));
+		Assert.assertEquals(key(MERGED, block(1, 1, 1)), generated.get(1));
+		Assert.assertTrue(generatedForPart1.isEmpty());
+		Assert.assertEquals(1, generatedForPart2.size());
+		Assert.assertEquals(key(PART_2, block(2, 1, 1)), generatedForPart2.get(0));
+	}
+
+	@Test
+	public void testNoReuseForBlocksOfMultipleParts()
+	{
+		blockLists.put(PART_1, new Interval[] {block(0, 0, 0)});
+		blockLists.put(PART_2, new Interval[] {block(0, 0, 0)});
+		mergedCache().apply(key(MERGED, block(0, 0, 0)));
+		Assert.assertEquals(1, generated.size());
+		Assert.assertTrue(generatedForPart1.isEmpty());
+		Assert.assertTrue(generatedForPart2.isEmpty());
+	}
+
+	@Test
+	public void testPartialBlocksAtBorder()
+	{
+		// blocks at the upper border of the data are smaller than the block size
+		blockLists.put(PART_1, new Interval[] {block(0, 0, 0), new FinalInterval(new long[] {4, 0, 0}, new long[] {5,
+				3, 3})});
+		blockLists.put(PART_2, new Interval[] {block(2, 0, 0)});
+		final MergedSegmentMeshCache cache = mergedCache();
+
+		cache.apply(key(MERGED, block(0, 0, 0)));
+		Assert.assertTrue(generated.isEmpty());
+		Assert.assertEquals(1, generatedForPart1.size());
+
+		cache.apply(key(MERGED, block(2, 0, 0)));
+		Assert.assertEquals(1, generated.size());
+	}
+
+	@Test
+	public void testOtherShapesArePassedThrough()
+	{
+		blockLists.put(PART_1, new Interval[] {block(0, 0, 0)});
+		blockLists.put(PART_2, new Interval[] {block(3, 0, 0)});
+		final MergedSegmentMeshCache cache = mergedCache();
+
+		cache.apply(key(PART_1, block(0, 0, 0)));
+		cache.apply(key(new TLongHashSet(new long[] {1, 2}), block(0, 0, 0)));
+		Assert.assertEquals(2, generated.size());
+		Assert.assertTrue(generatedForPart1.isEmpty());
+		Assert.assertTrue(generatedForPart2.isEmpty());
+	}
+
+	@SuppressWarnings("unchecked")
+	private MergedSegmentMeshCache mergedCache()
+	{
+		return new MergedSegmentMeshCache(
+				recording(generated),
+				InterruptibleFunction.fromFunction(blockLists::get),
+				MERGED,
+				new TLongHashSet[] {PART_1, PART_2},
+				new InterruptibleFunction[] {recording(generatedForPart1), recording(generatedForPart2)}
+		);
+	}
+
+	private static InterruptibleFunction<ShapeKey<TLongHashSet>, Pair<float[], float[]>> recording(
+			final List<ShapeKey<TLongHashSet>> keys)
+	{
+		return InterruptibleFunction.fromFunction(key -> {
+			keys.add(key);
+			return new ValuePair<>(new float[0], new float[0]);
+		});
+	}
+
+	private static ShapeKey<TLongHashSet> key(final TLongHashSet fragments, final Interval block)
+	{
+		final long[] min = new long[block.numDimensions()];
+		final long[] max = new long[block.numDimensions()];
+		block.min(min);
+		block.max(max);
+		return new ShapeKey<>(fragments, 0, 0, 0.0, 0, min, max);
+	}
+
+	private static Interval block(final long x, final long y, final long z)
+	{
+		return new FinalInterval(
+				new long[] {x * BLOCK_SIZE, y * BLOCK_SIZE, z * BLOCK_SIZE},
+				new long[] {x * BLOCK_SIZE + BLOCK_SIZE - 1, y * BLOCK_SIZE + BLOCK_SIZE - 1, z * BLOCK_SIZE +
+						BLOCK_SIZE - 1});
+	}
+
+}
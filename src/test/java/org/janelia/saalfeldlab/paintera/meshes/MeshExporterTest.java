@@ -0,0 +1,225 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MeshExporterTest
+{
+
+	@Test
+	public void testMaxBlocksInFlight()
+	{
+		final int        numBlocks         = 50;
+		final int        maxBlocksInFlight = 3;
+		final Interval[] blocks            = new Interval[numBlocks];
+		for (int block = 0; block < numBlocks; ++block)
+		{
+			blocks[block] = new FinalInterval(new long[] {block, 0, 0}, new long[] {block, 0, 0});
+		}
+
+		final AtomicInteger numGenerated = new AtomicInteger();
+		final AtomicInteger numAppended  = new AtomicInteger();
+		final AtomicInteger maxAhead     = new AtomicInteger();
+		final List<Float>   appended     = new ArrayList<>();
+
+		final Function<Long, Interval[]>                       blockList = id -> blocks;
+		final Function<ShapeKey<Long>, Pair<float[], float[]>> mesh      = key -> {
+			numGenerated.incrementAndGet();
+			// one triangle per block, identified by its first coordinate
+			final float[] vertices = new float[9];
+			vertices[0] = key.min()[0];
+			return new ValuePair<>(vertices, new float[9]);
+		};
+		@SuppressWarnings("unchecked") final Function<Long, Interval[]>[]                       blockLists = new
+				Function[] {blockList};
+		@SuppressWarnings("unchecked") final Function<ShapeKey<Long>, Pair<float[], float[]>>[] meshes     = new
+				Function[] {mesh};
+
+		final MeshExporter<Long> exporter = new MeshExporter<Long>()
+		{
+			@Override
+			protected void setProgress(final double progress)
+			{
+			}
+
+			@Override
+			protected MeshWriter createWriter(final String path, final String id)
+			{
+				return new MeshWriter()
+				{
+					@Override
+					public void append(final float[] vertices, final float[] normals)
+					{
+						maxAhead.accumulateAndGet(numGenerated.get() - numAppended.get(), Math::max);
+						numAppended.incrementAndGet();
+						appended.add(vertices[0]);
+					}
+
+					@Override
+					public void close()
+					{
+					}
+				};
+			}
+		};
+		exporter.setMaxBlocksInFlight(maxBlocksInFlight);
+
+		final ExecutorService workers = Executors.newFixedThreadPool(8);
+		exporter.exportMesh(workers, blockLists, meshes, 1L, 0, "mesh");
+		workers.shutdown();
+
+		Assert.assertEquals(numBlocks, numGenerated.get());
+		Assert.assertEquals(numBlocks, appended.size());
+		Assert.assertEquals(numBlocks, appended.stream().distinct().count());
+		Assert.assertTrue(maxAhead.get() <= maxBlocksInFlight);
+	}
+
+	@Test
+	public void testPlyRoundTrip() throws IOException
+	{
+		// grid of unit squares in the xy-plane, one square of two triangles per block: vertices are shared across
+		// blocks and there are more of them than the initial capacity of VertexIndexMap
+		final int              size     = 40;
+		final Interval[]       blocks   = new Interval[size * size];
+		final Set<List<Float>> expected = new HashSet<>();
+		for (int x = 0, block = 0; x < size; ++x)
+		{
+			for (int y = 0; y < size; ++y, ++block)
+			{
+				blocks[block] = new FinalInterval(new long[] {x, y, 0}, new long[] {x, y, 0});
+				for (final float[] triangle : square(x, y))
+				{
+					expected.add(asList(triangle));
+				}
+			}
+		}
+
+		final Function<Long, Interval[]>                       blockList = id -> blocks;
+		final Function<ShapeKey<Long>, Pair<float[], float[]>> mesh      = key -> {
+			final float[][] triangles = square(key.min()[0], key.min()[1]);
+			final float[]   vertices  = new float[18];
+			final float[]   normals   = new float[18];
+			System.arraycopy(triangles[0], 0, vertices, 0, 9);
+			System.arraycopy(triangles[1], 0, vertices, 9, 9);
+			for (int k = 2; k < normals.length; k += 3)
+			{
+				normals[k] = 1.0f;
+			}
+			return new ValuePair<>(vertices, normals);
+		};
+		@SuppressWarnings("unchecked") final Function<Long, Interval[]>[]                       blockLists = new
+				Function[] {blockList};
+		@SuppressWarnings("unchecked") final Function<ShapeKey<Long>, Pair<float[], float[]>>[] meshes     = new
+				Function[] {mesh};
+
+		final MeshExporter<Long> exporter = new MeshExporterPly<Long>()
+		{
+			@Override
+			protected void setProgress(final double progress)
+			{
+			}
+		};
+		final Path            directory = Files.createTempDirectory("mesh-exporter");
+		final Path            ply       = directory.resolve("mesh.ply");
+		final ExecutorService workers   = Executors.newFixedThreadPool(4);
+		try
+		{
+			exporter.exportMesh(workers, blockLists, meshes, 1L, 0, directory.resolve("mesh").toString());
+
+			final byte[] bytes       = Files.readAllBytes(ply);
+			final String endHeader   = "end_header\n";
+			final String header      = new String(bytes, 0, Math.min(bytes.length, 1024), StandardCharsets.US_ASCII);
+			final int    offset      = header.indexOf(endHeader) + endHeader.length();
+			final int    numVertices = count(header, "element vertex");
+			final int    numFaces    = count(header, "element face");
+			Assert.assertEquals((size + 1) * (size + 1), numVertices);
+			Assert.assertEquals(2 * size * size, numFaces);
+
+			final ByteBuffer buffer   = ByteBuffer.wrap(bytes, offset, bytes.length - offset).order(ByteOrder
+					.LITTLE_ENDIAN);
+			final float[]    vertices = new float[3 * numVertices];
+			for (int index = 0; index < numVertices; ++index)
+			{
+				vertices[3 * index] = buffer.getFloat();
+				vertices[3 * index + 1] = buffer.getFloat();
+				vertices[3 * index + 2] = buffer.getFloat();
+				Assert.assertEquals(0.0f, buffer.getFloat(), 0.0f);
+				Assert.assertEquals(0.0f, buffer.getFloat(), 0.0f);
+				Assert.assertEquals(1.0f, buffer.getFloat(), 0.0f);
+			}
+
+			final Set<List<Float>> actual = new HashSet<>();
+			for (int face = 0; face < numFaces; ++face)
+			{
+				Assert.assertEquals(3, buffer.get());
+				final float[] triangle = new float[9];
+				for (int corner = 0; corner < 3; ++corner)
+				{
+					System.arraycopy(vertices, 3 * buffer.getInt(), triangle, 3 * corner, 3);
+				}
+				actual.add(asList(triangle));
+			}
+			Assert.assertFalse(buffer.hasRemaining());
+			Assert.assertEquals(expected, actual);
+		} finally
+		{
+			workers.shutdown();
+			Files.deleteIfExists(ply);
+			Files.delete(directory);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoBlocksInFlight()
+	{
+		new MeshExporterObj<Long>().setMaxBlocksInFlight(0);
+	}
+
+	private static float[][] square(final long x, final long y)
+	{
+		return new float[][] {
+				{x, y, 0, x + 1, y, 0, x, y + 1, 0},
+				{x + 1, y, 0, x + 1, y + 1, 0, x, y + 1, 0}
+		};
+	}
+
+	private static List<Float> asList(final float[] values)
+	{
+		final List<Float> list = new ArrayList<>();
+		for (final float value : values)
+		{
+			list.add(value);
+		}
+		return list;
+	}
+
+	private static int count(final String header, final String element)
+	{
+		for (final String line : header.split("\n"))
+		{
+			if (line.startsWith(element))
+				return Integer.parseInt(line.substring(element.length()).trim());
+		}
+		throw new IllegalArgumentException("No " + element + " in header " + header);
+	}
+
+}
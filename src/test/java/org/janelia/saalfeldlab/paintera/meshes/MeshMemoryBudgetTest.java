@@ -0,0 +1,149 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MeshMemoryBudgetTest
+{
+
+	@Test
+	public void testAccounting()
+	{
+		final MeshMemoryBudget budget = new MeshMemoryBudget(Long.MAX_VALUE, Runnable::run);
+		final MeshView         mesh1  = mesh(1);
+		final MeshView         mesh2  = mesh(2);
+		final long             size1  = MeshMemoryBudget.sizeInBytes(mesh1);
+		final long             size2  = MeshMemoryBudget.sizeInBytes(mesh2);
+		Assert.assertEquals(4 * (9 + 2) + 4 * 6, size1);
+		Assert.assertEquals(2 * size1, size2);
+
+		budget.register(mesh1, new SimpleBooleanProperty(true), () -> Assert.fail("Evicted mesh 1"));
+		budget.register(mesh2, new SimpleBooleanProperty(true), () -> Assert.fail("Evicted mesh 2"));
+		Assert.assertEquals(size1 + size2, budget.usageProperty().get());
+
+		// registering the same mesh again does not count it twice
+		budget.register(mesh1, new SimpleBooleanProperty(true), () -> Assert.fail("Evicted mesh 1"));
+		Assert.assertEquals(size1 + size2, budget.usageProperty().get());
+
+		budget.release(mesh1);
+		Assert.assertEquals(size2, budget.usageProperty().get());
+		budget.release(mesh1);
+		Assert.assertEquals(size2, budget.usageProperty().get());
+		budget.release(mesh2);
+		Assert.assertEquals(0, budget.usageProperty().get());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyShown()
+	{
+		final MeshMemoryBudget  budget  = new MeshMemoryBudget(Long.MAX_VALUE, Runnable::run);
+		final List<MeshView>    evicted = new ArrayList<>();
+		final MeshView[]        meshes  = {mesh(1), mesh(1), mesh(1), mesh(1)};
+		final BooleanProperty[] shown   = new BooleanProperty[meshes.length];
+		for (int i = 0; i < meshes.length; ++i)
+		{
+			final MeshView mesh = meshes[i];
+			shown[i] = new SimpleBooleanProperty(true);
+			budget.register(mesh, shown[i], () -> evicted.add(mesh));
+		}
+		final long size = MeshMemoryBudget.sizeInBytes(meshes[0]);
+
+		// hidden in the order 2, 0, 1, mesh 3 stays shown
+		shown[2].set(false);
+		budget.enforce();
+		shown[0].set(false);
+		budget.enforce();
+		shown[1].set(false);
+		budget.enforce();
+		Assert.assertTrue(evicted.isEmpty());
+
+		budget.budgetProperty().set(3 * size);
+		Assert.assertEquals(Arrays.asList(meshes[2]), evicted);
+		Assert.assertEquals(3 * size, budget.usageProperty().get());
+
+		// shown meshes are never evicted, even if that exceeds the budget
+		budget.budgetProperty().set(0);
+		Assert.assertEquals(Arrays.asList(meshes[2], meshes[0], meshes[1]), evicted);
+		Assert.assertEquals(size, budget.usageProperty().get());
+
+		// evicted meshes are not tracked anymore
+		budget.release(meshes[0]);
+		Assert.assertEquals(size, budget.usageProperty().get());
+	}
+
+	@Test
+	public void testEvictReplacedMesh()
+	{
+		final MeshMemoryBudget    budget     = new MeshMemoryBudget(0, Runnable::run);
+		final Map<Long, MeshView> meshes     = new HashMap<>();
+		final BooleanProperty     isShown    = new SimpleBooleanProperty(true);
+		final boolean[]           wasEvicted = {false};
+		final Runnable            onEvict    = () -> wasEvicted[0] = true;
+		final MeshView            outdated   = mesh(1);
+		final MeshView            current    = mesh(1);
+
+		meshes.put(1L, outdated);
+		budget.register(outdated, isShown, MeshGenerator.evictIfCurrent(meshes, 1L, outdated, onEvict));
+		meshes.put(1L, current);
+		budget.register(current, isShown, MeshGenerator.evictIfCurrent(meshes, 1L, current, onEvict));
+
+		// evicting the outdated mesh does not remove the current mesh for the same block
+		isShown.set(false);
+		budget.release(current);
+		Assert.assertFalse(wasEvicted[0]);
+		Assert.assertSame(current, meshes.get(1L));
+
+		// evicted meshes stay in place, only their geometry is replaced
+		budget.register(current, isShown, MeshGenerator.evictIfCurrent(meshes, 1L, current, onEvict));
+		Assert.assertTrue(wasEvicted[0]);
+		Assert.assertSame(current, meshes.get(1L));
+	}
+
+	@Test
+	public void testPlaceholder()
+	{
+		final TriangleMesh mesh = new TriangleMesh();
+		mesh.getPoints().addAll(0, 0, 0, 1, 0, 0, 0, 1, 0);
+		mesh.getPoints().addAll(-1, 2, 3, 4, 5, -6, 0, 0, 2);
+		mesh.getTexCoords().addAll(0, 0);
+		mesh.getFaces().addAll(0, 0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0);
+
+		final TriangleMesh placeholder = MeshGenerator.placeholder(mesh);
+		Assert.assertArrayEquals(
+				new float[] {-1, 0, -6, 4, 5, 3, 4, 5, 3},
+				placeholder.getPoints().toArray(null),
+				0.0f);
+		Assert.assertEquals(1, placeholder.getFaces().size() / 6);
+		Assert.assertTrue(
+				MeshMemoryBudget.sizeInBytes(new MeshView(placeholder)) <
+						MeshMemoryBudget.sizeInBytes(new MeshView(mesh)));
+
+		Assert.assertEquals(0, MeshGenerator.placeholder(new TriangleMesh()).getPoints().size());
+	}
+
+	/**
+	 * @return mesh of {@code numTriangles} triangles with texture coordinates and without normals
+	 */
+	private static MeshView mesh(final int numTriangles)
+	{
+		final TriangleMesh mesh = new TriangleMesh();
+		for (int triangle = 0; triangle < numTriangles; ++triangle)
+		{
+			mesh.getPoints().addAll(0, 0, 0, 1, 0, 0, 0, 1, 0);
+			mesh.getTexCoords().addAll(0, 0);
+			mesh.getFaces().addAll(0, 0, 1, 0, 2, 0);
+		}
+		return new MeshView(mesh);
+	}
+
+}
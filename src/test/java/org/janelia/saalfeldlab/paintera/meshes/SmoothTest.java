@@ -0,0 +1,131 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import net.imglib2.util.Triple;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SmoothTest
+{
+
+	private static final int N = 20;
+
+	private static float[] triangles;
+
+	@BeforeClass
+	public static void setUpBeforeClass()
+	{
+		triangles = heightField(N);
+	}
+
+	/**
+	 * @return noisy height field on a regular {@code n} x {@code n} grid: open surface with boundary and interior
+	 * vertices
+	 */
+	private static float[] heightField(final int n)
+	{
+		final Random    rnd     = new Random(100);
+		final float[][] heights = new float[n][n];
+		for (int x = 0; x < n; ++x)
+			for (int y = 0; y < n; ++y)
+				heights[x][y] = rnd.nextFloat();
+
+		final TFloatArrayList list = new TFloatArrayList();
+		for (int x = 0; x < n - 1; ++x)
+			for (int y = 0; y < n - 1; ++y)
+			{
+				addVertex(list, x, y, heights);
+				addVertex(list, x + 1, y, heights);
+				addVertex(list, x, y + 1, heights);
+				addVertex(list, x + 1, y, heights);
+				addVertex(list, x + 1, y + 1, heights);
+				addVertex(list, x, y + 1, heights);
+			}
+		return list.toArray();
+	}
+
+	private static void addVertex(final TFloatArrayList list, final int x, final int y, final float[][] heights)
+	{
+		list.add(x);
+		list.add(y);
+		list.add(heights[x][y]);
+	}
+
+	@Test
+	public void testAgainstLUT()
+	{
+		final double lambda     = 0.5;
+		final int    iterations = 3;
+		assertArrayEquals(smoothWithLUT(triangles, lambda, iterations), Smooth.smooth(triangles, lambda, iterations),
+				1e-5f);
+	}
+
+	@Test
+	public void testParallel()
+	{
+		// 200 x 200 = 40000 vertices, smoothed in parallel by default
+		final float[] large = heightField(200);
+		assertArrayEquals(
+				Smooth.smooth(large, 0.5, 3, Integer.MAX_VALUE),
+				Smooth.smooth(large, 0.5, 3),
+				0.0f);
+	}
+
+	@Test
+	public void testNoIterations()
+	{
+		assertArrayEquals(triangles, Smooth.smooth(triangles, 0.5, 0), 0.0f);
+	}
+
+	/**
+	 * Reference implementation based on the lookup tables created by {@link Convert}.
+	 */
+	private static float[] smoothWithLUT(final float[] vertices, final double lambda, final int iterations)
+	{
+		final Triple<TFloatArrayList, ArrayList<TIntHashSet>, ArrayList<TIntArrayList>> luts = Convert.convertToLUT(
+				vertices);
+		final ArrayList<TIntHashSet>   vertexTriangleLUT = luts.getB();
+		final ArrayList<TIntArrayList> triangleVertexLUT = luts.getC();
+		final ArrayList<TIntHashSet>   edgeSets          = Convert.convertToEdgeSets(vertexTriangleLUT,
+				triangleVertexLUT);
+
+		final boolean[] isBoundary = new boolean[vertexTriangleLUT.size()];
+		for (int v = 0; v < isBoundary.length; ++v)
+			for (final int w : edgeSets.get(v).toArray())
+			{
+				final TIntHashSet shared = new TIntHashSet(vertexTriangleLUT.get(v));
+				shared.retainAll(vertexTriangleLUT.get(w));
+				isBoundary[v] |= shared.size() < 2;
+			}
+
+		float[] coordinates = luts.getA().toArray();
+		for (int iteration = 0; iteration < iterations; ++iteration)
+		{
+			final float[] smoothed = coordinates.clone();
+			for (int v = 0; v < isBoundary.length; ++v)
+			{
+				if (isBoundary[v])
+					continue;
+				final int[] neighbors = edgeSets.get(v).toArray();
+				for (int d = 0; d < 3; ++d)
+				{
+					double sum = 0;
+					for (final int w : neighbors)
+						sum += coordinates[3 * w + d];
+					final double c = coordinates[3 * v + d];
+					smoothed[3 * v + d] = (float) ((sum / neighbors.length - c) * lambda + c);
+				}
+			}
+			coordinates = smoothed;
+		}
+		return Convert.convertFromLUT(TFloatArrayList.wrap(coordinates), triangleVertexLUT);
+	}
+
+}
@@ -0,0 +1,210 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SurfaceNetsTest
+{
+
+	private static final double[] CENTER = {20.3, 19.7, 20.1};
+
+	private static final double RADIUS = 12.5;
+
+	@Test
+	public void testSphere()
+	{
+		final PackedMask mask = sphere(40, CENTER, RADIUS);
+
+		final float[] surfaceNets   = SurfaceNets.generateMesh(mask, new AffineTransform3D(), () -> false);
+		final float[] marchingCubes = MeshExtraction.MARCHING_CUBES.generateMesh(
+				mask,
+				new AffineTransform3D(),
+				() -> false);
+
+		Assert.assertTrue(surfaceNets.length > 0);
+		Assert.assertEquals(0, surfaceNets.length % 9);
+
+		// closed and consistently oriented: every directed edge occurs exactly once, and so does its reverse
+		final VertexIndexMap vertices = new VertexIndexMap();
+		final Set<Long>      edges    = new HashSet<>();
+		for (int triangle = 0; triangle < surfaceNets.length; triangle += 9)
+		{
+			final int[] indices = new int[3];
+			for (int corner = 0; corner < 3; ++corner)
+			{
+				final int k = triangle + 3 * corner;
+				indices[corner] = vertices.insert(surfaceNets[k], surfaceNets[k + 1], surfaceNets[k + 2]);
+			}
+			for (int corner = 0; corner < 3; ++corner)
+				Assert.assertTrue(edges.add(edge(indices[corner], indices[(corner + 1) % 3])));
+		}
+		for (final long edge : edges)
+			Assert.assertTrue(edges.contains(edge(second(edge), first(edge))));
+
+		// same orientation as marching cubes
+		Assert.assertEquals(
+				Math.signum(signedVolume(marchingCubes)),
+				Math.signum(signedVolume(surfaceNets)),
+				0.0);
+		Assert.assertEquals(
+				signedVolume(marchingCubes),
+				signedVolume(surfaceNets),
+				0.05 * Math.abs(signedVolume(marchingCubes)));
+
+		Assert.assertTrue(maxError(surfaceNets, CENTER, RADIUS) < 1.0);
+		Assert.assertTrue(meanError(surfaceNets, CENTER, RADIUS) < meanError(marchingCubes, CENTER, RADIUS));
+	}
+
+	/**
+	 * Compare triangle count, time, and distance from the analytic sphere of both mesh extraction algorithms.
+	 */
+	public static void main(final String[] args)
+	{
+		final int        size   = 256;
+		final double[]   center = {size / 2.0 + 0.3, size / 2.0 - 0.3, size / 2.0 + 0.1};
+		final double     radius = size / 2.0 - 8;
+		final PackedMask mask   = sphere(size, center, radius);
+		final int        runs   = 10;
+
+		for (final MeshExtraction extraction : MeshExtraction.values())
+		{
+			float[] mesh = null;
+			// warm up
+			for (int run = 0; run < 3; ++run)
+				mesh = extraction.generateMesh(mask, new AffineTransform3D(), () -> false);
+			final long start = System.nanoTime();
+			for (int run = 0; run < runs; ++run)
+				mesh = extraction.generateMesh(mask, new AffineTransform3D(), () -> false);
+			final double millis = (System.nanoTime() - start) * 1e-6 / runs;
+
+			final float[] smoothed = Smooth.smooth(mesh, Smooth.DEFAULT_LAMBDA, Smooth.DEFAULT_ITERATIONS);
+			System.out.println(String.format(
+					"%-16s triangles=%9d time=%8.2fms slivers=%5.2f%% error: mean=%.3f max=%.3f " +
+							"smoothed mean=%.3f max=%.3f",
+					extraction,
+					mesh.length / 9,
+					millis,
+					100.0 * slivers(mesh, 10.0) / (mesh.length / 9),
+					meanError(mesh, center, radius),
+					maxError(mesh, center, radius),
+					meanError(smoothed, center, radius),
+					maxError(smoothed, center, radius)));
+		}
+	}
+
+	private static PackedMask sphere(final int size, final double[] center, final double radius)
+	{
+		final ArrayImg<UnsignedByteType, ByteArray> img    = ArrayImgs.unsignedBytes(size, size, size);
+		final Cursor<UnsignedByteType>              cursor = img.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			double distance = 0;
+			for (int d = 0; d < 3; ++d)
+			{
+				final double diff = cursor.getDoublePosition(d) - center[d];
+				distance += diff * diff;
+			}
+			cursor.get().set(distance <= radius * radius ? 1 : 0);
+		}
+		return MarchingCubes.sampleMask(img, img, (s, t) -> t.set(s.get() != 0), img, new int[] {1, 1, 1});
+	}
+
+	private static long edge(final int from, final int to)
+	{
+		return (long) from << 32 | to;
+	}
+
+	private static int first(final long edge)
+	{
+		return (int) (edge >>> 32);
+	}
+
+	private static int second(final long edge)
+	{
+		return (int) edge;
+	}
+
+	private static double signedVolume(final float[] triangles)
+	{
+		double volume = 0;
+		for (int k = 0; k < triangles.length; k += 9)
+		{
+			final double x1 = triangles[k + 0], y1 = triangles[k + 1], z1 = triangles[k + 2];
+			final double x2 = triangles[k + 3], y2 = triangles[k + 4], z2 = triangles[k + 5];
+			final double x3 = triangles[k + 6], y3 = triangles[k + 7], z3 = triangles[k + 8];
+			volume += x1 * (y2 * z3 - z2 * y3) - y1 * (x2 * z3 - z2 * x3) + z1 * (x2 * y3 - y2 * x3);
+		}
+		return volume / 6;
+	}
+
+	private static double error(final float[] vertices, final int k, final double[] center, final double radius)
+	{
+		double distance = 0;
+		for (int d = 0; d < 3; ++d)
+		{
+			final double diff = vertices[k + d] - center[d];
+			distance += diff * diff;
+		}
+		return Math.abs(Math.sqrt(distance) - radius);
+	}
+
+	private static double maxError(final float[] vertices, final double[] center, final double radius)
+	{
+		double max = 0;
+		for (int k = 0; k < vertices.length; k += 3)
+			max = Math.max(max, error(vertices, k, center, radius));
+		return max;
+	}
+
+	private static double meanError(final float[] vertices, final double[] center, final double radius)
+	{
+		double sum = 0;
+		for (int k = 0; k < vertices.length; k += 3)
+			sum += error(vertices, k, center, radius);
+		return sum / (vertices.length / 3);
+	}
+
+	/**
+	 * @return number of triangles with a smallest angle below {@code degrees}
+	 */
+	private static int slivers(final float[] triangles, final double degrees)
+	{
+		final double threshold = Math.cos(Math.toRadians(degrees));
+		int          count     = 0;
+		for (int k = 0; k < triangles.length; k += 9)
+		{
+			for (int corner = 0; corner < 3; ++corner)
+			{
+				final int    a   = k + 3 * corner;
+				final int    b   = k + 3 * ((corner + 1) % 3);
+				final int    c   = k + 3 * ((corner + 2) % 3);
+				double       dot = 0, ab = 0, ac = 0;
+				for (int d = 0; d < 3; ++d)
+				{
+					final double u = triangles[b + d] - triangles[a + d];
+					final double v = triangles[c + d] - triangles[a + d];
+					dot += u * v;
+					ab += u * u;
+					ac += v * v;
+				}
+				if (dot / Math.sqrt(ab * ac) > threshold)
+				{
+					++count;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.LoadedCellCacheLoader;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockValueRangesTest
+{
+
+	// three blocks along x, the value of each voxel is its x position: block 0 has range [0, 3], block 1 has range
+	// [4, 7] and block 2 has range [8, 11]
+	private static final long[] DIMENSIONS = {12, 4};
+
+	private static final CellGrid GRID = new CellGrid(DIMENSIONS, new int[] {4, 4});
+
+	@Test
+	public void testBlocksAffectedBy()
+	{
+		final BlockValueRanges<DoubleType> ranges = new BlockValueRanges<>(data(), GRID);
+		record(ranges, 0, 1, 2);
+
+		// unchanged threshold
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 2.0, 9.0));
+
+		// moved min
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 5.0, 9.0), 0, 1);
+		assertBlocks(ranges.blocksAffectedBy(5.0, 9.0, 2.0, 9.0), 0, 1);
+
+		// moved max
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 2.0, 10.0), 2);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 10.0, 2.0, 9.0), 2);
+
+		// both bounds moved past each other: new min above old max
+		assertBlocks(ranges.blocksAffectedBy(0.5, 1.0, 5.0, 6.0), 0, 1);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 5.0, 9.0, 10.0), 0, 1, 2);
+
+		// bounds exactly on the range of a block: exclusive bounds change whether the boundary value is included
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 4.0, 9.0), 0, 1);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 2.0, 8.0), 2);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 7.0, 2.0, 6.5), 1);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 3.5, 9.0), 0);
+	}
+
+	@Test
+	public void testUnrecordedBlocksAreNotAffected()
+	{
+		final BlockValueRanges<DoubleType> ranges = new BlockValueRanges<>(data(), GRID);
+		assertBlocks(ranges.blocksAffectedBy(-1.0, 20.0, 5.0, 6.0));
+
+		record(ranges, 0, 1);
+		assertBlocks(ranges.blocksAffectedBy(2.0, 9.0, 2.0, 10.0));
+		assertBlocks(ranges.blocksAffectedBy(-1.0, 20.0, 5.0, 6.0), 0, 1);
+	}
+
+	@Test
+	public void testOverlapsAny()
+	{
+		final BlockValueRanges<DoubleType> ranges = new BlockValueRanges<>(data(), GRID);
+		final TLongSet                     block1 = new TLongHashSet(new long[] {1});
+
+		Assert.assertFalse(ranges.overlapsAny(interval(0, 3), new TLongHashSet()));
+		Assert.assertTrue(ranges.overlapsAny(interval(4, 7), block1));
+		Assert.assertTrue(ranges.overlapsAny(interval(3, 4), block1));
+
+		// meshes of neighbouring blocks are generated from their blocks expanded by one voxel
+		Assert.assertFalse(ranges.overlapsAny(interval(0, 3), block1));
+		Assert.assertTrue(ranges.overlapsAny(Intervals.expand(interval(0, 3), 1), block1));
+		Assert.assertFalse(ranges.overlapsAny(interval(8, 11), block1));
+		Assert.assertTrue(ranges.overlapsAny(Intervals.expand(interval(8, 11), 1), block1));
+
+		// intervals are clipped to the data
+		Assert.assertFalse(ranges.overlapsAny(Intervals.expand(interval(13, 15), 1), new TLongHashSet(new long[]
+				{2})));
+		Assert.assertTrue(ranges.overlapsAny(Intervals.expand(interval(11, 15), 1), new TLongHashSet(new long[]
+				{2})));
+		Assert.assertTrue(ranges.overlapsAny(Intervals.expand(interval(-8, -1), 1), new TLongHashSet(new long[]
+				{0})));
+	}
+
+	private static ArrayImg<DoubleType, DoubleArray> data()
+	{
+		final ArrayImg<DoubleType, DoubleArray> data   = ArrayImgs.doubles(DIMENSIONS);
+		final Cursor<DoubleType>                cursor = data.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.next().setReal(cursor.getDoublePosition(0));
+		}
+		return data;
+	}
+
+	/**
+	 * Load {@code blocks} through {@link BlockValueRanges#recordingRanges}, as the intersection caches do.
+	 */
+	private static void record(final BlockValueRanges<DoubleType> ranges, final long... blocks)
+	{
+		final SoftRefLoaderCache<Long, Cell<VolatileByteArray>> cache = new SoftRefLoaderCache<>();
+		final CachedCellImg<UnsignedByteType, ?>                img   = new CachedCellImg<>(
+				GRID,
+				new UnsignedByteType(),
+				cache.withLoader(LoadedCellCacheLoader.get(
+						GRID,
+						ranges.recordingRanges(cell -> {}),
+						new UnsignedByteType(),
+						AccessFlags.setOf(AccessFlags.VOLATILE))),
+				ArrayDataAccessFactory.get(PrimitiveType.BYTE, AccessFlags.setOf(AccessFlags.VOLATILE)));
+		final RandomAccess<UnsignedByteType> access = img.randomAccess();
+		for (final long block : blocks)
+		{
+			access.setPosition(new long[] {block * 4, 0});
+			access.get().get();
+		}
+	}
+
+	private static Interval interval(final long minX, final long maxX)
+	{
+		return new FinalInterval(new long[] {minX, 0}, new long[] {maxX, DIMENSIONS[1] - 1});
+	}
+
+	private static void assertBlocks(final TLongSet actual, final long... expected)
+	{
+		Assert.assertEquals(new TLongHashSet(expected), actual);
+	}
+
+}
@@ -0,0 +1,222 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import gnu.trove.set.TLongSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.fill.FloodFill;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.LoadedCellCacheLoader;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.PrimitiveType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LabelIntersectionCellLoaderTest
+{
+
+	private static final long[] DIMENSIONS = {12, 10, 8};
+
+	private static final CellGrid GRID = new CellGrid(DIMENSIONS, new int[] {4, 4, 4});
+
+	private static final int NUM_BLOCKS = (int) Intervals.numElements(GRID.getGridDimensions());
+
+	private static final long SEED_LABEL = 1;
+
+	@Test
+	public void testAgainstFloodFill() throws InterruptedException, ExecutionException
+	{
+		for (int seed = 0; seed < 5; ++seed)
+		{
+			final ArrayImg<BitType, LongArray>          mask   = mask(seed);
+			final ArrayImg<UnsignedLongType, LongArray> labels = labels(seed);
+
+			// each cell on its own, as with the flood fill that the loader replaced
+			final ArrayImg<UnsignedByteType, ByteArray> expected = ArrayImgs.unsignedBytes(DIMENSIONS);
+			for (long block = 0; block < NUM_BLOCKS; ++block)
+			{
+				fill(mask, labels, Views.interval(expected, cellInterval(block)));
+			}
+			final LabelIntersectionCellLoader<UnsignedLongType, BitType> loader = loader(mask, labels);
+			assertEquals(expected, populate(loader));
+
+			// merged across all cells, as with a flood fill over the whole volume
+			final ArrayImg<UnsignedByteType, ByteArray> expectedMerged = ArrayImgs.unsignedBytes(DIMENSIONS);
+			fill(mask, labels, expectedMerged);
+			final long[] allBlocks = new long[NUM_BLOCKS];
+			Arrays.setAll(allBlocks, block -> block);
+			final ExecutorService es      = Executors.newFixedThreadPool(3);
+			final TLongSet        changed = loader.mergeAcross(GRID, allBlocks, es);
+			es.shutdown();
+			final CachedCellImg<UnsignedByteType, ?> merged = populate(loader);
+			assertEquals(expectedMerged, merged);
+
+			// only cells whose content differs from the per-cell result are reported as changed
+			for (long block = 0; block < NUM_BLOCKS; ++block)
+			{
+				final boolean isDifferent = !equals(
+						Views.interval(expected, cellInterval(block)),
+						Views.interval(expectedMerged, cellInterval(block)));
+				Assert.assertEquals(isDifferent, changed.contains(block));
+			}
+		}
+	}
+
+	@Test
+	public void testMergeAcrossSubset() throws InterruptedException, ExecutionException
+	{
+		// bar along x through all cells, seeded only in the first cell
+		final ArrayImg<BitType, LongArray>          mask   = ArrayImgs.bits(DIMENSIONS);
+		final ArrayImg<UnsignedLongType, LongArray> labels = ArrayImgs.unsignedLongs(DIMENSIONS);
+		Views.interval(mask, new FinalInterval(new long[] {0, 1, 1}, new long[] {11, 1, 1})).forEach(b -> b.set(true));
+		final RandomAccess<UnsignedLongType> labelAccess = labels.randomAccess();
+		labelAccess.setPosition(new long[] {0, 1, 1});
+		labelAccess.get().set(SEED_LABEL);
+
+		final LabelIntersectionCellLoader<UnsignedLongType, BitType> loader = loader(mask, labels);
+		final ExecutorService                                       es     = Executors.newFixedThreadPool(2);
+		// first two cells along x
+		final TLongSet changed = loader.mergeAcross(GRID, new long[] {0, 1}, es);
+		es.shutdown();
+		Assert.assertEquals(1, changed.size());
+		Assert.assertTrue(changed.contains(1));
+
+		final RandomAccess<UnsignedByteType> access = populate(loader).randomAccess();
+		for (long x = 0; x < DIMENSIONS[0]; ++x)
+		{
+			access.setPosition(new long[] {x, 1, 1});
+			Assert.assertEquals(x < 8 ? 1 : 0, access.get().get());
+		}
+	}
+
+	private static LabelIntersectionCellLoader<UnsignedLongType, BitType> loader(
+			final RandomAccessibleInterval<BitType> mask,
+			final RandomAccessibleInterval<UnsignedLongType> labels)
+	{
+		return new LabelIntersectionCellLoader<>(
+				labels,
+				Views.extendValue(mask, new BitType(false)),
+				l -> l.get() == SEED_LABEL,
+				BitType::get);
+	}
+
+	private static CachedCellImg<UnsignedByteType, ?> populate(final LabelIntersectionCellLoader<?, ?> loader)
+	{
+		final SoftRefLoaderCache<Long, Cell<VolatileByteArray>> cache = new SoftRefLoaderCache<>();
+		return new CachedCellImg<>(
+				GRID,
+				new UnsignedByteType(),
+				cache.withLoader(LoadedCellCacheLoader.get(
+						GRID,
+						loader,
+						new UnsignedByteType(),
+						AccessFlags.setOf(AccessFlags.VOLATILE))),
+				ArrayDataAccessFactory.get(PrimitiveType.BYTE, AccessFlags.setOf(AccessFlags.VOLATILE)));
+	}
+
+	/**
+	 * Flood fill {@code target} from every seed, within the interval of {@code target}.
+	 */
+	private static void fill(
+			final RandomAccessibleInterval<BitType> mask,
+			final RandomAccessibleInterval<UnsignedLongType> labels,
+			final RandomAccessibleInterval<UnsignedByteType> target)
+	{
+		final IntervalView<BitType>      maskInterval = Views.interval(mask, target);
+		final Cursor<UnsignedByteType>   targetCursor = Views.flatIterable(target).localizingCursor();
+		final Cursor<BitType>            maskCursor   = Views.flatIterable(maskInterval).cursor();
+		final Cursor<UnsignedLongType>   labelCursor  = Views.flatIterable(Views.interval(labels, target)).cursor();
+		while (targetCursor.hasNext())
+		{
+			final UnsignedByteType t = targetCursor.next();
+			final boolean          m = maskCursor.next().get();
+			final long             l = labelCursor.next().get();
+			if (t.get() == 0 && m && l == SEED_LABEL)
+			{
+				FloodFill.fill(
+						Views.extendValue(maskInterval, new BitType(false)),
+						Views.extendValue(target, new UnsignedByteType(1)),
+						targetCursor,
+						new UnsignedByteType(1),
+						new DiamondShape(1),
+						(s, u) -> s.get() && u.get() == 0);
+			}
+		}
+	}
+
+	private static ArrayImg<BitType, LongArray> mask(final long seed)
+	{
+		final Random                       rng  = new Random(seed);
+		final ArrayImg<BitType, LongArray> mask = ArrayImgs.bits(DIMENSIONS);
+		mask.forEach(b -> b.set(rng.nextDouble() < 0.4));
+		return mask;
+	}
+
+	private static ArrayImg<UnsignedLongType, LongArray> labels(final long seed)
+	{
+		final Random                                rng    = new Random(seed + 100);
+		final ArrayImg<UnsignedLongType, LongArray> labels = ArrayImgs.unsignedLongs(DIMENSIONS);
+		labels.forEach(l -> l.set(rng.nextDouble() < 0.03 ? SEED_LABEL : 2));
+		return labels;
+	}
+
+	private static Interval cellInterval(final long block)
+	{
+		final long[] cellPosition = new long[GRID.numDimensions()];
+		final long[] min          = new long[GRID.numDimensions()];
+		final long[] max          = new long[GRID.numDimensions()];
+		final int[]  dimensions   = new int[GRID.numDimensions()];
+		GRID.getCellGridPositionFlat(block, cellPosition);
+		GRID.getCellDimensions(cellPosition, min, dimensions);
+		Arrays.setAll(max, d -> min[d] + dimensions[d] - 1);
+		return new FinalInterval(min, max);
+	}
+
+	private static void assertEquals(
+			final RandomAccessibleInterval<UnsignedByteType> expected,
+			final RandomAccessibleInterval<UnsignedByteType> actual)
+	{
+		Assert.assertTrue(equals(expected, actual));
+	}
+
+	private static boolean equals(
+			final RandomAccessibleInterval<UnsignedByteType> expected,
+			final RandomAccessibleInterval<UnsignedByteType> actual)
+	{
+		final Cursor<UnsignedByteType> e = Views.flatIterable(expected).cursor();
+		final Cursor<UnsignedByteType> a = Views.flatIterable(actual).cursor();
+		while (e.hasNext())
+		{
+			if (e.next().get() != a.next().get())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,42 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.Threshold;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThresholdTest
+{
+
+	@Test
+	public void testExcludes()
+	{
+		final DoubleProperty        min       = new SimpleDoubleProperty(10.0);
+		final DoubleProperty        max       = new SimpleDoubleProperty(20.0);
+		final Threshold<DoubleType> threshold = new Threshold<>(min, max);
+
+		Assert.assertTrue(threshold.excludes(0.0, 5.0));
+		Assert.assertTrue(threshold.excludes(25.0, 30.0));
+		// bounds are exclusive
+		Assert.assertTrue(threshold.excludes(0.0, 10.0));
+		Assert.assertTrue(threshold.excludes(20.0, 30.0));
+		Assert.assertFalse(threshold.excludes(0.0, 10.5));
+		Assert.assertFalse(threshold.excludes(19.5, 30.0));
+		Assert.assertFalse(threshold.excludes(12.0, 13.0));
+		Assert.assertFalse(threshold.excludes(0.0, 30.0));
+
+		// excluded ranges agree with the voxel test
+		for (final double value : new double[] {0.0, 10.0, 10.5, 15.0, 20.0, 25.0})
+		{
+			Assert.assertEquals(!threshold.test(new DoubleType(value)), threshold.excludes(value, value));
+		}
+
+		// swapped min and max
+		min.set(30.0);
+		Assert.assertTrue(threshold.excludes(0.0, 20.0));
+		Assert.assertFalse(threshold.excludes(0.0, 25.0));
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.janelia.saalfeldlab.paintera.viewer3d;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrustumTest
+{
+
+	// 90 degrees vertical field of view: |y| <= z, |x| <= 2 * z
+	private static final Frustum VERTICAL = new Frustum(90.0, true, 1.0, 100.0, 2.0);
+
+	// 90 degrees horizontal field of view: |x| <= z, |y| <= z / 2
+	private static final Frustum HORIZONTAL = new Frustum(90.0, false, 1.0, 100.0, 2.0);
+
+	@Test
+	public void testNearFar()
+	{
+		Assert.assertTrue(VERTICAL.intersects(box(-1, -1, 10, 1, 1, 11)));
+		Assert.assertFalse(VERTICAL.intersects(box(0, 0, 0.1, 0.1, 0.1, 0.5)));
+		Assert.assertTrue(VERTICAL.intersects(box(0, 0, 0.5, 0.1, 0.1, 1.5)));
+		Assert.assertTrue(VERTICAL.intersects(box(0, 0, 99, 1, 1, 101)));
+		Assert.assertFalse(VERTICAL.intersects(box(0, 0, 101, 1, 1, 102)));
+		// behind the camera
+		Assert.assertFalse(VERTICAL.intersects(box(-1, -1, -11, 1, 1, -10)));
+		Assert.assertFalse(VERTICAL.intersects(new BoundingBox(0, 0, 10, -1, -1, -1)));
+	}
+
+	@Test
+	public void testAspectRatio()
+	{
+		Assert.assertTrue(VERTICAL.intersects(box(15, 0, 10, 16, 1, 10)));
+		Assert.assertFalse(HORIZONTAL.intersects(box(15, 0, 10, 16, 1, 10)));
+		Assert.assertTrue(HORIZONTAL.intersects(box(9, 0, 10, 9.5, 1, 10)));
+
+		Assert.assertTrue(VERTICAL.intersects(box(0, 7, 10, 1, 8, 10)));
+		Assert.assertFalse(HORIZONTAL.intersects(box(0, 7, 10, 1, 8, 10)));
+		Assert.assertTrue(HORIZONTAL.intersects(box(0, 4, 10, 1, 4.5, 10)));
+	}
+
+	@Test
+	public void testStraddleSidePlanes()
+	{
+		// straddling a side plane is in view, just outside of it is not
+		Assert.assertTrue(VERTICAL.intersects(box(19, 0, 10, 21, 1, 10)));
+		Assert.assertFalse(VERTICAL.intersects(box(20.5, 0, 10, 22, 1, 10)));
+		Assert.assertTrue(VERTICAL.intersects(box(-21, 0, 10, -19, 1, 10)));
+		Assert.assertFalse(VERTICAL.intersects(box(-22, 0, 10, -20.5, 1, 10)));
+		Assert.assertTrue(VERTICAL.intersects(box(0, 9, 10, 1, 11, 10)));
+		Assert.assertFalse(VERTICAL.intersects(box(0, 10.5, 10, 1, 12, 10)));
+		Assert.assertTrue(VERTICAL.intersects(box(0, -11, 10, 1, -9, 10)));
+		Assert.assertFalse(VERTICAL.intersects(box(0, -12, 10, 1, -10.5, 10)));
+
+		// the far side of a deep box decides
+		Assert.assertTrue(VERTICAL.intersects(box(25, 0, 10, 26, 1, 13)));
+		Assert.assertFalse(VERTICAL.intersects(box(27, 0, 10, 28, 1, 13)));
+	}
+
+	private static Bounds box(
+			final double minX,
+			final double minY,
+			final double minZ,
+			final double maxX,
+			final double maxY,
+			final double maxZ)
+	{
+		return new BoundingBox(minX, minY, minZ, maxX - minX, maxY - minY, maxZ - minZ);
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.janelia.saalfeldlab.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.logic.BitType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConnectedComponentsTest
+{
+
+	@Test
+	public void testBlock()
+	{
+		// two bars along x in z = 0, connected only through z = 1 at x = 4
+		final int[]     dimensions = {5, 3, 2};
+		final boolean[] foreground = new boolean[30];
+		for (int x = 0; x < 5; ++x)
+		{
+			foreground[x] = true;
+			foreground[x + 10] = true;
+		}
+		foreground[4 + 0 + 15] = true;
+		foreground[4 + 5 + 15] = true;
+		foreground[4 + 10 + 15] = true;
+		// isolated voxel, only edge-connected to the first bar
+		foreground[1 + 5 + 15] = true;
+
+		final int[] labels = new int[30];
+		Assert.assertEquals(2, ConnectedComponents.label(foreground, dimensions, labels));
+		for (int index = 0; index < 30; ++index)
+		{
+			final int expected = !foreground[index] ? ConnectedComponents.BACKGROUND : index == 1 + 5 + 15 ? 2 : 1;
+			Assert.assertEquals(expected, labels[index]);
+		}
+	}
+
+	@Test
+	public void testGrid() throws InterruptedException, ExecutionException
+	{
+		// U shape whose arms are in different blocks and connected only through a third block
+		final ArrayImg<BitType, LongArray> img    = ArrayImgs.bits(8, 8, 1);
+		final RandomAccess<BitType>        access = img.randomAccess();
+		for (int y = 0; y < 8; ++y)
+		{
+			set(access, 1, y);
+			set(access, 6, y);
+		}
+		for (int x = 1; x < 7; ++x)
+		{
+			set(access, x, 7);
+		}
+		set(access, 3, 2);
+
+		final ExecutorService     es         = Executors.newFixedThreadPool(3);
+		final ConnectedComponents components = ConnectedComponents.label(
+				img,
+				new CellGrid(new long[] {8, 8, 1}, new int[] {4, 4, 1}),
+				es);
+		es.shutdown();
+
+		final int arm = components.component(new long[] {1, 0, 0});
+		Assert.assertNotEquals(ConnectedComponents.BACKGROUND, arm);
+		Assert.assertEquals(arm, components.component(new long[] {6, 0, 0}));
+		Assert.assertEquals(arm, components.component(new long[] {4, 7, 0}));
+		Assert.assertEquals(ConnectedComponents.BACKGROUND, components.component(new long[] {2, 2, 0}));
+		Assert.assertNotEquals(ConnectedComponents.BACKGROUND, components.component(new long[] {3, 2, 0}));
+		Assert.assertNotEquals(arm, components.component(new long[] {3, 2, 0}));
+	}
+
+	private static void set(final RandomAccess<BitType> access, final long x, final long y)
+	{
+		access.setPosition(new long[] {x, y, 0});
+		access.get().set(true);
+	}
+
+}